@@ -6,6 +6,9 @@ CREATE DATABASE IF NOT EXISTS `smartdoc` CHARACTER SET utf8mb4 COLLATE utf8mb4_g
 USE `smartdoc`;
 
 -- 2. 清理旧表 (初始化用)
+DROP TABLE IF EXISTS `cluster_report_cache`;
+DROP TABLE IF EXISTS `invoice_category_stats`;
+DROP TABLE IF EXISTS `ocr_result_cache`;
 DROP TABLE IF EXISTS `sys_operation_log`;
 DROP TABLE IF EXISTS `sys_budget`;
 DROP TABLE IF EXISTS `sys_chat_log`;
@@ -33,13 +36,17 @@ CREATE TABLE `invoice_record` (
                                   `amount` double(10,2) DEFAULT NULL COMMENT '金额',
                                   `date` varchar(20) DEFAULT NULL COMMENT '开票日期',
                                   `category` varchar(50) DEFAULT NULL COMMENT '智能分类',
+                                  `tax_id` varchar(20) DEFAULT NULL COMMENT '销售方税号',
                                   `status` tinyint(1) DEFAULT 0 COMMENT '审批状态 (0=草稿, 1=待审核, 2=已通过, 3=已驳回)',
                                   `audit_remark` varchar(255) DEFAULT NULL COMMENT '审批驳回原因',
                                   `is_anomaly` tinyint(1) DEFAULT 0 COMMENT '是否异常(0否 1是)',
+                                  `ocr_confidence` double DEFAULT NULL COMMENT 'OCR置信度(关键字段最小值 0~1)',
+                                  `file_hash` varchar(64) DEFAULT NULL COMMENT '原件内容SHA-256 (关联原件存储)',
                                   `is_deleted` tinyint(1) DEFAULT 0 COMMENT '逻辑删除标记(0=正常, 1=已删除)',
                                   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
                                   PRIMARY KEY (`id`),
-                                  INDEX `idx_user_invoice` (`user_id`)
+                                  INDEX `idx_user_invoice` (`user_id`),
+                                  INDEX `idx_file_hash` (`file_hash`)
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='智能票据归档表';
 
 -- 5. AI对话记录表 (已包含 session_id)
@@ -76,4 +83,43 @@ CREATE TABLE `sys_operation_log` (
                                      `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
                                      PRIMARY KEY (`id`),
                                      INDEX `idx_user_op` (`user_id`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='操作审计日志';
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='操作审计日志';
+
+-- 8. OCR 识别结果缓存表 (按文件内容 SHA-256 去重)
+CREATE TABLE `ocr_result_cache` (
+                                    `content_hash` varchar(64) NOT NULL COMMENT '文件内容SHA-256',
+                                    `result_json` text NOT NULL COMMENT '识别结果(JSON)',
+                                    `hit_count` int DEFAULT 0 COMMENT '命中次数',
+                                    `last_access_time` datetime DEFAULT NULL COMMENT '最近访问时间(LRU淘汰依据)',
+                                    `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                    PRIMARY KEY (`content_hash`),
+                                    INDEX `idx_last_access` (`last_access_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='OCR识别结果缓存';
+
+-- 9. 类别消费统计表 (异常检测增量统计量，缺失时由票据表自动生成)
+CREATE TABLE `invoice_category_stats` (
+                                          `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                          `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                          `category` varchar(50) NOT NULL DEFAULT '' COMMENT '分类名称(空分类为空串)',
+                                          `sample_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '有效样本数',
+                                          `mean` double NOT NULL DEFAULT 0 COMMENT '金额均值',
+                                          `m2` double NOT NULL DEFAULT 0 COMMENT '离差平方和(Welford)',
+                                          `sketch` blob DEFAULT NULL COMMENT '金额分布 t-digest 草图(稳健检测)',
+                                          `update_time` datetime DEFAULT NULL,
+                                          PRIMARY KEY (`id`),
+                                          UNIQUE KEY `uk_user_category` (`user_id`, `category`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='类别消费统计(异常检测)';
+
+-- 10. AI 聚类报告缓存表 (按量化后的聚类中心缓存 DeepSeek 生成的报告)
+CREATE TABLE `cluster_report_cache` (
+                                        `signature` varchar(64) NOT NULL COMMENT '数据范围+量化聚类中心签名(SHA-256)',
+                                        `scope` varchar(32) NOT NULL COMMENT '数据范围(用户ID，全公司为*)',
+                                        `centroids` text DEFAULT NULL COMMENT '生成报告时的聚类中心描述',
+                                        `report` text NOT NULL COMMENT 'AI分析报告(Markdown)',
+                                        `hit_count` int DEFAULT 0 COMMENT '命中次数',
+                                        `generate_time` datetime DEFAULT NULL COMMENT '报告生成时间(超过刷新间隔后后台重新生成)',
+                                        `last_access_time` datetime DEFAULT NULL COMMENT '最近访问时间(LRU淘汰依据)',
+                                        `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                        PRIMARY KEY (`signature`),
+                                        INDEX `idx_last_access` (`last_access_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI聚类报告缓存';
@@ -73,3 +73,65 @@ ALTER TABLE `invoice_record` ADD COLUMN `audit_remark` VARCHAR(255) DEFAULT NULL
 -- 3. 初始化旧数据为 "已通过" (假设旧数据都有效)
 UPDATE `invoice_record` SET `status` = 2 WHERE `status` = 0;
 
+USE `smartdoc`;
+
+-- OCR 识别结果缓存表
+CREATE TABLE `ocr_result_cache` (
+                                    `content_hash` varchar(64) NOT NULL COMMENT '文件内容SHA-256',
+                                    `result_json` text NOT NULL COMMENT '识别结果(JSON)',
+                                    `hit_count` int DEFAULT 0 COMMENT '命中次数',
+                                    `last_access_time` datetime DEFAULT NULL COMMENT '最近访问时间(LRU淘汰依据)',
+                                    `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                    PRIMARY KEY (`content_hash`),
+                                    INDEX `idx_last_access` (`last_access_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='OCR识别结果缓存';
+
+USE `smartdoc`;
+
+-- OCR 置信度 (关键字段置信度最小值，手工录入为 NULL)
+ALTER TABLE `invoice_record` ADD COLUMN `ocr_confidence` DOUBLE DEFAULT NULL COMMENT 'OCR置信度(关键字段最小值 0~1)';
+
+-- 销售方税号 (通用识别 / PDF 文字层 / 增值税发票识别结果中提取)
+ALTER TABLE `invoice_record` ADD COLUMN `tax_id` VARCHAR(20) DEFAULT NULL COMMENT '销售方税号';
+
+USE `smartdoc`;
+
+-- 原件内容哈希 (内容寻址存储，重复上传共用一份原件)
+ALTER TABLE `invoice_record` ADD COLUMN `file_hash` VARCHAR(64) DEFAULT NULL COMMENT '原件内容SHA-256 (关联原件存储)';
+ALTER TABLE `invoice_record` ADD INDEX `idx_file_hash` (`file_hash`);
+
+USE `smartdoc`;
+
+-- 类别消费统计表 (异常检测增量统计量，首次保存时由历史票据自动生成，无需迁移数据)
+CREATE TABLE `invoice_category_stats` (
+                                          `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                          `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                          `category` varchar(50) NOT NULL DEFAULT '' COMMENT '分类名称(空分类为空串)',
+                                          `sample_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '有效样本数',
+                                          `mean` double NOT NULL DEFAULT 0 COMMENT '金额均值',
+                                          `m2` double NOT NULL DEFAULT 0 COMMENT '离差平方和(Welford)',
+                                          `update_time` datetime DEFAULT NULL,
+                                          PRIMARY KEY (`id`),
+                                          UNIQUE KEY `uk_user_category` (`user_id`, `category`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='类别消费统计(异常检测)';
+
+USE `smartdoc`;
+
+-- 金额分布 t-digest 草图 (稳健异常检测模式，为空时首次用到自动生成)
+ALTER TABLE `invoice_category_stats` ADD COLUMN `sketch` BLOB DEFAULT NULL COMMENT '金额分布 t-digest 草图(稳健检测)' AFTER `m2`;
+
+USE `smartdoc`;
+
+-- AI 聚类报告缓存表 (按量化后的聚类中心缓存，表为空时首次查看报告自动生成)
+CREATE TABLE `cluster_report_cache` (
+                                        `signature` varchar(64) NOT NULL COMMENT '数据范围+量化聚类中心签名(SHA-256)',
+                                        `scope` varchar(32) NOT NULL COMMENT '数据范围(用户ID，全公司为*)',
+                                        `centroids` text DEFAULT NULL COMMENT '生成报告时的聚类中心描述',
+                                        `report` text NOT NULL COMMENT 'AI分析报告(Markdown)',
+                                        `hit_count` int DEFAULT 0 COMMENT '命中次数',
+                                        `generate_time` datetime DEFAULT NULL COMMENT '报告生成时间(超过刷新间隔后后台重新生成)',
+                                        `last_access_time` datetime DEFAULT NULL COMMENT '最近访问时间(LRU淘汰依据)',
+                                        `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                        PRIMARY KEY (`signature`),
+                                        INDEX `idx_last_access` (`last_access_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI聚类报告缓存';
@@ -0,0 +1,134 @@
+package com.example.smartdoc.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.smartdoc.utils.AnomalyDetectionUtil;
+import com.example.smartdoc.utils.LinearRegressionUtil;
+
+/**
+ * 统计内核基准测试 - 对比 List&lt;Double&gt; 与 double[] / DoubleBuffer 版本
+ *
+ * <pre>
+ * boxedMeanStdDev       List 版本: calculateMean + calculateStdDev (两次遍历，逐个拆箱)
+ * primitiveMeanStdDev   double[] 版本: calculateMean + calculateStdDev (两次遍历)
+ * primitiveSinglePass   double[] 版本: calculateMeanAndStdDev (一次遍历)
+ * bufferSinglePass      直接内存 DoubleBuffer: calculateMeanAndStdDev
+ * boxedRegression       List 版本 predictNext
+ * primitiveRegression   double[] 版本 predictNext
+ * bufferRegression      直接内存 DoubleBuffer 版本 predictNext
+ * </pre>
+ *
+ * <h3>数据:</h3>
+ * <p>金额服从对数正态分布。List 中的 Double 按随机顺序分配，模拟从实体逐个取出金额后装箱的内存布局
+ * (相邻元素不在相邻地址)，这才是调用方实际得到的列表。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn -P jmh -DskipTests test -Djmh.include=AnalyticsKernelBenchmark
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see AnomalyDetectionUtil
+ * @see LinearRegressionUtil
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyticsKernelBenchmark {
+
+    /** 数据点数 */
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private List<Double> boxed;
+    private double[] primitive;
+    private DoubleBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        primitive = new double[size];
+        for (int i = 0; i < size; i++) {
+            primitive[i] = Math.round(Math.exp(4 + random.nextGaussian() * 0.6) * 100) / 100.0;
+        }
+
+        // 按随机顺序装箱，再按原顺序放入列表
+        List<Integer> order = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, random);
+        Double[] boxes = new Double[size];
+        for (int i : order) {
+            boxes[i] = Double.valueOf(primitive[i]);
+        }
+        boxed = new ArrayList<>(size);
+        Collections.addAll(boxed, boxes);
+
+        buffer = ByteBuffer.allocateDirect(size * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        buffer.put(primitive).flip();
+    }
+
+    @Benchmark
+    public void boxedMeanStdDev(Blackhole bh) {
+        double mean = AnomalyDetectionUtil.calculateMean(boxed);
+        bh.consume(mean);
+        bh.consume(AnomalyDetectionUtil.calculateStdDev(boxed, mean));
+    }
+
+    @Benchmark
+    public void primitiveMeanStdDev(Blackhole bh) {
+        double mean = AnomalyDetectionUtil.calculateMean(primitive);
+        bh.consume(mean);
+        bh.consume(AnomalyDetectionUtil.calculateStdDev(primitive, mean));
+    }
+
+    @Benchmark
+    public double[] primitiveSinglePass() {
+        return AnomalyDetectionUtil.calculateMeanAndStdDev(primitive);
+    }
+
+    @Benchmark
+    public double[] bufferSinglePass() {
+        return AnomalyDetectionUtil.calculateMeanAndStdDev(buffer);
+    }
+
+    @Benchmark
+    public Double boxedRegression() {
+        return LinearRegressionUtil.predictNext(boxed);
+    }
+
+    @Benchmark
+    public double primitiveRegression() {
+        return LinearRegressionUtil.predictNext(primitive);
+    }
+
+    @Benchmark
+    public double bufferRegression() {
+        return LinearRegressionUtil.predictNext(buffer);
+    }
+}
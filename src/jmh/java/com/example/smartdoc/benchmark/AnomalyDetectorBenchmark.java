@@ -0,0 +1,188 @@
+package com.example.smartdoc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.smartdoc.utils.AnomalyDetectionUtil;
+import com.example.smartdoc.utils.TDigest;
+
+/**
+ * 异常检测基准测试 - 对比三种检测方式的耗时与准确率
+ *
+ * <pre>
+ * legacyRescan   旧实现: 每次检测都遍历全部历史金额计算均值和标准差 (O(历史条数))
+ * zscoreWelford  增量 Welford 统计量 + Z-Score (O(1))
+ * robustSketch   反序列化 t-digest 草图 → 中位数 / MAD → 修正 Z-Score (O(质心数))
+ * </pre>
+ *
+ * <h3>数据:</h3>
+ * <p>历史金额服从对数正态分布 (中位数约 55 元)，其中 3% 混入 10~30 倍的大额消费，
+ * 模拟真实账本里已经存在的异常值；待检测金额中 10% 是 8~20 倍的异常。
+ * 历史中的异常会拉大标准差，Z-Score 因此漏掉一部分异常，这正是稳健检测要解决的问题。</p>
+ *
+ * <h3>准确率:</h3>
+ * <p>每次检测按真实标签累计 truePositive / falsePositive / falseNegative (JMH 辅助计数器，
+ * 出现在结果的次要指标中)，精确率 = TP / (TP + FP)，召回率 = TP / (TP + FN)。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn -P jmh -DskipTests test -Djmh.include=AnomalyDetectorBenchmark
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see AnomalyDetectionUtil
+ * @see TDigest
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnomalyDetectorBenchmark {
+
+    /** 修正 Z-Score 阈值 (与 smartdoc.anomaly.robust-threshold 默认值一致) */
+    private static final double ROBUST_THRESHOLD = 3.5;
+
+    /** 待检测金额数量 */
+    private static final int PROBES = 1000;
+
+    /** 同类别历史票据数 */
+    @Param({"100", "10000"})
+    public int historySize;
+
+    /** 历史金额 (旧实现的输入) */
+    private List<Double> history;
+
+    /** Welford 统计量得到的均值和标准差 */
+    private double mean;
+    private double stdDev;
+
+    /** 序列化的草图 (与数据库中保存的一致) */
+    private byte[] sketch;
+
+    /** 待检测金额及其真实标签 */
+    private double[] probes;
+    private boolean[] outlier;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+
+        // 1. 历史金额: 对数正态 + 3% 大额异常
+        history = new ArrayList<>(historySize);
+        TDigest digest = new TDigest(100);
+        long n = 0;
+        double m = 0;
+        double m2 = 0;
+        for (int i = 0; i < historySize; i++) {
+            double x = normalAmount(random);
+            if (random.nextDouble() < 0.03) {
+                x *= 10 + random.nextDouble() * 20;
+            }
+            x = Math.round(x * 100) / 100.0;
+            history.add(x);
+            digest.add(x);
+            n++;
+            double delta = x - m;
+            m += delta / n;
+            m2 += delta * (x - m);
+        }
+        mean = m;
+        stdDev = Math.sqrt(m2 / (n - 1));
+        sketch = digest.toBytes();
+
+        // 2. 待检测金额: 10% 异常
+        probes = new double[PROBES];
+        outlier = new boolean[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            double x = normalAmount(random);
+            if (random.nextDouble() < 0.10) {
+                x *= 8 + random.nextDouble() * 12;
+                outlier[i] = true;
+            }
+            probes[i] = Math.round(x * 100) / 100.0;
+        }
+    }
+
+    @Benchmark
+    public boolean legacyRescan(Accuracy acc) {
+        int i = acc.next();
+        double m = AnomalyDetectionUtil.calculateMean(history);
+        double sd = AnomalyDetectionUtil.calculateStdDev(history, m);
+        return acc.record(AnomalyDetectionUtil.isAnomaly(probes[i], m, sd), outlier[i]);
+    }
+
+    @Benchmark
+    public boolean zscoreWelford(Accuracy acc) {
+        int i = acc.next();
+        return acc.record(AnomalyDetectionUtil.isAnomaly(probes[i], mean, stdDev), outlier[i]);
+    }
+
+    @Benchmark
+    public boolean robustSketch(Accuracy acc) {
+        int i = acc.next();
+        TDigest digest = TDigest.fromBytes(sketch);
+        double median = digest.quantile(0.5);
+        double mad = digest.mad();
+        return acc.record(AnomalyDetectionUtil.isRobustAnomaly(probes[i], median, mad, ROBUST_THRESHOLD), outlier[i]);
+    }
+
+    /**
+     * 正常消费金额: 对数正态分布，中位数 e^4 ≈ 55
+     */
+    private static double normalAmount(Random random) {
+        return Math.exp(4 + random.nextGaussian() * 0.6);
+    }
+
+    /**
+     * 准确率计数器 (每个线程一份，每轮迭代清零)
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Accuracy {
+
+        public long truePositive;
+        public long falsePositive;
+        public long falseNegative;
+
+        /** 下一个待检测金额的下标 */
+        private int cursor;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            truePositive = 0;
+            falsePositive = 0;
+            falseNegative = 0;
+        }
+
+        int next() {
+            int i = cursor;
+            cursor = (i + 1) % PROBES;
+            return i;
+        }
+
+        boolean record(boolean flagged, boolean actual) {
+            if (flagged && actual) truePositive++;
+            else if (flagged) falsePositive++;
+            else if (actual) falseNegative++;
+            return flagged;
+        }
+    }
+}
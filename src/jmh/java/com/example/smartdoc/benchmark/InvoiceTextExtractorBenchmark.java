@@ -0,0 +1,156 @@
+package com.example.smartdoc.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.example.smartdoc.service.CategoryDictionary;
+import com.example.smartdoc.utils.InvoiceTextExtractor;
+
+/**
+ * 通用识别文字解析基准测试 - 对比旧版逐行编译正则与 InvoiceTextExtractor
+ *
+ * <p>legacy 基准原样保留了 OcrService.parseWordsToInvoice + postProcess 的旧实现
+ * (循环内 Pattern.compile、拼接全文做关键词判断)，用于量化改造收益。</p>
+ *
+ * <p>两个基准做的工作相同: 金额、日期、类别推断和日期标准化。extractor 基准的类别推断
+ * 与 OcrResponseParser 一样使用 CategoryDictionary (在只含词典的 Spring 容器中创建，配置取默认值)。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn -P jmh -DskipTests test -Djmh.include=InvoiceTextExtractorBenchmark
+ * </pre>
+ * <p>默认启用 -prof gc，结果中的 gc.alloc.rate.norm 即每份文档的分配字节数；
+ * JSON 结果输出到 target/jmh-result.json。</p>
+ *
+ * @author SmartDoc Team
+ * @see InvoiceTextExtractor
+ * @see CategoryDictionary
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvoiceTextExtractorBenchmark {
+
+    /** 一张增值税电子普通发票经通用识别后的典型文字行 */
+    private final List<String> lines = List.of(
+            "电子发票(普通发票)",
+            "发票号码：24442000000012345678",
+            "开票日期：2024年05月20日",
+            "购买方信息",
+            "名称：广州某某科技有限公司",
+            "统一社会信用代码/纳税人识别号：91440101MA5ABCDE1X",
+            "销售方信息",
+            "名称：广州某某餐饮管理有限公司",
+            "统一社会信用代码/纳税人识别号：91440106MA9XYWTU3P",
+            "项目名称",
+            "规格型号",
+            "单位",
+            "数量",
+            "单价",
+            "金额",
+            "税率/征收率",
+            "税额",
+            "*餐饮服务*餐费",
+            "次",
+            "1",
+            "94.34",
+            "94.34",
+            "6%",
+            "5.66",
+            "合计",
+            "¥94.34",
+            "¥5.66",
+            "价税合计（大写）",
+            "壹佰圆整",
+            "（小写）¥100.00",
+            "备注",
+            "开票人：张三");
+
+    private AnnotationConfigApplicationContext context;
+    private CategoryDictionary categoryDictionary;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new AnnotationConfigApplicationContext(CategoryDictionary.class);
+        categoryDictionary = context.getBean(CategoryDictionary.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        // 提取金额（找最大值，假设为总金额）
+        double maxAmount = 0.0;
+        for (String line : lines) {
+            Matcher m = Pattern.compile("(\\d{1,3}(,\\d{3})*\\.\\d{2})").matcher(line);
+            while (m.find()) {
+                try {
+                    double v = Double.parseDouble(m.group(1).replace(",", ""));
+                    if (v > maxAmount && v < 1000000) maxAmount = v;
+                } catch (Exception e) {}
+            }
+        }
+
+        // 提取日期
+        String date = null;
+        for (String line : lines) {
+            Matcher m = Pattern.compile("202\\d[-年/.]\\d{1,2}[-月/.]\\d{1,2}").matcher(line);
+            if (m.find()) {
+                date = m.group().replaceAll("[年月/.]", "-");
+                break;
+            }
+        }
+
+        // 根据关键词推断消费类别
+        String category = null;
+        String fullText = String.join(" ", lines);
+        if (fullText.contains("餐饮") || fullText.contains("饭")) category = "餐饮美食";
+        else if (fullText.contains("车") || fullText.contains("交通")) category = "交通出行";
+
+        // postProcess: 标准化日期格式
+        if (date != null) {
+            String d = date.replaceAll("[年月/.]", "-").replace("日", "");
+            Matcher m = Pattern.compile("\\d{4}-\\d{1,2}-\\d{1,2}").matcher(d);
+            if (m.find()) date = m.group();
+        }
+
+        bh.consume(maxAmount);
+        bh.consume(date);
+        bh.consume(category);
+    }
+
+    @Benchmark
+    public void extractor(Blackhole bh) {
+        InvoiceTextExtractor.Result r = InvoiceTextExtractor.extract(lines);
+
+        // 按词典推断类别 (与 OcrResponseParser 相同，逐行扫描)
+        String category = categoryDictionary.infer(lines);
+
+        bh.consume(r.getAmount());
+        bh.consume(InvoiceTextExtractor.normalizeDate(r.getDate()));
+        bh.consume(category);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.smartdoc.benchmark;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.smartdoc.utils.ClusterFeatures;
+import com.example.smartdoc.utils.KMeansEngine;
+import com.example.smartdoc.utils.KMeansUtil;
+
+/**
+ * K-Means 聚类基准测试 - 测量 /api/stats/clustering 的聚类耗时
+ *
+ * <pre>
+ * legacy          原实现 (随机选初始中心、对象列表、每轮 K 次遍历更新中心)，保留在本类中作对比
+ * fit             KMeansUtil.fit (包含 Point 列表与列数组之间的转换)
+ * engineLloyd     KMeansEngine 串行，逐点计算到所有中心的距离
+ * engineSerial    KMeansEngine 串行，Hamerly 加速 (默认)
+ * engineParallel  KMeansEngine 默认并行阈值 (点数达到阈值时在公共池中并行分配)
+ * miniBatch       KMeansEngine.fitMiniBatch (参数与接口默认配置一致)，含最后的全量分配
+ * featuresLloyd   接口默认的标准化特征 (几号、星期几、对数金额、类别 one-hot，共 12 维)，Lloyd
+ * featuresHamerly 同上，Hamerly 加速
+ * </pre>
+ *
+ * <h3>数据:</h3>
+ * <p>与聚类接口相同的二维点 (消费日期 1~31, 金额)，由三类消费混合而成:
+ * 日常小额 (约 70%)、中等消费 (约 25%)、月初大额固定支出 (约 5%)。
+ * 点数从个人用户一年的票据量到企业账号的规模。多维特征另外为每个点生成 2025 年的日期和 8 个类别之一。</p>
+ *
+ * <p>除 legacy 外都使用固定种子，每次调用的迭代次数相同。legacy 的初始中心随机，
+ * 且会修改点的 clusterIndex，每次调用前先重置 (计入耗时，相对聚类本身可忽略)。
+ * engineParallel 的收益取决于可用核数，单核机器上只体现任务拆分的开销。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn -P jmh -DskipTests test -Djmh.include=KMeansBenchmark
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see KMeansUtil
+ * @see KMeansEngine
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KMeansBenchmark {
+
+    /** 聚类数 (与接口一致) */
+    private static final int K = 3;
+
+    /** 最大迭代次数 (与接口一致) */
+    private static final int MAX_ITERATIONS = 100;
+
+    /** 随机种子 (与接口一致) */
+    private static final long SEED = 42L;
+
+    /** Mini-batch 每批点数和最大批数 (与接口默认配置一致) */
+    private static final int BATCH_SIZE = 1024;
+    private static final int MAX_BATCHES = 300;
+
+    /** 数据点数 */
+    @Param({"500", "5000", "50000", "200000"})
+    public int size;
+
+    private static final String[] CATEGORIES = {
+            "餐饮美食", "交通出行", "办公耗材", "通讯网络", "住宿差旅", "医疗健康", "休闲娱乐", "其他"};
+
+    private List<KMeansUtil.Point> points;
+    private double[][] columns;
+    private double[][] features;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        points = new ArrayList<>(size);
+        columns = new double[2][size];
+        LocalDate[] dates = new LocalDate[size];
+        String[] categories = new String[size];
+        for (int i = 0; i < size; i++) {
+            double r = random.nextDouble();
+            double day;
+            double amount;
+            if (r < 0.70) {
+                day = 1 + random.nextInt(31);
+                amount = Math.exp(3.5 + random.nextGaussian() * 0.5);
+            } else if (r < 0.95) {
+                day = 1 + random.nextInt(31);
+                amount = Math.exp(5.5 + random.nextGaussian() * 0.4);
+            } else {
+                day = 1 + random.nextInt(5);
+                amount = 3000 + random.nextGaussian() * 300;
+            }
+            amount = Math.round(amount * 100) / 100.0;
+            points.add(new KMeansUtil.Point(day, amount, -1));
+            columns[0][i] = day;
+            columns[1][i] = amount;
+            YearMonth month = YearMonth.of(2025, 1 + random.nextInt(12));
+            dates[i] = month.atDay(Math.min((int) day, month.lengthOfMonth()));
+            categories[i] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+        }
+        features = ClusterFeatures.parse("day,weekday,log-amount,category")
+                .build(dates, columns[1], categories);
+    }
+
+    @Benchmark
+    public List<KMeansUtil.Point> legacy() {
+        for (KMeansUtil.Point p : points) {
+            p.setClusterIndex(-1);
+        }
+        return legacyFit(points, K, MAX_ITERATIONS);
+    }
+
+    @Benchmark
+    public KMeansUtil.ClusterResult fit() {
+        return KMeansUtil.fit(points, K, MAX_ITERATIONS, SEED);
+    }
+
+    @Benchmark
+    public KMeansEngine.Result engineLloyd() {
+        return KMeansEngine.fit(columns, K, MAX_ITERATIONS, SEED, Integer.MAX_VALUE, KMeansEngine.Algorithm.LLOYD);
+    }
+
+    @Benchmark
+    public KMeansEngine.Result engineSerial() {
+        return KMeansEngine.fit(columns, K, MAX_ITERATIONS, SEED, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public KMeansEngine.Result engineParallel() {
+        return KMeansEngine.fit(columns, K, MAX_ITERATIONS, SEED);
+    }
+
+    @Benchmark
+    public KMeansEngine.Result miniBatch() {
+        return KMeansEngine.fitMiniBatch(columns, K, BATCH_SIZE, MAX_BATCHES, SEED);
+    }
+
+    @Benchmark
+    public KMeansEngine.Result featuresLloyd() {
+        return KMeansEngine.fit(features, K, MAX_ITERATIONS, SEED, Integer.MAX_VALUE, KMeansEngine.Algorithm.LLOYD);
+    }
+
+    @Benchmark
+    public KMeansEngine.Result featuresHamerly() {
+        return KMeansEngine.fit(features, K, MAX_ITERATIONS, SEED, Integer.MAX_VALUE, KMeansEngine.Algorithm.HAMERLY);
+    }
+
+    /**
+     * 原 KMeansUtil.fit 的实现 (返回中心点)
+     */
+    private static List<KMeansUtil.Point> legacyFit(List<KMeansUtil.Point> rawData, int k, int maxIterations) {
+        List<KMeansUtil.Point> centroids = new ArrayList<>();
+        Random random = new Random();
+        for (int i = 0; i < k; i++) {
+            KMeansUtil.Point randomPoint = rawData.get(random.nextInt(rawData.size()));
+            centroids.add(new KMeansUtil.Point(randomPoint.getX(), randomPoint.getY(), i));
+        }
+
+        boolean changed = true;
+        int iter = 0;
+        while (changed && iter < maxIterations) {
+            changed = false;
+            iter++;
+
+            for (KMeansUtil.Point p : rawData) {
+                int nearestIndex = -1;
+                double minDist = Double.MAX_VALUE;
+                for (int i = 0; i < centroids.size(); i++) {
+                    KMeansUtil.Point c = centroids.get(i);
+                    double dist = Math.sqrt(Math.pow(p.getX() - c.getX(), 2) + Math.pow(p.getY() - c.getY(), 2));
+                    if (dist < minDist) {
+                        minDist = dist;
+                        nearestIndex = i;
+                    }
+                }
+                if (p.getClusterIndex() != nearestIndex) {
+                    p.setClusterIndex(nearestIndex);
+                    changed = true;
+                }
+            }
+
+            for (int i = 0; i < k; i++) {
+                double sumX = 0, sumY = 0;
+                int count = 0;
+                for (KMeansUtil.Point p : rawData) {
+                    if (p.getClusterIndex() == i) {
+                        sumX += p.getX();
+                        sumY += p.getY();
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    centroids.get(i).setX(sumX / count);
+                    centroids.get(i).setY(sumY / count);
+                }
+            }
+        }
+        return centroids;
+    }
+}
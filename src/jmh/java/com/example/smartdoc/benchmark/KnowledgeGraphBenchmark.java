@@ -0,0 +1,78 @@
+package com.example.smartdoc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.smartdoc.controller.StatsController;
+import com.example.smartdoc.model.InvoiceData;
+
+/**
+ * 知识图谱构建基准测试 - 测量 /api/stats/graph 由票据列表生成节点和边的耗时
+ *
+ * <h3>数据:</h3>
+ * <p>8 个消费类别；商户数约为票据数的 1/10，按幂律分布 (少数常去的商户占大部分票据)，
+ * 接近真实账本的形态。商户越多，去重和节点数越多。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn -P jmh -DskipTests test -Djmh.include=KnowledgeGraphBenchmark
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see StatsController#buildKnowledgeGraph
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KnowledgeGraphBenchmark {
+
+    private static final String[] CATEGORIES = {
+            "餐饮美食", "交通出行", "办公耗材", "通讯网络", "住宿差旅", "医疗健康", "休闲娱乐", "其他"};
+
+    /** 票据数 */
+    @Param({"1000", "20000"})
+    public int size;
+
+    private List<InvoiceData> invoices;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        int merchants = Math.max(1, size / 10);
+        invoices = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // 幂律: 小编号商户出现得多
+            int merchant = (int) (merchants * Math.pow(random.nextDouble(), 3));
+            InvoiceData data = new InvoiceData();
+            data.setId((long) i + 1);
+            data.setMerchantName("商户" + merchant);
+            data.setCategory(CATEGORIES[merchant % CATEGORIES.length]);
+            data.setAmount(Math.round(Math.exp(4 + random.nextGaussian() * 0.8) * 100) / 100.0);
+            invoices.add(data);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> build() {
+        return StatsController.buildKnowledgeGraph("张三", invoices);
+    }
+}
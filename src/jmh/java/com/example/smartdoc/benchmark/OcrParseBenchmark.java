@@ -0,0 +1,119 @@
+package com.example.smartdoc.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.service.CategoryDictionary;
+import com.example.smartdoc.service.OcrResponseParser;
+
+/**
+ * OCR 响应解析基准测试 - 用录制的百度响应测量 JSON → 发票数据的耗时
+ *
+ * <pre>
+ * parse           解析已反序列化的 JSONObject (OcrService 拿到引擎响应之后的部分)
+ * decodeAndParse  从响应文本开始，包含 JSON 反序列化 (回放引擎的完整解析路径)
+ * </pre>
+ *
+ * <h3>数据:</h3>
+ * <p>src/jmh/resources/ocr-fixtures 下的响应文件，目录结构与 smartdoc.ocr.record-dir 录制的结果相同
+ * ({接口名}/{文件名}.json)，可以直接用线上录制的响应替换。mixed_page 是一张图片中识别出多张票据的情况。</p>
+ *
+ * <p>解析器和类别词典在一个只含这两个 Bean 的 Spring 容器中创建，配置项取默认值，与应用中的行为一致。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn -P jmh -DskipTests test -Djmh.include=OcrParseBenchmark
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see OcrResponseParser
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OcrParseBenchmark {
+
+    /** 响应文件 ({接口名}/{文件名}，不含扩展名) */
+    @Param({
+            "multipleInvoice/vat_invoice",
+            "multipleInvoice/train_ticket",
+            "multipleInvoice/air_ticket",
+            "multipleInvoice/taxi_receipt",
+            "multipleInvoice/taxi_online_ticket",
+            "multipleInvoice/quota_invoice",
+            "multipleInvoice/mixed_page",
+            "basicAccurateGeneral/vat_scan"
+    })
+    public String fixture;
+
+    private AnnotationConfigApplicationContext context;
+    private OcrResponseParser parser;
+
+    /** 响应文本与反序列化结果 */
+    private String text;
+    private JSONObject response;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = new AnnotationConfigApplicationContext(CategoryDictionary.class, OcrResponseParser.class);
+        parser = context.getBean(OcrResponseParser.class);
+
+        String path = "/ocr-fixtures/" + fixture + ".json";
+        try (InputStream in = OcrParseBenchmark.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("找不到响应文件: " + path);
+            }
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        response = new JSONObject(text);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return parseResponse(response);
+    }
+
+    @Benchmark
+    public Object decodeAndParse() {
+        return parseResponse(new JSONObject(text));
+    }
+
+    /**
+     * 按接口类型调用对应的解析方法 (与 OcrService 中的调用方式相同)
+     */
+    private Object parseResponse(JSONObject res) {
+        if (fixture.startsWith("multipleInvoice/")) {
+            return parser.parseTickets(res.getJSONArray("words_result"));
+        }
+        InvoiceData data = new InvoiceData();
+        parser.parseWordsToInvoice(res.getJSONArray("words_result"), data);
+        return data;
+    }
+}
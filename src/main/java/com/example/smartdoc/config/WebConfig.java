@@ -45,7 +45,8 @@ public class WebConfig implements WebMvcConfigurer {
                 // 这些路径不需要登录即可访问
                 .excludePathPatterns(
                     "/api/user/login",     // 登录接口 - 未登录用户需要访问
-                    "/api/user/register"   // 注册接口 - 新用户需要访问
+                    "/api/user/register",  // 注册接口 - 新用户需要访问
+                    "/api/health/**"       // 健康检查 - 负载均衡探测不携带 token
                 );
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.smartdoc.controller;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -11,13 +12,18 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.smartdoc.model.AnomalyRescoreJob;
 import com.example.smartdoc.model.InvoiceData;
 import com.example.smartdoc.model.OperationLog;
 import com.example.smartdoc.model.User;
 import com.example.smartdoc.repository.InvoiceRepository;
 import com.example.smartdoc.repository.OperationLogRepository;
+import com.example.smartdoc.service.AnomalyRescoreService;
+import com.example.smartdoc.service.StatsCacheService;
+import com.example.smartdoc.service.ThumbnailService;
 
 import jakarta.transaction.Transactional;
 
@@ -53,6 +59,8 @@ import jakarta.transaction.Transactional;
  *   <li>GET /api/audit/pending-list - 管理员获取待审核列表</li>
  *   <li>POST /api/audit/pass/{id} - 管理员审核通过</li>
  *   <li>POST /api/audit/reject/{id} - 管理员驳回</li>
+ *   <li>POST /api/audit/rescore - 管理员发起异常重新评分</li>
+ *   <li>GET /api/audit/rescore - 管理员查询重新评分进度</li>
  * </ul>
  * 
  * @author SmartDoc Team
@@ -71,6 +79,18 @@ public class AuditController {
     @Autowired 
     private OperationLogRepository logRepo;
 
+    /** 统计结果缓存 - 票据状态变更后使该用户的统计结果失效 */
+    @Autowired
+    private StatsCacheService statsCacheService;
+
+    /** 缩略图服务 - 为待审核票据预先生成预览图 */
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    /** 异常重新评分服务 - 调整检测阈值或模式后刷新历史票据的异常标记 */
+    @Autowired
+    private AnomalyRescoreService anomalyRescoreService;
+
     /**
      * 【用户】提交审核申请
      * 
@@ -102,6 +122,7 @@ public class AuditController {
             data.setAuditRemark(null);
             // 6. 保存更新
             invoiceRepository.save(data);
+            statsCacheService.bump(data.getUserId());
             return Map.of("code", 200, "msg", "已提交申请");
         }
         
@@ -118,13 +139,23 @@ public class AuditController {
      * <h4>权限要求:</h4>
      * <p>仅角色为 admin 的用户可以调用此接口</p>
      * 
-     * @param token 用户登录凭证
+     * <h4>置信度筛选:</h4>
+     * <p>传入 maxConfidence 时只返回 OCR 置信度不高于该值的票据，并按置信度从低到高排序，
+     * 方便优先核对识别不可靠的票据。没有置信度记录 (手工录入) 的票据不参与筛选。</p>
+     * 
+     * <h4>缩略图:</h4>
+     * <p>关联了原件的票据带有 thumbnailUrl。返回列表前为还没有缩略图的票据排队生成，
+     * 页面加载图片时大多已经生成完毕。</p>
+     * 
+     * @param token         用户登录凭证
+     * @param maxConfidence 置信度上限 (可选，0~1)
      * @return 待审核票据列表
      *         - code=200: 查询成功，data 包含票据列表
      *         - code=403: 权限不足
      */
     @GetMapping("/pending-list")
-    public Map<String, Object> getPendingList(@RequestHeader("Authorization") String token) {
+    public Map<String, Object> getPendingList(@RequestHeader("Authorization") String token,
+                                              @RequestParam(value = "maxConfidence", required = false) Double maxConfidence) {
         // 1. 获取当前用户
         User user = UserController.tokenMap.get(token);
         
@@ -141,6 +172,17 @@ public class AuditController {
                 .filter(i -> i.getStatus() == 1)
                 .toList();
 
+        // 5. 按置信度筛选 (可选)
+        if (maxConfidence != null) {
+            pending = pending.stream()
+                    .filter(i -> i.getOcrConfidence() != null && i.getOcrConfidence() <= maxConfidence)
+                    .sorted(Comparator.comparing(InvoiceData::getOcrConfidence))
+                    .toList();
+        }
+
+        // 6. 预先生成缩略图
+        pending.forEach(i -> thumbnailService.prefetch(i.getFileHash()));
+
         return Map.of("code", 200, "data", pending);
     }
 
@@ -174,6 +216,7 @@ public class AuditController {
         if (data != null) {
             data.setStatus(2);  // 状态改为已通过
             invoiceRepository.save(data);
+            statsCacheService.bump(data.getUserId());
             
             // 3. 记录操作审计日志
             logRepo.save(new OperationLog(user.getId(), "审核通过", "单号:" + id));
@@ -222,6 +265,7 @@ public class AuditController {
             data.setStatus(3);  // 状态改为已驳回
             data.setAuditRemark(body.get("reason"));  // 保存驳回原因
             invoiceRepository.save(data);
+            statsCacheService.bump(data.getUserId());
             
             // 3. 记录操作审计日志 (包含驳回原因)
             logRepo.save(new OperationLog(user.getId(), "审核驳回", 
@@ -232,4 +276,64 @@ public class AuditController {
         
         return Map.of("code", 404);
     }
+
+    /**
+     * 【管理员】发起异常重新评分
+     * 
+     * <p>按当前的检测模式和阈值在后台重新计算全部有效票据的异常标记，立即返回任务信息。
+     * 同一时间只能运行一个任务。</p>
+     * 
+     * <h4>权限要求:</h4>
+     * <p>仅角色为 admin 的用户可以调用此接口</p>
+     * 
+     * @param token 用户登录凭证
+     * @return 操作结果
+     *         - code=200: 已开始，data 为任务信息 (含 jobId)
+     *         - code=403: 权限不足
+     *         - code=409: 已有任务在运行，data 为运行中的任务
+     */
+    @PostMapping("/rescore")
+    public Map<String, Object> startRescore(@RequestHeader("Authorization") String token) {
+        // 1. 权限校验
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        // 2. 发起任务 (已有任务在运行时拒绝)
+        AnomalyRescoreJob job = anomalyRescoreService.start(user.getId());
+        if (job == null) {
+            return Map.of("code", 409, "msg", "重新评分任务正在运行", "data", anomalyRescoreService.getLastJob());
+        }
+
+        // 3. 记录操作审计日志
+        logRepo.save(new OperationLog(user.getId(), "异常重新评分", "模式:" + job.getMode() + " 任务:" + job.getJobId()));
+
+        return Map.of("code", 200, "msg", "已开始重新评分", "data", job);
+    }
+
+    /**
+     * 【管理员】查询异常重新评分进度
+     * 
+     * <p>返回最近一次任务的状态、进度 (0~1)、已扫描 / 已变化 / 异常票据数、耗时和吞吐量 (条/秒)。</p>
+     * 
+     * @param token 用户登录凭证
+     * @return 查询结果
+     *         - code=200: data 为最近一次任务
+     *         - code=403: 权限不足
+     *         - code=404: 还没有发起过任务
+     */
+    @GetMapping("/rescore")
+    public Map<String, Object> getRescore(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        AnomalyRescoreJob job = anomalyRescoreService.getLastJob();
+        if (job == null) {
+            return Map.of("code", 404, "msg", "尚未发起重新评分");
+        }
+        return Map.of("code", 200, "data", job);
+    }
 }
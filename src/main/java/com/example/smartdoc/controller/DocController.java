@@ -1,8 +1,11 @@
 package com.example.smartdoc.controller;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -18,16 +21,24 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.model.OcrBatchJob;
 import com.example.smartdoc.model.User;
 import com.example.smartdoc.repository.InvoiceRepository;
+import com.example.smartdoc.service.AnomalyStatsService;
+import com.example.smartdoc.service.BlobStoreService;
+import com.example.smartdoc.service.OcrBatchService;
 import com.example.smartdoc.service.OcrService;
-import com.example.smartdoc.utils.AnomalyDetectionUtil;
+import com.example.smartdoc.service.OcrUnavailableException;
+import com.example.smartdoc.service.StatsCacheService;
+import com.example.smartdoc.service.ThumbnailService;
+import com.example.smartdoc.utils.FileRangeSender;
 
 import cn.hutool.poi.excel.ExcelUtil;
 import cn.hutool.poi.excel.ExcelWriter;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.transaction.Transactional;
 
 /**
  * 票据文档控制器 - 处理票据的上传识别、存储管理和导出功能
@@ -58,29 +69,58 @@ import jakarta.servlet.http.HttpServletResponse;
  * <h3>API 接口:</h3>
  * <ul>
  *   <li>POST /api/doc/upload - 上传并识别票据</li>
+ *   <li>POST /api/doc/upload-all - 上传并识别票据 (返回多页 PDF、多票据图片中的全部票据)</li>
+ *   <li>POST /api/doc/upload-batch - 批量上传，异步识别</li>
+ *   <li>GET /api/doc/batch/{jobId} - 查询批量识别进度</li>
  *   <li>POST /api/doc/save - 保存票据到数据库</li>
+ *   <li>POST /api/doc/save-batch - 批量保存票据</li>
  *   <li>GET /api/doc/list - 获取票据列表</li>
  *   <li>DELETE /api/doc/delete/{id} - 删除票据 (软删除)</li>
+ *   <li>GET /api/doc/original/{id} - 打开票据原件 (支持 Range / ETag)</li>
+ *   <li>GET /api/doc/thumbnail/{id} - 获取票据缩略图 (生成中返回 202)</li>
  *   <li>GET /api/doc/export - 导出 Excel 报表</li>
  * </ul>
  * 
  * @author SmartDoc Team
  * @see OcrService
- * @see AnomalyDetectionUtil
+ * @see AnomalyStatsService
  */
 @RestController  // RESTful 控制器，返回 JSON 数据
 @RequestMapping("/api/doc")  // URL 前缀
 @CrossOrigin(origins = "*")  // 允许跨域
 public class DocController {
 
+    /** OCR 服务暂不可用或服务器繁忙时建议客户端重试的间隔 (秒) */
+    private static final String RETRY_AFTER_SECONDS = "5";
+
     /** OCR 识别服务 - 调用百度 AI 进行票据识别 */
     @Autowired
     private OcrService ocrService;
 
+    /** 批量识别服务 - 后台线程池异步识别多个文件 */
+    @Autowired
+    private OcrBatchService ocrBatchService;
+
+    /** 原件存储 - 按内容哈希读取上传的原件 */
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    /** 缩略图服务 - 保存时预先生成预览图 */
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    /** 异常检测统计服务 - 增量维护各类别的金额统计量 */
+    @Autowired
+    private AnomalyStatsService anomalyStatsService;
+
     /** 票据数据仓库 - 用于操作 invoice_record 表 */
     @Autowired
     private InvoiceRepository invoiceRepository;
 
+    /** 统计结果缓存 - 票据变更后使该用户的统计结果失效 */
+    @Autowired
+    private StatsCacheService statsCacheService;
+
     /** HTTP 请求对象 - 用于获取请求头中的 Token */
     @Autowired
     private HttpServletRequest request;
@@ -107,21 +147,114 @@ public class DocController {
      *   <li>自动分类 (category)</li>
      * </ul>
      * 
-     * @param file 用户上传的票据文件
+     * <h4>OCR 服务不可用 / 服务器繁忙:</h4>
+     * <p>限流排队超时、熔断、服务商故障或上传内存预算等待超时时返回 503 和 Retry-After，
+     * 与 "没有识别出票据" (200 + 空结果) 区分开，前端据此提示用户稍后重试。</p>
+     *
+     * @param file     用户上传的票据文件
+     * @param response HTTP 响应对象，服务不可用或繁忙时设置 503
      * @return 识别后的票据数据对象，识别失败返回 null
      */
     @PostMapping("/upload")
-    public InvoiceData uploadAndAnalyze(@RequestParam("file") MultipartFile file) {
+    public InvoiceData uploadAndAnalyze(@RequestParam("file") MultipartFile file, HttpServletResponse response) {
         try {
             // 调用 OCR 服务处理文档
             // OcrService 会自动判断文件类型并调用相应的识别接口
             return ocrService.processDocument(file);
+        } catch (OcrUnavailableException | IllegalStateException e) {
+            // IllegalStateException: 上传内存预算等待超时 (服务器繁忙)
+            serviceUnavailable(response);
+            return null;
         } catch (Exception e) {
             e.printStackTrace();
             return null;  // 识别失败返回 null
         }
     }
 
+    /**
+     * 上传并识别票据 (返回全部票据)
+     * 
+     * <p>与 /upload 相同，但会返回识别出的全部票据，而不是只返回第一张:
+     * 多页 PDF 每页的票据、一张图片中拍了多张票据 (如几张出租车票) 时的每一张。</p>
+     * 
+     * @param file     用户上传的票据文件
+     * @param response HTTP 响应对象，OCR 服务不可用或服务器繁忙时设置 503 (同 /upload)
+     * @return 识别出的票据列表，识别失败返回空列表
+     */
+    @PostMapping("/upload-all")
+    public List<InvoiceData> uploadAndAnalyzeAll(@RequestParam("file") MultipartFile file, HttpServletResponse response) {
+        try {
+            return ocrService.processDocumentAll(file);
+        } catch (OcrUnavailableException | IllegalStateException e) {
+            serviceUnavailable(response);
+            return List.of();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
+    /**
+     * 批量上传识别票据 (异步)
+     * 
+     * <p>该接口只负责接收文件并登记识别任务，立即返回任务 ID，
+     * 实际识别在后台线程池中进行，不会长时间占用请求线程。</p>
+     * 
+     * <h4>获取结果的两种方式:</h4>
+     * <ul>
+     *   <li>轮询: GET /api/doc/batch/{jobId}</li>
+     *   <li>推送: WebSocket ws://host/ws/ocr-progress/{token}</li>
+     * </ul>
+     * 
+     * @param files 用户上传的票据文件列表
+     * @return 任务 ID 及文件数量；队列已满时返回 code=503
+     */
+    @PostMapping("/upload-batch")
+    public Map<String, Object> uploadBatch(@RequestParam("files") MultipartFile[] files) {
+        // 1. 获取当前登录用户
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return Map.of("code", 401);
+        }
+        if (files == null || files.length == 0) {
+            return Map.of("code", 400, "msg", "请选择文件");
+        }
+
+        // 2. 登记任务并排入识别队列
+        try {
+            OcrBatchJob job = ocrBatchService.submit(currentUser.getId(), files);
+            return Map.of("code", 200, "data", Map.of("jobId", job.getJobId(), "total", job.getTotal()));
+        } catch (IllegalStateException e) {
+            return Map.of("code", 503, "msg", e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Map.of("code", 500, "msg", "上传失败");
+        }
+    }
+
+    /**
+     * 查询批量识别任务进度
+     * 
+     * <p>返回任务中每个文件的状态和识别结果，只允许查询自己的任务。
+     * 任务完成后在内存中保留一段时间 (默认 60 分钟)，过期后返回 404。</p>
+     * 
+     * @param jobId 任务 ID
+     * @return 任务详情 (total / finished / completed / items)
+     */
+    @GetMapping("/batch/{jobId}")
+    public Map<String, Object> getBatchJob(@PathVariable String jobId) {
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return Map.of("code", 401);
+        }
+
+        OcrBatchJob job = ocrBatchService.getJob(jobId);
+        if (job == null || !job.getUserId().equals(currentUser.getId())) {
+            return Map.of("code", 404, "msg", "任务不存在或已过期");
+        }
+        return Map.of("code", 200, "data", job);
+    }
+
     /**
      * 保存票据到数据库 (带异常检测)
      * 
@@ -130,16 +263,19 @@ public class DocController {
      * 
      * <h4>异常检测逻辑:</h4>
      * <ol>
-     *   <li>获取该用户同分类下的所有历史消费金额</li>
-     *   <li>计算历史数据的均值 (μ) 和标准差 (σ)</li>
+     *   <li>读取该用户同分类的增量统计量 (样本数、均值 μ、离差平方和)，不再查询全部历史票据</li>
+     *   <li>由统计量得到标准差 (σ)</li>
      *   <li>计算当前金额的 Z-Score = |当前值 - μ| / σ</li>
      *   <li>如果 Z-Score > 2.0，标记为异常 (约前 5% 极端值)</li>
+     *   <li>把当前金额计入统计量，与票据在同一个事务中提交</li>
      * </ol>
      * 
      * @param data 待保存的票据数据 (从请求体 JSON 解析)
      * @return "success" 表示保存成功，"error: not login" 表示未登录
+     * @see AnomalyStatsService
      */
     @PostMapping("/save")
+    @Transactional
     public String saveDoc(@RequestBody InvoiceData data) {
         // 1. 获取当前登录用户
         User currentUser = getCurrentUser();
@@ -149,54 +285,66 @@ public class DocController {
 
         // 2. 绑定用户 ID (数据隔离的关键)
         data.setUserId(currentUser.getId());
+        checkFileHash(data);
 
-        // ========== 3. 异常检测算法核心逻辑 ==========
-        try {
-            // 3.1 获取该用户、该分类下的所有历史消费记录
-            // 只与同类别的数据比较，如餐饮只跟餐饮比
-            List<InvoiceData> historyList = invoiceRepository.findByUserIdAndCategoryOrderByIdDesc(
-                    currentUser.getId(),
-                    data.getCategory()
-            );
-
-            // 3.2 提取历史金额列表作为训练数据
-            List<Double> historyAmounts = historyList.stream()
-                    .map(InvoiceData::getAmount)
-                    .toList();  // JDK 16+ 写法
-
-            // 3.3 样本量检查: 至少需要 5 条历史数据才能进行统计分析
-            if (historyAmounts.size() >= 5) {
-                // 计算均值 (Mean)
-                double mean = AnomalyDetectionUtil.calculateMean(historyAmounts);
-                
-                // 计算标准差 (Standard Deviation)
-                double stdDev = AnomalyDetectionUtil.calculateStdDev(historyAmounts, mean);
-
-                // 3.4 使用 Z-Score 算法判定是否异常
-                boolean isWeird = AnomalyDetectionUtil.isAnomaly(data.getAmount(), mean, stdDev);
-
-                // 3.5 打标: 0=正常, 1=异常
-                data.setIsAnomaly(isWeird ? 1 : 0);
-
-                // 输出日志方便调试
-                if (isWeird) {
-                    System.out.println("⚠️ 发现异常消费！金额: " + data.getAmount() + ", 均值: " + mean);
-                }
-            } else {
-                // 样本不足，默认标记为正常
-                data.setIsAnomaly(0);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            data.setIsAnomaly(0);  // 算法出错时兜底为正常
-        }
-        // ============================================
+        // 3. 异常检测: 只与该用户同类别的历史消费比较，如餐饮只跟餐饮比
+        anomalyStatsService.recordSaves(currentUser.getId(), List.of(data));
 
-        // 4. 保存到数据库
+        // 4. 保存到数据库，后台生成缩略图
         invoiceRepository.save(data);
+        statsCacheService.bump(currentUser.getId());
+        thumbnailService.prefetch(data.getFileHash());
         return "success";
     }
 
+    /**
+     * 批量保存票据
+     * 
+     * <p>用于一次识别出多张票据的场景 (多票据图片、多页 PDF、批量上传)，
+     * 前端确认后一次提交，所有票据在同一个事务中通过 saveAll 写入。</p>
+     * 
+     * <h4>异常检测:</h4>
+     * <p>每个类别只读取一次统计量；同一批次中先检测的票据会加入该类别的历史，
+     * 结果与逐张调用 /save 一致。</p>
+     * 
+     * @param list 票据列表
+     * @return code=200 及保存数量；未登录返回 401，列表为空返回 400
+     */
+    @PostMapping("/save-batch")
+    @Transactional
+    public Map<String, Object> saveBatch(@RequestBody List<InvoiceData> list) {
+        // 1. 获取当前登录用户
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return Map.of("code", 401, "msg", "未登录");
+        }
+        if (list == null || list.isEmpty()) {
+            return Map.of("code", 400, "msg", "没有需要保存的票据");
+        }
+
+        // 2. 逐张绑定用户并检测异常
+        for (InvoiceData data : list) {
+            data.setUserId(currentUser.getId());
+            checkFileHash(data);
+        }
+        anomalyStatsService.recordSaves(currentUser.getId(), list);
+
+        // 3. 一次性写入，后台生成缩略图
+        invoiceRepository.saveAll(list);
+        statsCacheService.bump(currentUser.getId());
+        list.forEach(data -> thumbnailService.prefetch(data.getFileHash()));
+        return Map.of("code", 200, "msg", "success", "count", list.size());
+    }
+
+    /**
+     * 校验前端提交的原件哈希: 原件不存在 (或哈希格式非法) 时解除关联
+     */
+    private void checkFileHash(InvoiceData data) {
+        if (data.getFileHash() != null && !blobStoreService.exists(data.getFileHash())) {
+            data.setFileHash(null);
+        }
+    }
+
     /**
      * 获取当前用户的票据列表
      * 
@@ -238,6 +386,7 @@ public class DocController {
      * @return "success" 或 "fail: permission denied"
      */
     @DeleteMapping("/delete/{id}")
+    @Transactional
     public String deleteDoc(@PathVariable Long id) {
         // 1. 获取当前用户
         User currentUser = getCurrentUser();
@@ -247,14 +396,118 @@ public class DocController {
 
         // 3. 权限校验: 票据必须存在且属于当前用户
         if (data != null && data.getUserId().equals(currentUser.getId())) {
-            // 执行删除 (由于 @SQLDelete 注解，实际是软删除)
+            // 从异常检测统计中移除，再执行删除 (由于 @SQLDelete 注解，实际是软删除)
+            anomalyStatsService.recordRemoval(id, data.getUserId(), data.getCategory(), data.getAmount());
             invoiceRepository.deleteById(id);
+            statsCacheService.bump(data.getUserId());
             return "success";
         } else {
             return "fail: permission denied";  // 没权限删别人的
         }
     }
 
+    /**
+     * 打开票据原件
+     *
+     * <p>返回上传时保存的原始图片或 PDF，供审核人员核对识别结果。
+     * 文件内容由容器直接从磁盘发送 (sendfile / FileChannel.transferTo)，不经过堆内存复制。</p>
+     *
+     * <h4>缓存与断点续传:</h4>
+     * <ul>
+     *   <li>ETag 为原件内容哈希，浏览器每次用 If-None-Match 验证，原件未变时返回 304</li>
+     *   <li>支持 Range 请求 (PDF 阅读器按需加载页面、大文件断点续传)，返回 206</li>
+     * </ul>
+     *
+     * <h4>权限校验:</h4>
+     * <p>只允许票据所属用户和管理员访问。</p>
+     *
+     * @param id       票据主键 ID
+     * @param response HTTP 响应对象，用于输出文件内容
+     */
+    @GetMapping("/original/{id}")
+    public void original(@PathVariable Long id, HttpServletResponse response) {
+        // 1. 获取当前用户
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        // 2. 权限校验: 本人或管理员
+        InvoiceData data = invoiceRepository.findById(id).orElse(null);
+        if (data == null || (!currentUser.getId().equals(data.getUserId()) && !"admin".equals(currentUser.getRole()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // 3. 定位原件 (手工录入或原件存储失败的票据没有原件)
+        Path path = blobStoreService.getPath(data.getFileHash());
+        if (path == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // 4. 发送文件
+        try {
+            response.setHeader("Content-Disposition", "inline");
+            FileRangeSender.send(path, blobStoreService.detectContentType(path), data.getFileHash(), request, response);
+        } catch (IOException e) {
+            // 客户端中途关闭连接 (如 PDF 阅读器取消加载) 属于正常情况，不记录
+        }
+    }
+
+    /**
+     * 获取票据缩略图
+     *
+     * <p>返回原件第一页 (PDF) 或原图的 JPEG 缩略图。缩略图在后台线程池中生成并缓存在磁盘上，
+     * 尚未生成时立即返回 202 并排队生成，前端按 Retry-After 稍后重试，不阻塞请求线程。</p>
+     *
+     * @param id       票据主键 ID
+     * @param response HTTP 响应对象，用于输出图片
+     */
+    @GetMapping("/thumbnail/{id}")
+    public void thumbnail(@PathVariable Long id, HttpServletResponse response) {
+        // 1. 获取当前用户
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        // 2. 权限校验: 本人或管理员
+        InvoiceData data = invoiceRepository.findById(id).orElse(null);
+        if (data == null || data.getFileHash() == null
+                || (!currentUser.getId().equals(data.getUserId()) && !"admin".equals(currentUser.getRole()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // 3. 已缓存直接返回；无法生成返回 404；否则已排队，返回 202
+        Path path = thumbnailService.getOrSchedule(data.getFileHash());
+        if (path == null) {
+            if (thumbnailService.isFailed(data.getFileHash())) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            } else {
+                response.setStatus(HttpServletResponse.SC_ACCEPTED);
+                response.setHeader("Retry-After", "1");
+            }
+            return;
+        }
+        try {
+            FileRangeSender.send(path, "image/jpeg", data.getFileHash() + "-thumb", request, response);
+        } catch (IOException e) {
+            // 同上: 客户端中途关闭连接
+        }
+    }
+
+    /**
+     * 辅助方法: 返回 503，并通过 Retry-After 提示客户端稍后重试
+     */
+    private void serviceUnavailable(HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+    }
+
     /**
      * 辅助方法: 从请求头的 Token 中获取当前用户对象
      * 
@@ -0,0 +1,57 @@
+package com.example.smartdoc.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.smartdoc.service.WarmupService;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 健康检查控制器 - 供负载均衡 / 网关探测节点状态
+ *
+ * <p>接口不需要登录 (已在 WebConfig 中排除)，返回内容不包含业务数据。</p>
+ *
+ * <h3>就绪判断:</h3>
+ * <pre>
+ * 启动预热进行中 → HTTP 503，网关不应转发流量
+ * 预热完成       → HTTP 200
+ * </pre>
+ *
+ * <h3>API 接口:</h3>
+ * <ul>
+ *   <li>GET /api/health/ready - 就绪探测</li>
+ * </ul>
+ *
+ * @author SmartDoc Team
+ * @see WarmupService
+ */
+@RestController  // RESTful 控制器
+@RequestMapping("/api/health")  // URL 前缀
+@CrossOrigin(origins = "*")  // 允许跨域
+public class HealthController {
+
+    /** 启动预热服务 */
+    @Autowired
+    private WarmupService warmupService;
+
+    /**
+     * 就绪探测
+     *
+     * @param response HTTP 响应 (未就绪时设置 503)
+     * @return 就绪状态与预热进度
+     */
+    @GetMapping("/ready")
+    public Map<String, Object> ready(HttpServletResponse response) {
+        if (warmupService.isReady()) {
+            return Map.of("code", 200, "msg", "ready", "data", warmupService.getStats());
+        }
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        return Map.of("code", 503, "msg", "预热中", "data", warmupService.getStats());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.smartdoc.controller;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.springframework.stereotype.Component;
+
+import com.example.smartdoc.model.User;
+
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * WebSocket 识别进度推送服务 - 实时推送批量识别任务的进度
+ *
+ * <p>批量上传后，前端可以建立该连接来接收每个文件的识别状态，
+ * 无需反复轮询 /api/doc/batch/{jobId} 接口。该端点只负责推送，不处理客户端消息。</p>
+ *
+ * <h3>连接地址:</h3>
+ * <pre>ws://localhost:8080/ws/ocr-progress/{token}</pre>
+ *
+ * <h3>推送消息格式 (JSON):</h3>
+ * <pre>
+ * {
+ *   "jobId": "任务ID",
+ *   "index": 0,             // 文件序号
+ *   "fileName": "发票.pdf",
+ *   "status": "DONE",       // PENDING / RUNNING / DONE / FAILED
+ *   "finished": 3,          // 已处理文件数
+ *   "total": 10,            // 文件总数
+ *   "results": [...],       // 识别结果列表 (DONE 时)
+ *   "error": "..."          // 失败原因 (FAILED 时)
+ * }
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.OcrBatchService
+ */
+@ServerEndpoint("/ws/ocr-progress/{token}")  // Token 作为路径参数进行身份验证
+@Component
+public class OcrProgressServer {
+
+    /** 所有活跃的进度推送连接 */
+    private static CopyOnWriteArraySet<OcrProgressServer> webSocketSet = new CopyOnWriteArraySet<>();
+
+    /** 当前 WebSocket 会话对象 */
+    private Session session;
+
+    /** 当前连接对应的用户 ID */
+    private Long currentUserId;
+
+    /**
+     * WebSocket 连接建立时回调 - 校验 Token，无效则直接关闭连接
+     */
+    @OnOpen
+    public void onOpen(Session session, @PathParam("token") String token) {
+        this.session = session;
+        User user = UserController.tokenMap.get(token);
+        if (user != null) {
+            this.currentUserId = user.getId();
+            webSocketSet.add(this);
+        } else {
+            try {
+                session.close();
+            } catch (IOException e) {
+                // 忽略关闭异常
+            }
+        }
+    }
+
+    /**
+     * WebSocket 连接关闭时回调
+     */
+    @OnClose
+    public void onClose() {
+        webSocketSet.remove(this);
+    }
+
+    /**
+     * WebSocket 发生错误时回调
+     */
+    @OnError
+    public void onError(Session session, Throwable error) {
+        webSocketSet.remove(this);
+    }
+
+    /**
+     * 向指定用户的所有进度连接推送消息
+     *
+     * <p>该方法由识别线程池中的多个线程并发调用，而同一个 Session 的
+     * BasicRemote 不支持并发发送，因此按 Session 加锁。</p>
+     *
+     * @param userId  目标用户 ID
+     * @param message JSON 消息文本
+     */
+    public static void pushToUser(Long userId, String message) {
+        for (OcrProgressServer server : webSocketSet) {
+            if (!userId.equals(server.currentUserId) || !server.session.isOpen()) {
+                continue;
+            }
+            synchronized (server.session) {
+                try {
+                    server.session.getBasicRemote().sendText(message);
+                } catch (IOException e) {
+                    // 推送失败不影响识别任务，前端仍可轮询获取结果
+                    webSocketSet.remove(server);
+                }
+            }
+        }
+    }
+}
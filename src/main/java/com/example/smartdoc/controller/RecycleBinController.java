@@ -3,6 +3,7 @@ package com.example.smartdoc.controller;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,6 +14,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.smartdoc.model.User;
+import com.example.smartdoc.service.AnomalyStatsService;
+import com.example.smartdoc.service.StatsCacheService;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -67,6 +70,14 @@ public class RecycleBinController {
     @PersistenceContext
     private EntityManager entityManager;
 
+    /** 异常检测统计服务 - 还原 / 粉碎票据时同步类别统计量 */
+    @Autowired
+    private AnomalyStatsService anomalyStatsService;
+
+    /** 统计结果缓存 - 还原 / 粉碎票据后使该用户的统计结果失效 */
+    @Autowired
+    private StatsCacheService statsCacheService;
+
     /**
      * 获取回收站列表
      * 
@@ -110,6 +121,9 @@ public class RecycleBinController {
     @PostMapping("/restore/{id}")
     @Transactional  // 开启事务，确保数据一致性
     public Map<String, Object> restore(@PathVariable Long id) {
+        // 先把金额计入异常检测统计 (只处理确实在回收站中的票据)
+        syncAnomalyStats(id, 1);
+
         // 执行原生 UPDATE 语句
         String sql = "UPDATE invoice_record SET is_deleted = 0 WHERE id = :id";
         entityManager.createNativeQuery(sql)
@@ -134,6 +148,9 @@ public class RecycleBinController {
     @DeleteMapping("/destroy/{id}")
     @Transactional  // 开启事务
     public Map<String, Object> destroy(@PathVariable Long id) {
+        // 未进入回收站的票据被直接粉碎时，先从异常检测统计中移除
+        syncAnomalyStats(id, 0);
+
         // 执行原生 DELETE 语句 (真正的物理删除)
         String sql = "DELETE FROM invoice_record WHERE id = :id";
         entityManager.createNativeQuery(sql)
@@ -169,4 +186,30 @@ public class RecycleBinController {
         
         return Map.of("code", 200, "msg", "回收站已清空");
     }
+
+    /**
+     * 票据在有效 / 已删除之间切换前同步异常检测统计，并使该用户的统计结果缓存失效
+     *
+     * @param id        票据主键 ID
+     * @param isDeleted 票据当前的删除标记: 1=将被还原 (计入统计)，0=将被物理删除 (移出统计)
+     */
+    private void syncAnomalyStats(Long id, int isDeleted) {
+        String sql = "SELECT user_id, category, amount FROM invoice_record WHERE id = :id AND is_deleted = :deleted";
+        List<?> rows = entityManager.createNativeQuery(sql)
+                .setParameter("id", id)
+                .setParameter("deleted", isDeleted)
+                .getResultList();
+        if (rows.isEmpty()) return;
+
+        Object[] row = (Object[]) rows.get(0);
+        Long userId = row[0] == null ? null : ((Number) row[0]).longValue();
+        String category = (String) row[1];
+        Double amount = row[2] == null ? null : ((Number) row[2]).doubleValue();
+        if (isDeleted == 1) {
+            anomalyStatsService.recordAddition(userId, category, amount);
+        } else {
+            anomalyStatsService.recordRemoval(id, userId, category, amount);
+        }
+        statsCacheService.bump(userId);
+    }
 }
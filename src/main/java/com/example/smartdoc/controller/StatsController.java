@@ -5,21 +5,30 @@ import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import jakarta.annotation.PostConstruct;
+
 import com.example.smartdoc.model.InvoiceData;
 import com.example.smartdoc.model.User;
 import com.example.smartdoc.repository.InvoiceRepository;
+import com.example.smartdoc.service.ClusterReportCacheService;
 import com.example.smartdoc.service.DeepSeekService;
+import com.example.smartdoc.service.StatsCacheService;
+import com.example.smartdoc.utils.ClusterFeatures;
 import com.example.smartdoc.utils.KMeansUtil;
 import com.example.smartdoc.utils.LinearRegressionUtil;
 
@@ -45,9 +54,10 @@ import com.example.smartdoc.utils.LinearRegressionUtil;
  *    - 原理: y = ax + b (最小二乘法)
  * 
  * 2. K-Means 聚类 (Clustering)
- *    - 输入: (消费日期, 消费金额) 二维数据点
- *    - 输出: K=3 个聚类 (日常消费/固定支出/突发消费)
- *    - 原理: 迭代优化聚类中心
+ *    - 输入: smartdoc.cluster.features 配置的特征 (几号、星期几、对数金额、类别 one-hot 等)，z-score 标准化
+ *    - 输出: K=3 个聚类 (日常消费/固定支出/突发消费)，散点和中心仍以 (几号, 金额) 展示
+ *    - 原理: 迭代优化聚类中心 (Hamerly 三角不等式加速)
+ *    - 点数达到 smartdoc.cluster.mini-batch-threshold 时改用 Mini-batch K-Means
  * 
  * 3. 知识图谱 (Knowledge Graph)
  *    - 节点: 用户、分类、商户
@@ -55,11 +65,16 @@ import com.example.smartdoc.utils.LinearRegressionUtil;
  *    - 可视化: 供 ECharts 关系图使用
  * </pre>
  * 
+ * <h3>结果缓存:</h3>
+ * <p>趋势、图谱、聚类的结果按 (用户, 接口, 数据版本号) 缓存在 {@link StatsCacheService} 中，
+ * 票据保存、删除、还原等操作会使版本号加一，数据没变时仪表盘刷新直接返回内存中的结果。
+ * AI 聚类报告另按量化后的聚类中心缓存在 {@link ClusterReportCacheService} 中 (持久化，重启后仍有效)。</p>
+ * 
  * <h3>API 接口:</h3>
  * <ul>
  *   <li>GET /api/stats/trend - 消费趋势及预测</li>
  *   <li>GET /api/stats/graph - 知识图谱数据</li>
- *   <li>GET /api/stats/clustering - K-Means 聚类结果</li>
+ *   <li>GET /api/stats/clustering - K-Means 聚类结果 (管理员可用 scope=all 聚类全公司票据)</li>
  *   <li>GET /api/stats/analyze-clustering - AI 聚类分析报告</li>
  * </ul>
  * 
@@ -72,6 +87,34 @@ import com.example.smartdoc.utils.LinearRegressionUtil;
 @CrossOrigin(origins = "*")  // 允许跨域
 public class StatsController {
 
+    /**
+     * 聚类随机种子 - 同一份数据每次刷新得到相同的聚类，
+     * 聚类图与 AI 分析报告中描述的群体也一一对应
+     */
+    private static final long CLUSTER_SEED = 42L;
+
+    /** 点数达到该值时改用 Mini-batch K-Means */
+    @Value("${smartdoc.cluster.mini-batch-threshold:100000}")
+    private int miniBatchThreshold;
+
+    /** Mini-batch 每批抽取的点数 */
+    @Value("${smartdoc.cluster.batch-size:1024}")
+    private int miniBatchSize;
+
+    /** Mini-batch 最大批数 */
+    @Value("${smartdoc.cluster.max-batches:300}")
+    private int miniBatchMaxBatches;
+
+    /** 聚类接口返回的散点数上限 (超过时等间隔抽样，中心仍按全部点计算) */
+    @Value("${smartdoc.cluster.max-plot-points:5000}")
+    private int maxPlotPoints;
+
+    /** 聚类使用的特征 (逗号分隔，见 ClusterFeatures) */
+    @Value("${smartdoc.cluster.features:day,weekday,log-amount,category}")
+    private String clusterFeatureSpec;
+
+    private ClusterFeatures clusterFeatures;
+
     /** 票据数据仓库 */
     @Autowired
     private InvoiceRepository invoiceRepository;
@@ -80,6 +123,23 @@ public class StatsController {
     @Autowired
     private DeepSeekService deepSeekService;
 
+    /** 统计结果缓存 - 按用户数据版本号缓存计算结果 */
+    @Autowired
+    private StatsCacheService statsCacheService;
+
+    /** AI 聚类报告缓存 - 按量化后的聚类中心缓存报告 */
+    @Autowired
+    private ClusterReportCacheService clusterReportCacheService;
+
+    /**
+     * 解析聚类特征配置 (配置错误时启动失败)
+     */
+    @PostConstruct
+    public void init() {
+        clusterFeatures = ClusterFeatures.parse(clusterFeatureSpec);
+        System.out.println("📊 聚类特征: " + clusterFeatures.getFeatures());
+    }
+
     /**
      * 获取消费趋势预测数据
      * 
@@ -118,30 +178,46 @@ public class StatsController {
             return Map.of("code", 401);
         }
 
-        // 2. 获取月度统计数据
+        // 2. 数据没变时直接返回缓存的结果
+        Map<String, Object> data = statsCacheService.get(user.getId(), "trend", () -> computeTrend(user.getId()));
+
+        return Map.of("code", 200, "data", data);
+    }
+
+    /**
+     * 计算趋势数据及预测结果
+     *
+     * @param userId 用户 ID
+     * @return months、amounts、prediction、nextMonthLabel
+     */
+    private Map<String, Object> computeTrend(Long userId) {
+        // 1. 获取月度统计数据
         // 注意: SQL 返回的是按月倒序的数据 (最新的在前)
-        List<Object[]> rawData = invoiceRepository.findMonthlyStatsByUserId(user.getId());
+        List<Object[]> rawData = invoiceRepository.findMonthlyStatsByUserId(userId);
 
-        // 3. 关键步骤: 反转数据使其变为正序 (2025-01 → 2025-12)
+        // 2. 关键步骤: 反转数据使其变为正序 (2025-01 → 2025-12)
         // 线性回归需要时间正序的数据
         Collections.reverse(rawData);
 
-        // 4. 提取月份和金额到独立列表
+        // 3. 提取月份和金额到独立列表
         List<String> months = new ArrayList<>();
         List<Double> amounts = new ArrayList<>();
+        double[] series = new double[rawData.size()];  // 回归用的原始类型序列 (免装箱)
 
-        for (Object[] row : rawData) {
+        for (int i = 0; i < rawData.size(); i++) {
+            Object[] row = rawData.get(i);
             months.add(row[0].toString());  // 月份字符串
-            amounts.add(Double.parseDouble(row[1].toString()));  // 金额
+            series[i] = Double.parseDouble(row[1].toString());  // 金额
+            amounts.add(series[i]);
         }
 
-        // 5. 使用线性回归预测下月消费
+        // 4. 使用线性回归预测下月消费
         Double nextMonthPrediction = 0.0;
         String nextMonthLabel = "下月预测";
 
         if (!amounts.isEmpty()) {
             // 调用线性回归工具类
-            nextMonthPrediction = LinearRegressionUtil.predictNext(amounts);
+            nextMonthPrediction = LinearRegressionUtil.predictNext(series);
 
             // 自动计算下个月的具体日期字符串
             try {
@@ -155,14 +231,14 @@ public class StatsController {
             }
         }
 
-        // 6. 封装返回数据
+        // 5. 封装返回数据
         Map<String, Object> data = new HashMap<>();
         data.put("months", months);           // 月份列表 (X轴)
         data.put("amounts", amounts);         // 消费金额 (Y轴)
         data.put("prediction", nextMonthPrediction);  // 预测值
         data.put("nextMonthLabel", nextMonthLabel);   // 预测月份标签
 
-        return Map.of("code", 200, "data", data);
+        return data;
     }
 
     /**
@@ -201,24 +277,38 @@ public class StatsController {
             return Map.of("code", 401);
         }
 
-        // 2. 获取该用户的所有票据
-        List<InvoiceData> list = invoiceRepository.findByUserIdOrderByIdDesc(user.getId());
+        // 2. 获取该用户的所有票据并构建图谱 (根节点为昵称，昵称一并作为缓存键)
+        Map<String, Object> result = statsCacheService.get(user.getId(), "graph:" + user.getNickname(),
+                () -> buildKnowledgeGraph(user.getNickname(), invoiceRepository.findByUserIdOrderByIdDesc(user.getId())));
 
-        // 3. 初始化图谱数据结构
+        return Map.of("code", 200, "data", result);
+    }
+
+    /**
+     * 由票据列表构建知识图谱 (用户 → 分类 → 商户)
+     * 
+     * <p>不依赖登录状态和数据库，供 {@link #getKnowledgeGraph} 和基准测试使用。</p>
+     * 
+     * @param rootName 根节点名称 (用户昵称)
+     * @param list     用户的票据列表
+     * @return 图谱数据 (nodes + links)
+     */
+    public static Map<String, Object> buildKnowledgeGraph(String rootName, List<InvoiceData> list) {
+        // 1. 初始化图谱数据结构
         List<Map<String, Object>> nodes = new ArrayList<>();  // 节点列表
         List<Map<String, Object>> links = new ArrayList<>();  // 边列表
         List<String> addedCategories = new ArrayList<>();     // 已添加的分类 (去重)
         List<String> addedMerchants = new ArrayList<>();      // 已添加的商户 (去重)
 
-        // 4. 创建根节点 (用户)
+        // 2. 创建根节点 (用户)
         Map<String, Object> rootNode = new HashMap<>();
         rootNode.put("id", "ROOT");
-        rootNode.put("name", user.getNickname());
+        rootNode.put("name", rootName);
         rootNode.put("symbolSize", 60);  // 根节点最大
         rootNode.put("category", 0);     // 类别 0 = 用户
         nodes.add(rootNode);
 
-        // 5. 统计各分类和商户的总消费金额 (用于计算节点大小)
+        // 3. 统计各分类和商户的总消费金额 (用于计算节点大小)
         Map<String, Double> categoryAmountMap = new HashMap<>();
         Map<String, Double> merchantAmountMap = new HashMap<>();
 
@@ -229,12 +319,12 @@ public class StatsController {
             merchantAmountMap.merge(item.getMerchantName(), item.getAmount(), Double::sum);
         }
 
-        // 6. 遍历票据构建图谱
+        // 4. 遍历票据构建图谱
         for (InvoiceData item : list) {
             String cat = item.getCategory();
             String merch = item.getMerchantName();
 
-            // 6.1 添加分类节点 (去重)
+            // 4.1 添加分类节点 (去重)
             if (!addedCategories.contains(cat)) {
                 Map<String, Object> catNode = new HashMap<>();
                 catNode.put("id", "CAT_" + cat);
@@ -253,7 +343,7 @@ public class StatsController {
                 links.add(link);
             }
 
-            // 6.2 添加商户节点 (去重)
+            // 4.2 添加商户节点 (去重)
             if (!addedMerchants.contains(merch)) {
                 Map<String, Object> merchNode = new HashMap<>();
                 merchNode.put("id", "MER_" + merch);
@@ -272,12 +362,12 @@ public class StatsController {
             }
         }
 
-        // 7. 封装返回结果
+        // 5. 封装返回结果
         Map<String, Object> result = new HashMap<>();
         result.put("nodes", nodes);
         result.put("links", links);
 
-        return Map.of("code", 200, "data", result);
+        return result;
     }
 
     /**
@@ -287,6 +377,8 @@ public class StatsController {
      * 将消费记录分为 K=3 个群体。返回的数据适合绑定 ECharts 散点图。</p>
      * 
      * <h4>特征维度:</h4>
+     * <p>聚类在 smartdoc.cluster.features 配置的标准化特征上进行 (默认: 几号、星期几、对数金额、类别)，
+     * 返回格式不变，散点和中心按以下两维展示 (中心为该群体的平均日期和平均金额):</p>
      * <ul>
      *   <li>X 轴: 消费日期 (1-31号)</li>
      *   <li>Y 轴: 消费金额</li>
@@ -299,36 +391,29 @@ public class StatsController {
      *   <li>群体3 (月末中额): 突发性采购</li>
      * </ul>
      * 
+     * <h4>数据量很大时:</h4>
+     * <p>点数达到 smartdoc.cluster.mini-batch-threshold 时改用 Mini-batch K-Means，耗时由批数决定；
+     * 返回的散点超过 smartdoc.cluster.max-plot-points 时等间隔抽样 (中心仍按全部点计算)。</p>
+     * 
      * @param token 用户登录凭证
+     * @param scope self: 当前用户的票据 (默认)；all: 全公司的票据 (仅管理员)
      * @return 聚类结果 (数据点 + 聚类中心)
      */
     @GetMapping("/clustering")
-    public Map<String, Object> getClustering(@RequestHeader("Authorization") String token) {
+    public Map<String, Object> getClustering(@RequestHeader("Authorization") String token,
+                                             @RequestParam(defaultValue = "self") String scope) {
         // 1. 身份验证
         User user = UserController.tokenMap.get(token);
         if (user == null) {
             return Map.of("code", 401);
         }
-
-        // 2. 获取该用户的所有票据
-        List<InvoiceData> list = invoiceRepository.findByUserIdOrderByIdDesc(user.getId());
-        
-        // 3. 构建二维数据点 (日期, 金额)
-        List<KMeansUtil.Point> points = new ArrayList<>();
-
-        for (InvoiceData item : list) {
-            try {
-                // 提取消费日期中的"几号"作为 X 坐标
-                int day = LocalDate.parse(item.getDate()).getDayOfMonth();
-                // 金额作为 Y 坐标，初始聚类标记为 -1
-                points.add(new KMeansUtil.Point(day, item.getAmount(), -1));
-            } catch (Exception e) {
-                // 日期解析失败，跳过该数据点
-            }
+        boolean company = "all".equals(scope);
+        if (company && !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权限");
         }
 
-        // 4. 执行 K-Means 聚类 (K=3, 最大迭代100次)
-        KMeansUtil.ClusterResult result = KMeansUtil.fit(points, 3, 100);
+        // 2. 读取数据并执行 K-Means 聚类 (K=3, 最大迭代100次)，数据没变时直接返回缓存的结果
+        KMeansUtil.ClusterResult result = loadClustering(user, company);
         
         return Map.of("code", 200, "data", result);
     }
@@ -346,8 +431,13 @@ public class StatsController {
      *   <li>提供针对性的理财建议</li>
      * </ul>
      * 
+     * <h4>报告缓存:</h4>
+     * <p>本人的聚类中心变化在容差以内 (默认日期 2 天、金额 10%) 时直接返回缓存的报告，不再调用 AI；
+     * 报告生成超过 smartdoc.cluster.report.refresh-hours 后仍先返回旧报告，同时在后台重新生成。
+     * AI 出错时返回错误提示，不缓存。</p>
+     * 
      * @param token 用户登录凭证
-     * @return AI 生成的分析报告 (Markdown 格式)
+     * @return AI 生成的分析报告 (Markdown 格式)，cached/stale 表示是否来自缓存、是否已过期
      */
     @GetMapping("/analyze-clustering")
     public Map<String, Object> analyzeClustering(@RequestHeader("Authorization") String token) {
@@ -357,30 +447,18 @@ public class StatsController {
             return Map.of("code", 401);
         }
 
-        // 2. 重新计算聚类以获取中心点
-        List<InvoiceData> list = invoiceRepository.findByUserIdOrderByIdDesc(user.getId());
-        List<KMeansUtil.Point> points = new ArrayList<>();
-        
-        for (InvoiceData item : list) {
-            try {
-                int day = LocalDate.parse(item.getDate()).getDayOfMonth();
-                points.add(new KMeansUtil.Point(day, item.getAmount(), -1));
-            } catch (Exception e) {
-                // 跳过解析失败的数据
-            }
-        }
+        // 2. 获取聚类结果 (与聚类图相同，通常直接命中缓存)
+        KMeansUtil.ClusterResult result = loadClustering(user, false);
 
-        // 3. 数据量检查
-        if (points.size() < 3) {
+        // 3. 数据量检查 (点数少于聚类数时没有中心)
+        if (result.getCentroids().isEmpty()) {
             return Map.of("code", 200, "data", "数据量不足，暂无法生成分析报告。");
         }
 
-        // 4. 执行聚类
-        KMeansUtil.ClusterResult result = KMeansUtil.fit(points, 3, 50);
-
-        // 5. 构建 AI Prompt
+        // 4. 构建 AI Prompt (中心按日期、金额排序，群体编号与中心的先后顺序无关)
         StringBuilder dataDesc = new StringBuilder();
-        List<KMeansUtil.Point> centers = result.getCentroids();
+        List<KMeansUtil.Point> centers = new ArrayList<>(result.getCentroids());
+        centers.sort(Comparator.comparingDouble(KMeansUtil.Point::getX).thenComparingDouble(KMeansUtil.Point::getY));
 
         // 将聚类中心转换为自然语言描述
         for (int i = 0; i < centers.size(); i++) {
@@ -391,9 +469,9 @@ public class StatsController {
             ));
         }
 
-        // 6. 调用 DeepSeek AI 生成分析报告
+        // 5. 调用 DeepSeek AI 生成分析报告
         String systemPrompt = "你是一个专业的财务数据分析师。请根据用户的消费聚类中心数据，用通俗易懂的语言分析用户的消费习惯。";
-        String userPrompt = String.format("""
+        String template = """
             我的消费数据被 K-Means 算法聚类为以下 3 类：
             %s
             
@@ -404,11 +482,106 @@ public class StatsController {
             4. 给出一句简短的理财建议。
             
             请直接给出分析结果，不要啰嗦，使用 Markdown 格式。
-            """, dataDesc.toString());
+            """;
+        String userPrompt = String.format(template, dataDesc.toString());
 
-        // 7. 获取 AI 回复
-        String analysis = deepSeekService.callAi(systemPrompt, userPrompt);
+        // 6. 获取 AI 回复 (中心变化在容差以内时直接返回缓存的报告)
+        ClusterReportCacheService.Report report = clusterReportCacheService.get(
+                String.valueOf(user.getId()), centers, systemPrompt + template, dataDesc.toString(),
+                () -> deepSeekService.callAi(systemPrompt, userPrompt));
 
-        return Map.of("code", 200, "data", analysis);
+        return Map.of("code", 200, "data", report.getMarkdown(),
+                "cached", report.isCached(), "stale", report.isStale());
+    }
+
+    /**
+     * 获取聚类结果 (散点已抽样)，按数据版本号缓存
+     *
+     * @param user    当前用户
+     * @param company 是否聚类全公司的票据 (任何用户的票据变更都会使缓存失效)
+     */
+    private KMeansUtil.ClusterResult loadClustering(User user, boolean company) {
+        Supplier<KMeansUtil.ClusterResult> loader = () -> {
+            KMeansUtil.ClusterResult result = cluster(loadClusterData(user, company));
+            result.setPoints(samplePoints(result.getPoints()));
+            return result;
+        };
+        return company
+                ? statsCacheService.getCompanyWide("clustering", loader)
+                : statsCacheService.get(user.getId(), "clustering", loader);
+    }
+
+    /**
+     * 聚类数据: 展示用的 (几号, 金额) 数据点，以及构建特征用的日期和类别 (下标一一对应)
+     */
+    private static class ClusterData {
+        final List<KMeansUtil.Point> points = new ArrayList<>();
+        final List<LocalDate> dates = new ArrayList<>();
+        final List<String> categories = new ArrayList<>();
+
+        void add(String date, Double amount, String category) {
+            try {
+                LocalDate d = LocalDate.parse(date);
+                points.add(new KMeansUtil.Point(d.getDayOfMonth(), amount, -1));
+                dates.add(d);
+                categories.add(category);
+            } catch (Exception e) {
+                // 日期或金额无效，跳过该数据点
+            }
+        }
+    }
+
+    /**
+     * 读取聚类数据，日期或金额无效的票据跳过
+     *
+     * @param user    当前用户
+     * @param company 是否取全公司的票据 (只查询日期、金额、类别三列)
+     */
+    private ClusterData loadClusterData(User user, boolean company) {
+        ClusterData data = new ClusterData();
+        if (company) {
+            for (Object[] row : invoiceRepository.findAllDateAmountCategory()) {
+                data.add((String) row[0], (Double) row[1], (String) row[2]);
+            }
+            return data;
+        }
+        for (InvoiceData item : invoiceRepository.findByUserIdOrderByIdDesc(user.getId())) {
+            data.add(item.getDate(), item.getAmount(), item.getCategory());
+        }
+        return data;
+    }
+
+    /**
+     * 执行聚类 (K=3, 最大迭代100次)，点数达到 smartdoc.cluster.mini-batch-threshold 时改用 Mini-batch K-Means
+     */
+    private KMeansUtil.ClusterResult cluster(ClusterData data) {
+        List<KMeansUtil.Point> points = data.points;
+        int n = points.size();
+        double[] amounts = new double[n];
+        for (int i = 0; i < n; i++) {
+            amounts[i] = points.get(i).getY();
+        }
+        double[][] features = clusterFeatures.build(
+                data.dates.toArray(new LocalDate[0]), amounts, data.categories.toArray(new String[0]));
+
+        if (n >= miniBatchThreshold) {
+            return KMeansUtil.fitMiniBatch(points, features, 3, miniBatchSize, miniBatchMaxBatches, CLUSTER_SEED);
+        }
+        return KMeansUtil.fit(points, features, 3, 100, CLUSTER_SEED);
+    }
+
+    /**
+     * 散点超过 smartdoc.cluster.max-plot-points 时等间隔抽样，避免响应和前端图表过大
+     */
+    private List<KMeansUtil.Point> samplePoints(List<KMeansUtil.Point> points) {
+        if (points.size() <= maxPlotPoints) {
+            return points;
+        }
+        List<KMeansUtil.Point> sampled = new ArrayList<>(maxPlotPoints);
+        double step = (double) points.size() / maxPlotPoints;
+        for (int i = 0; i < maxPlotPoints; i++) {
+            sampled.add(points.get((int) (i * step)));
+        }
+        return sampled;
     }
-}
\ No newline at end of file
+}
@@ -3,8 +3,10 @@ package com.example.smartdoc.controller;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -24,6 +26,18 @@ import com.example.smartdoc.repository.BudgetRepository;
 import com.example.smartdoc.repository.ChatLogRepository;
 import com.example.smartdoc.repository.InvoiceRepository;
 import com.example.smartdoc.repository.OperationLogRepository;
+import com.example.smartdoc.service.AnomalyRescoreService;
+import com.example.smartdoc.service.AnomalyStatsService;
+import com.example.smartdoc.service.BlobStoreService;
+import com.example.smartdoc.service.CategoryDictionary;
+import com.example.smartdoc.service.ClusterReportCacheService;
+import com.example.smartdoc.service.ImagePreprocessService;
+import com.example.smartdoc.service.OcrResultCacheService;
+import com.example.smartdoc.service.OcrService;
+import com.example.smartdoc.service.StatsCacheService;
+import com.example.smartdoc.service.ThumbnailService;
+import com.example.smartdoc.service.UploadSpoolService;
+import com.example.smartdoc.service.WarmupService;
 
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.json.JSONUtil;
@@ -57,6 +71,8 @@ import jakarta.transaction.Transactional;
  *   <li>GET /api/system/logs - 获取操作日志</li>
  *   <li>GET /api/system/backup - 下载数据备份</li>
  *   <li>POST /api/system/restore - 恢复备份数据</li>
+ *   <li>GET /api/system/ocr-stats - OCR 运行指标 (管理员)</li>
+ *   <li>GET /api/system/metrics - 全部子系统运行指标 (管理员)</li>
  * </ul>
  * 
  * @author SmartDoc Team
@@ -83,6 +99,54 @@ public class SystemController {
     @Autowired 
     private OperationLogRepository opLogRepo;
 
+    /** OCR 识别结果缓存 - 提供命中率等指标 */
+    @Autowired
+    private OcrResultCacheService ocrResultCacheService;
+
+    /** OCR 识别服务 - 提供限流、熔断、置信度路由指标 */
+    @Autowired
+    private OcrService ocrService;
+
+    /** 图片预处理服务 - 提供压缩率、影子对比等指标 */
+    @Autowired
+    private ImagePreprocessService imagePreprocessService;
+
+    /** 类别词典 - 提供词典来源、推断命中率等指标 */
+    @Autowired
+    private CategoryDictionary categoryDictionary;
+
+    /** 上传转存服务 - 提供转存文件数、内存预算使用量等指标 */
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
+
+    /** 原件存储 - 提供去重次数、存储字节数等指标 */
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    /** 缩略图服务 - 提供缓存命中、生成耗时等指标 */
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    /** 异常检测统计服务 - 恢复票据后重建类别统计量，提供检测模式与异常比例指标 */
+    @Autowired
+    private AnomalyStatsService anomalyStatsService;
+
+    /** 异常重新评分服务 - 提供最近一次任务的进度和吞吐量 */
+    @Autowired
+    private AnomalyRescoreService anomalyRescoreService;
+
+    /** 统计结果缓存 - 导入票据后使统计结果失效，并提供命中率等指标 */
+    @Autowired
+    private StatsCacheService statsCacheService;
+
+    /** AI 聚类报告缓存 - 提供命中率、后台刷新次数等指标 */
+    @Autowired
+    private ClusterReportCacheService clusterReportCacheService;
+
+    /** 启动预热服务 - 提供预热状态和各步骤耗时 */
+    @Autowired
+    private WarmupService warmupService;
+
     /**
      * 获取操作审计日志
      * 
@@ -214,6 +278,9 @@ public class SystemController {
                     item.setUserId(user.getId());
                     invoiceRepo.save(item);
                 }
+                // 批量导入无法增量更新，删除异常检测统计，下次保存时按票据表重新生成
+                anomalyStatsService.invalidate(user.getId());
+                statsCacheService.bump(user.getId());
             }
 
             // 4. 恢复预算数据
@@ -240,4 +307,102 @@ public class SystemController {
             return Map.of("code", 500, "msg", "恢复失败: " + e.getMessage());
         }
     }
+
+    /**
+     * OCR 运行指标 (管理员)
+     * 
+     * <p>只包含识别链路本身: 识别结果缓存的命中情况、图片预处理的压缩效果、限流/熔断状态和置信度路由，
+     * 用于评估节省的 OCR 调用次数、上传字节数，以及服务商是否处于限流或故障中。
+     * 其他子系统的指标见 {@link #getMetrics}。</p>
+     * 
+     * @param token 用户登录凭证
+     * @return 各项指标
+     */
+    @GetMapping("/ocr-stats")
+    public Map<String, Object> getOcrStats(@RequestHeader("Authorization") String token) {
+        // 1. 权限校验: 必须是管理员
+        if (!isAdmin(token)) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        // 2. 汇总识别链路指标
+        return Map.of("code", 200, "data", ocrStats());
+    }
+
+    /**
+     * 全部子系统运行指标 (管理员)
+     * 
+     * <p>按子系统分组返回，可用 name 参数只取其中一个:</p>
+     * <pre>
+     * ocr           识别链路 (与 /ocr-stats 相同)
+     * upload        上传转存与内存预算
+     * blob          原件存储与垃圾回收
+     * thumbnail     缩略图缓存
+     * category      类别词典
+     * warmup        启动预热
+     * anomaly       异常检测统计
+     * rescore       异常重新评分任务
+     * statsCache    统计结果缓存
+     * clusterReport AI 聚类报告缓存
+     * </pre>
+     * 
+     * @param token 用户登录凭证
+     * @param name  子系统名称 (可选，为空返回全部)
+     * @return 各子系统指标
+     */
+    @GetMapping("/metrics")
+    public Map<String, Object> getMetrics(@RequestHeader("Authorization") String token,
+                                          @RequestParam(required = false) String name) {
+        // 1. 权限校验: 必须是管理员
+        if (!isAdmin(token)) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        // 2. 各子系统的指标来源 (按需计算)
+        Map<String, Supplier<Map<String, Object>>> sources = new LinkedHashMap<>();
+        sources.put("ocr", this::ocrStats);
+        sources.put("upload", uploadSpoolService::getStats);
+        sources.put("blob", blobStoreService::getStats);
+        sources.put("thumbnail", thumbnailService::getStats);
+        sources.put("category", categoryDictionary::getStats);
+        sources.put("warmup", warmupService::getStats);
+        sources.put("anomaly", anomalyStatsService::getStats);
+        sources.put("rescore", anomalyRescoreService::getStats);
+        sources.put("statsCache", statsCacheService::getStats);
+        sources.put("clusterReport", clusterReportCacheService::getStats);
+
+        // 3. 只取一个子系统
+        if (name != null && !name.isBlank()) {
+            Supplier<Map<String, Object>> source = sources.get(name);
+            if (source == null) {
+                return Map.of("code", 400, "msg", "未知的子系统: " + name + "，可选: " + sources.keySet());
+            }
+            return Map.of("code", 200, "data", source.get());
+        }
+
+        // 4. 全部子系统
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        sources.forEach((key, source) -> metrics.put(key, source.get()));
+        return Map.of("code", 200, "data", metrics);
+    }
+
+    /**
+     * 识别链路指标: 结果缓存、图片预处理、限流熔断、置信度路由
+     */
+    private Map<String, Object> ocrStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cache", ocrResultCacheService.getStats());
+        stats.put("preprocess", imagePreprocessService.getStats());
+        stats.put("guard", ocrService.getGuardStats());
+        stats.put("routing", ocrService.getRoutingStats());
+        return stats;
+    }
+
+    /**
+     * 当前登录用户是否为管理员
+     */
+    private static boolean isAdmin(String token) {
+        User user = UserController.tokenMap.get(token);
+        return user != null && "admin".equals(user.getRole());
+    }
 }
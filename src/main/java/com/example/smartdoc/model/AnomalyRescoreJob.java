@@ -0,0 +1,106 @@
+package com.example.smartdoc.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Data;
+
+/**
+ * 异常重新评分任务 - 记录一次全量重新评分的进度和吞吐量
+ *
+ * <p>该对象只保存在内存中 (不持久化)，由 AnomalyRescoreService 创建和维护，
+ * 同一时间只有一个任务在运行。管理员通过 GET /api/audit/rescore 轮询进度。</p>
+ *
+ * <h3>任务状态 (status):</h3>
+ * <ul>
+ *   <li>RUNNING - 评分中</li>
+ *   <li>DONE - 全部用户处理完毕 (个别用户失败计入 failedUsers)</li>
+ *   <li>FAILED - 任务整体失败 (error 为失败原因)</li>
+ * </ul>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.AnomalyRescoreService
+ */
+@Data
+public class AnomalyRescoreJob {
+
+    /** 任务 ID (UUID) */
+    private String jobId;
+
+    /** 发起任务的管理员 ID */
+    private Long operatorId;
+
+    /** 评分使用的检测模式 (zscore / robust) */
+    private String mode;
+
+    /** 任务状态: RUNNING / DONE / FAILED */
+    private volatile String status = "RUNNING";
+
+    /** 需要处理的用户数 */
+    private volatile int totalUsers;
+
+    /** 需要处理的有效票据数 (任务开始时统计，期间新增的票据不计入) */
+    private volatile long totalInvoices;
+
+    /** 已处理完成的用户数 (包括失败) */
+    private final AtomicInteger finishedUsers = new AtomicInteger();
+
+    /** 处理失败的用户数 */
+    private final AtomicInteger failedUsers = new AtomicInteger();
+
+    /** 已扫描的票据数 */
+    private final AtomicLong scanned = new AtomicLong();
+
+    /** 异常标记发生变化 (已写回) 的票据数 */
+    private final AtomicLong changed = new AtomicLong();
+
+    /** 重新评分后标记为异常的票据数 */
+    private final AtomicLong flagged = new AtomicLong();
+
+    /** 已读取的分页数 */
+    private final AtomicLong chunks = new AtomicLong();
+
+    /** 任务创建时间 */
+    private LocalDateTime createTime;
+
+    /** 任务完成时间 */
+    private volatile LocalDateTime finishTime;
+
+    /** 失败原因 (任务失败，或最近一个失败用户的原因) */
+    private volatile String error;
+
+    /**
+     * 进度 (0~1): 按已扫描票据数 / 开始时的票据总数估算
+     */
+    public double getProgress() {
+        if ("DONE".equals(status)) return 1.0;
+        if (totalInvoices <= 0) return 0.0;
+        return Math.min(1.0, Math.round(scanned.get() * 10000.0 / totalInvoices) / 10000.0);
+    }
+
+    /**
+     * 已运行的毫秒数 (完成后为总耗时)
+     */
+    public long getElapsedMs() {
+        LocalDateTime end = finishTime != null ? finishTime : LocalDateTime.now();
+        return Duration.between(createTime, end).toMillis();
+    }
+
+    /**
+     * 吞吐量: 每秒扫描的票据数
+     */
+    public double getThroughput() {
+        long ms = getElapsedMs();
+        if (ms <= 0) return 0.0;
+        return Math.round(scanned.get() * 1000.0 / ms * 10) / 10.0;
+    }
+
+    /**
+     * 任务是否已结束
+     */
+    public boolean isCompleted() {
+        return !"RUNNING".equals(status);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * 类别消费统计实体 - 每个 (用户, 类别) 一行的增量统计量
+ *
+ * <p>异常检测需要同类别历史金额的均值和标准差。原先每次保存都要查出该类别全部历史票据重新计算，
+ * 耗时随历史数据线性增长；现在用 Welford 算法在保存、删除、还原时增量维护以下三个量，
+ * 检测只需读取一行。</p>
+ *
+ * <h3>Welford 统计量:</h3>
+ * <pre>
+ * sampleCount = n            金额不为空的有效票据数
+ * mean        = μ            均值
+ * m2          = Σ(Xi - μ)²   离差平方和，样本标准差 σ = √(m2 / (n-1))
+ * </pre>
+ *
+ * <h3>分位数草图 (sketch):</h3>
+ * <p>同时保存金额分布的 t-digest 序列化结果 (约 1KB)，稳健检测模式由此读取中位数、MAD 和高分位数。
+ * 草图只在稳健检测模式下维护，只支持加入，票据删除后由后台按剩余票据重建；zscore 模式下有变化时置空。</p>
+ *
+ * <p>类别为空的票据按空字符串归类。行不存在表示尚未统计，首次用到时由历史数据一次性生成。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.AnomalyStatsService
+ * @see com.example.smartdoc.utils.TDigest
+ */
+@Data
+@Entity
+@Table(name = "invoice_category_stats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_category", columnNames = {"user_id", "category"}))
+public class CategoryStats {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 所属用户 ID */
+    private Long userId;
+
+    /** 消费类别 (空类别为 "") */
+    @Column(length = 50)
+    private String category;
+
+    /** 有效样本数 */
+    private Long sampleCount = 0L;
+
+    /** 金额均值 */
+    private Double mean = 0.0;
+
+    /** 离差平方和 */
+    private Double m2 = 0.0;
+
+    /** 金额分布的 t-digest 草图 (为空表示尚未生成) */
+    @Lob
+    @Column(columnDefinition = "BLOB")
+    private byte[] sketch;
+
+    /** 最近更新时间 */
+    private LocalDateTime updateTime;
+
+    /**
+     * JPA 生命周期回调 - 保存前自动设置更新时间
+     */
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        this.updateTime = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * AI 聚类报告缓存实体 - 按量化后的聚类中心缓存 AI 生成的分析报告
+ *
+ * <p>报告只取决于发给 AI 的聚类中心。中心按容差量化后与数据范围 (用户) 一起计算签名，
+ * 同一用户的中心变化不超过容差时签名相同，直接返回上次生成的报告，不再调用 DeepSeek。</p>
+ *
+ * <h3>淘汰策略:</h3>
+ * <p>按 lastAccessTime 做 LRU 淘汰，记录数超过上限时删除最久未访问的条目。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.ClusterReportCacheService
+ */
+@Data
+@Entity
+@Table(name = "cluster_report_cache")
+public class ClusterReportCache {
+
+    /** 数据范围 + 量化中心签名的 SHA-256 (64 位十六进制) */
+    @Id
+    @Column(length = 64)
+    private String signature;
+
+    /** 数据范围 (用户 ID，全公司为 "*") */
+    @Column(length = 32)
+    private String scope;
+
+    /** 生成报告时的聚类中心描述 (即发给 AI 的数据，便于排查) */
+    @Column(columnDefinition = "TEXT")
+    private String centroids;
+
+    /** AI 生成的分析报告 (Markdown) */
+    @Column(columnDefinition = "TEXT")
+    private String report;
+
+    /** 命中次数 */
+    private Integer hitCount = 0;
+
+    /** 报告生成时间 (超过刷新间隔后在后台重新生成) */
+    private LocalDateTime generateTime;
+
+    /** 最近访问时间 (LRU 淘汰依据) */
+    private LocalDateTime lastAccessTime;
+
+    /** 创建时间 */
+    private LocalDateTime createTime;
+
+    /**
+     * JPA 生命周期回调 - 保存前自动设置创建时间
+     */
+    @PrePersist
+    public void prePersist() {
+        this.createTime = LocalDateTime.now();
+        if (this.lastAccessTime == null) {
+            this.lastAccessTime = this.createTime;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.smartdoc.model;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.hibernate.annotations.SQLDelete;
 import org.hibernate.annotations.Where;
@@ -9,6 +11,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
@@ -70,6 +74,9 @@ public class InvoiceData {
     
     /** 分类 - 消费类别（餐饮、交通、办公用品等） */
     private String category;
+
+    /** 销售方税号 - 纳税人识别号 / 统一社会信用代码 */
+    private String taxId;
     
     /** 用户 ID - 发票所属用户 */
     private Long userId;
@@ -86,12 +93,42 @@ public class InvoiceData {
     /** 审批备注 - 审核人填写的说明 */
     private String auditRemark;
 
+    /**
+     * OCR 置信度 (0~1)
+     * <p>关键字段置信度的最小值，金额或日期未识别时为 0。
+     * PDF 文字层解析为 1.0，手工录入或 OCR 未返回置信度时为 null。
+     * 审核人员可据此筛选需要重点核对的票据。</p>
+     */
+    private Double ocrConfidence;
+
+    /**
+     * 原件内容哈希 (SHA-256)
+     * <p>关联 {@link com.example.smartdoc.service.BlobStoreService} 中存储的上传原件，
+     * 内容相同的上传共用一份原件。手工录入或原件存储失败时为 null。</p>
+     */
+    private String fileHash;
+
+    /**
+     * 各字段的 OCR 置信度 (不持久化)
+     * <p>字段名 → 置信度，如 {"amount": 0.98, "date": 0.76}，供前端高亮需要核对的字段。</p>
+     */
+    @Transient
+    private Map<String, Double> fieldConfidence = new HashMap<>();
+
     /**
      * 原始图片 URL (不持久化)
-     * <p>发票原图的临时访问路径，用于前端预览。</p>
+     * <p>发票原件的访问路径，用于前端预览。已关联原件的记录从数据库加载或保存后
+     * 自动设为 /api/doc/original/{id}。</p>
      */
     @Transient
     private String rawImageUrl;
+
+    /**
+     * 缩略图 URL (不持久化)
+     * <p>已关联原件的记录自动设为 /api/doc/thumbnail/{id}，供列表和审核页面预览。</p>
+     */
+    @Transient
+    private String thumbnailUrl;
     
     /** 创建时间 */
     private LocalDateTime createTime;
@@ -103,4 +140,16 @@ public class InvoiceData {
     public void prePersist() {
         this.createTime = LocalDateTime.now();
     }
+
+    /**
+     * JPA 生命周期回调 - 加载或保存后生成原件和缩略图的访问路径
+     */
+    @PostLoad
+    @PostPersist
+    public void linkOriginal() {
+        if (this.fileHash != null && this.id != null) {
+            this.rawImageUrl = "/api/doc/original/" + this.id;
+            this.thumbnailUrl = "/api/doc/thumbnail/" + this.id;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * 批量识别任务 - 记录一次批量上传中每个文件的识别进度
+ *
+ * <p>该对象只保存在内存中 (不持久化)，由 OcrBatchService 创建和维护。
+ * 前端通过 jobId 轮询任务状态，或通过 WebSocket 接收每个文件的实时进度。</p>
+ *
+ * <h3>文件状态 (FileItem.status):</h3>
+ * <ul>
+ *   <li>PENDING - 排队中</li>
+ *   <li>RUNNING - 识别中</li>
+ *   <li>DONE - 识别完成 (results 为识别结果，多页 PDF 可能包含多张票据)</li>
+ *   <li>FAILED - 识别失败 (error 为失败原因)</li>
+ * </ul>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.OcrBatchService
+ */
+@Data
+public class OcrBatchJob {
+
+    /** 任务 ID (UUID) */
+    private String jobId;
+
+    /** 任务所属用户 ID - 只有本人可以查询进度 */
+    private Long userId;
+
+    /** 各文件的识别状态 (顺序与上传顺序一致) */
+    private List<FileItem> items = new ArrayList<>();
+
+    /** 任务创建时间 */
+    private LocalDateTime createTime;
+
+    /** 任务完成时间 (全部文件处理完毕后设置) */
+    private volatile LocalDateTime finishTime;
+
+    /**
+     * 文件总数
+     */
+    public int getTotal() {
+        return items.size();
+    }
+
+    /**
+     * 已处理完成的文件数 (包括成功和失败)
+     */
+    public int getFinished() {
+        int count = 0;
+        for (FileItem item : items) {
+            if ("DONE".equals(item.getStatus()) || "FAILED".equals(item.getStatus())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 任务是否已全部处理完成
+     */
+    public boolean isCompleted() {
+        return getFinished() == getTotal();
+    }
+
+    /**
+     * 单个文件的识别状态
+     */
+    @Data
+    public static class FileItem {
+        /** 文件在本次上传中的序号 (从 0 开始) */
+        private int index;
+        /** 原始文件名 */
+        private String fileName;
+        /** 识别状态: PENDING / RUNNING / DONE / FAILED */
+        private volatile String status = "PENDING";
+        /** 识别结果 (每张票据一个) */
+        private volatile List<InvoiceData> results;
+        /** 失败原因 */
+        private volatile String error;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * OCR 识别结果缓存实体 - 按文件内容哈希缓存识别结果
+ * 
+ * <p>同一张发票被反复上传时，文件内容完全相同，SHA-256 哈希也相同。
+ * 命中缓存后直接返回上次的识别结果，不再调用收费的百度 OCR 接口。</p>
+ * 
+ * <h3>淘汰策略:</h3>
+ * <p>按 lastAccessTime 做 LRU 淘汰，记录数超过上限时删除最久未访问的条目。</p>
+ * 
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.OcrResultCacheService
+ */
+@Data
+@Entity
+@Table(name = "ocr_result_cache")
+public class OcrResultCache {
+
+    /** 文件内容的 SHA-256 哈希 (64 位十六进制) */
+    @Id
+    @Column(length = 64)
+    private String contentHash;
+
+    /** 识别结果 (InvoiceData 列表的 JSON 序列化，每张票据一项) */
+    @Column(columnDefinition = "TEXT")
+    private String resultJson;
+
+    /** 命中次数 */
+    private Integer hitCount = 0;
+
+    /** 最近访问时间 (LRU 淘汰依据) */
+    private LocalDateTime lastAccessTime;
+
+    /** 创建时间 */
+    private LocalDateTime createTime;
+
+    /**
+     * JPA 生命周期回调 - 保存前自动设置创建时间
+     */
+    @PrePersist
+    public void prePersist() {
+        this.createTime = LocalDateTime.now();
+        if (this.lastAccessTime == null) {
+            this.lastAccessTime = this.createTime;
+        }
+    }
+}
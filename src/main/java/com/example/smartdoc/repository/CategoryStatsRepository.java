@@ -0,0 +1,72 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.CategoryStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.stream.Stream;
+
+/**
+ * 类别消费统计数据访问接口
+ *
+ * <p>更新统计量前先用 {@link #findForUpdate} 加行锁读取，同一 (用户, 类别) 的并发保存在此排队，避免增量更新丢失。
+ * 返回 null (行不存在) 时才调用 {@link #bootstrap} 生成，再重新加锁读取 ——
+ * 生成时的聚合查询会扫描并锁住该类别的全部票据，不能在每次保存时执行。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.CategoryStats
+ */
+public interface CategoryStatsRepository extends JpaRepository<CategoryStats, Long> {
+
+    /**
+     * 统计行不存在时由历史票据一次性生成 (已存在则忽略)
+     * <p>m2 = 总体方差 × 样本数；没有历史票据时生成 n=0 的空行。
+     * 会扫描该类别的全部票据，只在 {@link #findForUpdate} 返回 null 时调用。</p>
+     *
+     * @param userId   用户 ID
+     * @param category 消费类别 (空类别传 "")
+     * @return 新插入的行数 (0 或 1)
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO invoice_category_stats (user_id, category, sample_count, mean, m2, update_time) " +
+            "SELECT :userId, :category, COUNT(amount), COALESCE(AVG(amount), 0), COALESCE(VAR_POP(amount) * COUNT(amount), 0), NOW() " +
+            "FROM invoice_record " +
+            "WHERE user_id = :userId AND COALESCE(category, '') = :category AND is_deleted = 0", nativeQuery = true)
+    int bootstrap(Long userId, String category);
+
+    /**
+     * 加行锁读取统计量 (SELECT ... FOR UPDATE)，锁在事务结束时释放
+     *
+     * @param userId   用户 ID
+     * @param category 消费类别 (空类别传 "")
+     * @return 统计行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CategoryStats s WHERE s.userId = :userId AND s.category = :category")
+    CategoryStats findForUpdate(Long userId, String category);
+
+    /**
+     * 流式读取某类别有效票据的金额 (草图缺失时一次性生成)
+     * <p>须在事务中使用并关闭 Stream。</p>
+     *
+     * @param userId   用户 ID
+     * @param category 消费类别 (空类别传 "")
+     * @return 金额流
+     */
+    @Query(value = "SELECT amount FROM invoice_record " +
+            "WHERE user_id = :userId AND COALESCE(category, '') = :category AND is_deleted = 0 " +
+            "AND amount IS NOT NULL", nativeQuery = true)
+    Stream<Double> streamAmounts(Long userId, String category);
+
+    /**
+     * 删除用户的全部统计行 (下次用到时重新生成)
+     *
+     * @param userId 用户 ID
+     */
+    @Modifying
+    @Query("DELETE FROM CategoryStats s WHERE s.userId = :userId")
+    void deleteByUserId(Long userId);
+}
@@ -0,0 +1,28 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.ClusterReportCache;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import java.util.List;
+
+/**
+ * AI 聚类报告缓存数据访问接口
+ *
+ * <p>主键为量化中心签名，可直接使用 findById 按签名查询。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.ClusterReportCache
+ */
+public interface ClusterReportCacheRepository extends JpaRepository<ClusterReportCache, String> {
+
+    /**
+     * 按最近访问时间正序查询签名 (最久未访问的在前)
+     * <p>用于 LRU 淘汰，配合 PageRequest.of(0, n) 取出需要删除的前 n 条。</p>
+     *
+     * @param pageable 分页参数
+     * @return 签名列表
+     */
+    @Query("SELECT c.signature FROM ClusterReportCache c ORDER BY c.lastAccessTime ASC")
+    List<String> findSignaturesOrderByLastAccess(Pageable pageable);
+}
@@ -69,5 +69,14 @@ public interface InvoiceRepository extends JpaRepository<InvoiceData, Long> {
             "ORDER BY month DESC " +
             "LIMIT 12", nativeQuery = true)
     List<Object[]> findMonthlyStatsByUserId(Long userId);
-}
 
+    /**
+     * 查询所有发票的日期、金额和类别
+     * <p>只取三列，供管理员对全公司票据做聚类分析，避免加载完整实体。
+     * 返回格式: [[日期, 金额, 类别], ...]</p>
+     * 
+     * @return 日期、金额、类别列表
+     */
+    @Query("SELECT i.date, i.amount, i.category FROM InvoiceData i")
+    List<Object[]> findAllDateAmountCategory();
+}
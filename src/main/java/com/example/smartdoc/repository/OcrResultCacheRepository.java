@@ -0,0 +1,28 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.OcrResultCache;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import java.util.List;
+
+/**
+ * OCR 识别结果缓存数据访问接口
+ * 
+ * <p>主键为文件内容的 SHA-256 哈希，可直接使用 findById 按哈希查询。</p>
+ * 
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.OcrResultCache
+ */
+public interface OcrResultCacheRepository extends JpaRepository<OcrResultCache, String> {
+
+    /**
+     * 按最近访问时间正序查询缓存哈希 (最久未访问的在前)
+     * <p>用于 LRU 淘汰，配合 PageRequest.of(0, n) 取出需要删除的前 n 条。</p>
+     * 
+     * @param pageable 分页参数
+     * @return 缓存哈希列表
+     */
+    @Query("SELECT c.contentHash FROM OcrResultCache c ORDER BY c.lastAccessTime ASC")
+    List<String> findHashesOrderByLastAccess(Pageable pageable);
+}
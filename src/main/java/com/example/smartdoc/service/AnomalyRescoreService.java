@@ -0,0 +1,329 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.AnomalyRescoreJob;
+import com.example.smartdoc.utils.TDigest;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 异常重新评分服务 - 按当前的检测模式和阈值重新计算全部票据的异常标记
+ *
+ * <p>isAnomaly 只在保存时计算一次，调整阈值或切换检测模式后，历史票据的标记都还是旧算法的结论。
+ * 本服务由管理员触发，在后台把所有有效票据重新评分一遍，只写回发生变化的标记。</p>
+ *
+ * <h3>评分口径:</h3>
+ * <p>每个 (用户, 类别) 按票据 ID 顺序回放: 每张票据与它之前的同类别票据比较，再加入历史，
+ * 与保存时的检测完全一致 ({@link AnomalyStatsService#evaluate})，
+ * 相当于"如果当初就用现在的算法，这张票据会被怎样标记"。</p>
+ *
+ * <h3>执行方式:</h3>
+ * <pre>
+ * 1. 按用户划分任务，在专用 ForkJoinPool 中二分递归执行，工作窃取平衡大小不一的用户
+ * 2. 每个用户按主键游标分页读取 (WHERE user_id = ? AND id > 上一页末尾 ORDER BY id LIMIT n)，
+ *    走 idx_user_invoice 索引 (InnoDB 二级索引自带主键，天然按 id 有序)，不随页数变慢
+ * 3. 每页评分后只把标记变化的票据用 JDBC 批量更新写回
+ * 4. 用户处理完后重置其类别统计行，下次保存时由票据表重新生成，顺带消除增量更新的浮点漂移
+ * </pre>
+ * <p>同一时间只运行一个任务。评分期间用户仍可正常保存票据，新票据由保存时的检测负责。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.anomaly.rescore.parallelism=4     # 并行处理的用户数 (同时占用的数据库连接数)
+ * smartdoc.anomaly.rescore.chunk-size=1000   # 每页读取的票据数
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see AnomalyRescoreJob
+ * @see AnomalyStatsService
+ */
+@Service
+public class AnomalyRescoreService {
+
+    /** 分页读取一个用户的有效票据 (主键游标) */
+    private static final String PAGE_SQL = "SELECT id, COALESCE(category, ''), amount, is_anomaly FROM invoice_record " +
+            "WHERE user_id = ? AND is_deleted = 0 AND id > ? ORDER BY id LIMIT ?";
+
+    /** 写回变化的异常标记 */
+    private static final String UPDATE_SQL = "UPDATE invoice_record SET is_anomaly = ? WHERE id = ?";
+
+    /** 并行处理的用户数 */
+    @Value("${smartdoc.anomaly.rescore.parallelism:4}")
+    private int parallelism;
+
+    /** 每页读取的票据数 */
+    @Value("${smartdoc.anomaly.rescore.chunk-size:1000}")
+    private int chunkSize;
+
+    /** JDBC 模板 - 游标分页读取和批量更新 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 异常检测统计服务 - 提供评分规则，重置统计行 */
+    @Autowired
+    private AnomalyStatsService anomalyStatsService;
+
+    /** 统计结果缓存 - 标记有变化时使该用户的统计结果失效 */
+    @Autowired
+    private StatsCacheService statsCacheService;
+
+    /** 最近一次任务 (运行中或已结束) */
+    private volatile AnomalyRescoreJob lastJob;
+
+    /** 正在运行的线程池 */
+    private volatile ForkJoinPool pool;
+
+    /** 应用正在关闭，停止读取新的分页 */
+    private volatile boolean stopping;
+
+    /** 统计: 已发起的任务数 */
+    private final AtomicLong runs = new AtomicLong();
+
+    /**
+     * 发起重新评分任务 (后台执行，立即返回)
+     *
+     * @param operatorId 发起任务的管理员 ID
+     * @return 新任务；已有任务在运行时返回 null
+     */
+    public synchronized AnomalyRescoreJob start(Long operatorId) {
+        if (lastJob != null && !lastJob.isCompleted()) {
+            return null;
+        }
+        AnomalyRescoreJob job = new AnomalyRescoreJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setOperatorId(operatorId);
+        job.setMode(anomalyStatsService.getMode());
+        job.setCreateTime(LocalDateTime.now());
+        lastJob = job;
+        runs.incrementAndGet();
+
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("anomaly-rescore-" + t.getPoolIndex());
+            return t;
+        };
+        ForkJoinPool jobPool = new ForkJoinPool(Math.max(1, parallelism), factory, null, false);
+        pool = jobPool;
+        jobPool.execute(() -> run(job, jobPool));
+        return job;
+    }
+
+    /**
+     * 最近一次任务 (没有时返回 null)
+     */
+    public AnomalyRescoreJob getLastJob() {
+        return lastJob;
+    }
+
+    /**
+     * 获取重新评分指标
+     *
+     * @return 已发起的任务数、是否在运行、最近一次任务的进度
+     */
+    public Map<String, Object> getStats() {
+        AnomalyRescoreJob job = lastJob;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("runs", runs.get());
+        stats.put("running", job != null && !job.isCompleted());
+        stats.put("lastJob", job);
+        return stats;
+    }
+
+    /**
+     * 应用关闭时停止任务
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        ForkJoinPool p = pool;
+        if (p != null) {
+            p.shutdownNow();
+        }
+    }
+
+    /**
+     * 任务主体: 统计待处理的用户和票据数，按用户并行评分
+     */
+    private void run(AnomalyRescoreJob job, ForkJoinPool jobPool) {
+        try {
+            List<Long> userIds = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT user_id FROM invoice_record WHERE is_deleted = 0 AND user_id IS NOT NULL",
+                    Long.class);
+            Long total = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM invoice_record WHERE is_deleted = 0 AND user_id IS NOT NULL", Long.class);
+            job.setTotalUsers(userIds.size());
+            job.setTotalInvoices(total == null ? 0 : total);
+            System.out.println("🔁 异常重新评分开始: 模式=" + job.getMode()
+                    + ", 用户数=" + userIds.size() + ", 票据数=" + job.getTotalInvoices());
+
+            long[] ids = userIds.stream().mapToLong(Long::longValue).toArray();
+            new UserPartition(job, ids, 0, ids.length).invoke();
+
+            job.setStatus(stopping ? "FAILED" : "DONE");
+            if (stopping) {
+                job.setError("应用关闭，任务中止");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            job.setError(e.getMessage());
+            job.setStatus("FAILED");
+        } finally {
+            job.setFinishTime(LocalDateTime.now());
+            jobPool.shutdown();
+            System.out.println("🔁 异常重新评分结束: 状态=" + job.getStatus() + ", 扫描=" + job.getScanned()
+                    + ", 变化=" + job.getChanged() + ", 异常=" + job.getFlagged()
+                    + ", 耗时=" + job.getElapsedMs() + "ms, 吞吐=" + job.getThroughput() + "条/秒");
+        }
+    }
+
+    /**
+     * 重新评分一个用户的全部有效票据
+     *
+     * @param job    所属任务 (累计进度)
+     * @param userId 用户 ID
+     */
+    private void rescoreUser(AnomalyRescoreJob job, long userId) {
+        Map<String, Running> categories = new HashMap<>();
+        long lastId = 0;
+        boolean changed = false;
+        while (!stopping) {
+            List<Row> rows = jdbcTemplate.query(PAGE_SQL, (rs, i) -> {
+                double amount = rs.getDouble(3);
+                Double nullableAmount = rs.wasNull() ? null : amount;
+                return new Row(rs.getLong(1), rs.getString(2), nullableAmount, rs.getInt(4));
+            }, userId, lastId, chunkSize);
+            if (rows.isEmpty()) break;
+
+            // 1. 按 ID 顺序回放: 先与同类别的历史比较，再加入历史
+            List<Object[]> updates = new ArrayList<>();
+            int flagged = 0;
+            for (Row row : rows) {
+                Running r = categories.computeIfAbsent(row.category, c -> new Running(
+                        anomalyStatsService.usesSketch() ? anomalyStatsService.newSketch() : null));
+                int flag = 0;
+                if (row.amount != null) {
+                    flag = anomalyStatsService.evaluate(row.amount, r.n, r.mean, r.m2, r.digest) ? 1 : 0;
+                    r.add(row.amount);
+                }
+                if (flag == 1) flagged++;
+                if (flag != row.isAnomaly) {
+                    updates.add(new Object[]{flag, row.id});
+                }
+            }
+
+            // 2. 只写回变化的标记
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                changed = true;
+            }
+
+            job.getScanned().addAndGet(rows.size());
+            job.getChanged().addAndGet(updates.size());
+            job.getFlagged().addAndGet(flagged);
+            job.getChunks().incrementAndGet();
+            lastId = rows.get(rows.size() - 1).id;
+            if (rows.size() < chunkSize) break;
+        }
+
+        // 3. 重置统计行，下次保存时由票据表重新生成
+        anomalyStatsService.invalidate(userId);
+        if (changed) {
+            statsCacheService.bump(userId);
+        }
+    }
+
+    /**
+     * 按用户二分的递归任务
+     */
+    private class UserPartition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final AnomalyRescoreJob job;
+        private final long[] userIds;
+        private final int from;
+        private final int to;
+
+        UserPartition(AnomalyRescoreJob job, long[] userIds, int from, int to) {
+            this.job = job;
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new UserPartition(job, userIds, from, mid), new UserPartition(job, userIds, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    rescoreUser(job, userIds[i]);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    job.getFailedUsers().incrementAndGet();
+                    job.setError("用户 " + userIds[i] + ": " + e.getMessage());
+                } finally {
+                    job.getFinishedUsers().incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * 一张票据的评分输入
+     */
+    private static class Row {
+        final long id;
+        final String category;
+        final Double amount;
+        final int isAnomaly;
+
+        Row(long id, String category, Double amount, int isAnomaly) {
+            this.id = id;
+            this.category = category;
+            this.amount = amount;
+            this.isAnomaly = isAnomaly;
+        }
+    }
+
+    /**
+     * 回放过程中一个类别的 Welford 统计量和草图
+     */
+    private static class Running {
+        long n;
+        double mean;
+        double m2;
+        final TDigest digest;
+
+        Running(TDigest digest) {
+            this.digest = digest;
+        }
+
+        void add(double x) {
+            n++;
+            double delta = x - mean;
+            mean += delta / n;
+            m2 += delta * (x - mean);
+            if (digest != null) {
+                digest.add(x);
+            }
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package com.example.smartdoc.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.smartdoc.model.CategoryStats;
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.repository.CategoryStatsRepository;
+import com.example.smartdoc.repository.InvoiceRepository;
+import com.example.smartdoc.utils.AnomalyDetectionUtil;
+import com.example.smartdoc.utils.TDigest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+
+/**
+ * 异常检测统计服务 - 增量维护各类别的金额统计量，O(1) 完成异常检测
+ *
+ * <p>每个 (用户, 类别) 在 invoice_category_stats 表中有一行 Welford 统计量 (样本数、均值、离差平方和)
+ * 和一份 t-digest 分位数草图，票据进入或离开有效集合时增量更新，异常检测直接读取这一行，
+ * 不再随历史票据数量变慢。</p>
+ *
+ * <h3>检测模式 (smartdoc.anomaly.mode):</h3>
+ * <pre>
+ * zscore  (默认) |X - μ| / σ > 2.0，μ、σ 由 Welford 统计量得到
+ * robust         修正 Z-Score: 0.6745·|X - 中位数| / MAD > robust-threshold，中位数和 MAD 由草图得到；
+ *                MAD 为 0 (半数以上金额相同) 时退回 zscore 判断；
+ *                配置了 high-quantile 时，高于该分位数的金额也标记为异常
+ * </pre>
+ * <p>Welford 统计量始终维护；草图只在 robust 模式下读取和更新。zscore 模式下统计行有变化时把草图置空，
+ * 切换到 robust 模式后首次用到时再由票据表生成，切换模式无需迁移数据。</p>
+ *
+ * <h3>Welford 更新公式:</h3>
+ * <pre>
+ * 加入 x:  n' = n + 1,  μ' = μ + (x - μ) / n',        m2' = m2 + (x - μ)(x - μ')
+ * 移除 x:  n' = n - 1,  μ' = (n·μ - x) / n',          m2' = m2 - (x - μ)(x - μ')
+ * 样本标准差 σ = √(m2 / (n - 1))
+ * </pre>
+ * <p>t-digest 不支持移除样本: 删除 / 修改票据时草图暂时保留旧金额 (对中位数和 MAD 的影响很小)，
+ * 事务提交后由后台线程按该类别剩余的票据重建，请求中不扫描历史票据。
+ * 重建期间统计行又有变化时放弃写入并重试，不会覆盖新加入的金额。</p>
+ *
+ * <h3>一致性:</h3>
+ * <pre>
+ * 1. 所有方法都应在调用方的事务中、并且在修改 invoice_record 之前调用:
+ *    先加锁读取统计行，只有行不存在时才按当前的票据表一次性生成 (聚合查询只在首次执行)，
+ *    之后再执行增量更新，两者不会重复计数
+ * 2. 更新前对统计行加行锁 (SELECT ... FOR UPDATE)，同一类别的并发保存排队执行；
+ *    一次涉及多个类别时按类别名顺序加锁，避免死锁
+ * 3. 无法增量处理的批量变更 (如备份恢复、批量重新评分) 调用 invalidate 删除统计行，下次用到时重新生成
+ * </pre>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.anomaly.mode=zscore              # zscore / robust
+ * smartdoc.anomaly.robust-threshold=3.5     # 修正 Z-Score 阈值
+ * smartdoc.anomaly.high-quantile=0          # robust 模式下高于该分位数即异常 (如 0.99)，0 为不启用
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see CategoryStats
+ * @see AnomalyDetectionUtil
+ * @see TDigest
+ * @see AnomalyRescoreService
+ */
+@Service
+public class AnomalyStatsService {
+
+    /** 至少需要的历史样本数，不足时不做异常判断 */
+    private static final int MIN_SAMPLES = 5;
+
+    /** t-digest 压缩参数 (约 200 个质心，序列化后 1~3KB) */
+    private static final double SKETCH_COMPRESSION = 100;
+
+    /** 后台重建草图: 读取统计行当前的 Welford 统计量 (作为写回时的比较条件) */
+    private static final String SNAPSHOT_SQL = "SELECT id, sample_count, mean, m2 FROM invoice_category_stats " +
+            "WHERE user_id = ? AND category = ?";
+
+    /** 后台重建草图: 读取该类别有效票据的金额 */
+    private static final String AMOUNTS_SQL = "SELECT amount FROM invoice_record " +
+            "WHERE user_id = ? AND COALESCE(category, '') = ? AND is_deleted = 0 AND amount IS NOT NULL";
+
+    /** 后台重建草图: 统计量与读取时相同 (期间没有票据变化) 才写入 */
+    private static final String WRITE_SKETCH_SQL = "UPDATE invoice_category_stats SET sketch = ? " +
+            "WHERE id = ? AND sample_count = ? AND mean = ? AND m2 = ?";
+
+    /** 后台重建因统计行变化而放弃时的最多重试次数 */
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    /** 后台重建队列容量 (队列满时本次不重建，下次删除时再排队) */
+    private static final int REBUILD_QUEUE_CAPACITY = 1000;
+
+    /** 检测模式 */
+    @Value("${smartdoc.anomaly.mode:zscore}")
+    private String mode;
+
+    /** 修正 Z-Score 阈值 */
+    @Value("${smartdoc.anomaly.robust-threshold:3.5}")
+    private double robustThreshold;
+
+    /** 高分位数阈值 (0 为不启用) */
+    @Value("${smartdoc.anomaly.high-quantile:0}")
+    private double highQuantile;
+
+    /** 类别统计数据仓库 */
+    @Autowired
+    private CategoryStatsRepository categoryStatsRepository;
+
+    /** 票据数据仓库 - 查询被覆盖保存的旧票据 */
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    /** JDBC 模板 - 后台重建草图 (不在请求事务中) */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 后台重建草图的线程 */
+    private ThreadPoolExecutor rebuildExecutor;
+
+    /** 已排队等待重建的 "用户ID:类别" */
+    private final Set<String> rebuildPending = ConcurrentHashMap.newKeySet();
+
+    /** 统计: 检测次数 / 标记异常次数 / 草图生成与重建次数 / 重建冲突重试次数 */
+    private final AtomicLong scored = new AtomicLong();
+    private final AtomicLong flagged = new AtomicLong();
+    private final AtomicLong sketchRebuilds = new AtomicLong();
+    private final AtomicLong sketchRebuildRetries = new AtomicLong();
+
+    /**
+     * 创建后台重建草图的线程
+     */
+    @PostConstruct
+    public void init() {
+        rebuildExecutor = new ThreadPoolExecutor(
+                1, 1,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REBUILD_QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "anomaly-sketch-rebuild");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        rebuildExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 应用关闭时停止重建线程 (未完成的草图保持旧值，下次删除时再重建)
+     */
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 保存票据前: 逐张检测异常 (结果写入 isAnomaly) 并把金额计入统计
+     *
+     * <p>同一批次中先检测的票据会加入该类别的历史，后面的票据与之比较。
+     * 带 ID 的票据视为修改已有票据: 先从原类别的统计中移除旧金额。</p>
+     *
+     * @param userId 用户 ID
+     * @param list   待保存的票据 (userId 已绑定)
+     */
+    @Transactional
+    public void recordSaves(Long userId, List<InvoiceData> list) {
+        // 1. 找出被修改的旧票据 (只认本人的票据)
+        List<InvoiceData> previous = new ArrayList<>();
+        for (InvoiceData data : list) {
+            if (data.getId() == null) continue;
+            invoiceRepository.findById(data.getId())
+                    .filter(old -> userId.equals(old.getUserId()))
+                    .ifPresent(old -> previous.add(copyOf(old)));
+        }
+
+        // 2. 按类别名顺序加锁
+        TreeSet<String> categories = new TreeSet<>();
+        list.forEach(data -> categories.add(key(data.getCategory())));
+        previous.forEach(old -> categories.add(key(old.getCategory())));
+        Map<String, Locked> locked = new TreeMap<>();
+        for (String category : categories) {
+            locked.put(category, lock(userId, category));
+        }
+
+        // 3. 先移除旧金额 (草图在事务提交后重建)，再按顺序检测并加入新金额
+        for (InvoiceData old : previous) {
+            if (old.getAmount() == null) continue;
+            remove(locked.get(key(old.getCategory())), old.getAmount());
+        }
+
+        for (InvoiceData data : list) {
+            Locked l = locked.get(key(data.getCategory()));
+            markAnomaly(data, l);
+            add(l, data.getAmount());
+        }
+        locked.values().forEach(Locked::writeSketch);
+    }
+
+    /**
+     * 票据离开有效集合前 (软删除、物理删除): 从统计中移除金额
+     *
+     * @param id       票据主键 ID (未使用，草图在提交后按剩余票据重建)
+     * @param userId   用户 ID
+     * @param category 类别
+     * @param amount   金额 (为空忽略)
+     */
+    @Transactional
+    public void recordRemoval(Long id, Long userId, String category, Double amount) {
+        if (userId == null || amount == null) return;
+        Locked l = lock(userId, key(category));
+        remove(l, amount);
+        l.writeSketch();
+    }
+
+    /**
+     * 票据重新进入有效集合前 (回收站还原): 把金额计入统计
+     *
+     * @param userId   用户 ID
+     * @param category 类别
+     * @param amount   金额 (为空忽略)
+     */
+    @Transactional
+    public void recordAddition(Long userId, String category, Double amount) {
+        if (userId == null || amount == null) return;
+        Locked l = lock(userId, key(category));
+        add(l, amount);
+        l.writeSketch();
+    }
+
+    /**
+     * 删除用户的全部统计行，下次用到时由票据表重新生成
+     *
+     * @param userId 用户 ID
+     */
+    @Transactional
+    public void invalidate(Long userId) {
+        categoryStatsRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * 获取异常检测指标
+     *
+     * @return 检测模式、检测次数、异常比例、草图重建次数及排队数
+     */
+    public Map<String, Object> getStats() {
+        long total = scored.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", mode);
+        stats.put("scored", total);
+        stats.put("flagged", flagged.get());
+        stats.put("flagRate", total == 0 ? 0.0 : Math.round(flagged.get() * 10000.0 / total) / 10000.0);
+        stats.put("sketchRebuilds", sketchRebuilds.get());
+        stats.put("sketchRebuildRetries", sketchRebuildRetries.get());
+        stats.put("sketchRebuildPending", rebuildPending.size());
+        return stats;
+    }
+
+    /**
+     * 加行锁读取统计行，行不存在时由票据表生成后重新加锁读取
+     * <p>统计行已存在时只有一次加锁读取，不扫描历史票据。robust 模式下反序列化草图，
+     * 草图缺失 (新行、zscore 模式下置空过) 时由票据表一次性生成；zscore 模式下不读取草图。</p>
+     */
+    private Locked lock(Long userId, String category) {
+        CategoryStats stats = categoryStatsRepository.findForUpdate(userId, category);
+        if (stats == null) {
+            categoryStatsRepository.bootstrap(userId, category);
+            stats = categoryStatsRepository.findForUpdate(userId, category);
+        }
+        Locked l = new Locked(stats);
+        if (!usesSketch()) {
+            return l;
+        }
+        if (l.stats.getSketch() == null) {
+            TDigest digest = newSketch();
+            try (Stream<Double> amounts = categoryStatsRepository.streamAmounts(userId, category)) {
+                amounts.forEach(digest::add);
+            }
+            l.digest = digest;
+            l.dirty = true;
+            sketchRebuilds.incrementAndGet();
+        } else {
+            l.digest = TDigest.fromBytes(l.stats.getSketch());
+        }
+        return l;
+    }
+
+    /**
+     * 事务提交后在后台按剩余票据重建草图 (同一类别排队中时不重复提交)
+     */
+    private void scheduleRebuild(Long userId, String category) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submitRebuild(userId, category, 1);
+                }
+            });
+        } else {
+            submitRebuild(userId, category, 1);
+        }
+    }
+
+    private void submitRebuild(Long userId, String category, int attempt) {
+        String pendingKey = userId + ":" + category;
+        if (!rebuildPending.add(pendingKey)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                rebuildPending.remove(pendingKey);
+                try {
+                    if (!rebuildSketch(userId, category) && attempt < REBUILD_ATTEMPTS) {
+                        sketchRebuildRetries.incrementAndGet();
+                        submitRebuild(userId, category, attempt + 1);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满或正在关闭: 草图暂时保留旧金额
+            rebuildPending.remove(pendingKey);
+        }
+    }
+
+    /**
+     * 按该类别现有的有效票据重建草图 (后台线程，不持有行锁)
+     *
+     * <p>先读取统计量，再读取金额；写回时要求统计量未变 —— 期间提交的保存、删除都会改变统计量，
+     * 此时放弃本次结果，避免覆盖新加入的金额。</p>
+     *
+     * @return 写入成功或统计行已不存在时返回 true；统计行有变化需要重试时返回 false
+     */
+    private boolean rebuildSketch(Long userId, String category) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(SNAPSHOT_SQL, userId, category);
+        if (rows.isEmpty()) {
+            return true;
+        }
+        Map<String, Object> row = rows.get(0);
+
+        TDigest digest = newSketch();
+        jdbcTemplate.query(AMOUNTS_SQL, rs -> {
+            digest.add(rs.getDouble(1));
+        }, userId, category);
+
+        int updated = jdbcTemplate.update(WRITE_SKETCH_SQL, digest.toBytes(),
+                row.get("id"), row.get("sample_count"), row.get("mean"), row.get("m2"));
+        if (updated > 0) {
+            sketchRebuilds.incrementAndGet();
+        }
+        return updated > 0;
+    }
+
+    /**
+     * 按配置的模式检测异常: 样本不足 5 条时标记为正常；出错时兜底为正常
+     *
+     * @param data 待检测的票据 (结果写入 isAnomaly: 0=正常, 1=异常)
+     * @param l    同类别的历史统计量
+     */
+    private void markAnomaly(InvoiceData data, Locked l) {
+        try {
+            CategoryStats stats = l.stats;
+            if (stats.getSampleCount() >= MIN_SAMPLES && data.getAmount() != null) {
+                double x = data.getAmount();
+                boolean isWeird = evaluate(x, stats.getSampleCount(), stats.getMean(), stats.getM2(), l.digest);
+                data.setIsAnomaly(isWeird ? 1 : 0);
+                scored.incrementAndGet();
+                if (isWeird) {
+                    flagged.incrementAndGet();
+                    System.out.println("⚠️ 发现异常消费！金额: " + x + ", 均值: " + stats.getMean());
+                }
+            } else {
+                data.setIsAnomaly(0);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            data.setIsAnomaly(0);
+        }
+    }
+
+    /**
+     * 按配置的模式判断金额相对于历史是否异常 (不计入检测指标)
+     *
+     * <p>保存时的检测与 {@link AnomalyRescoreService} 的批量重新评分共用此方法，两者结论一致。</p>
+     *
+     * @param x      待检测金额
+     * @param n      历史样本数 (不足 5 条返回 false)
+     * @param mean   历史均值
+     * @param m2     历史离差平方和
+     * @param digest 历史金额草图 (zscore 模式可为 null)
+     * @return 是否异常
+     */
+    public boolean evaluate(double x, long n, double mean, double m2, TDigest digest) {
+        if (n < MIN_SAMPLES) return false;
+        double stdDev = Math.sqrt(Math.max(0, m2) / (n - 1));
+        if (!usesSketch()) {
+            return AnomalyDetectionUtil.isAnomaly(x, mean, stdDev);
+        }
+        double median = digest.quantile(0.5);
+        double mad = digest.mad();
+        boolean isWeird = mad > 0
+                ? AnomalyDetectionUtil.isRobustAnomaly(x, median, mad, robustThreshold)
+                : AnomalyDetectionUtil.isAnomaly(x, mean, stdDev);
+        if (highQuantile > 0 && highQuantile < 1 && x > digest.quantile(highQuantile)) {
+            isWeird = true;
+        }
+        return isWeird;
+    }
+
+    /**
+     * 当前检测模式是否需要分位数草图 (robust 模式)
+     */
+    public boolean usesSketch() {
+        return "robust".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 当前检测模式名
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * 创建与统计行相同压缩参数的空草图
+     */
+    public TDigest newSketch() {
+        return new TDigest(SKETCH_COMPRESSION);
+    }
+
+    /**
+     * 加入一个样本 (Welford 统计量与草图)
+     */
+    private void add(Locked l, Double x) {
+        if (x == null) return;
+        CategoryStats stats = l.stats;
+        long n = stats.getSampleCount() + 1;
+        double mean = stats.getMean();
+        double newMean = mean + (x - mean) / n;
+        stats.setM2(stats.getM2() + (x - mean) * (x - newMean));
+        stats.setMean(newMean);
+        stats.setSampleCount(n);
+        if (l.digest != null) {
+            l.digest.add(x);
+        }
+        l.dirty = true;
+    }
+
+    /**
+     * Welford 移除一个样本 (样本清空时归零；浮点误差导致的负 m2 截断为 0)
+     * <p>草图不支持移除: robust 模式下在事务提交后重建。</p>
+     */
+    private void remove(Locked l, Double x) {
+        CategoryStats stats = l.stats;
+        if (x == null || stats.getSampleCount() <= 0) return;
+        l.dirty = true;
+        if (usesSketch()) {
+            scheduleRebuild(stats.getUserId(), stats.getCategory());
+        }
+        long n = stats.getSampleCount() - 1;
+        if (n == 0) {
+            stats.setSampleCount(0L);
+            stats.setMean(0.0);
+            stats.setM2(0.0);
+            return;
+        }
+        double mean = stats.getMean();
+        double newMean = (stats.getSampleCount() * mean - x) / n;
+        stats.setM2(Math.max(0, stats.getM2() - (x - mean) * (x - newMean)));
+        stats.setMean(newMean);
+        stats.setSampleCount(n);
+    }
+
+    /**
+     * 统计用的类别键 (空类别归为 "")
+     */
+    private static String key(String category) {
+        return category == null ? "" : category;
+    }
+
+    /**
+     * 复制旧票据的 ID、类别和金额 (随后的 save 会把新值合并到同一个托管实体上)
+     */
+    private static InvoiceData copyOf(InvoiceData old) {
+        InvoiceData copy = new InvoiceData();
+        copy.setId(old.getId());
+        copy.setCategory(old.getCategory());
+        copy.setAmount(old.getAmount());
+        return copy;
+    }
+
+    /**
+     * 已加锁的统计行及其反序列化后的草图
+     */
+    private static class Locked {
+        final CategoryStats stats;
+        /** 草图 (zscore 模式下为 null) */
+        TDigest digest;
+        /** 统计量有变化，草图需要写回 (zscore 模式下置空) */
+        boolean dirty;
+
+        Locked(CategoryStats stats) {
+            this.stats = stats;
+        }
+
+        /**
+         * 统计量有变化时处理草图 (随事务提交写入):
+         * robust 模式序列化回实体；zscore 模式下草图不再准确，置空后由 robust 模式首次用到时重新生成
+         */
+        void writeSketch() {
+            if (!dirty) return;
+            if (digest != null) {
+                stats.setSketch(digest.toBytes());
+            } else if (stats.getSketch() != null) {
+                stats.setSketch(null);
+            }
+            dirty = false;
+        }
+    }
+}
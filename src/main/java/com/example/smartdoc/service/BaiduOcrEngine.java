@@ -0,0 +1,110 @@
+package com.example.smartdoc.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.baidu.aip.ocr.AipOcr;
+
+import cn.hutool.crypto.digest.DigestUtil;
+
+/**
+ * 百度云 OCR 引擎 (默认实现)
+ *
+ * <p>封装 AipOcr SDK 客户端。配置了录制目录时，会把每次调用的响应按
+ * {@code <目录>/<接口名>/<图片SHA-256>.json} 保存下来，供 {@link ReplayOcrEngine} 回放。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.ocr.engine=baidu                # 默认值，可省略
+ * baidu.ocr.app-id / api-key / secret-key  # 百度云应用凭证
+ * smartdoc.ocr.record-dir=                 # 响应录制目录 (为空则不录制)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see ReplayOcrEngine
+ */
+@Service
+@ConditionalOnProperty(name = "smartdoc.ocr.engine", havingValue = "baidu", matchIfMissing = true)
+public class BaiduOcrEngine implements OcrEngine {
+
+    /** 百度 OCR 应用 ID */
+    @Value("${baidu.ocr.app-id}")
+    private String appId;
+
+    /** 百度 OCR API Key */
+    @Value("${baidu.ocr.api-key}")
+    private String apiKey;
+
+    /** 百度 OCR Secret Key */
+    @Value("${baidu.ocr.secret-key}")
+    private String secretKey;
+
+    /** 响应录制目录 (为空则不录制) */
+    @Value("${smartdoc.ocr.record-dir:}")
+    private String recordDir;
+
+    /** 百度 OCR 客户端实例 (线程安全，全局共享；首次识别时才创建) */
+    private volatile AipOcr client;
+
+    /**
+     * 获取百度 OCR 客户端，首次调用时创建并配置连接超时参数
+     *
+     * <p>客户端不在启动阶段创建: 启动时不需要 OCR，延迟创建可以缩短启动时间，
+     * 凭证配置有误也不会影响应用启动。</p>
+     */
+    private AipOcr getClient() {
+        AipOcr c = client;
+        if (c == null) {
+            synchronized (this) {
+                c = client;
+                if (c == null) {
+                    c = new AipOcr(appId, apiKey, secretKey);
+                    c.setConnectionTimeoutInMillis(2000);   // 连接超时 2秒
+                    c.setSocketTimeoutInMillis(60000);      // 读取超时 60秒
+                    client = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    @Override
+    public JSONObject multipleInvoice(byte[] image, HashMap<String, Object> options) {
+        JSONObject res = getClient().multipleInvoice(image, options);
+        record("multipleInvoice", image, res);
+        return res;
+    }
+
+    @Override
+    public JSONObject basicAccurateGeneral(byte[] image, HashMap<String, String> options) {
+        JSONObject res = getClient().basicAccurateGeneral(image, options);
+        record("basicAccurateGeneral", image, res);
+        return res;
+    }
+
+    /**
+     * 录制响应 (仅保存成功的响应，录制失败不影响识别)
+     */
+    private void record(String method, byte[] image, JSONObject res) {
+        if (recordDir == null || recordDir.isEmpty() || res == null || res.has("error_code")) {
+            return;
+        }
+        try {
+            Path dir = Paths.get(recordDir, method);
+            Files.createDirectories(dir);
+            Path file = dir.resolve(DigestUtil.sha256Hex(image) + ".json");
+            Files.write(file, res.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
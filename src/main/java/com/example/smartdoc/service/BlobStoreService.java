@@ -0,0 +1,420 @@
+package com.example.smartdoc.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 原件存储服务 - 按内容哈希存储上传的票据原件 (内容寻址)
+ *
+ * <p>上传的原件以 SHA-256 为文件名存储，同一张发票无论上传多少次、被多少条记录引用都只存一份。
+ * 票据记录通过 file_hash 字段关联原件，审核时可通过 GET /api/doc/original/{id} 打开原件。</p>
+ *
+ * <h3>目录结构:</h3>
+ * <pre>
+ * {blob-dir}/
+ *   ├── 3f/
+ *   │   └── 3fa9...e1   (完整哈希为文件名，前两位作为子目录，避免单目录文件过多)
+ *   └── .tmp/           (写入中的临时文件，完成后原子重命名)
+ * </pre>
+ *
+ * <p>写入先落到临时文件再原子重命名为最终文件名，并发上传同一文件时后完成的直接丢弃，
+ * 读取方永远不会看到写了一半的原件。原件内容不可变，因此哈希即可作为强 ETag。</p>
+ *
+ * <h3>回收 (标记-清除):</h3>
+ * <pre>
+ * 原件在识别时就写入，用户可能始终不保存，票据也可能从回收站彻底删除，
+ * 因此后台定期扫描存储目录，删除没有任何 invoice_record.file_hash 引用的原件:
+ * 1. 只处理最后修改时间早于 gc-grace-hours 的原件 (给 "识别后尚未保存" 留出时间，
+ *    重复上传同一文件会刷新修改时间)
+ * 2. 按批查询 invoice_record (含已软删除、仍在回收站中的记录)，有引用的保留
+ * 3. 其余删除；同时清理异常退出遗留的临时文件
+ * </pre>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.blob.dir=uploads/blobs         # 原件存储目录
+ * smartdoc.blob.gc-grace-hours=24         # 未被引用的原件至少保留多久
+ * smartdoc.blob.gc-interval-minutes=60    # 回收扫描间隔 (0 关闭)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ * @see com.example.smartdoc.controller.DocController
+ */
+@Service
+public class BlobStoreService {
+
+    /** 合法的内容哈希: 64 位小写十六进制 */
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    /** 回收时每批查询引用的哈希数 */
+    private static final int GC_BATCH_SIZE = 500;
+
+    /** 存储目录 */
+    @Value("${smartdoc.blob.dir:uploads/blobs}")
+    private String blobDir;
+
+    /** 未被引用的原件至少保留的时间 (小时) */
+    @Value("${smartdoc.blob.gc-grace-hours:24}")
+    private long gcGraceHours;
+
+    /** 回收扫描间隔 (分钟) */
+    @Value("${smartdoc.blob.gc-interval-minutes:60}")
+    private long gcIntervalMinutes;
+
+    /** 用于查询原件引用 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 回收扫描线程，未启用时为 null */
+    private ScheduledExecutorService gcExecutor;
+
+    /** 存储根目录 (绝对路径) */
+    private Path root;
+
+    /** 临时文件目录 */
+    private Path tmpDir;
+
+    /** 统计: 新写入的原件数 / 因内容重复而跳过的次数 / 新写入的字节数 */
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    /** 统计: 回收扫描次数 / 回收的原件数 / 回收的字节数 */
+    private final AtomicLong gcRuns = new AtomicLong();
+    private final AtomicLong gcDeleted = new AtomicLong();
+    private final AtomicLong gcDeletedBytes = new AtomicLong();
+
+    /**
+     * 创建存储目录，启动回收扫描
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(blobDir).toAbsolutePath();
+        tmpDir = root.resolve(".tmp");
+        Files.createDirectories(tmpDir);
+
+        if (gcIntervalMinutes > 0) {
+            gcExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "blob-gc");
+                t.setDaemon(true);
+                return t;
+            });
+            gcExecutor.scheduleWithFixedDelay(this::sweepQuietly, gcIntervalMinutes, gcIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * 应用关闭时停止回收扫描
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (gcExecutor != null) {
+            gcExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 存储内存中的原件
+     *
+     * @param hash    内容 SHA-256 (调用方已计算)
+     * @param content 文件内容
+     * @throws IOException 写入失败
+     */
+    public void put(String hash, byte[] content) throws IOException {
+        Path target = resolve(hash);
+        if (refresh(target)) {
+            deduplicated.incrementAndGet();
+            return;
+        }
+        Path tmp = Files.createTempFile(tmpDir, hash, ".tmp");
+        try {
+            Files.write(tmp, content);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        commit(tmp, target, content.length);
+    }
+
+    /**
+     * 存储磁盘上的原件 (如转存的上传文件，源文件保持不变)
+     *
+     * @param hash 内容 SHA-256 (调用方已计算)
+     * @param file 源文件
+     * @throws IOException 读取或写入失败
+     */
+    public void put(String hash, Path file) throws IOException {
+        Path target = resolve(hash);
+        if (refresh(target)) {
+            deduplicated.incrementAndGet();
+            return;
+        }
+        Path tmp = Files.createTempFile(tmpDir, hash, ".tmp");
+        try (InputStream in = Files.newInputStream(file)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        commit(tmp, target, Files.size(tmp));
+    }
+
+    /**
+     * 回收没有被任何票据引用的原件
+     *
+     * @return 删除的原件数
+     * @throws IOException 遍历存储目录失败
+     */
+    public int sweep() throws IOException {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(gcGraceHours);
+        return sweep(cutoff, this::findReferenced);
+    }
+
+    /**
+     * 回收修改时间早于 cutoff 且没有被引用的原件
+     *
+     * @param cutoff     修改时间阈值 (毫秒时间戳)
+     * @param referenced 给定一批哈希，返回其中仍被引用的哈希
+     * @return 删除的原件数
+     * @throws IOException 遍历存储目录失败
+     */
+    int sweep(long cutoff, Function<List<String>, Set<String>> referenced) throws IOException {
+        gcRuns.incrementAndGet();
+        int deleted = 0;
+        List<Path> batch = new ArrayList<>();
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(root, p -> Files.isDirectory(p) && !p.equals(tmpDir))) {
+            for (Path shard : shards) {
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(shard)) {
+                    for (Path blob : blobs) {
+                        if (isValidHash(blob.getFileName().toString()) && isOlderThan(blob, cutoff)) {
+                            batch.add(blob);
+                        }
+                        if (batch.size() >= GC_BATCH_SIZE) {
+                            deleted += deleteUnreferenced(batch, cutoff, referenced);
+                            batch.clear();
+                        }
+                    }
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += deleteUnreferenced(batch, cutoff, referenced);
+        }
+
+        // 异常退出遗留的临时文件
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(tmpDir)) {
+            for (Path tmp : leftovers) {
+                if (isOlderThan(tmp, cutoff)) {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 定时任务入口 (异常只打印，不中断后续调度)
+     */
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 删除一批候选原件中没有被引用的
+     * <p>查询引用期间原件可能被重新上传 (刷新了修改时间)，删除前再检查一次。</p>
+     */
+    private int deleteUnreferenced(List<Path> batch, long cutoff, Function<List<String>, Set<String>> referenced)
+            throws IOException {
+        List<String> hashes = new ArrayList<>(batch.size());
+        for (Path blob : batch) {
+            hashes.add(blob.getFileName().toString());
+        }
+        Set<String> inUse = referenced.apply(hashes);
+        int deleted = 0;
+        for (Path blob : batch) {
+            if (inUse.contains(blob.getFileName().toString()) || !isOlderThan(blob, cutoff)) continue;
+            long size;
+            try {
+                size = Files.size(blob);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            if (Files.deleteIfExists(blob)) {
+                deleted++;
+                gcDeleted.incrementAndGet();
+                gcDeletedBytes.addAndGet(size);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 查询一批哈希中仍被票据引用的 (含回收站中已软删除的票据)
+     */
+    private Set<String> findReferenced(List<String> hashes) {
+        if (hashes.isEmpty()) return Collections.emptySet();
+        String placeholders = String.join(",", Collections.nCopies(hashes.size(), "?"));
+        List<String> rows = jdbcTemplate.queryForList(
+                "SELECT DISTINCT file_hash FROM invoice_record WHERE file_hash IN (" + placeholders + ")",
+                String.class, hashes.toArray());
+        return new HashSet<>(rows);
+    }
+
+    /**
+     * 文件修改时间是否早于 cutoff (文件已不存在视为否)
+     */
+    private boolean isOlderThan(Path path, long cutoff) throws IOException {
+        try {
+            return Files.getLastModifiedTime(path).toMillis() < cutoff;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 原件已存在时刷新修改时间，推迟回收
+     *
+     * @return 原件已存在返回 true
+     */
+    private boolean refresh(Path target) throws IOException {
+        try {
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 原件是否存在
+     *
+     * @param hash 内容哈希 (格式不合法视为不存在)
+     * @return 存在返回 true
+     */
+    public boolean exists(String hash) {
+        return isValidHash(hash) && Files.isRegularFile(resolve(hash));
+    }
+
+    /**
+     * 获取原件路径
+     *
+     * @param hash 内容哈希
+     * @return 原件路径，哈希不合法或文件不存在返回 null
+     */
+    public Path getPath(String hash) {
+        if (!isValidHash(hash)) return null;
+        Path path = resolve(hash);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * 根据文件头判断原件类型
+     *
+     * @param path 原件路径
+     * @return MIME 类型，无法识别返回 application/octet-stream
+     */
+    public String detectContentType(Path path) {
+        byte[] head = new byte[8];
+        int n;
+        try (InputStream in = Files.newInputStream(path)) {
+            n = in.readNBytes(head, 0, head.length);
+        } catch (IOException e) {
+            return "application/octet-stream";
+        }
+        if (n >= 4 && head[0] == '%' && head[1] == 'P' && head[2] == 'D' && head[3] == 'F') return "application/pdf";
+        if (n >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) return "image/jpeg";
+        if (n >= 4 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') return "image/png";
+        if (n >= 2 && head[0] == 'B' && head[1] == 'M') return "image/bmp";
+        return "application/octet-stream";
+    }
+
+    /**
+     * 获取存储统计指标
+     *
+     * @return 新写入数、去重次数、写入字节数、回收情况
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("dir", root.toString());
+        stats.put("stored", stored.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("storedBytes", storedBytes.get());
+        stats.put("gcRuns", gcRuns.get());
+        stats.put("gcDeleted", gcDeleted.get());
+        stats.put("gcDeletedBytes", gcDeletedBytes.get());
+        return stats;
+    }
+
+    /**
+     * 哈希格式校验 (防止路径穿越)
+     */
+    private boolean isValidHash(String hash) {
+        return hash != null && HASH_PATTERN.matcher(hash).matches();
+    }
+
+    /**
+     * 哈希 → 存储路径
+     */
+    private Path resolve(String hash) {
+        if (!isValidHash(hash)) {
+            throw new IllegalArgumentException("无效的内容哈希: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * 临时文件原子重命名为最终文件
+     * <p>目标已存在说明并发上传了同一文件，内容相同，丢弃临时文件即可。</p>
+     */
+    private void commit(Path tmp, Path target, long size) throws IOException {
+        try {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target);
+            }
+            stored.incrementAndGet();
+            storedBytes.addAndGet(size);
+        } catch (FileAlreadyExistsException e) {
+            deduplicated.incrementAndGet();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.smartdoc.service;
+
+import com.example.smartdoc.utils.AhoCorasick;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消费类别词典 - 基于 Aho-Corasick 自动机的加权关键词类别推断
+ *
+ * <p>通用文字识别得到的票据没有结构化的类别字段，需要根据文字内容推断。
+ * 词典中每个关键词 (或商户名) 属于一个类别并带有权重，识别文字只扫描一遍即可
+ * 找出全部命中的关键词，按类别累加权重，得分最高的类别胜出。</p>
+ *
+ * <h3>词典文件格式 (UTF-8):</h3>
+ * <pre>
+ * # 注释
+ * 类别|关键词|权重      权重可省略，默认 1
+ * 餐饮美食|餐饮|3
+ * 交通出行|滴滴|3
+ * </pre>
+ *
+ * <h3>打分规则:</h3>
+ * <pre>
+ * 1. 同一关键词在一份票据中无论出现几次只计一次 (避免 "车" 在明细中重复出现而刷分)
+ * 2. 长词包含短词时两者都计分 (如 "出租车" 同时命中 "车")，短词通常给较低权重
+ * 3. 最高得分低于 smartdoc.category.min-score 时不给出类别，由调用方决定默认值
+ * </pre>
+ *
+ * <h3>热更新:</h3>
+ * <p>配置了外部词典文件时，推断前最多每隔 reload-check-seconds 秒检查一次文件修改时间，
+ * 有变化则重新构建自动机并整体替换快照 (volatile 引用)，正在进行的推断继续使用旧快照。
+ * 新文件解析失败时保留旧词典。未配置外部文件时使用 classpath 下的默认词典。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.category.dictionary-path=          # 外部词典文件，留空使用内置词典
+ * smartdoc.category.reload-check-seconds=10   # 检查文件修改的间隔
+ * smartdoc.category.min-score=1.0             # 给出类别所需的最低得分
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.utils.AhoCorasick
+ * @see OcrService
+ */
+@Service
+public class CategoryDictionary {
+
+    /** classpath 下的默认词典 */
+    private static final String DEFAULT_DICTIONARY = "category-dictionary.txt";
+
+    /** 外部词典文件路径 (为空则使用默认词典) */
+    @Value("${smartdoc.category.dictionary-path:}")
+    private String dictionaryPath;
+
+    /** 检查外部文件修改的间隔 (秒) */
+    @Value("${smartdoc.category.reload-check-seconds:10}")
+    private long reloadCheckSeconds;
+
+    /** 给出类别所需的最低得分 */
+    @Value("${smartdoc.category.min-score:1.0}")
+    private double minScore;
+
+    /** 当前词典快照 (整体替换，推断时无需加锁) */
+    private volatile Snapshot snapshot;
+
+    /** 下次检查外部文件的时间 (毫秒时间戳) */
+    private volatile long nextCheckMillis;
+
+    /** 统计: 推断次数 / 给出类别的次数 / 重新加载次数 / 加载失败次数 */
+    private final AtomicLong inferences = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadFailures = new AtomicLong();
+
+    /**
+     * 启动时加载词典 (外部文件不可用时退回默认词典)
+     */
+    @PostConstruct
+    public void init() {
+        if (hasExternalFile()) {
+            try {
+                snapshot = loadExternal();
+            } catch (Exception e) {
+                System.out.println("类别词典加载失败，使用内置词典: " + e.getMessage());
+            }
+        }
+        if (snapshot == null) {
+            try (InputStream in = new ClassPathResource(DEFAULT_DICTIONARY).getInputStream()) {
+                snapshot = parse(in, "classpath:" + DEFAULT_DICTIONARY, 0L);
+            } catch (IOException e) {
+                throw new IllegalStateException("内置类别词典加载失败", e);
+            }
+        }
+        nextCheckMillis = System.currentTimeMillis() + reloadCheckSeconds * 1000;
+        System.out.println("类别词典已加载: " + snapshot.source + ", 关键词 " + snapshot.keywordCategory.length + " 个");
+    }
+
+    /**
+     * 根据多段文字推断类别
+     *
+     * <p>各段文字分别扫描 (不拼接，避免跨段拼出不存在的关键词)，得分合并计算。</p>
+     *
+     * @param texts 文字列表，如 OCR 识别出的各行、商户名和商品名 (null 忽略)
+     * @return 得分最高的类别；没有命中或得分不足返回 null
+     */
+    public String infer(List<String> texts) {
+        reloadIfModified();
+        Snapshot s = snapshot;
+        inferences.incrementAndGet();
+
+        boolean[] seen = new boolean[s.keywordCategory.length];
+        double[] scores = new double[s.categories.length];
+        for (String text : texts) {
+            if (text == null || text.isEmpty()) continue;
+            s.automaton.forEachMatch(text, k -> {
+                if (!seen[k]) {
+                    seen[k] = true;
+                    scores[s.keywordCategory[k]] += s.keywordWeight[k];
+                }
+            });
+        }
+
+        // 取最高分 (同分时取词典中先出现的类别)
+        int best = -1;
+        for (int c = 0; c < scores.length; c++) {
+            if (best < 0 || scores[c] > scores[best]) best = c;
+        }
+        if (best < 0 || scores[best] < minScore) return null;
+        matched.incrementAndGet();
+        return s.categories[best];
+    }
+
+    /**
+     * 根据若干段文字推断类别
+     *
+     * @see #infer(List)
+     */
+    public String infer(String... texts) {
+        return infer(Arrays.asList(texts));
+    }
+
+    /**
+     * 词典运行指标
+     *
+     * @return 词典来源、关键词数、推断命中率、重新加载次数等
+     */
+    public Map<String, Object> getStats() {
+        Snapshot s = snapshot;
+        long total = inferences.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("source", s.source);
+        stats.put("loadedAt", s.loadedAt.toString());
+        stats.put("keywords", s.keywordCategory.length);
+        stats.put("categories", List.of(s.categories));
+        stats.put("inferences", total);
+        stats.put("matched", matched.get());
+        stats.put("matchRate", total == 0 ? 0.0 : Math.round(matched.get() * 10000.0 / total) / 10000.0);
+        stats.put("reloads", reloads.get());
+        stats.put("reloadFailures", reloadFailures.get());
+        return stats;
+    }
+
+    /**
+     * 外部词典文件有修改时重新加载
+     *
+     * <p>检查间隔内直接返回，只有一个线程执行检查和重建，其余线程继续使用旧快照。</p>
+     */
+    private void reloadIfModified() {
+        long now = System.currentTimeMillis();
+        if (!hasExternalFile() || now < nextCheckMillis) return;
+        synchronized (this) {
+            if (now < nextCheckMillis) return;
+            nextCheckMillis = now + reloadCheckSeconds * 1000;
+            try {
+                long modified = Files.getLastModifiedTime(Paths.get(dictionaryPath)).toMillis();
+                if (modified == snapshot.fileModified) return;
+                snapshot = loadExternal();
+                reloads.incrementAndGet();
+                System.out.println("类别词典已重新加载: " + snapshot.source + ", 关键词 " + snapshot.keywordCategory.length + " 个");
+            } catch (Exception e) {
+                reloadFailures.incrementAndGet();
+                System.out.println("类别词典重新加载失败，继续使用旧词典: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 是否配置了外部词典文件
+     */
+    private boolean hasExternalFile() {
+        return dictionaryPath != null && !dictionaryPath.isBlank();
+    }
+
+    /**
+     * 加载外部词典文件
+     */
+    private Snapshot loadExternal() throws IOException {
+        Path path = Paths.get(dictionaryPath);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        try (InputStream in = Files.newInputStream(path)) {
+            return parse(in, path.toAbsolutePath().toString(), modified);
+        }
+    }
+
+    /**
+     * 解析词典并构建自动机
+     *
+     * @param in       词典内容
+     * @param source   来源描述 (用于日志和指标)
+     * @param modified 文件修改时间 (classpath 词典为 0)
+     * @return 新快照
+     * @throws IOException 读取失败或词典中没有任何有效关键词
+     */
+    private Snapshot parse(InputStream in, String source, long modified) throws IOException {
+        Map<String, Integer> categoryIndex = new LinkedHashMap<>();
+        Map<String, Integer> keywordIndex = new HashMap<>();
+        List<String> keywords = new ArrayList<>();
+        List<Integer> keywordCategory = new ArrayList<>();
+        List<Double> keywordWeight = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\|");
+            if (parts.length < 2 || parts.length > 3 || parts[0].isBlank() || parts[1].isBlank()) {
+                System.out.println("类别词典第 " + lineNo + " 行格式错误，已忽略: " + line);
+                continue;
+            }
+            String category = parts[0].trim();
+            String keyword = parts[1].trim();
+            double weight = 1.0;
+            if (parts.length == 3) {
+                try {
+                    weight = Double.parseDouble(parts[2].trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("类别词典第 " + lineNo + " 行权重无效，已忽略: " + line);
+                    continue;
+                }
+            }
+            if (keywordIndex.containsKey(keyword)) {
+                System.out.println("类别词典第 " + lineNo + " 行关键词重复，已忽略: " + line);
+                continue;
+            }
+
+            keywordIndex.put(keyword, keywords.size());
+            keywords.add(keyword);
+            keywordCategory.add(categoryIndex.computeIfAbsent(category, c -> categoryIndex.size()));
+            keywordWeight.add(weight);
+        }
+        if (keywords.isEmpty()) {
+            throw new IOException("词典中没有有效的关键词: " + source);
+        }
+
+        Snapshot s = new Snapshot();
+        s.automaton = new AhoCorasick(keywords);
+        s.categories = categoryIndex.keySet().toArray(new String[0]);
+        s.keywordCategory = keywordCategory.stream().mapToInt(Integer::intValue).toArray();
+        s.keywordWeight = keywordWeight.stream().mapToDouble(Double::doubleValue).toArray();
+        s.source = source;
+        s.fileModified = modified;
+        s.loadedAt = LocalDateTime.now();
+        return s;
+    }
+
+    /**
+     * 词典快照 (构建后不再修改)
+     */
+    private static class Snapshot {
+        /** 全部关键词构建的自动机，关键词编号即下列数组下标 */
+        AhoCorasick automaton;
+        /** 类别名 (按词典中首次出现的顺序) */
+        String[] categories;
+        /** 关键词所属类别的下标 */
+        int[] keywordCategory;
+        /** 关键词权重 */
+        double[] keywordWeight;
+        /** 来源 (文件路径或 classpath) */
+        String source;
+        /** 文件修改时间 */
+        long fileModified;
+        /** 加载时间 */
+        LocalDateTime loadedAt;
+    }
+}
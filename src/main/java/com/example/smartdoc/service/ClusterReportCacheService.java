@@ -0,0 +1,367 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.ClusterReportCache;
+import com.example.smartdoc.repository.ClusterReportCacheRepository;
+import com.example.smartdoc.utils.KMeansUtil;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * AI 聚类报告缓存服务 - 聚类中心没怎么变时不重复调用 DeepSeek
+ *
+ * <p>AI 聚类解读每次都要调用一次 DeepSeek (最长 60 秒)，而同一用户的聚类中心在两次查看之间通常只有微小变化。
+ * 本服务把中心量化后与数据范围 (用户) 一起计算签名，以签名为键缓存生成的 Markdown 报告，采用两级结构:</p>
+ * <ul>
+ *   <li>内存 LRU: LinkedHashMap (访问顺序)</li>
+ *   <li>数据库: cluster_report_cache 表，重启后仍然有效</li>
+ * </ul>
+ * <p>内存命中的访问时间和命中次数每分钟 (以及淘汰前) 批量写回数据库，数据库按真实的访问顺序做 LRU 淘汰。
+ * 这部分由 {@link LruTouchCache} 实现，与 OCR 结果缓存共用。</p>
+ *
+ * <h3>签名 (量化规则):</h3>
+ * <ul>
+ *   <li>日期按 day-tolerance 天分桶: round(几号 / day-tolerance)</li>
+ *   <li>金额按相对容差分桶: round(ln(1+金额) / ln(1+amount-tolerance))，容差 0.1 即相差约 10% 以内落在同一桶</li>
+ *   <li>各中心的桶号排序后拼接，与中心的先后顺序无关；再拼入 Prompt 模板，修改 Prompt 后旧报告自动失效</li>
+ *   <li>签名包含数据范围 (用户 ID，全公司为 "*")，报告中引用了生成时的金额和群体描述，不同用户之间不共用</li>
+ * </ul>
+ *
+ * <h3>过期与后台刷新 (stale-while-revalidate):</h3>
+ * <ul>
+ *   <li>报告生成超过 refresh-hours 小时后视为过期，仍立即返回过期报告，同时在后台重新生成</li>
+ *   <li>同一签名同时只有一个后台刷新；刷新失败时保留旧报告，下次访问再试</li>
+ *   <li>AI 返回的错误提示 (见 {@link DeepSeekService#isError}) 一律不缓存</li>
+ * </ul>
+ *
+ * <h3>配置项 (均有默认值):</h3>
+ * <pre>
+ * smartdoc.cluster.report.day-tolerance=2        # 日期容差 (天)
+ * smartdoc.cluster.report.amount-tolerance=0.1   # 金额相对容差
+ * smartdoc.cluster.report.refresh-hours=24       # 报告过期时间 (小时，0 表示永不过期)
+ * smartdoc.cluster.report.memory-entries=500     # 内存 LRU 容量
+ * smartdoc.cluster.report.max-entries=5000       # 数据库缓存记录上限
+ * </pre>
+ *
+ * <p>同一签名同时有多个请求未命中时会各自调用一次 AI。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.StatsController
+ * @see ClusterReportCache
+ * @see LruTouchCache
+ */
+@Service
+public class ClusterReportCacheService {
+
+    /** 后台刷新队列容量 (队列满时本次不刷新，下次访问再试) */
+    private static final int REFRESH_QUEUE_CAPACITY = 100;
+
+    /** 内存命中的访问记录写回间隔 (秒) */
+    private static final long TOUCH_FLUSH_SECONDS = 60;
+
+    /** 日期容差 (天) */
+    @Value("${smartdoc.cluster.report.day-tolerance:2}")
+    private double dayTolerance;
+
+    /** 金额相对容差 */
+    @Value("${smartdoc.cluster.report.amount-tolerance:0.1}")
+    private double amountTolerance;
+
+    /** 报告过期时间 (小时) */
+    @Value("${smartdoc.cluster.report.refresh-hours:24}")
+    private long refreshHours;
+
+    /** 内存 LRU 容量 */
+    @Value("${smartdoc.cluster.report.memory-entries:500}")
+    private int memoryEntries;
+
+    /** 数据库缓存记录上限 */
+    @Value("${smartdoc.cluster.report.max-entries:5000}")
+    private int maxEntries;
+
+    /** 缓存数据仓库 */
+    @Autowired
+    private ClusterReportCacheRepository cacheRepository;
+
+    /** JDBC 模板 - 批量写回访问记录 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 后台刷新线程 (单线程，避免并发调用 AI) */
+    private ThreadPoolExecutor refreshExecutor;
+
+    /** 正在后台刷新的签名 */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /** 内存 LRU: 签名 → 报告 */
+    private LruTouchCache<Entry> memoryCache;
+
+    // ==================== 统计指标 ====================
+
+    /** 数据库命中次数 */
+    private final AtomicLong dbHits = new AtomicLong();
+
+    /** 未命中次数 (同步调用 AI) */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** 命中过期报告的次数 */
+    private final AtomicLong staleHits = new AtomicLong();
+
+    /** 后台刷新成功次数 */
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /** AI 返回错误的次数 (不缓存) */
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * 内存缓存条目
+     */
+    private static class Entry {
+        final String report;
+        final LocalDateTime generateTime;
+
+        Entry(String report, LocalDateTime generateTime) {
+            this.report = report;
+            this.generateTime = generateTime;
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static class Report {
+        private final String markdown;
+        private final boolean cached;
+        private final boolean stale;
+
+        Report(String markdown, boolean cached, boolean stale) {
+            this.markdown = markdown;
+            this.cached = cached;
+            this.stale = stale;
+        }
+
+        /** @return 报告 (Markdown)，AI 出错时为错误提示 */
+        public String getMarkdown() {
+            return markdown;
+        }
+
+        /** @return 是否来自缓存 */
+        public boolean isCached() {
+            return cached;
+        }
+
+        /** @return 是否为过期报告 (已在后台重新生成) */
+        public boolean isStale() {
+            return stale;
+        }
+    }
+
+    /**
+     * 校验容差配置，创建内存 LRU 和后台刷新、访问记录写回线程
+     */
+    @PostConstruct
+    public void init() {
+        if (dayTolerance <= 0 || amountTolerance <= 0) {
+            throw new IllegalArgumentException("smartdoc.cluster.report.day-tolerance 和 amount-tolerance 必须大于 0");
+        }
+        refreshExecutor = new ThreadPoolExecutor(
+                1, 1,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "cluster-report-refresh");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        refreshExecutor.allowCoreThreadTimeOut(true);
+
+        memoryCache = new LruTouchCache<>("cluster-report", "cluster_report_cache", "signature",
+                memoryEntries, jdbcTemplate);
+        memoryCache.start(TOUCH_FLUSH_SECONDS);
+    }
+
+    /**
+     * 应用关闭时停止后台线程，写回剩余的访问记录
+     */
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        memoryCache.shutdown();
+    }
+
+    /**
+     * 读取聚类报告，未命中时调用 AI 生成并缓存
+     *
+     * @param scope     数据范围 (用户 ID，全公司为 "*")
+     * @param centroids 聚类中心 (x 为几号，y 为金额)
+     * @param prompt    Prompt 模板 (参与签名，不含具体数据)
+     * @param data      发给 AI 的中心描述 (随报告保存，便于排查)
+     * @param generator 调用 AI 生成报告 (后台刷新时在刷新线程中执行)
+     * @return 报告及是否来自缓存、是否过期
+     */
+    public Report get(String scope, List<KMeansUtil.Point> centroids, String prompt, String data,
+                      Supplier<String> generator) {
+        String signature = signature(scope, centroids, prompt);
+
+        // 1. 查缓存
+        Entry entry = lookup(signature);
+        if (entry != null) {
+            boolean stale = refreshHours > 0
+                    && entry.generateTime.plusHours(refreshHours).isBefore(LocalDateTime.now());
+            if (stale) {
+                staleHits.incrementAndGet();
+                scheduleRefresh(signature, scope, data, generator);
+            }
+            return new Report(entry.report, true, stale);
+        }
+
+        // 2. 未命中: 同步调用 AI
+        misses.incrementAndGet();
+        String report = generator.get();
+        if (DeepSeekService.isError(report)) {
+            errors.incrementAndGet();
+        } else {
+            put(signature, scope, data, report);
+        }
+        return new Report(report, false, false);
+    }
+
+    /**
+     * 计算量化中心签名
+     *
+     * @param scope     数据范围 (用户 ID，全公司为 "*")
+     * @param centroids 聚类中心 (x 为几号，y 为金额)
+     * @param prompt    Prompt 模板
+     * @return SHA-256 (64 位十六进制)
+     */
+    public String signature(String scope, List<KMeansUtil.Point> centroids, String prompt) {
+        List<String> buckets = new ArrayList<>(centroids.size());
+        for (KMeansUtil.Point p : centroids) {
+            long day = Math.round(p.getX() / dayTolerance);
+            long amount = Math.round(Math.log1p(Math.max(0, p.getY())) / Math.log1p(amountTolerance));
+            buckets.add(day + ":" + amount);
+        }
+        buckets.sort(null);
+        return DigestUtil.sha256Hex(scope + "\n" + String.join(";", buckets) + "\n" + prompt);
+    }
+
+    /**
+     * 按签名查内存和数据库，未命中返回 null
+     */
+    private Entry lookup(String signature) {
+        Entry entry = memoryCache.get(signature);
+        if (entry != null) {
+            return entry;
+        }
+
+        try {
+            ClusterReportCache record = cacheRepository.findById(signature).orElse(null);
+            if (record != null) {
+                dbHits.incrementAndGet();
+                record.setHitCount(record.getHitCount() + 1);
+                record.setLastAccessTime(LocalDateTime.now());
+                cacheRepository.save(record);
+                entry = new Entry(record.getReport(), record.getGenerateTime());
+                memoryCache.put(signature, entry);
+                return entry;
+            }
+        } catch (Exception e) {
+            // 缓存故障不影响报告生成
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * 写入缓存 (已有记录时更新报告和生成时间)
+     */
+    private void put(String signature, String scope, String data, String report) {
+        LocalDateTime now = LocalDateTime.now();
+        memoryCache.put(signature, new Entry(report, now));
+
+        try {
+            ClusterReportCache record = cacheRepository.findById(signature).orElseGet(ClusterReportCache::new);
+            record.setSignature(signature);
+            record.setScope(scope);
+            record.setCentroids(data);
+            record.setReport(report);
+            record.setGenerateTime(now);
+            record.setLastAccessTime(now);
+            cacheRepository.save(record);
+            memoryCache.evictIfNecessary(cacheRepository, maxEntries, cacheRepository::findSignaturesOrderByLastAccess);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 在后台重新生成过期报告 (同一签名只提交一次，失败时保留旧报告)
+     */
+    private void scheduleRefresh(String signature, String scope, String data, Supplier<String> generator) {
+        if (!refreshing.add(signature)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    String report = generator.get();
+                    if (DeepSeekService.isError(report)) {
+                        errors.incrementAndGet();
+                    } else {
+                        put(signature, scope, data, report);
+                        refreshes.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    refreshing.remove(signature);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满，下次访问再刷新
+            refreshing.remove(signature);
+        }
+    }
+
+    /**
+     * 获取缓存统计指标
+     *
+     * @return 命中/未命中/过期次数、命中率、后台刷新次数、AI 错误次数等
+     */
+    public Map<String, Object> getStats() {
+        long hits = memoryCache.getMemoryHits() + dbHits.get();
+        long total = hits + misses.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        memoryCache.putStats(stats);
+        stats.put("dbHits", dbHits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        stats.put("staleHits", staleHits.get());
+        stats.put("refreshes", refreshes.get());
+        stats.put("refreshing", refreshing.size());
+        stats.put("errors", errors.get());
+        return stats;
+    }
+}
@@ -39,6 +39,12 @@ public class DeepSeekService {
     @Value("${deepseek.api.url}")
     private String apiUrl;
 
+    /** 接口返回 error 时的回复前缀 */
+    public static final String ERROR_PREFIX = "AI 服务响应错误: ";
+
+    /** 调用异常 (超时、网络故障等) 时的回复 */
+    public static final String UNAVAILABLE = "分析服务暂时不可用";
+
     /**
      * 调用 DeepSeek AI 接口
      * 
@@ -74,7 +80,7 @@ public class DeepSeekService {
             // 解析响应
             JSONObject jsonResponse = new JSONObject(response);
             if (jsonResponse.has("error")) {
-                return "AI 服务响应错误: " + jsonResponse.getJSONObject("error").getString("message");
+                return ERROR_PREFIX + jsonResponse.getJSONObject("error").getString("message");
             }
 
             // 提取 AI 回复内容
@@ -85,7 +91,19 @@ public class DeepSeekService {
 
         } catch (Exception e) {
             e.printStackTrace();
-            return "分析服务暂时不可用";
+            return UNAVAILABLE;
         }
     }
+
+    /**
+     * 判断 callAi 的回复是否为错误提示 (而不是 AI 生成的内容)
+     * <p>callAi 出错时不抛异常而是返回提示文字，需要缓存或保存回复的调用方用它过滤。</p>
+     *
+     * @param reply callAi 的返回值
+     * @return 为空、接口错误或服务不可用时返回 true
+     */
+    public static boolean isError(String reply) {
+        return reply == null || reply.isBlank()
+                || reply.startsWith(ERROR_PREFIX) || reply.equals(UNAVAILABLE);
+    }
 }
@@ -0,0 +1,460 @@
+package com.example.smartdoc.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * OCR 图片预处理服务 - 上传百度 OCR 前自适应缩放和压缩
+ *
+ * <p>手机拍照动辄 4000x3000 像素、几 MB 大小，而 OCR 识别发票并不需要这么高的分辨率。
+ * 图片以 base64 形式上传，体积直接决定了上传耗时。本服务根据图片尺寸和百度接口限制
+ * 选择目标分辨率和 JPEG 质量，在保证识别效果的前提下尽量减小请求体。</p>
+ *
+ * <h3>百度 OCR 接口限制:</h3>
+ * <pre>
+ * - base64 编码并 urlencode 后不超过 4MB (原始字节约 3MB 以内)
+ * - 最短边至少 15px，最长边不超过 4096px
+ * </pre>
+ *
+ * <h3>处理策略:</h3>
+ * <pre>
+ * 1. 已是 JPEG 且尺寸、体积都在目标范围内 → 原样上传 (避免二次压缩损失)
+ * 2. 最长边超过 max-side → 等比缩小 (大倍数缩小时逐级减半，保证文字边缘清晰)
+ * 3. 从较高质量开始编码 JPEG，超过目标体积则逐级降低质量
+ * 4. 最低质量仍超过接口上限 → 继续缩小尺寸
+ * </pre>
+ *
+ * <h3>配置项 (均有默认值):</h3>
+ * <pre>
+ * smartdoc.ocr.preprocess.enabled=true
+ * smartdoc.ocr.preprocess.max-side=2000          # 目标最长边 (px)
+ * smartdoc.ocr.preprocess.target-kb=600          # 目标体积
+ * smartdoc.ocr.preprocess.shadow-sample-rate=0   # 抽样用原图再识别一次的比例 (0~1)，用于对比准确率和耗时
+ * </pre>
+ *
+ * <p>影子对比的 "原图" 只在超出接口限制时才缩小 ({@link #prepareShadow(byte[])})，
+ * 保证对比请求本身能被接口接受，同时尽量保留原始分辨率。</p>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ */
+@Service
+public class ImagePreprocessService {
+
+    /** 百度接口允许的最长边 */
+    private static final int ENGINE_MAX_SIDE = 4096;
+
+    /** 百度接口允许的最短边 */
+    private static final int ENGINE_MIN_SIDE = 15;
+
+    /** 原始字节上限: 4MB 经 base64 (×4/3) 和 urlencode 膨胀后仍不超限 */
+    private static final int ENGINE_MAX_BYTES = 2800 * 1024;
+
+    /** JPEG 质量阶梯 (从高到低尝试) */
+    private static final float[] QUALITY_LADDER = {0.85f, 0.75f, 0.65f, 0.55f};
+
+    /** 影子对比图的质量阶梯: 尽量接近原图，只为满足接口上限才降低 */
+    private static final float[] SHADOW_QUALITY_LADDER = {0.95f, 0.9f, 0.85f, 0.75f};
+
+    /** 是否启用预处理 */
+    @Value("${smartdoc.ocr.preprocess.enabled:true}")
+    private boolean enabled;
+
+    /** 目标最长边 */
+    @Value("${smartdoc.ocr.preprocess.max-side:2000}")
+    private int maxSide;
+
+    /** 目标体积 (KB) */
+    @Value("${smartdoc.ocr.preprocess.target-kb:600}")
+    private int targetKb;
+
+    /** 影子对比抽样比例 */
+    @Value("${smartdoc.ocr.preprocess.shadow-sample-rate:0}")
+    private double shadowSampleRate;
+
+    // ==================== 统计指标 ====================
+
+    /** 处理的图片数 */
+    private final AtomicLong images = new AtomicLong();
+
+    /** 重新编码的图片数 */
+    private final AtomicLong recompressed = new AtomicLong();
+
+    /** 原始总字节数 */
+    private final AtomicLong originalBytes = new AtomicLong();
+
+    /** 实际上传总字节数 */
+    private final AtomicLong sentBytes = new AtomicLong();
+
+    /** PDF 渲染页数 */
+    private final AtomicLong renderedPages = new AtomicLong();
+
+    /** PDF 渲染页上传总字节数 */
+    private final AtomicLong renderedBytes = new AtomicLong();
+
+    /** 影子对比样本数 */
+    private final AtomicLong shadowSamples = new AtomicLong();
+
+    /** 影子对比中关键字段一致的样本数 */
+    private final AtomicLong shadowAgreements = new AtomicLong();
+
+    /** 影子对比中压缩图的识别总耗时 (ms) */
+    private final AtomicLong shadowCompressedMs = new AtomicLong();
+
+    /** 影子对比中原图的识别总耗时 (ms) */
+    private final AtomicLong shadowOriginalMs = new AtomicLong();
+
+    /** 超出接口限制、缩小后才用于影子对比的原图数 */
+    private final AtomicLong shadowDownscaled = new AtomicLong();
+
+    /**
+     * 预处理上传的图片文件
+     *
+     * @param content 原始图片字节
+     * @return 适合上传 OCR 的 JPEG 字节；无法解码或无需处理时返回原始字节
+     */
+    public byte[] prepare(byte[] content) {
+        images.incrementAndGet();
+        originalBytes.addAndGet(content.length);
+        if (!enabled) {
+            sentBytes.addAndGet(content.length);
+            return content;
+        }
+
+        byte[] result = content;
+        try {
+            if (!isAcceptableAsIs(content)) {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(content));
+                if (image != null) {
+                    byte[] encoded = compress(image, Math.min(maxSide, ENGINE_MAX_SIDE), targetKb * 1024L, QUALITY_LADDER);
+                    // 重新编码反而更大时 (如本来就压得很小的 PNG) 保留原图
+                    if (encoded.length < content.length || content.length > ENGINE_MAX_BYTES) {
+                        result = encoded;
+                        recompressed.incrementAndGet();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 预处理失败不影响识别，原样上传
+            e.printStackTrace();
+        }
+
+        sentBytes.addAndGet(result.length);
+        return result;
+    }
+
+    /**
+     * 编码 PDF 渲染出的页面位图
+     * <p>渲染页面没有可比较的 "原始图片"，单独统计页数和上传字节数，不计入节省字节。</p>
+     *
+     * @param image 渲染后的位图
+     * @return JPEG 字节
+     * @throws IOException 编码失败
+     */
+    public byte[] encodeRendered(BufferedImage image) throws IOException {
+        byte[] result = enabled
+                ? compress(image, Math.min(maxSide, ENGINE_MAX_SIDE), targetKb * 1024L, QUALITY_LADDER)
+                : writeJpeg(image, 0.75f);
+        renderedPages.incrementAndGet();
+        renderedBytes.addAndGet(result.length);
+        return result;
+    }
+
+    /**
+     * 准备影子对比用的 "原图"
+     * <p>原图在接口限制之内时原样返回；超出最长边或体积上限时，只缩小到刚好满足限制
+     * (最长边 4096px、约 2.8MB)，而不是按 max-side / target-kb 压缩，保证对比的仍是高分辨率图片。</p>
+     *
+     * @param original 原始图片字节
+     * @return 满足接口限制的图片字节；超出限制且无法解码时返回 null (放弃本次对比)
+     */
+    public byte[] prepareShadow(byte[] original) {
+        try {
+            int[] size = readSize(original);
+            if (size == null) {
+                // 无法识别的格式: 体积不超限就交给 OCR 自行处理
+                return original.length <= ENGINE_MAX_BYTES ? original : null;
+            }
+            if (original.length <= ENGINE_MAX_BYTES && Math.max(size[0], size[1]) <= ENGINE_MAX_SIDE) {
+                return original;
+            }
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(original));
+            if (image == null) return null;
+            byte[] encoded = compress(image, ENGINE_MAX_SIDE, ENGINE_MAX_BYTES, SHADOW_QUALITY_LADDER);
+            shadowDownscaled.incrementAndGet();
+            return encoded;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 估算图片解码后的位图内存占用
+     * <p>只读取文件头获取尺寸，按每像素 4 字节计算；无法识别的格式返回 0。
+     * 供上传内存预算估算使用。</p>
+     *
+     * @param file 图片文件
+     * @return 位图字节数
+     */
+    public long estimateDecodedBytes(Path file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            return decodedBytes(in);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 估算图片解码后的位图内存占用
+     *
+     * @param content 图片字节
+     * @return 位图字节数
+     * @see #estimateDecodedBytes(Path)
+     */
+    public long estimateDecodedBytes(byte[] content) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            return decodedBytes(in);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 计算 PDF 渲染缩放倍数
+     * <p>让页面最长边渲染后接近 max-side，避免固定倍数渲染出超大位图后再缩小。</p>
+     *
+     * @param pageWidth    页面宽度 (pt)
+     * @param pageHeight   页面高度 (pt)
+     * @param defaultScale 默认缩放倍数 (上限)
+     * @return 缩放倍数
+     */
+    public float pdfRenderScale(float pageWidth, float pageHeight, float defaultScale) {
+        if (!enabled) return defaultScale;
+        float longest = Math.max(pageWidth, pageHeight);
+        if (longest <= 0) return defaultScale;
+        return Math.min(defaultScale, maxSide / longest);
+    }
+
+    /**
+     * 是否应抽样进行影子对比
+     */
+    public boolean shouldShadowSample() {
+        return enabled && shadowSampleRate > 0 && Math.random() < shadowSampleRate;
+    }
+
+    /**
+     * 记录一次影子对比结果
+     *
+     * @param compressedMs 压缩图识别耗时
+     * @param originalMs   原图识别耗时
+     * @param agree        金额、日期、发票号码是否一致
+     */
+    public void recordShadowSample(long compressedMs, long originalMs, boolean agree) {
+        shadowSamples.incrementAndGet();
+        if (agree) shadowAgreements.incrementAndGet();
+        shadowCompressedMs.addAndGet(compressedMs);
+        shadowOriginalMs.addAndGet(originalMs);
+    }
+
+    /**
+     * 获取预处理统计指标
+     *
+     * @return 节省字节数、压缩率、影子对比的一致率和平均耗时差等
+     */
+    public Map<String, Object> getStats() {
+        long original = originalBytes.get();
+        long sent = sentBytes.get();
+        long samples = shadowSamples.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("images", images.get());
+        stats.put("recompressed", recompressed.get());
+        stats.put("originalBytes", original);
+        stats.put("sentBytes", sent);
+        stats.put("bytesSaved", original - sent);
+        stats.put("ratio", original == 0 ? 1.0 : (double) sent / original);
+        stats.put("renderedPages", renderedPages.get());
+        stats.put("renderedBytes", renderedBytes.get());
+        stats.put("shadowSamples", samples);
+        stats.put("shadowDownscaled", shadowDownscaled.get());
+        if (samples > 0) {
+            stats.put("shadowAgreementRate", (double) shadowAgreements.get() / samples);
+            stats.put("shadowAvgCompressedMs", shadowCompressedMs.get() / samples);
+            stats.put("shadowAvgOriginalMs", shadowOriginalMs.get() / samples);
+            stats.put("shadowAvgLatencyDeltaMs", (shadowOriginalMs.get() - shadowCompressedMs.get()) / samples);
+        }
+        return stats;
+    }
+
+    /**
+     * 判断图片能否原样上传: JPEG 格式、尺寸和体积都在目标范围内
+     * <p>只读取文件头获取尺寸，不解码像素。</p>
+     */
+    private boolean isAcceptableAsIs(byte[] content) throws IOException {
+        if (content.length > targetKb * 1024L) return false;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return true;  // 无法识别的格式交给 OCR 自行处理
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                String format = reader.getFormatName().toLowerCase();
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                return (format.equals("jpeg") || format.equals("jpg")) && longest <= maxSide;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 从文件头读取宽高，不解码像素
+     *
+     * @return {宽, 高}；无法识别的格式返回 null
+     */
+    private int[] readSize(byte[] content) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 从文件头读取尺寸，计算 RGB 位图字节数
+     */
+    private long decodedBytes(ImageInputStream in) throws IOException {
+        if (in == null) return 0;
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) return 0;
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(in);
+            return (long) reader.getWidth(0) * reader.getHeight(0) * 4;
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * 缩放 + 按质量阶梯编码，直到满足目标体积或接口上限
+     *
+     * @param sideLimit 最长边上限 (px)
+     * @param target    目标体积 (字节)
+     * @param ladder    JPEG 质量阶梯 (从高到低)
+     */
+    private byte[] compress(BufferedImage image, int sideLimit, long target, float[] ladder) throws IOException {
+        BufferedImage scaled = scaleToFit(toRgb(image), sideLimit);
+
+        while (true) {
+            byte[] encoded = null;
+            for (float quality : ladder) {
+                encoded = writeJpeg(scaled, quality);
+                if (encoded.length <= target) return encoded;
+            }
+            // 最低质量仍超过目标: 未超接口上限则接受，否则继续缩小
+            int longest = Math.max(scaled.getWidth(), scaled.getHeight());
+            int shortest = Math.min(scaled.getWidth(), scaled.getHeight());
+            if (encoded.length <= ENGINE_MAX_BYTES || shortest * 0.8 < ENGINE_MIN_SIDE) {
+                return encoded;
+            }
+            scaled = scaleToFit(scaled, (int) (longest * 0.8));
+        }
+    }
+
+    /**
+     * 等比缩小到最长边不超过 limit
+     * <p>缩小超过一半时逐级减半，双线性插值一次缩小太多会丢失笔画细节。</p>
+     */
+    private BufferedImage scaleToFit(BufferedImage image, int limit) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (Math.max(w, h) <= limit) return image;
+
+        double ratio = (double) limit / Math.max(w, h);
+        int targetW = Math.max(1, (int) Math.round(w * ratio));
+        int targetH = Math.max(1, (int) Math.round(h * ratio));
+
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetW && current.getHeight() / 2 >= targetH) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != targetW || current.getHeight() != targetH) {
+            current = resize(current, targetW, targetH);
+        }
+        return current;
+    }
+
+    private BufferedImage resize(BufferedImage src, int w, int h) {
+        BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return dst;
+    }
+
+    /**
+     * 转为 RGB (JPEG 不支持透明通道，PNG 截图常带 alpha)
+     */
+    private BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.setColor(Color.WHITE);  // 透明区域填充白色
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    /**
+     * 以指定质量编码 JPEG
+     */
+    private byte[] writeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             ImageOutputStream out = ImageIO.createImageOutputStream(baos)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+            out.flush();
+            return baos.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+}
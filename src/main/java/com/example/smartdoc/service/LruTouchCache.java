@@ -0,0 +1,243 @@
+package com.example.smartdoc.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 两级缓存的公共部分 - 内存 LRU、访问记录写回、数据库 LRU 淘汰
+ *
+ * <p>OCR 结果缓存和聚类报告缓存都是 "内存 LRU + 数据库表" 的结构，数据库表有 last_access_time、hit_count 两列，
+ * 按最近访问时间淘汰。内存命中如果不写回数据库，最常用的条目在数据库里的访问时间反而最旧，会被最先淘汰；
+ * 每次命中都写库又失去了内存缓存的意义。本类把内存命中先记在内存中，定期 (以及淘汰前) 批量写回。</p>
+ *
+ * <h3>使用方式:</h3>
+ * <pre>
+ * cache = new LruTouchCache&lt;&gt;("ocr-cache", "ocr_result_cache", "content_hash", memoryEntries, jdbcTemplate);
+ * cache.start(touchFlushSeconds);           // @PostConstruct
+ * V value = cache.get(key);                 // 内存命中时记录访问
+ * cache.put(key, value);                    // 数据库命中或写入后放入内存
+ * cache.evictIfNecessary(repository, maxEntries, repository::findKeysOrderByLastAccess);
+ * cache.shutdown();                         // @PreDestroy，写回剩余的访问记录
+ * </pre>
+ *
+ * <p>数据库的读写 (命中时更新访问时间、写入新条目) 仍由各缓存服务自己完成，本类只负责内存部分和淘汰。
+ * 线程安全。</p>
+ *
+ * @param <V> 内存中缓存的值
+ * @author SmartDoc Team
+ * @see OcrResultCacheService
+ * @see ClusterReportCacheService
+ */
+class LruTouchCache<V> {
+
+    private static final Logger log = LoggerFactory.getLogger(LruTouchCache.class);
+
+    /** 名称 (写回线程名的前缀) */
+    private final String name;
+
+    /** 写回内存命中的访问记录 */
+    private final String touchSql;
+
+    /** JDBC 模板 - 批量写回访问记录 */
+    private final JdbcTemplate jdbcTemplate;
+
+    /** 内存 LRU: 键 → 值 (accessOrder=true 即按访问顺序排列) */
+    private final LinkedHashMap<String, V> memory;
+
+    /** 待写回的内存命中: 键 → 最近访问时间和命中次数 */
+    private final ConcurrentHashMap<String, Touch> pendingTouches = new ConcurrentHashMap<>();
+
+    /** 定期写回访问记录的线程 */
+    private ScheduledExecutorService touchFlusher;
+
+    /** 统计: 内存命中次数 / 数据库淘汰条目数 / 写回的访问记录条数 */
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong touchesFlushed = new AtomicLong();
+
+    /**
+     * 一个条目待写回的访问记录
+     */
+    private static class Touch {
+        final LocalDateTime lastAccess;
+        final long hits;
+
+        Touch(LocalDateTime lastAccess, long hits) {
+            this.lastAccess = lastAccess;
+            this.hits = hits;
+        }
+
+        Touch merge(Touch other) {
+            LocalDateTime later = lastAccess.isAfter(other.lastAccess) ? lastAccess : other.lastAccess;
+            return new Touch(later, hits + other.hits);
+        }
+    }
+
+    /**
+     * @param name          名称，写回线程名为 {name}-touch
+     * @param table         数据库表名
+     * @param keyColumn     主键列名
+     * @param memoryEntries 内存 LRU 容量
+     * @param jdbcTemplate  JDBC 模板
+     */
+    LruTouchCache(String name, String table, String keyColumn, int memoryEntries, JdbcTemplate jdbcTemplate) {
+        this.name = name;
+        this.touchSql = "UPDATE " + table + " " +
+                "SET last_access_time = GREATEST(COALESCE(last_access_time, ?), ?), hit_count = hit_count + ? " +
+                "WHERE " + keyColumn + " = ?";
+        this.jdbcTemplate = jdbcTemplate;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * 启动定期写回访问记录的线程
+     *
+     * @param flushSeconds 写回间隔 (秒)
+     */
+    void start(long flushSeconds) {
+        touchFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-touch");
+            t.setDaemon(true);
+            return t;
+        });
+        touchFlusher.scheduleWithFixedDelay(this::flushTouchesQuietly, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止写回线程，写回剩余的访问记录
+     */
+    void shutdown() {
+        if (touchFlusher != null) {
+            touchFlusher.shutdownNow();
+        }
+        flushTouchesQuietly();
+    }
+
+    /**
+     * 查内存，命中时记录一次访问 (稍后写回数据库)
+     *
+     * @return 缓存的值，未命中返回 null
+     */
+    V get(String key) {
+        V value;
+        synchronized (memory) {
+            value = memory.get(key);
+        }
+        if (value != null) {
+            memoryHits.incrementAndGet();
+            pendingTouches.merge(key, new Touch(LocalDateTime.now(), 1), Touch::merge);
+        }
+        return value;
+    }
+
+    /**
+     * 放入内存 (超出容量时移除最久未访问的条目)
+     */
+    void put(String key, V value) {
+        synchronized (memory) {
+            memory.put(key, value);
+        }
+    }
+
+    /**
+     * 从内存中移除
+     */
+    void remove(Collection<String> keys) {
+        synchronized (memory) {
+            keys.forEach(memory::remove);
+        }
+    }
+
+    /**
+     * 数据库记录数超过上限时，先写回访问记录，再删除最久未访问的条目
+     *
+     * @param repository 缓存表的数据仓库
+     * @param maxEntries 数据库记录上限
+     * @param eldest     按最近访问时间升序查询主键 (last_access_time 为空的排在最前)
+     */
+    void evictIfNecessary(JpaRepository<?, String> repository, long maxEntries,
+                          Function<Pageable, List<String>> eldest) {
+        long overflow = repository.count() - maxEntries;
+        if (overflow <= 0) return;
+
+        // 先写回内存命中的访问记录，按真实的访问时间淘汰
+        flushTouches();
+
+        List<String> keys = eldest.apply(PageRequest.of(0, (int) overflow));
+        repository.deleteAllByIdInBatch(keys);
+        evictions.addAndGet(keys.size());
+        remove(keys);
+    }
+
+    /**
+     * 把内存命中的访问时间和命中次数批量写回数据库
+     */
+    void flushTouches() {
+        List<Object[]> batch = new ArrayList<>();
+        for (String key : pendingTouches.keySet()) {
+            Touch touch = pendingTouches.remove(key);
+            if (touch != null) {
+                Timestamp time = Timestamp.valueOf(touch.lastAccess);
+                batch.add(new Object[]{time, time, touch.hits, key});
+            }
+        }
+        if (batch.isEmpty()) return;
+        jdbcTemplate.batchUpdate(touchSql, batch);
+        touchesFlushed.addAndGet(batch.size());
+    }
+
+    /**
+     * 定期写回 (缓存故障不影响主流程，本次未写回的记录丢弃)
+     */
+    private void flushTouchesQuietly() {
+        try {
+            flushTouches();
+        } catch (Exception e) {
+            log.warn("{} 访问记录写回失败", name, e);
+        }
+    }
+
+    /**
+     * @return 内存命中次数
+     */
+    long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * 把内存和淘汰相关的指标写入统计结果
+     * (memoryHits、memoryEntries、evictions、touchesFlushed、pendingTouches)
+     */
+    void putStats(Map<String, Object> stats) {
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("evictions", evictions.get());
+        stats.put("touchesFlushed", touchesFlushed.get());
+        stats.put("pendingTouches", pendingTouches.size());
+        synchronized (memory) {
+            stats.put("memoryEntries", memory.size());
+        }
+    }
+}
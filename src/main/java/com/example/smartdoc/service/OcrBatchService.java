@@ -0,0 +1,229 @@
+package com.example.smartdoc.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.smartdoc.controller.OcrProgressServer;
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.model.OcrBatchJob;
+
+import cn.hutool.json.JSONUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 批量识别服务 - 将多文件上传排入有界线程池异步识别
+ *
+ * <p>单文件上传接口会在 Tomcat 请求线程中同步等待 OCR 返回 (最长 60 秒)，
+ * 月底集中报销时大量上传会耗尽请求线程。本服务在请求线程内只将文件转存到磁盘并登记任务，
+ * 立即返回 jobId；实际识别由固定大小的后台线程池完成。排队中的文件不占用堆内存。</p>
+ *
+ * <h3>处理流程:</h3>
+ * <pre>
+ * POST /api/doc/upload-batch → 转存到磁盘 → 登记任务 → 返回 jobId
+ *                                                 ↓ (后台线程池)
+ *                      逐个调用 OcrService 识别 (完成后删除转存文件)
+ *                                                 ↓
+ *                       更新任务状态 + WebSocket 推送进度 (/ws/ocr-progress/{token})
+ * </pre>
+ *
+ * <h3>配置项 (均有默认值):</h3>
+ * <pre>
+ * smartdoc.ocr.batch.workers=4              # 识别线程数
+ * smartdoc.ocr.batch.queue-capacity=500     # 等待队列容量 (超出则拒绝)
+ * smartdoc.ocr.batch.job-ttl-minutes=60     # 已完成任务在内存中的保留时间
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ * @see com.example.smartdoc.controller.OcrProgressServer
+ */
+@Service
+public class OcrBatchService {
+
+    /** 识别线程数 */
+    @Value("${smartdoc.ocr.batch.workers:4}")
+    private int workers;
+
+    /** 等待队列容量 */
+    @Value("${smartdoc.ocr.batch.queue-capacity:500}")
+    private int queueCapacity;
+
+    /** 已完成任务的保留时间 (分钟) */
+    @Value("${smartdoc.ocr.batch.job-ttl-minutes:60}")
+    private long jobTtlMinutes;
+
+    /** OCR 识别服务 */
+    @Autowired
+    private OcrService ocrService;
+
+    /** 上传文件转存 */
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
+
+    /** 识别线程池 (有界队列，满时拒绝新任务) */
+    private ThreadPoolExecutor executor;
+
+    /** 内存中的任务表: jobId → 任务 */
+    private final Map<String, OcrBatchJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 初始化识别线程池
+     */
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                workers, workers,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "ocr-batch-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);  // 空闲时释放线程
+    }
+
+    /**
+     * 应用关闭时停止线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交批量识别任务
+     *
+     * <p>文件必须在请求线程内转存完毕: 请求结束后容器会删除上传的临时文件。
+     * 转存到磁盘而不是读入内存，排队等待的文件再多也不会占用堆内存。</p>
+     *
+     * @param userId 当前用户 ID
+     * @param files  上传的文件列表
+     * @return 新建的任务对象 (此时各文件状态为 PENDING)
+     * @throws IOException           转存上传文件失败
+     * @throws IllegalStateException 等待队列剩余容量不足
+     */
+    public OcrBatchJob submit(Long userId, MultipartFile[] files) throws IOException {
+        evictExpiredJobs();
+
+        // 1. 队列容量预检: 整批放不下时直接拒绝，避免只识别了一半
+        if (executor.getQueue().remainingCapacity() < files.length) {
+            throw new IllegalStateException("识别队列已满，请稍后重试");
+        }
+
+        // 2. 登记任务
+        OcrBatchJob job = new OcrBatchJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setUserId(userId);
+        job.setCreateTime(LocalDateTime.now());
+
+        Path[] paths = new Path[files.length];
+        try {
+            for (int i = 0; i < files.length; i++) {
+                OcrBatchJob.FileItem item = new OcrBatchJob.FileItem();
+                item.setIndex(i);
+                item.setFileName(files[i].getOriginalFilename());
+                job.getItems().add(item);
+                paths[i] = uploadSpoolService.spool(files[i]);
+            }
+        } catch (IOException e) {
+            for (Path path : paths) uploadSpoolService.delete(path);
+            throw e;
+        }
+        jobs.put(job.getJobId(), job);
+
+        // 3. 逐个文件排入线程池
+        for (int i = 0; i < files.length; i++) {
+            OcrBatchJob.FileItem item = job.getItems().get(i);
+            Path path = paths[i];
+            try {
+                executor.execute(() -> runItem(job, item, path));
+            } catch (RejectedExecutionException e) {
+                // 预检与提交之间被其他请求抢占了队列
+                uploadSpoolService.delete(path);
+                item.setError("识别队列已满");
+                item.setStatus("FAILED");
+                onItemUpdated(job, item);
+            }
+        }
+        return job;
+    }
+
+    /**
+     * 查询任务
+     *
+     * @param jobId 任务 ID
+     * @return 任务对象，不存在或已过期返回 null
+     */
+    public OcrBatchJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 在后台线程中识别单个文件
+     */
+    private void runItem(OcrBatchJob job, OcrBatchJob.FileItem item, Path path) {
+        item.setStatus("RUNNING");
+        onItemUpdated(job, item);
+        try {
+            List<InvoiceData> results = ocrService.processDocumentAll(item.getFileName(), path);
+            item.setResults(results);
+            item.setStatus("DONE");
+        } catch (Exception e) {
+            e.printStackTrace();
+            item.setError(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            item.setStatus("FAILED");
+        } finally {
+            uploadSpoolService.delete(path);
+        }
+        onItemUpdated(job, item);
+    }
+
+    /**
+     * 文件状态变化后: 更新任务完成时间并推送进度
+     */
+    private void onItemUpdated(OcrBatchJob job, OcrBatchJob.FileItem item) {
+        if (job.getFinishTime() == null && job.isCompleted()) {
+            job.setFinishTime(LocalDateTime.now());
+        }
+
+        Map<String, Object> msg = new HashMap<>();
+        msg.put("jobId", job.getJobId());
+        msg.put("index", item.getIndex());
+        msg.put("fileName", item.getFileName());
+        msg.put("status", item.getStatus());
+        msg.put("finished", job.getFinished());
+        msg.put("total", job.getTotal());
+        if (item.getResults() != null) msg.put("results", item.getResults());
+        if (item.getError() != null) msg.put("error", item.getError());
+
+        OcrProgressServer.pushToUser(job.getUserId(), JSONUtil.toJsonStr(msg));
+    }
+
+    /**
+     * 清理已完成且超过保留时间的任务，防止任务表无限增长
+     */
+    private void evictExpiredJobs() {
+        LocalDateTime deadline = LocalDateTime.now().minusMinutes(jobTtlMinutes);
+        jobs.values().removeIf(job -> job.getFinishTime() != null && job.getFinishTime().isBefore(deadline));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.smartdoc.service;
+
+import java.util.HashMap;
+
+import org.json.JSONObject;
+
+/**
+ * OCR 引擎接口 - 屏蔽具体的 OCR 服务提供方
+ *
+ * <p>方法签名与百度 AipOcr SDK 保持一致，返回原始 JSON 响应，
+ * 响应的解析 (票据类型分发、正则提取等) 统一由 {@link OcrResponseParser} 完成，
+ * {@link OcrService} 负责调用引擎以及限流和熔断。</p>
+ *
+ * <h3>可选实现 (smartdoc.ocr.engine):</h3>
+ * <ul>
+ *   <li>baidu (默认) - {@link BaiduOcrEngine}，调用百度云 OCR</li>
+ *   <li>replay - {@link ReplayOcrEngine}，回放本地录制的响应，用于压测和离线联调</li>
+ * </ul>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ * @see OcrResponseParser
+ */
+public interface OcrEngine {
+
+    /**
+     * 智能财务票据识别
+     *
+     * @param image   图片字节
+     * @param options 识别参数 (如 probability)
+     * @return 原始 JSON 响应，失败时包含 error_code / error_msg
+     */
+    JSONObject multipleInvoice(byte[] image, HashMap<String, Object> options);
+
+    /**
+     * 通用文字识别 (高精度版)
+     *
+     * @param image   图片字节
+     * @param options 识别参数 (如 detect_direction)
+     * @return 原始 JSON 响应，失败时包含 error_code / error_msg
+     */
+    JSONObject basicAccurateGeneral(byte[] image, HashMap<String, String> options);
+}
@@ -0,0 +1,366 @@
+package com.example.smartdoc.service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.utils.InvoiceTextExtractor;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OCR 响应解析器 - 把百度 OCR 返回的 JSON 转换为发票数据
+ *
+ * <p>从 OcrService 中拆出的纯解析逻辑: 不调用接口、不访问数据库，只依赖类别词典。
+ * 这样既能在 OcrService 中使用，也能直接喂入录制的响应做基准测试 (见 src/jmh 中的 OcrParseBenchmark)。</p>
+ *
+ * <h3>输入:</h3>
+ * <pre>
+ * multipleInvoice       words_result[] = {type, result{字段名: [{word, probability}]}}  → parseTickets
+ * basicAccurateGeneral  words_result[] = {words, probability{average, min, variance}}  → parseWordsToInvoice
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ * @see CategoryDictionary
+ */
+@Component
+public class OcrResponseParser {
+
+    /** 类别词典 - 按关键词推断消费类别 */
+    @Autowired
+    private CategoryDictionary categoryDictionary;
+
+    /**
+     * 解析智能财务票据识别的 words_result，跳过不含详细结构的项
+     *
+     * @param results multipleInvoice 响应中的 words_result 数组
+     * @return 解析后的票据列表 (已后处理)；没有可用的结构化结果时为空列表
+     */
+    public List<InvoiceData> parseTickets(JSONArray results) {
+        List<InvoiceData> tickets = new ArrayList<>();
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject ticket = results.getJSONObject(i);
+            if (!ticket.has("result")) {
+                System.out.println("⚠️ 票据类型 [" + ticket.optString("type", "unknown") + "] 不含详细结构，已跳过");
+                continue;
+            }
+            tickets.add(parseTicket(ticket));
+        }
+        return tickets;
+    }
+
+    /**
+     * 解析 words_result 中的单张票据
+     *
+     * @param ticket 含 type 和 result 的票据 JSON
+     * @return 解析后的发票数据 (已后处理)
+     */
+    public InvoiceData parseTicket(JSONObject ticket) {
+        String type = ticket.optString("type", "unknown");
+        JSONObject content = ticket.getJSONObject("result");
+        InvoiceData data = new InvoiceData();
+        data.setRawImageUrl("memory_image");
+
+        // 根据票据类型调用对应的解析方法
+        switch (type) {
+            case "vat_invoice":
+                parseVatInvoice(content, data);
+                break;
+            case "train_ticket":
+                parseTrainTicket(content, data);
+                break;
+            case "air_ticket":
+                parseAirTicket(content, data);
+                break;
+            case "taxi_receipt":
+                parseTaxiReceipt(content, data);
+                break;
+            case "quota_invoice":
+                parseQuotaInvoice(content, data);
+                break;
+            case "taxi_online_ticket":
+                parseTaxiOnline(content, data);
+                break;
+            default:
+                // 未知类型使用通用提取
+                data.setMerchantName("票据类型: " + type);
+                data.setAmount(getDouble(content, data, "amount", "Amount", "TotalAmount", "total_fare", "fare", "money"));
+                data.setDate(getValue(content, data, "date", "Date", "date", "Time"));
+        }
+
+        postProcess(data);
+        return data;
+    }
+
+    // ==================== 专用票据解析方法 ====================
+
+    /**
+     * 解析火车票
+     * <p>提取车次、出发站、到达站、票价、日期等信息。</p>
+     */
+    private void parseTrainTicket(JSONObject r, InvoiceData data) {
+        data.setCategory("交通出行");
+        String trainNum = getValue(r, "train_num");
+        String start = getValue(r, "starting_station");
+        String end = getValue(r, "destination_station");
+
+        String itemName = "火车票";
+        if (trainNum != null) itemName += " " + trainNum;
+        if (start != null && end != null) itemName += " (" + start + "-" + end + ")";
+        data.setItemName(itemName);
+
+        data.setMerchantName("铁路客运");
+        data.setAmount(getDouble(r, data, "amount", "ticket_rates"));
+        data.setDate(getValue(r, data, "date", "date"));
+        data.setInvoiceCode(getValue(r, data, "invoiceCode", "ticket_num"));
+    }
+
+    /**
+     * 解析机票行程单
+     * <p>提取航空公司、航班号、起降站、票价等信息。</p>
+     */
+    private void parseAirTicket(JSONObject r, InvoiceData data) {
+        data.setCategory("交通出行");
+        String carrier = getValue(r, "carrier");
+        String flight = getValue(r, "flight");
+        String start = getValue(r, "starting_station");
+        String end = getValue(r, "destination_station");
+
+        data.setMerchantName(carrier != null ? carrier : "航空公司");
+
+        String itemName = "机票";
+        if (flight != null) itemName += " " + flight;
+        if (start != null && end != null) itemName += " (" + start + "-" + end + ")";
+        data.setItemName(itemName);
+
+        data.setAmount(getDouble(r, data, "amount", "ticket_rates", "fare", "TotalAmount"));
+        data.setDate(getValue(r, data, "date", "date"));
+        data.setInvoiceCode(getValue(r, data, "invoiceCode", "ticket_number"));
+    }
+
+    /**
+     * 解析出租车票
+     * <p>提取车牌号、车费、日期等信息。</p>
+     */
+    private void parseTaxiReceipt(JSONObject r, InvoiceData data) {
+        data.setCategory("交通出行");
+        data.setItemName("出租车费");
+        data.setMerchantName("出租车 " + getValue(r, "TaxiNum"));
+        data.setAmount(getDouble(r, data, "amount", "TotalFare", "Fare"));
+        data.setDate(getValue(r, data, "date", "Date"));
+        data.setInvoiceCode(getValue(r, data, "invoiceCode", "InvoiceCode"));
+    }
+
+    /**
+     * 解析网约车发票
+     * <p>提取服务商、行程费用、日期等信息。</p>
+     */
+    private void parseTaxiOnline(JSONObject r, InvoiceData data) {
+        data.setCategory("交通出行");
+        String provider = getValue(r, "service_provider");
+        data.setMerchantName(provider != null ? provider : "网约车");
+        data.setItemName("网约车行程");
+        data.setAmount(getDouble(r, data, "amount", "total_fare"));
+        data.setDate(getValue(r, data, "date", "application_date"));
+    }
+
+    /**
+     * 解析增值税发票
+     * <p>提取销售方名称、金额、日期、发票号码等信息。</p>
+     */
+    private void parseVatInvoice(JSONObject r, InvoiceData data) {
+        data.setMerchantName(getValue(r, data, "merchantName", "SellerName"));
+        data.setAmount(getDouble(r, data, "amount", "TotalAmount", "AmountInFiguers"));
+        data.setDate(getValue(r, data, "date", "InvoiceDate"));
+        data.setInvoiceCode(getValue(r, data, "invoiceCode", "InvoiceNum"));
+        if (data.getInvoiceCode() == null) data.setInvoiceCode(getValue(r, data, "invoiceCode", "InvoiceCode"));
+        data.setTaxId(getValue(r, "SellerRegisterNum"));
+        String item = getValue(r, "CommodityName");
+        data.setItemName(item != null ? item : "办公用品/服务费");
+    }
+
+    /**
+     * 解析定额发票
+     * <p>定额发票通常用于餐饮消费，提取金额和发票号码。</p>
+     */
+    private void parseQuotaInvoice(JSONObject r, InvoiceData data) {
+        data.setCategory("餐饮美食");
+        data.setAmount(getDouble(r, data, "amount", "invoice_rate", "invoice_rate_in_figure"));
+        data.setInvoiceCode(getValue(r, data, "invoiceCode", "invoice_number"));
+        data.setMerchantName("定额发票");
+        data.setItemName("定额消费");
+    }
+
+    /**
+     * 通用文字识别结果解析
+     * <p>使用 {@link InvoiceTextExtractor} 从 OCR 文字结果中提取金额、日期、发票号码、税号等信息。
+     * 金额提取策略：找出所有金额格式的数字，取最大值（通常是总金额）。
+     * 日期提取策略：取第一个日期，统一为 yyyy-MM-dd。
+     * 类别识别：由 {@link CategoryDictionary} 按关键词词典加权打分。</p>
+     */
+    public void parseWordsToInvoice(JSONArray words, InvoiceData data) {
+        // 将所有识别文字合并为行列表，同时记录每行的置信度
+        List<String> lines = new ArrayList<>();
+        List<Double> lineConfidence = new ArrayList<>();
+        for (int i = 0; i < words.length(); i++) {
+            lines.add(words.getJSONObject(i).getString("words"));
+            lineConfidence.add(getProbability(words.getJSONObject(i)));
+        }
+        
+        // 一次遍历提取金额、日期、发票号码和税号
+        InvoiceTextExtractor.Result r = InvoiceTextExtractor.extract(lines);
+        if (r.getAmount() != null) {
+            data.setAmount(r.getAmount());
+            putConfidence(data, "amount", lineConfidence.get(r.getAmountLine()));
+        }
+        if (r.getDate() != null) {
+            data.setDate(r.getDate());
+            putConfidence(data, "date", lineConfidence.get(r.getDateLine()));
+        }
+        if (r.getInvoiceNumber() != null) {
+            data.setInvoiceCode(r.getInvoiceNumber());
+            putConfidence(data, "invoiceCode", lineConfidence.get(r.getInvoiceNumberLine()));
+        }
+        data.setTaxId(r.getSellerTaxId());
+
+        // 按词典推断类别 (逐行扫描)
+        String category = categoryDictionary.infer(lines);
+        if (category != null) data.setCategory(category);
+    }
+
+    // ==================== 工具方法 ====================
+
+    /**
+     * 从百度 OCR 返回的 JSON 结构中提取字段值
+     * <p>百度 OCR 的字段值是数组格式 [{word: "xxx"}]，此方法处理该结构。</p>
+     * 
+     * @param obj          OCR 结果 JSON 对象
+     * @param possibleKeys 可能的字段名（支持多个备选）
+     * @return 提取的字符串值，未找到返回 null
+     */
+    private String getValue(JSONObject obj, String... possibleKeys) {
+        for (String key : possibleKeys) {
+            if (obj.has(key)) {
+                JSONArray arr = obj.getJSONArray(key);
+                if (arr.length() > 0) {
+                    return arr.getJSONObject(0).optString("word", null);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 提取字段值并记录该字段的置信度
+     *
+     * @param obj          OCR 结果 JSON 对象
+     * @param data         置信度写入的发票对象
+     * @param field        发票字段名 (如 amount、date)
+     * @param possibleKeys 可能的字段名（支持多个备选）
+     * @return 提取的字符串值，未找到返回 null
+     */
+    private String getValue(JSONObject obj, InvoiceData data, String field, String... possibleKeys) {
+        for (String key : possibleKeys) {
+            if (obj.has(key)) {
+                JSONArray arr = obj.getJSONArray(key);
+                if (arr.length() > 0) {
+                    JSONObject word = arr.getJSONObject(0);
+                    putConfidence(data, field, getProbability(word));
+                    return word.optString("word", null);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析百度 OCR 返回的置信度
+     * <p>票据识别接口的 probability 可能是 {average, min, variance} 对象或直接是数值 (含字符串形式)，
+     * 统一取平均置信度。</p>
+     *
+     * @param word 单个字段或单行文字的 JSON 对象
+     * @return 0~1 之间的置信度，未返回时为 null
+     */
+    private Double getProbability(JSONObject word) {
+        Object p = word.opt("probability");
+        if (p instanceof JSONObject) {
+            double average = ((JSONObject) p).optDouble("average", Double.NaN);
+            return Double.isNaN(average) ? null : average;
+        }
+        if (p != null) {
+            try {
+                return Double.parseDouble(p.toString());
+            } catch (NumberFormatException e) {}
+        }
+        return null;
+    }
+
+    /**
+     * 记录字段置信度 (置信度为 null 时不记录)
+     */
+    private void putConfidence(InvoiceData data, String field, Double confidence) {
+        if (confidence != null) {
+            data.getFieldConfidence().put(field, confidence);
+        }
+    }
+
+    /**
+     * 从百度 OCR 返回的 JSON 结构中提取数值
+     * <p>自动清理非数字字符后解析为 Double。</p>
+     * 
+     * @param obj  OCR 结果 JSON 对象
+     * @param keys 可能的字段名
+     * @return 提取的数值，解析失败返回 0.0
+     */
+    private Double getDouble(JSONObject obj, String... keys) {
+        String val = getValue(obj, keys);
+        if (val != null) {
+            try {
+                String numStr = val.replaceAll("[^0-9.]", "");
+                return Double.parseDouble(numStr);
+            } catch (Exception e) {}
+        }
+        return 0.0;
+    }
+
+    /**
+     * 提取数值并记录该字段的置信度
+     *
+     * @param obj   OCR 结果 JSON 对象
+     * @param data  置信度写入的发票对象
+     * @param field 发票字段名
+     * @param keys  可能的字段名
+     * @return 提取的数值，解析失败返回 0.0
+     */
+    private Double getDouble(JSONObject obj, InvoiceData data, String field, String... keys) {
+        String val = getValue(obj, data, field, keys);
+        if (val != null) {
+            try {
+                String numStr = val.replaceAll("[^0-9.]", "");
+                return Double.parseDouble(numStr);
+            } catch (Exception e) {}
+        }
+        return 0.0;
+    }
+
+    /**
+     * 数据后处理 - 标准化日期格式和补全默认值
+     * <p>将各种日期格式统一转换为 yyyy-MM-dd 格式；
+     * 缺失类别时先按商户名和商品名查词典，仍无法判断才设为"其他"。</p>
+     * 
+     * @param data 待处理的发票数据
+     */
+    public void postProcess(InvoiceData data) {
+        // 标准化日期格式
+        String date = InvoiceTextExtractor.normalizeDate(data.getDate());
+        if (date != null) data.setDate(date);
+        // 缺失类别: 按商户名/商品名推断，默认为"其他"
+        if (data.getCategory() == null) {
+            String category = categoryDictionary.infer(data.getMerchantName(), data.getItemName());
+            data.setCategory(category != null ? category : "其他");
+        }
+    }
+}
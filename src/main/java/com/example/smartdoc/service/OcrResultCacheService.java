@@ -0,0 +1,183 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.model.OcrResultCache;
+import com.example.smartdoc.repository.OcrResultCacheRepository;
+
+import cn.hutool.json.JSONUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * OCR 识别结果缓存服务 - 相同文件不重复识别
+ *
+ * <p>以文件内容的 SHA-256 为键缓存识别结果，采用两级结构:</p>
+ * <ul>
+ *   <li>内存 LRU: LinkedHashMap (访问顺序)，命中耗时在毫秒以内</li>
+ *   <li>数据库: ocr_result_cache 表，重启后仍然有效</li>
+ * </ul>
+ *
+ * <h3>缓存规则:</h3>
+ * <ul>
+ *   <li>一个文件可能包含多张票据，缓存整个结果列表</li>
+ *   <li>只缓存识别出金额的结果，识别失败的结果不缓存，下次上传会重新识别</li>
+ *   <li>缓存中保存 JSON 文本，每次读取都反序列化出新对象，调用方修改结果不会污染缓存</li>
+ *   <li>数据库记录数超过上限时，按最近访问时间淘汰最久未用的条目</li>
+ *   <li>内存命中也记录访问时间和命中次数: 先记在内存中，定期 (以及淘汰前) 批量写回数据库，
+ *       否则最常用的条目一直在内存中命中，数据库里的访问时间反而最旧，会被最先淘汰</li>
+ * </ul>
+ * <p>内存 LRU、访问记录写回和淘汰由 {@link LruTouchCache} 实现，与聚类报告缓存共用。</p>
+ *
+ * <h3>配置项 (均有默认值):</h3>
+ * <pre>
+ * smartdoc.ocr.cache.memory-entries=1000        # 内存 LRU 容量
+ * smartdoc.ocr.cache.max-entries=20000          # 数据库缓存记录上限
+ * smartdoc.ocr.cache.touch-flush-seconds=30     # 内存命中的访问记录写回数据库的间隔
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ * @see OcrResultCache
+ * @see LruTouchCache
+ */
+@Service
+public class OcrResultCacheService {
+
+    /** 内存 LRU 容量 */
+    @Value("${smartdoc.ocr.cache.memory-entries:1000}")
+    private int memoryEntries;
+
+    /** 数据库缓存记录上限 */
+    @Value("${smartdoc.ocr.cache.max-entries:20000}")
+    private int maxEntries;
+
+    /** 访问记录写回间隔 (秒) */
+    @Value("${smartdoc.ocr.cache.touch-flush-seconds:30}")
+    private long touchFlushSeconds;
+
+    /** 缓存数据仓库 */
+    @Autowired
+    private OcrResultCacheRepository cacheRepository;
+
+    /** JDBC 模板 - 批量写回访问记录 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 内存 LRU: 哈希 → 识别结果 JSON */
+    private LruTouchCache<String> memoryCache;
+
+    // ==================== 统计指标 ====================
+
+    /** 数据库命中次数 */
+    private final AtomicLong dbHits = new AtomicLong();
+
+    /** 未命中次数 */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 创建内存 LRU，启动定期写回访问记录的线程
+     */
+    @PostConstruct
+    public void init() {
+        memoryCache = new LruTouchCache<>("ocr-cache", "ocr_result_cache", "content_hash", memoryEntries, jdbcTemplate);
+        memoryCache.start(touchFlushSeconds);
+    }
+
+    /**
+     * 应用关闭时写回剩余的访问记录
+     */
+    @PreDestroy
+    public void shutdown() {
+        memoryCache.shutdown();
+    }
+
+    /**
+     * 按内容哈希查询缓存
+     *
+     * @param contentHash 文件内容 SHA-256
+     * @return 缓存的识别结果 (新对象，每张票据一个)，未命中返回 null
+     */
+    public List<InvoiceData> get(String contentHash) {
+        // 1. 查内存
+        String json = memoryCache.get(contentHash);
+        if (json != null) {
+            return JSONUtil.toList(json, InvoiceData.class);
+        }
+
+        // 2. 查数据库
+        try {
+            OcrResultCache entry = cacheRepository.findById(contentHash).orElse(null);
+            if (entry != null) {
+                dbHits.incrementAndGet();
+                entry.setHitCount(entry.getHitCount() + 1);
+                entry.setLastAccessTime(LocalDateTime.now());
+                cacheRepository.save(entry);
+                memoryCache.put(contentHash, entry.getResultJson());
+                return JSONUtil.toList(entry.getResultJson(), InvoiceData.class);
+            }
+        } catch (Exception e) {
+            // 缓存故障不影响识别主流程
+            e.printStackTrace();
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存
+     * <p>没有任何票据识别出金额时不缓存。</p>
+     *
+     * @param contentHash 文件内容 SHA-256
+     * @param results     识别结果 (每张票据一个)
+     */
+    public void put(String contentHash, List<InvoiceData> results) {
+        boolean recognized = results != null && results.stream()
+                .anyMatch(d -> d != null && d.getAmount() != null && d.getAmount() > 0);
+        if (!recognized) {
+            return;
+        }
+        String json = JSONUtil.toJsonStr(results);
+        memoryCache.put(contentHash, json);
+
+        try {
+            // 已有记录 (并发上传同一文件、之前查询失败) 时保留命中次数和创建时间
+            OcrResultCache entry = cacheRepository.findById(contentHash).orElseGet(OcrResultCache::new);
+            entry.setContentHash(contentHash);
+            entry.setResultJson(json);
+            entry.setLastAccessTime(LocalDateTime.now());
+            cacheRepository.save(entry);
+            memoryCache.evictIfNecessary(cacheRepository, maxEntries, cacheRepository::findHashesOrderByLastAccess);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 获取缓存统计指标
+     *
+     * @return 命中/未命中次数、命中率、内存条目数等
+     */
+    public Map<String, Object> getStats() {
+        long hits = memoryCache.getMemoryHits() + dbHits.get();
+        long total = hits + misses.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        memoryCache.putStats(stats);
+        stats.put("dbHits", dbHits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        return stats;
+    }
+}
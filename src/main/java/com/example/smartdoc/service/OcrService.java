@@ -1,31 +1,51 @@
 package com.example.smartdoc.service;
 
-import com.baidu.aip.ocr.AipOcr;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.utils.CircuitBreaker;
+import com.example.smartdoc.utils.PdfInvoiceTextParser;
+import com.example.smartdoc.utils.TokenBucketRateLimiter;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * OCR 识别服务 - 基于百度 AI 的发票识别核心服务
  * 
- * <p>使用百度 OCR API 实现多种类型票据的自动识别，
+ * <p>通过 {@link OcrEngine} 调用百度 OCR API (或本地回放引擎) 实现多种类型票据的自动识别，
  * 采用"智能财务票据识别优先 + 通用文字识别兜底"的双层策略。</p>
  * 
  * <h3>支持的票据类型:</h3>
@@ -41,16 +61,43 @@ import java.util.regex.Pattern;
  * 
  * <h3>识别策略:</h3>
  * <pre>
+ * 0. PDF 电子发票优先解析文字层 (PdfInvoiceTextParser)，无可用文字层才渲染为图片，
+ *    多页 PDF 逐页处理，需要渲染的页面在线程池中并行识别
+ *    图片上传前按分辨率和体积自适应压缩 (ImagePreprocessService)
+ *    大文件先转存到磁盘，PDF 直接从文件打开，并受全局上传内存预算约束 (UploadSpoolService)
  * 1. 优先调用 multipleInvoice (智能财务票据识别)
  * 2. 若无法识别或结构不完整，降级到 basicAccurateGeneral (通用文字识别)
+ *    识别成功但金额/日期缺失或置信度低于阈值时，只对这些字段调用通用识别补全，
+ *    关键字段置信度都达标则直接返回
  * 3. 通用识别时使用正则表达式提取金额、日期等关键信息
+ * 
+ * 识别前先按文件内容 SHA-256 查询结果缓存，重复上传的文件不再调用 OCR。
+ * 原件按同一哈希存入 BlobStoreService，识别结果的 fileHash 指向该原件。
+ * </pre>
+ *
+ * <h3>调用保护:</h3>
+ * <pre>
+ * 每次调用 OCR 接口前先经过令牌桶限流 (按购买的 QPS 配额排队) 和熔断器。
+ * 服务商限流、系统错误、网络异常或熔断打开时抛出 OcrUnavailableException，
+ * 不再降级到通用识别 —— 那只会让出站调用翻倍，加重服务商压力。
+ *
+ * 影子对比 (shadow-sample-rate) 的原图识别使用单独的限流器，不占用业务请求的令牌，
+ * 令牌用完或熔断中直接跳过对比，不排队等待。配置 limit.qps 时应为其预留余量。
  * </pre>
  * 
  * <h3>配置项:</h3>
  * <pre>
- * baidu.ocr.app-id=xxx
- * baidu.ocr.api-key=xxx
- * baidu.ocr.secret-key=xxx
+ * smartdoc.ocr.engine=baidu              # OCR 引擎: baidu / replay
+ * smartdoc.ocr.pdf.max-pages=20          # 单个 PDF 最多识别页数
+ * smartdoc.ocr.pdf.page-workers=4        # PDF 页面渲染线程数
+ * smartdoc.ocr.pdf.render-memory-mb=256  # 渲染位图全局内存预算
+ * smartdoc.ocr.limit.qps=10              # OCR 调用速率 (与百度配额一致)
+ * smartdoc.ocr.limit.burst=10            # 允许的突发调用数
+ * smartdoc.ocr.limit.max-wait-ms=5000    # 排队等待令牌的最长时间
+ * smartdoc.ocr.limit.shadow-per-minute=6 # 影子对比每分钟最多调用次数 (0 关闭对比)
+ * smartdoc.ocr.breaker.failure-threshold=5  # 连续失败多少次后熔断
+ * smartdoc.ocr.breaker.open-seconds=30      # 熔断持续时间
+ * smartdoc.ocr.confidence.high=0.9          # 字段置信度达到该值即视为可靠
  * </pre>
  * 
  * @author SmartDoc Team
@@ -59,123 +106,575 @@ import java.util.regex.Pattern;
 @Service
 public class OcrService {
 
-    /** 百度 OCR 应用 ID */
-    @Value("${baidu.ocr.app-id}")
-    private String appId;
-    
-    /** 百度 OCR API Key */
-    @Value("${baidu.ocr.api-key}")
-    private String apiKey;
-    
-    /** 百度 OCR Secret Key */
-    @Value("${baidu.ocr.secret-key}")
-    private String secretKey;
+    private static final Logger log = LoggerFactory.getLogger(OcrService.class);
+
+    /** 百度限流类错误码: 4 集群超限, 17 日配额超限, 18 QPS 超限, 19 总量超限 */
+    private static final Set<String> PROVIDER_THROTTLE_CODES = Set.of("4", "17", "18", "19");
+
+    /** 百度服务端错误码: 1 未知错误, 2 服务暂不可用, 282000 内部错误 */
+    private static final Set<String> PROVIDER_ERROR_CODES = Set.of("1", "2", "282000");
+
+    /** 置信度不足时可由通用识别补全的字段 (通用识别只能提取金额和日期) */
+    private static final List<String> ROUTED_FIELDS = List.of("amount", "date");
+
+    /** 图片识别过程中的堆内存拷贝数 (原图、压缩图、SDK base64 编码)，不含解码位图 */
+    private static final int IMAGE_HEAP_COPIES = 3;
+
+    /** PDF 渲染缩放倍数上限 (大页面会按目标分辨率自动降低) */
+    private static final float PDF_RENDER_SCALE = 2.0f;
+
+    /** 单个 PDF 最多识别的页数 */
+    @Value("${smartdoc.ocr.pdf.max-pages:20}")
+    private int maxPdfPages;
+
+    /** PDF 页面渲染线程数 */
+    @Value("${smartdoc.ocr.pdf.page-workers:4}")
+    private int pageWorkers;
+
+    /** PDF 渲染位图的全局内存预算 (MB) */
+    @Value("${smartdoc.ocr.pdf.render-memory-mb:256}")
+    private int renderMemoryMb;
+
+    /** OCR 调用速率 (次/秒) */
+    @Value("${smartdoc.ocr.limit.qps:10}")
+    private double limitQps;
+
+    /** 令牌桶容量 (突发调用数) */
+    @Value("${smartdoc.ocr.limit.burst:10}")
+    private int limitBurst;
+
+    /** 排队等待令牌的最长时间 (毫秒) */
+    @Value("${smartdoc.ocr.limit.max-wait-ms:5000}")
+    private long limitMaxWaitMs;
+
+    /** 影子对比每分钟最多调用次数 */
+    @Value("${smartdoc.ocr.limit.shadow-per-minute:6}")
+    private double shadowPerMinute;
+
+    /** 触发熔断的连续失败次数 */
+    @Value("${smartdoc.ocr.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    /** 熔断持续时间 (秒) */
+    @Value("${smartdoc.ocr.breaker.open-seconds:30}")
+    private long breakerOpenSeconds;
+
+    /** 字段置信度阈值: 低于该值的字段交给通用识别补全 */
+    @Value("${smartdoc.ocr.confidence.high:0.9}")
+    private double highConfidence;
+
+    /** 关键字段置信度全部达标、直接返回的识别次数 */
+    private final AtomicLong confidentResults = new AtomicLong();
+
+    /** 因字段置信度不足而追加通用识别的次数 */
+    private final AtomicLong routedToGeneral = new AtomicLong();
+
+    /** 通用识别成功补全的字段数 */
+    private final AtomicLong fieldsFilled = new AtomicLong();
+
+    /** OCR 调用限流器 (所有线程共享) */
+    private TokenBucketRateLimiter rateLimiter;
+
+    /** 影子对比的调用限流器 (与业务请求分开计数)，未启用时为 null */
+    private TokenBucketRateLimiter shadowLimiter;
+
+    /** OCR 调用熔断器 */
+    private CircuitBreaker circuitBreaker;
+
+    /** 因预算用完或熔断而跳过的影子对比次数 */
+    private final AtomicLong shadowSkipped = new AtomicLong();
+
+    /** 服务商返回限流错误的次数 */
+    private final AtomicLong throttledByProvider = new AtomicLong();
+
+    /** PDF 页面渲染 + 识别线程池 (固定线程数) */
+    private ExecutorService pdfPageExecutor;
 
-    /** 百度 OCR 客户端实例 */
-    private AipOcr client;
+    /** 渲染内存预算 (单位 KB)，所有上传共享 */
+    private Semaphore renderBudget;
+
+    /** 渲染内存预算总量 (KB) */
+    private int renderBudgetKb;
+
+    /** OCR 引擎 (百度云 / 本地回放，由 smartdoc.ocr.engine 选择) */
+    @Autowired
+    private OcrEngine ocrEngine;
+
+    /** 图片预处理 - 上传前自适应缩放压缩 */
+    @Autowired
+    private ImagePreprocessService imagePreprocessService;
+
+    /** 识别结果缓存 - 按文件内容哈希去重 */
+    @Autowired
+    private OcrResultCacheService ocrResultCacheService;
+
+    /** 识别结果解析 - 把百度 OCR 的 JSON 响应转换为发票数据 */
+    @Autowired
+    private OcrResponseParser ocrResponseParser;
+
+    /** 上传文件转存与内存预算 */
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
+
+    /** 原件存储 - 按内容哈希保存上传的原件 */
+    @Autowired
+    private BlobStoreService blobStoreService;
 
     /**
-     * 初始化百度 OCR 客户端
-     * <p>在 Spring Bean 创建后自动执行，配置连接超时参数。</p>
+     * 初始化调用保护组件、PDF 渲染线程池和渲染内存预算
      */
     @PostConstruct
     public void init() {
-        client = new AipOcr(appId, apiKey, secretKey);
-        client.setConnectionTimeoutInMillis(2000);   // 连接超时 2秒
-        client.setSocketTimeoutInMillis(60000);      // 读取超时 60秒
+        rateLimiter = new TokenBucketRateLimiter(limitQps, limitBurst);
+        if (shadowPerMinute > 0) {
+            shadowLimiter = new TokenBucketRateLimiter(shadowPerMinute / 60, 1);
+        }
+        circuitBreaker = new CircuitBreaker(breakerFailureThreshold, breakerOpenSeconds * 1000);
+
+        AtomicInteger threadNo = new AtomicInteger();
+        pdfPageExecutor = Executors.newFixedThreadPool(pageWorkers, r -> {
+            Thread t = new Thread(r, "pdf-page-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        renderBudgetKb = renderMemoryMb * 1024;
+        renderBudget = new Semaphore(renderBudgetKb, true);  // 公平模式，避免大页面饥饿
+    }
+
+    /**
+     * 应用关闭时停止渲染线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        pdfPageExecutor.shutdownNow();
     }
 
     /**
      * 处理上传的发票文档
-     * <p>支持图片和 PDF 格式，PDF 会先转换为图片再识别。</p>
+     * <p>支持图片和 PDF 格式。带文字层的电子发票 PDF 直接解析文字，
+     * 其余 PDF 先转换为图片再识别。多页 PDF 或多票据图片只返回第一张票据，
+     * 需要全部票据时使用 {@link #processDocumentAll(MultipartFile)}。</p>
      * 
      * @param file 上传的发票文件
      * @return 识别后的发票数据对象
      * @throws IOException 文件读取异常
      */
     public InvoiceData processDocument(MultipartFile file) throws IOException {
-        byte[] fileBytes;
-        String fileName = file.getOriginalFilename();
-        
-        // PDF 文件需要先转换为图片
-        if (fileName != null && fileName.toLowerCase().endsWith(".pdf")) {
-            fileBytes = convertPdfToJpg(file.getBytes());
+        List<InvoiceData> all = processDocumentAll(file);
+        return all.isEmpty() ? null : all.get(0);
+    }
+
+    /**
+     * 处理上传的发票文档，返回识别出的全部票据
+     * <p>超过转存阈值的文件先以流的方式转存到磁盘再识别，识别结束后删除；
+     * 小文件直接读入内存。</p>
+     *
+     * @param file 上传的发票文件
+     * @return 每张票据一个 InvoiceData，按页面顺序排列
+     * @throws IOException 文件读取或 PDF 解析异常
+     */
+    public List<InvoiceData> processDocumentAll(MultipartFile file) throws IOException {
+        if (!uploadSpoolService.shouldSpool(file)) {
+            return processDocumentAll(file.getOriginalFilename(), file.getBytes());
+        }
+        Path path = uploadSpoolService.spool(file);
+        try {
+            return processDocumentAll(file.getOriginalFilename(), path);
+        } finally {
+            uploadSpoolService.delete(path);
+        }
+    }
+
+    /**
+     * 处理已读入内存的发票文档 (只返回第一张票据)
+     *
+     * @param fileName 原始文件名 (用于判断是否为 PDF)
+     * @param content  文件内容
+     * @return 识别后的发票数据对象，没有识别出任何票据时返回 null
+     * @throws IOException PDF 转换异常
+     */
+    public InvoiceData processDocument(String fileName, byte[] content) throws IOException {
+        List<InvoiceData> all = processDocumentAll(fileName, content);
+        return all.isEmpty() ? null : all.get(0);
+    }
+
+    /**
+     * 处理已读入内存的发票文档，返回识别出的全部票据
+     * <p>供批量识别等异步场景使用: 请求结束后 MultipartFile 的临时文件会被容器清理，
+     * 因此需要在请求线程内先取出文件内容，再交给后台线程识别。</p>
+     *
+     * <h4>多页 PDF:</h4>
+     * <pre>
+     * 1. 逐页解析文字层 (快速通道)
+     * 2. 没有文字层的页面在线程池中并行渲染 + 识别
+     * 3. 渲染前按页面尺寸估算位图内存，从全局内存预算中申请，
+     *    预算不足时等待，防止大 PDF 同时渲染撑爆堆内存
+     * </pre>
+     *
+     * <h4>内存预算:</h4>
+     * <p>缓存未命中时按文件大小估算识别过程的堆内存占用 (图片另加解码位图)，
+     * 从 {@link UploadSpoolService} 的全局预算中申请，识别结束后归还。</p>
+     *
+     * @param fileName 原始文件名 (用于判断是否为 PDF)
+     * @param content  文件内容
+     * @return 每张票据一个 InvoiceData，按页面顺序排列
+     * @throws IOException PDF 解析异常
+     * @throws IllegalStateException 内存预算等待超时
+     */
+    public List<InvoiceData> processDocumentAll(String fileName, byte[] content) throws IOException {
+        // 相同内容的文件直接返回缓存结果，不再调用 OCR
+        String contentHash = DigestUtil.sha256Hex(content);
+        boolean stored = storeOriginal(contentHash, () -> blobStoreService.put(contentHash, content));
+        List<InvoiceData> cached = ocrResultCacheService.get(contentHash);
+        if (cached != null) {
+            return linkOriginal(cached, stored ? contentHash : null);
+        }
+
+        List<InvoiceData> results;
+        if (isPdf(fileName)) {
+            UploadSpoolService.MemoryPermit permit = reserveMemory(content.length);
+            try {
+                results = processPdf(() -> PDDocument.load(content));
+            } finally {
+                permit.close();
+            }
         } else {
-            fileBytes = file.getBytes();
+            long heapBytes = (long) content.length * IMAGE_HEAP_COPIES + imagePreprocessService.estimateDecodedBytes(content);
+            UploadSpoolService.MemoryPermit permit = reserveMemory(heapBytes);
+            try {
+                results = recognizeImage(content);
+            } finally {
+                permit.close();
+            }
         }
 
-        return callSmartFinanceOcr(fileBytes);
+        ocrResultCacheService.put(contentHash, results);
+        return linkOriginal(results, stored ? contentHash : null);
+    }
+
+    /**
+     * 处理已转存到磁盘的发票文档，返回识别出的全部票据
+     * <p>内容哈希按流计算；PDF 直接从文件打开，解码后的流数据写入临时文件而不是堆内存，
+     * 各渲染任务也各自从文件打开，不再持有整个文件的字节数组。
+     * 图片仍需读入内存 (OCR SDK 只接受字节数组)。</p>
+     *
+     * @param fileName 原始文件名 (用于判断是否为 PDF)
+     * @param file     转存文件 (由调用方负责删除)
+     * @return 每张票据一个 InvoiceData，按页面顺序排列
+     * @throws IOException 文件读取或 PDF 解析异常
+     * @throws IllegalStateException 内存预算等待超时
+     */
+    public List<InvoiceData> processDocumentAll(String fileName, Path file) throws IOException {
+        String contentHash = DigestUtil.sha256Hex(file.toFile());
+        boolean stored = storeOriginal(contentHash, () -> blobStoreService.put(contentHash, file));
+        List<InvoiceData> cached = ocrResultCacheService.get(contentHash);
+        if (cached != null) {
+            return linkOriginal(cached, stored ? contentHash : null);
+        }
+
+        long size = Files.size(file);
+        List<InvoiceData> results;
+        if (isPdf(fileName)) {
+            UploadSpoolService.MemoryPermit permit = reserveMemory(size);
+            try {
+                results = processPdf(() -> PDDocument.load(file.toFile(),
+                        MemoryUsageSetting.setupTempFileOnly().setTempDir(uploadSpoolService.getScratchDir())));
+            } finally {
+                permit.close();
+            }
+        } else {
+            long heapBytes = size * IMAGE_HEAP_COPIES + imagePreprocessService.estimateDecodedBytes(file);
+            UploadSpoolService.MemoryPermit permit = reserveMemory(heapBytes);
+            try {
+                results = recognizeImage(Files.readAllBytes(file));
+            } finally {
+                permit.close();
+            }
+        }
+
+        ocrResultCacheService.put(contentHash, results);
+        return linkOriginal(results, stored ? contentHash : null);
+    }
+
+    /**
+     * 保存上传原件 (内容相同的只存一份)
+     * <p>原件存储失败不影响识别，只是该票据无法关联原件。</p>
+     *
+     * @return 保存成功 (或已存在) 返回 true
+     */
+    private boolean storeOriginal(String contentHash, BlobWriter writer) {
+        try {
+            writer.write();
+            return true;
+        } catch (Exception e) {
+            log.warn("原件保存失败: {}, {}", contentHash, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 将识别结果关联到原件
+     * <p>缓存中的旧结果可能还没有 fileHash，这里统一补上。</p>
+     */
+    private List<InvoiceData> linkOriginal(List<InvoiceData> results, String contentHash) {
+        for (InvoiceData data : results) {
+            data.setFileHash(contentHash);
+        }
+        return results;
+    }
+
+    /**
+     * 按文件名判断是否为 PDF
+     */
+    private boolean isPdf(String fileName) {
+        return fileName != null && fileName.toLowerCase().endsWith(".pdf");
+    }
+
+    /**
+     * 申请上传内存预算 (等待被中断时转为 IOException)
+     */
+    private UploadSpoolService.MemoryPermit reserveMemory(long bytes) throws IOException {
+        try {
+            return uploadSpoolService.reserve(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待内存预算被中断", e);
+        }
+    }
+
+    /**
+     * 识别图片文件 (一张图片中可能包含多张票据)
+     * <p>上传前先自适应缩放压缩。按配置比例抽样时，再用原图识别一次，
+     * 对比关键字段是否一致以及两次识别耗时 (抽样请求会相应变慢)。</p>
+     */
+    private List<InvoiceData> recognizeImage(byte[] original) {
+        byte[] payload = imagePreprocessService.prepare(original);
+        if (payload == original || !imagePreprocessService.shouldShadowSample()) {
+            return callSmartFinanceOcr(payload);
+        }
+
+        // 抽样时单独计时票据识别接口，并保留原始响应供对比 (路由补全的耗时和结果不计入)
+        long start = System.currentTimeMillis();
+        JSONObject compressed = requestSmartFinance(payload);
+        long compressedMs = System.currentTimeMillis() - start;
+        List<InvoiceData> tickets = interpretSmartFinance(compressed, payload);
+
+        shadowCompare(original, compressed, compressedMs);
+        return tickets;
+    }
+
+    /**
+     * 影子对比: 用原图再调用一次票据识别，记录关键字段是否一致和耗时差
+     *
+     * <h4>对比口径:</h4>
+     * <p>两边都只比较票据识别接口响应的直接解析结果，不含置信度路由和通用识别补全，
+     * 一致率只反映压缩本身的影响；耗时也都只计票据识别接口一次调用。</p>
+     *
+     * <h4>成本控制:</h4>
+     * <pre>
+     * - 从单独的影子限流器取令牌，不等待；令牌用完或熔断中直接跳过
+     * - 原图超出接口限制时只缩小到刚好满足限制 (ImagePreprocessService#prepareShadow)
+     * - 只调用一次票据识别，不追加通用识别补全，也不计入置信度路由指标
+     * </pre>
+     * <p>对比失败不影响本次识别结果。</p>
+     *
+     * @param original     原始图片字节
+     * @param compressed   压缩图的票据识别原始响应
+     * @param compressedMs 压缩图的票据识别耗时
+     */
+    private void shadowCompare(byte[] original, JSONObject compressed, long compressedMs) {
+        if (shadowLimiter == null || circuitBreaker.isOpen()
+                || !shadowLimiter.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+            shadowSkipped.incrementAndGet();
+            return;
+        }
+        byte[] shadowPayload = imagePreprocessService.prepareShadow(original);
+        if (shadowPayload == null) {
+            shadowSkipped.incrementAndGet();
+            return;
+        }
+
+        HashMap<String, Object> options = smartFinanceOptions();
+        try {
+            long start = System.currentTimeMillis();
+            JSONObject res = callWithBreaker(() -> ocrEngine.multipleInvoice(shadowPayload, options));
+            long originalMs = System.currentTimeMillis() - start;
+            boolean agree = sameKeyFields(parseRawTickets(compressed), parseRawTickets(res));
+            imagePreprocessService.recordShadowSample(compressedMs, originalMs, agree);
+        } catch (OcrUnavailableException e) {
+            // 对比样本失败不影响本次识别结果
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 票据识别响应的直接解析结果 (不做路由补全)
+     */
+    private List<InvoiceData> parseRawTickets(JSONObject res) {
+        return res.has("words_result") ? ocrResponseParser.parseTickets(res.getJSONArray("words_result")) : List.of();
+    }
+
+    /**
+     * 两次识别结果的票据数量及每张票据的金额、日期、号码是否一致
+     */
+    private boolean sameKeyFields(List<InvoiceData> a, List<InvoiceData> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!Objects.equals(a.get(i).getAmount(), b.get(i).getAmount())
+                    || !Objects.equals(a.get(i).getDate(), b.get(i).getDate())
+                    || !Objects.equals(a.get(i).getInvoiceCode(), b.get(i).getInvoiceCode())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 多页 PDF 识别
+     * <p>先在当前线程逐页尝试文字层解析，剩余页面提交到渲染线程池并行处理。
+     * PDDocument 不是线程安全的，每个渲染任务各自加载一份文档。</p>
+     *
+     * @param source 文档来源 (内存字节或转存文件)
+     */
+    private List<InvoiceData> processPdf(PdfSource source) throws IOException {
+        int pageCount;
+        List<List<InvoiceData>> pageResults = new ArrayList<>();  // 每页识别出的票据
+        List<Integer> scannedPages = new ArrayList<>();  // 没有可用文字层的页面
+        List<Float> pageScales = new ArrayList<>();      // 对应页面的渲染缩放倍数
+        List<Long> pageBitmapBytes = new ArrayList<>();  // 对应页面的位图内存估算
+
+        // 1. 逐页解析文字层
+        try (PDDocument document = source.open()) {
+            pageCount = Math.min(document.getNumberOfPages(), maxPdfPages);
+            for (int i = 0; i < pageCount; i++) {
+                InvoiceData textLayer = extractFromTextLayer(document, i);
+                pageResults.add(textLayer != null ? List.of(textLayer) : null);
+                if (textLayer == null) {
+                    PDRectangle box = document.getPage(i).getCropBox();
+                    float scale = imagePreprocessService.pdfRenderScale(box.getWidth(), box.getHeight(), PDF_RENDER_SCALE);
+                    scannedPages.add(i);
+                    pageScales.add(scale);
+                    pageBitmapBytes.add(estimateBitmapBytes(box, scale));
+                }
+            }
+        }
+
+        // 2. 其余页面并行渲染 + 识别
+        List<Future<List<InvoiceData>>> futures = new ArrayList<>();
+        for (int j = 0; j < scannedPages.size(); j++) {
+            int pageIndex = scannedPages.get(j);
+            float scale = pageScales.get(j);
+            long bitmapBytes = pageBitmapBytes.get(j);
+            futures.add(pdfPageExecutor.submit(() -> {
+                byte[] jpg = renderPageWithinBudget(source, pageIndex, scale, bitmapBytes);
+                return callSmartFinanceOcr(jpg);
+            }));
+        }
+        for (int j = 0; j < futures.size(); j++) {
+            try {
+                pageResults.set(scannedPages.get(j), futures.get(j).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("PDF 识别被中断", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof OcrUnavailableException) {
+                    // 服务不可用时其余页面也不会成功，取消后直接报告
+                    futures.forEach(f -> f.cancel(true));
+                    throw (OcrUnavailableException) e.getCause();
+                }
+                // 单页失败不影响其他页面
+                e.getCause().printStackTrace();
+            }
+        }
+
+        // 3. 汇总各页票据
+        List<InvoiceData> results = new ArrayList<>();
+        for (List<InvoiceData> tickets : pageResults) {
+            if (tickets != null) results.addAll(tickets);
+        }
+        return dropEmptyTickets(results);
+    }
+
+    /**
+     * 识别出多张票据时，丢弃没有金额的部分 (如 PDF 的销货清单页、空白页，图片中的残缺票据)
+     * <p>只有一张票据或全部没有金额时保留第一张，由用户在前端手工补全。</p>
+     */
+    private List<InvoiceData> dropEmptyTickets(List<InvoiceData> tickets) {
+        if (tickets.size() <= 1) return tickets;
+        List<InvoiceData> kept = new ArrayList<>();
+        for (InvoiceData data : tickets) {
+            if (data.getAmount() != null && data.getAmount() > 0) kept.add(data);
+        }
+        return kept.isEmpty() ? List.of(tickets.get(0)) : kept;
     }
 
     /**
      * 策略 A: 智能财务票据识别 (优先策略)
-     * <p>调用百度 multipleInvoice 接口，可自动识别多种票据类型并返回结构化数据。</p>
+     * <p>调用百度 multipleInvoice 接口，可自动识别多种票据类型并返回结构化数据。
+     * 一张图片中拍了多张票据 (如几张出租车票) 时，words_result 中每张票据一项，全部解析返回。</p>
+     *
+     * <h4>多票据时的置信度路由:</h4>
+     * <p>通用识别只能对整张图片提取一个金额和日期，无法对应到具体票据，
+     * 因此只有单张票据时才追加通用识别补全；多张票据只汇总置信度，低置信度的交给人工复核。</p>
      * 
      * @param imageBytes 图片字节数组
-     * @return 识别后的发票数据
+     * @return 识别出的票据列表 (至少一项)
      */
-    private InvoiceData callSmartFinanceOcr(byte[] imageBytes) {
-        try {
-            // 设置识别参数（注意: multipleInvoice 接口要求 HashMap<String, Object>）
-            HashMap<String, Object> options = new HashMap<>();
-            options.put("probability", "true");  // 返回置信度
+    private List<InvoiceData> callSmartFinanceOcr(byte[] imageBytes) {
+        return interpretSmartFinance(requestSmartFinance(imageBytes), imageBytes);
+    }
 
-            JSONObject res = client.multipleInvoice(imageBytes, options);
+    /**
+     * 调用票据识别接口，返回原始响应
+     *
+     * @throws OcrUnavailableException 排队超时、熔断中或服务商不可用
+     */
+    private JSONObject requestSmartFinance(byte[] imageBytes) {
+        HashMap<String, Object> options = smartFinanceOptions();
+        return callEngine(() -> ocrEngine.multipleInvoice(imageBytes, options));
+    }
 
+    /**
+     * 票据识别参数（注意: multipleInvoice 接口要求 HashMap<String, Object>）
+     */
+    private HashMap<String, Object> smartFinanceOptions() {
+        HashMap<String, Object> options = new HashMap<>();
+        options.put("probability", "true");  // 返回置信度
+        return options;
+    }
+
+    /**
+     * 解析票据识别响应，按置信度路由补全；没有可用结果时降级到通用识别
+     *
+     * @param res        票据识别原始响应
+     * @param imageBytes 图片字节数组 (降级和补全时使用)
+     * @return 识别出的票据列表 (至少一项)
+     */
+    private List<InvoiceData> interpretSmartFinance(JSONObject res, byte[] imageBytes) {
+        try {
             if (res.has("words_result")) {
                 JSONArray results = res.getJSONArray("words_result");
-                if (results.length() == 0) return callGeneralOcr(imageBytes);
 
-                // 取第一个识别结果（通常是主票据）
-                JSONObject bestTicket = results.getJSONObject(0);
-                String type = bestTicket.optString("type", "unknown");
+                // 逐张解析图片中的票据，跳过不含详细结构的项
+                List<InvoiceData> tickets = ocrResponseParser.parseTickets(results);
 
-                // 检查是否有详细结构化数据
-                if (!bestTicket.has("result")) {
-                    System.out.println("⚠️ 票据类型 [" + type + "] 不含详细结构，切换通用识别...");
-                    return callGeneralOcr(imageBytes);
-                }
+                // 没有任何可用的结构化结果 → 切换通用识别
+                if (tickets.isEmpty()) return List.of(callGeneralOcr(imageBytes));
 
-                JSONObject content = bestTicket.getJSONObject("result");
-                InvoiceData data = new InvoiceData();
-                data.setRawImageUrl("memory_image");
-
-                // 根据票据类型调用对应的解析方法
-                switch (type) {
-                    case "vat_invoice":
-                        parseVatInvoice(content, data);
-                        break;
-                    case "train_ticket":
-                        parseTrainTicket(content, data);
-                        break;
-                    case "air_ticket":
-                        parseAirTicket(content, data);
-                        break;
-                    case "taxi_receipt":
-                        parseTaxiReceipt(content, data);
-                        break;
-                    case "quota_invoice":
-                        parseQuotaInvoice(content, data);
-                        break;
-                    case "taxi_online_ticket":
-                        parseTaxiOnline(content, data);
-                        break;
-                    default:
-                        // 未知类型使用通用提取
-                        data.setMerchantName("票据类型: " + type);
-                        data.setCategory("其他");
-                        data.setAmount(getDouble(content, "Amount", "TotalAmount", "total_fare", "fare", "money"));
-                        data.setDate(getValue(content, "Date", "date", "Time"));
+                if (tickets.size() == 1) {
+                    return List.of(routeByConfidence(tickets.get(0), imageBytes));
                 }
-
-                postProcess(data);
-                return data;
+                tickets.forEach(this::summarizeConfidence);
+                return dropEmptyTickets(tickets);
             }
+        } catch (OcrUnavailableException e) {
+            throw e;  // 服务不可用: 不降级，避免调用量翻倍
         } catch (Exception e) {
             e.printStackTrace();
         }
         // 降级到通用识别
-        return callGeneralOcr(imageBytes);
+        return List.of(callGeneralOcr(imageBytes));
     }
 
     /**
@@ -195,236 +694,271 @@ public class OcrService {
             // 设置识别参数（注意: basicAccurateGeneral 接口要求 HashMap<String, String>）
             HashMap<String, String> options = new HashMap<>();
             options.put("detect_direction", "true");  // 自动检测图片方向
+            options.put("probability", "true");       // 返回每行置信度
 
-            JSONObject res = client.basicAccurateGeneral(imageBytes, options);
+            JSONObject res = callEngine(() -> ocrEngine.basicAccurateGeneral(imageBytes, options));
 
             if (res.has("words_result")) {
-                parseWordsToInvoice(res.getJSONArray("words_result"), data);
+                ocrResponseParser.parseWordsToInvoice(res.getJSONArray("words_result"), data);
             }
+        } catch (OcrUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return data;
+        return summarizeConfidence(data);
     }
 
-    // ==================== 专用票据解析方法 ====================
-
     /**
-     * 解析火车票
-     * <p>提取车次、出发站、到达站、票价、日期等信息。</p>
+     * 按字段置信度决定是否追加通用识别
+     *
+     * <h4>路由规则:</h4>
+     * <pre>
+     * 金额、日期都已识别且置信度 ≥ 阈值 → 直接返回，不再调用任何接口
+     * 任一字段缺失或置信度低           → 调用一次通用识别，只覆盖这些字段，
+     *                                    其余字段保留票据识别的结构化结果
+     * 接口未返回置信度的字段视为可靠 (与之前的行为一致)
+     * </pre>
      */
-    private void parseTrainTicket(JSONObject r, InvoiceData data) {
-        data.setCategory("交通出行");
-        String trainNum = getValue(r, "train_num");
-        String start = getValue(r, "starting_station");
-        String end = getValue(r, "destination_station");
-
-        String itemName = "火车票";
-        if (trainNum != null) itemName += " " + trainNum;
-        if (start != null && end != null) itemName += " (" + start + "-" + end + ")";
-        data.setItemName(itemName);
+    private InvoiceData routeByConfidence(InvoiceData data, byte[] imageBytes) {
+        List<String> weakFields = new ArrayList<>();
+        for (String field : ROUTED_FIELDS) {
+            Double confidence = data.getFieldConfidence().get(field);
+            if (!hasValue(data, field) || (confidence != null && confidence < highConfidence)) {
+                weakFields.add(field);
+            }
+        }
+        if (weakFields.isEmpty()) {
+            confidentResults.incrementAndGet();
+            return summarizeConfidence(data);
+        }
 
-        data.setMerchantName("铁路客运");
-        data.setAmount(getDouble(r, "ticket_rates"));
-        data.setDate(getValue(r, "date"));
-        data.setInvoiceCode(getValue(r, "ticket_num"));
+        routedToGeneral.incrementAndGet();
+        log.debug("字段置信度不足 {}，调用通用识别补全", weakFields);
+        InvoiceData general;
+        try {
+            general = callGeneralOcr(imageBytes);
+        } catch (OcrUnavailableException e) {
+            // 补全失败时保留票据识别结果，由低置信度提示人工复核
+            return summarizeConfidence(data);
+        }
+        for (String field : weakFields) {
+            if (!hasValue(general, field)) continue;
+            if ("amount".equals(field)) data.setAmount(general.getAmount());
+            if ("date".equals(field)) data.setDate(general.getDate());
+            Double confidence = general.getFieldConfidence().get(field);
+            if (confidence != null) {
+                data.getFieldConfidence().put(field, confidence);
+            } else {
+                data.getFieldConfidence().remove(field);
+            }
+            fieldsFilled.incrementAndGet();
+        }
+        return summarizeConfidence(data);
     }
 
     /**
-     * 解析机票行程单
-     * <p>提取航空公司、航班号、起降站、票价等信息。</p>
+     * 字段是否已识别出有效值
      */
-    private void parseAirTicket(JSONObject r, InvoiceData data) {
-        data.setCategory("交通出行");
-        String carrier = getValue(r, "carrier");
-        String flight = getValue(r, "flight");
-        String start = getValue(r, "starting_station");
-        String end = getValue(r, "destination_station");
-
-        data.setMerchantName(carrier != null ? carrier : "航空公司");
-
-        String itemName = "机票";
-        if (flight != null) itemName += " " + flight;
-        if (start != null && end != null) itemName += " (" + start + "-" + end + ")";
-        data.setItemName(itemName);
-
-        data.setAmount(getDouble(r, "ticket_rates", "fare", "TotalAmount"));
-        data.setDate(getValue(r, "date"));
-        data.setInvoiceCode(getValue(r, "ticket_number"));
+    private boolean hasValue(InvoiceData data, String field) {
+        if ("amount".equals(field)) return data.getAmount() != null && data.getAmount() > 0;
+        if ("date".equals(field)) return data.getDate() != null && !data.getDate().isEmpty();
+        return false;
     }
 
     /**
-     * 解析出租车票
-     * <p>提取车牌号、车费、日期等信息。</p>
+     * 汇总整张票据的置信度: 取各字段置信度的最小值，缺失的金额/日期按 0 计
+     * <p>没有任何字段返回置信度时 ocrConfidence 为 null。</p>
      */
-    private void parseTaxiReceipt(JSONObject r, InvoiceData data) {
-        data.setCategory("交通出行");
-        data.setItemName("出租车费");
-        data.setMerchantName("出租车 " + getValue(r, "TaxiNum"));
-        data.setAmount(getDouble(r, "TotalFare", "Fare"));
-        data.setDate(getValue(r, "Date"));
-        data.setInvoiceCode(getValue(r, "InvoiceCode"));
+    private InvoiceData summarizeConfidence(InvoiceData data) {
+        for (String field : ROUTED_FIELDS) {
+            if (!hasValue(data, field)) data.getFieldConfidence().put(field, 0.0);
+        }
+        Double min = null;
+        for (Double confidence : data.getFieldConfidence().values()) {
+            if (min == null || confidence < min) min = confidence;
+        }
+        data.setOcrConfidence(min == null ? null : Math.round(min * 10000) / 10000.0);
+        return data;
     }
 
     /**
-     * 解析网约车发票
-     * <p>提取服务商、行程费用、日期等信息。</p>
+     * 获取置信度路由指标
+     *
+     * @return 直接返回次数、追加通用识别次数、补全字段数
      */
-    private void parseTaxiOnline(JSONObject r, InvoiceData data) {
-        data.setCategory("交通出行");
-        String provider = getValue(r, "service_provider");
-        data.setMerchantName(provider != null ? provider : "网约车");
-        data.setItemName("网约车行程");
-        data.setAmount(getDouble(r, "total_fare"));
-        data.setDate(getValue(r, "application_date"));
+    public Map<String, Object> getRoutingStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("confidentResults", confidentResults.get());
+        stats.put("routedToGeneral", routedToGeneral.get());
+        stats.put("fieldsFilled", fieldsFilled.get());
+        stats.put("highConfidence", highConfidence);
+        return stats;
     }
 
     /**
-     * 解析增值税发票
-     * <p>提取销售方名称、金额、日期、发票号码等信息。</p>
+     * 经过限流和熔断保护调用 OCR 接口
+     *
+     * <h4>失败分类:</h4>
+     * <pre>
+     * 服务商限流 (error_code 4/17/18/19)        → 记为失败，抛出 OcrUnavailableException
+     * 服务商系统错误 (1/2/282000)、SDK 网络错误 → 记为失败，抛出 OcrUnavailableException
+     * 其他错误码 (图片格式、无法识别等)         → 服务正常，返回响应由调用方降级处理
+     * </pre>
+     *
+     * @param call 实际的接口调用
+     * @return 接口原始响应
+     * @throws OcrUnavailableException 排队超时、熔断中或服务商不可用
      */
-    private void parseVatInvoice(JSONObject r, InvoiceData data) {
-        data.setMerchantName(getValue(r, "SellerName"));
-        data.setAmount(getDouble(r, "TotalAmount", "AmountInFiguers"));
-        data.setDate(getValue(r, "InvoiceDate"));
-        data.setInvoiceCode(getValue(r, "InvoiceNum"));
-        if (data.getInvoiceCode() == null) data.setInvoiceCode(getValue(r, "InvoiceCode"));
-        String item = getValue(r, "CommodityName");
-        data.setItemName(item != null ? item : "办公用品/服务费");
+    private JSONObject callEngine(Supplier<JSONObject> call) {
+        // 1. 熔断中直接失败，不占用令牌
+        if (circuitBreaker.isOpen()) {
+            throw new OcrUnavailableException("OCR 服务暂时不可用，请稍后重试");
+        }
+        // 2. 按配额排队获取令牌，等待过久则放弃
+        if (!rateLimiter.tryAcquire(limitMaxWaitMs, TimeUnit.MILLISECONDS)) {
+            throw new OcrUnavailableException("OCR 请求过多，请稍后重试");
+        }
+        return callWithBreaker(call);
     }
 
     /**
-     * 解析定额发票
-     * <p>定额发票通常用于餐饮消费，提取金额和发票号码。</p>
+     * 经过熔断器调用 OCR 接口并记录结果 (调用方已取得令牌)
+     *
+     * @param call 实际的接口调用
+     * @return 接口原始响应
+     * @throws OcrUnavailableException 熔断中或服务商不可用
+     * @see #callEngine(Supplier)
      */
-    private void parseQuotaInvoice(JSONObject r, InvoiceData data) {
-        data.setCategory("餐饮美食");
-        data.setAmount(getDouble(r, "invoice_rate", "invoice_rate_in_figure"));
-        data.setInvoiceCode(getValue(r, "invoice_number"));
-        data.setMerchantName("定额发票");
-        data.setItemName("定额消费");
-    }
+    private JSONObject callWithBreaker(Supplier<JSONObject> call) {
+        // 3. 半开状态只放行一个试探请求
+        if (!circuitBreaker.allowRequest()) {
+            throw new OcrUnavailableException("OCR 服务暂时不可用，请稍后重试");
+        }
 
-    /**
-     * 通用文字识别结果解析
-     * <p>使用正则表达式从 OCR 文字结果中提取金额、日期、类别等信息。
-     * 金额提取策略：找出所有金额格式的数字，取最大值（通常是总金额）。
-     * 日期提取策略：匹配 2020-2029 年的日期格式。
-     * 类别识别：根据关键词判断消费类别。</p>
-     */
-    private void parseWordsToInvoice(JSONArray words, InvoiceData data) {
-        // 将所有识别文字合并为行列表
-        List<String> lines = new ArrayList<>();
-        for (int i = 0; i < words.length(); i++) {
-            lines.add(words.getJSONObject(i).getString("words"));
+        JSONObject res;
+        try {
+            res = call.get();
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+            throw new OcrUnavailableException("OCR 服务调用异常", e);
         }
-        
-        // 提取金额（找最大值，假设为总金额）
-        double maxAmount = 0.0;
-        for (String line : lines) {
-            Matcher m = Pattern.compile("(\\d{1,3}(,\\d{3})*\\.\\d{2})").matcher(line);
-            while (m.find()) {
-                try {
-                    double v = Double.parseDouble(m.group(1).replace(",", ""));
-                    if (v > maxAmount && v < 1000000) maxAmount = v;
-                } catch (Exception e) {}
-            }
+
+        String errorCode = res.has("error_code") ? String.valueOf(res.get("error_code")) : null;
+        if (errorCode != null && PROVIDER_THROTTLE_CODES.contains(errorCode)) {
+            throttledByProvider.incrementAndGet();
+            circuitBreaker.recordFailure();
+            throw new OcrUnavailableException("OCR 服务商限流: " + res.optString("error_msg"));
         }
-        if (maxAmount > 0) data.setAmount(maxAmount);
-        
-        // 提取日期（匹配 202X年XX月XX日 或 202X-XX-XX 格式）
-        for (String line : lines) {
-            Matcher m = Pattern.compile("202\\d[-年/.]\\d{1,2}[-月/.]\\d{1,2}").matcher(line);
-            if (m.find()) {
-                data.setDate(m.group().replaceAll("[年月/.]", "-"));
-                break;
-            }
+        if (errorCode != null && (PROVIDER_ERROR_CODES.contains(errorCode) || errorCode.startsWith("SDK"))) {
+            circuitBreaker.recordFailure();
+            throw new OcrUnavailableException("OCR 服务商错误: " + res.optString("error_msg"));
         }
-        
-        // 根据关键词推断消费类别
-        String fullText = String.join(" ", lines);
-        if (fullText.contains("餐饮") || fullText.contains("饭")) data.setCategory("餐饮美食");
-        else if (fullText.contains("车") || fullText.contains("交通")) data.setCategory("交通出行");
+        circuitBreaker.recordSuccess();
+        return res;
     }
 
-    // ==================== 工具方法 ====================
+    /**
+     * 获取 OCR 调用保护指标
+     *
+     * @return 限流器、熔断器指标、服务商限流次数及影子对比的限流情况
+     */
+    public Map<String, Object> getGuardStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("rateLimiter", rateLimiter.getStats());
+        stats.put("circuitBreaker", circuitBreaker.getStats());
+        stats.put("throttledByProvider", throttledByProvider.get());
+        if (shadowLimiter != null) {
+            stats.put("shadowLimiter", shadowLimiter.getStats());
+        }
+        stats.put("shadowSkipped", shadowSkipped.get());
+        return stats;
+    }
 
     /**
-     * 从百度 OCR 返回的 JSON 结构中提取字段值
-     * <p>百度 OCR 的字段值是数组格式 [{word: "xxx"}]，此方法处理该结构。</p>
+     * 快速通道: 从 PDF 文字层直接解析发票
+     * <p>电子发票 PDF 内嵌文字层，无需渲染和 OCR。</p>
      * 
-     * @param obj          OCR 结果 JSON 对象
-     * @param possibleKeys 可能的字段名（支持多个备选）
-     * @return 提取的字符串值，未找到返回 null
-     */
-    private String getValue(JSONObject obj, String... possibleKeys) {
-        for (String key : possibleKeys) {
-            if (obj.has(key)) {
-                JSONArray arr = obj.getJSONArray(key);
-                if (arr.length() > 0) {
-                    return arr.getJSONObject(0).optString("word", null);
-                }
+     * @param document  已加载的 PDF 文档
+     * @param pageIndex 页码 (从 0 开始)
+     * @return 解析结果；扫描件等没有可用文字层时返回 null
+     */
+    private InvoiceData extractFromTextLayer(PDDocument document, int pageIndex) {
+        try {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setSortByPosition(true);  // 按版面位置输出，保证 "名称" 等字段顺序稳定
+            stripper.setStartPage(pageIndex + 1);  // PDFTextStripper 页码从 1 开始
+            stripper.setEndPage(pageIndex + 1);
+            InvoiceData data = PdfInvoiceTextParser.parse(stripper.getText(document));
+            if (data != null) {
+                data.setRawImageUrl("memory_image");
+                data.setOcrConfidence(1.0);  // 文字层是开票系统写入的原文，不存在识别误差
+                ocrResponseParser.postProcess(data);
             }
+            return data;
+        } catch (Exception e) {
+            // 文字层解析失败时走 OCR 路径
+            e.printStackTrace();
+            return null;
         }
-        return null;
     }
 
     /**
-     * 从百度 OCR 返回的 JSON 结构中提取数值
-     * <p>自动清理非数字字符后解析为 Double。</p>
-     * 
-     * @param obj  OCR 结果 JSON 对象
-     * @param keys 可能的字段名
-     * @return 提取的数值，解析失败返回 0.0
+     * 估算页面渲染后的位图内存占用
+     * <p>按 RGB 位图每像素 4 字节计算 (BufferedImage 内部为 int 数组)。</p>
      */
-    private Double getDouble(JSONObject obj, String... keys) {
-        String val = getValue(obj, keys);
-        if (val != null) {
-            try {
-                String numStr = val.replaceAll("[^0-9.]", "");
-                return Double.parseDouble(numStr);
-            } catch (Exception e) {}
-        }
-        return 0.0;
+    private long estimateBitmapBytes(PDRectangle box, float scale) {
+        long width = (long) Math.ceil(box.getWidth() * scale);
+        long height = (long) Math.ceil(box.getHeight() * scale);
+        return width * height * 4;
     }
 
     /**
-     * 数据后处理 - 标准化日期格式和补全默认值
-     * <p>将各种日期格式统一转换为 yyyy-MM-dd 格式，
-     * 并为缺失的类别设置默认值。</p>
-     * 
-     * @param data 待处理的发票数据
+     * 在内存预算内渲染单页
+     * <p>位图内存从全局预算中申请，JPEG 编码完成、位图可回收后归还。
+     * 单页估算超过总预算时按总预算申请，保证超大页面也能独占渲染而不是永久等待。</p>
      */
-    private void postProcess(InvoiceData data) {
-        // 标准化日期格式
-        if (data.getDate() != null) {
-            String d = data.getDate().replaceAll("[年月/.]", "-").replace("日", "");
-            Matcher m = Pattern.compile("\\d{4}-\\d{1,2}-\\d{1,2}").matcher(d);
-            if (m.find()) data.setDate(m.group());
-        }
-        // 默认类别为"其他"
-        if (data.getCategory() == null) {
-            data.setCategory("其他");
+    private byte[] renderPageWithinBudget(PdfSource source, int pageIndex, float scale, long bitmapBytes)
+            throws IOException, InterruptedException {
+        int permits = (int) Math.min(Math.max(1, bitmapBytes / 1024), renderBudgetKb);
+        renderBudget.acquire(permits);
+        try (PDDocument document = source.open()) {
+            return convertPdfToJpg(document, pageIndex, scale);
+        } finally {
+            renderBudget.release(permits);
         }
     }
 
     /**
-     * PDF 转 JPG 图片
-     * <p>使用 Apache PDFBox 将 PDF 首页渲染为 JPG 图片，
-     * 以便发送给百度 OCR 进行识别。</p>
+     * PDF 页面转 JPG 图片
+     * <p>使用 Apache PDFBox 将指定页渲染为 JPG 图片，
+     * 以便发送给百度 OCR 进行识别。JPEG 质量由预处理服务按体积自适应选择。</p>
      * 
-     * @param pdfBytes PDF 文件字节数组
+     * @param document  已加载的 PDF 文档
+     * @param pageIndex 页码 (从 0 开始)
+     * @param scale     渲染缩放倍数
      * @return JPG 图片字节数组
      * @throws IOException 转换异常
      */
-    private byte[] convertPdfToJpg(byte[] pdfBytes) throws IOException {
-        try (PDDocument document = PDDocument.load(pdfBytes);
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PDFRenderer renderer = new PDFRenderer(document);
-            // 以 2.0 倍缩放渲染首页，RGB 格式
-            BufferedImage image = renderer.renderImage(0, 2.0f, ImageType.RGB);
-            ImageIO.write(image, "jpg", baos);
-            return baos.toByteArray();
-        }
+    private byte[] convertPdfToJpg(PDDocument document, int pageIndex, float scale) throws IOException {
+        PDFRenderer renderer = new PDFRenderer(document);
+        BufferedImage image = renderer.renderImage(pageIndex, scale, ImageType.RGB);
+        return imagePreprocessService.encodeRendered(image);
+    }
+
+    /**
+     * PDF 文档来源 - 每次调用打开一份独立的 PDDocument (由调用方关闭)
+     */
+    @FunctionalInterface
+    private interface PdfSource {
+        PDDocument open() throws IOException;
+    }
+
+    /**
+     * 原件写入操作
+     */
+    @FunctionalInterface
+    private interface BlobWriter {
+        void write() throws IOException;
     }
-}
\ No newline at end of file
+}
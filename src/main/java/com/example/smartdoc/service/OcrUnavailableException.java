@@ -0,0 +1,24 @@
+package com.example.smartdoc.service;
+
+/**
+ * OCR 服务不可用异常
+ *
+ * <p>在限流排队超时、熔断器打开、服务商返回限流/系统错误或网络异常时抛出。
+ * 与 "图片无法识别" 不同，这类失败换用通用识别接口也不会成功，
+ * 反而会加重服务商的压力，因此直接向上层报告，由调用方提示用户稍后重试。</p>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ */
+public class OcrUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OcrUnavailableException(String message) {
+        super(message);
+    }
+
+    public OcrUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.smartdoc.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 回放 OCR 引擎 - 返回本地录制的响应，不访问网络
+ *
+ * <p>用于压测上传链路 (解析、入库、并发控制) 或在没有百度凭证的环境中联调。
+ * 录制文件由 {@link BaiduOcrEngine} 在配置 smartdoc.ocr.record-dir 后生成，
+ * 也可以手工放入任意符合百度响应格式的 JSON 文件。</p>
+ *
+ * <h3>目录结构:</h3>
+ * <pre>
+ * {replay-dir}/multipleInvoice/{图片SHA-256}.json
+ * {replay-dir}/basicAccurateGeneral/{图片SHA-256}.json
+ * </pre>
+ *
+ * <h3>匹配规则:</h3>
+ * <pre>
+ * 1. 图片哈希有对应的录制文件 → 返回该响应 (结果可复现)
+ * 2. 没有对应文件 → 轮流返回该接口目录下的任意一个响应 (压测时上传图片可以随意)
+ * 3. 目录为空 → 返回 error_code=REPLAY_MISS，OcrService 按识别失败处理 (降级到通用识别，不计入熔断)
+ * </pre>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.ocr.engine=replay
+ * smartdoc.ocr.replay.dir=ocr-recordings     # 录制文件目录
+ * smartdoc.ocr.replay.latency-ms=300         # 模拟的接口耗时
+ * smartdoc.ocr.replay.jitter-ms=100          # 耗时随机波动范围 (±)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see BaiduOcrEngine
+ */
+@Service
+@ConditionalOnProperty(name = "smartdoc.ocr.engine", havingValue = "replay")
+public class ReplayOcrEngine implements OcrEngine {
+
+    /** 录制文件目录 */
+    @Value("${smartdoc.ocr.replay.dir:ocr-recordings}")
+    private String replayDir;
+
+    /** 模拟的接口耗时 (毫秒) */
+    @Value("${smartdoc.ocr.replay.latency-ms:300}")
+    private long latencyMs;
+
+    /** 耗时随机波动范围 (毫秒) */
+    @Value("${smartdoc.ocr.replay.jitter-ms:100}")
+    private long jitterMs;
+
+    /** 各接口的录制响应: 接口名 → (图片哈希 → 响应 JSON 文本) */
+    private final Map<String, Map<String, String>> recordings = new HashMap<>();
+
+    /** 各接口的全部响应 (用于未命中哈希时轮流返回) */
+    private final Map<String, List<String>> fallbacks = new HashMap<>();
+
+    /** 轮询计数器 */
+    private final Map<String, AtomicLong> cursors = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时加载全部录制文件到内存，避免回放时的磁盘 IO 干扰压测结果
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        for (String method : new String[]{"multipleInvoice", "basicAccurateGeneral"}) {
+            Map<String, String> byHash = new HashMap<>();
+            Path dir = Paths.get(replayDir, method);
+            if (Files.isDirectory(dir)) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        String name = file.getFileName().toString();
+                        if (!name.endsWith(".json")) continue;
+                        String hash = name.substring(0, name.length() - ".json".length());
+                        byHash.put(hash, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            recordings.put(method, byHash);
+            fallbacks.put(method, new ArrayList<>(byHash.values()));
+            cursors.put(method, new AtomicLong());
+            System.out.println("OCR 回放引擎: " + method + " 加载 " + byHash.size() + " 条录制响应");
+        }
+    }
+
+    @Override
+    public JSONObject multipleInvoice(byte[] image, HashMap<String, Object> options) {
+        return replay("multipleInvoice", image);
+    }
+
+    @Override
+    public JSONObject basicAccurateGeneral(byte[] image, HashMap<String, String> options) {
+        return replay("basicAccurateGeneral", image);
+    }
+
+    /**
+     * 模拟接口耗时后返回录制的响应 (每次都解析出新对象)
+     */
+    private JSONObject replay(String method, byte[] image) {
+        simulateLatency();
+
+        String json = recordings.get(method).get(DigestUtil.sha256Hex(image));
+        if (json == null) {
+            List<String> all = fallbacks.get(method);
+            if (all.isEmpty()) {
+                JSONObject error = new JSONObject();
+                error.put("error_code", "REPLAY_MISS");  // 不以 SDK 开头: OcrService 不会当作服务商故障计入熔断
+                error.put("error_msg", "no recorded response for " + method);
+                return error;
+            }
+            json = all.get((int) (cursors.get(method).getAndIncrement() % all.size()));
+        }
+        return new JSONObject(json);
+    }
+
+    /**
+     * 按配置的耗时 ± 随机波动阻塞当前线程
+     */
+    private void simulateLatency() {
+        long delay = latencyMs;
+        if (jitterMs > 0) {
+            delay += ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1);
+        }
+        if (delay <= 0) return;
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
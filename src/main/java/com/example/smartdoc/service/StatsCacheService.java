@@ -0,0 +1,210 @@
+package com.example.smartdoc.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 统计结果缓存服务 - 数据没变时不重复计算趋势、图谱和聚类
+ *
+ * <p>用户的票据只会在保存、删除、还原、审核等操作时变化，而仪表盘每次刷新都会请求统计接口。
+ * 本服务为每个用户维护一个数据版本号，每次票据变更加一；统计结果按 (用户, 接口, 版本号) 缓存在内存中，
+ * 版本号不变就直接返回上次的结果。</p>
+ *
+ * <h3>一致性:</h3>
+ * <ul>
+ *   <li>版本号在事务提交后才加一: 提交前算出的结果 (读到的是旧数据) 记在旧版本下，提交后不会再被命中</li>
+ *   <li>计算前先读版本号，计算期间数据变了，结果也只会记在旧版本下</li>
+ *   <li>全公司范围的结果 (管理员聚类) 使用全局版本号，任何用户的票据变更都会使其失效</li>
+ *   <li>旧版本的条目不主动删除，由 LRU 容量和过期时间淘汰</li>
+ * </ul>
+ *
+ * <h3>配置项 (均有默认值):</h3>
+ * <pre>
+ * smartdoc.stats.cache.max-entries=2000   # 缓存条目上限 (超出时淘汰最久未访问的)
+ * smartdoc.stats.cache.ttl-seconds=600    # 条目有效期 (兜底，也使依赖当前日期的结果及时更新)
+ * </pre>
+ *
+ * <p>缓存的结果对象由多个请求共享，调用方不能修改。同一版本同时有多个请求未命中时会各自计算一次。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.StatsController
+ */
+@Service
+public class StatsCacheService {
+
+    /** 缓存条目上限 */
+    @Value("${smartdoc.stats.cache.max-entries:2000}")
+    private int maxEntries;
+
+    /** 条目有效期 (秒) */
+    @Value("${smartdoc.stats.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    /** 各用户的数据版本号 */
+    private final ConcurrentHashMap<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /** 全局数据版本号 (任何用户的票据变更都会加一) */
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    /** LRU: "用户:接口:版本号" → 结果 (accessOrder=true 即按访问顺序排列) */
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // ==================== 统计指标 ====================
+
+    /** 命中次数 */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** 未命中次数 (含过期) */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** 过期条目数 */
+    private final AtomicLong expirations = new AtomicLong();
+
+    /** 容量淘汰条目数 */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** 版本号变更次数 */
+    private final AtomicLong bumps = new AtomicLong();
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+        final Object value;
+        final long expireAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 获取用户的数据版本号
+     *
+     * @param userId 用户 ID
+     * @return 版本号 (服务启动后从 0 开始)
+     */
+    public long getVersion(Long userId) {
+        AtomicLong version = versions.get(userId);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * 用户的票据发生变更: 版本号加一，该用户已缓存的结果全部失效
+     * <p>在事务中调用时，等事务提交后再加一 (回滚则不变)。</p>
+     *
+     * @param userId 用户 ID (为 null 时忽略)
+     */
+    public void bump(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doBump(userId);
+                }
+            });
+        } else {
+            doBump(userId);
+        }
+    }
+
+    private void doBump(Long userId) {
+        versions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+        globalVersion.incrementAndGet();
+        bumps.incrementAndGet();
+    }
+
+    /**
+     * 读取用户的统计结果，未命中时计算并缓存
+     *
+     * @param userId   用户 ID
+     * @param endpoint 结果名称 (接口名，结果还依赖其他参数时一并拼入)
+     * @param loader   计算结果 (返回 null 时不缓存)
+     * @return 统计结果
+     */
+    public <T> T get(Long userId, String endpoint, Supplier<T> loader) {
+        return lookup(userId + ":" + endpoint + ":" + getVersion(userId), loader);
+    }
+
+    /**
+     * 读取全公司范围的统计结果，未命中时计算并缓存 (任何用户的票据变更都会使其失效)
+     *
+     * @param endpoint 结果名称
+     * @param loader   计算结果 (返回 null 时不缓存)
+     * @return 统计结果
+     */
+    public <T> T getCompanyWide(String endpoint, Supplier<T> loader) {
+        return lookup("*:" + endpoint + ":" + globalVersion.get(), loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(String key, Supplier<T> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null) {
+                if (entry.expireAt > now) {
+                    hits.incrementAndGet();
+                    return (T) entry.value;
+                }
+                cache.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+
+        // 在锁外计算，避免慢查询阻塞其他用户
+        T value = loader.get();
+        if (value != null) {
+            synchronized (cache) {
+                cache.put(key, new Entry(value, now + ttlSeconds * 1000));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return 条目数、命中/未命中/过期/淘汰次数、命中率、版本号变更次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (cache) {
+            stats.put("entries", cache.size());
+        }
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("expirations", expirations.get());
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("bumps", bumps.get());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+}
@@ -0,0 +1,420 @@
+package com.example.smartdoc.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 缩略图服务 - 为票据原件生成预览缩略图并缓存在磁盘上
+ *
+ * <p>审核列表和票据列表需要小尺寸预览。如果每次浏览都渲染一遍 PDF 原件，
+ * 管理员翻页时服务器要反复做同样的渲染。本服务对每个原件 (按内容哈希) 只生成一次缩略图，
+ * 生成在后台线程池中进行，结果缓存在磁盘上，超过容量上限时淘汰最久未访问的缩略图。</p>
+ *
+ * <h3>生成时机:</h3>
+ * <pre>
+ * 1. 票据保存时预先生成 (DocController.save / save-batch)
+ * 2. 管理员获取待审核列表时，为列表中还没有缩略图的票据预先生成
+ * 3. 请求缩略图时尚未生成 → 排入后台线程池，接口返回 202，前端稍后重试
+ * </pre>
+ *
+ * <h3>生成方式:</h3>
+ * <pre>
+ * PDF:  只渲染第一页，按目标尺寸计算缩放倍数，不会渲染出大位图再缩小
+ * 图片: 解码时按比例隔行采样 (subsampling)，4000x3000 的照片不需要完整解码
+ * 输出: 最长边 max-side 像素的 JPEG
+ * </pre>
+ *
+ * <h3>配置项 (均有默认值):</h3>
+ * <pre>
+ * smartdoc.thumbnail.dir=uploads/thumbnails   # 缓存目录
+ * smartdoc.thumbnail.max-side=320             # 缩略图最长边 (px)
+ * smartdoc.thumbnail.workers=2                # 生成线程数
+ * smartdoc.thumbnail.cache-max-mb=256         # 缓存容量上限
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see BlobStoreService
+ * @see com.example.smartdoc.controller.DocController
+ */
+@Service
+public class ThumbnailService {
+
+    /** 等待生成的任务上限 (超出时丢弃，请求时会重新排队) */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    /** 生成失败记录的上限 (超出时清空，允许重试) */
+    private static final int MAX_FAILED = 10000;
+
+    /** 缩略图 JPEG 质量 */
+    private static final float JPEG_QUALITY = 0.8f;
+
+    /** 缓存目录 */
+    @Value("${smartdoc.thumbnail.dir:uploads/thumbnails}")
+    private String thumbnailDir;
+
+    /** 缩略图最长边 */
+    @Value("${smartdoc.thumbnail.max-side:320}")
+    private int maxSide;
+
+    /** 生成线程数 */
+    @Value("${smartdoc.thumbnail.workers:2}")
+    private int workers;
+
+    /** 缓存容量上限 (MB) */
+    @Value("${smartdoc.thumbnail.cache-max-mb:256}")
+    private long cacheMaxMb;
+
+    /** 原件存储 */
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    /** 缓存根目录 */
+    private Path root;
+
+    /** 生成线程池 */
+    private ThreadPoolExecutor executor;
+
+    /** 已缓存的缩略图: 哈希 → 文件大小，按访问顺序排列 (最久未访问的在前) */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /** 已缓存缩略图的总字节数 (由 entries 的锁保护) */
+    private long totalBytes;
+
+    /** 正在排队或生成中的哈希 (避免重复提交) */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /** 生成失败的哈希 (原件损坏或格式不支持，不再重试) */
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    /** 统计: 命中 / 生成 / 失败 / 淘汰 / 生成总耗时 */
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong generateMs = new AtomicLong();
+
+    /**
+     * 创建缓存目录，按修改时间加载已有的缩略图，初始化生成线程池
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(thumbnailDir).toAbsolutePath();
+        Files.createDirectories(root);
+
+        // 重启后以文件修改时间近似访问顺序
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "*.jpg")) {
+            stream.forEach(files::add);
+        }
+        Map<Path, FileTime> modified = new HashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file));
+        }
+        files.sort((a, b) -> modified.get(a).compareTo(modified.get(b)));
+        synchronized (entries) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long size = Files.size(file);
+                entries.put(name.substring(0, name.length() - ".jpg".length()), size);
+                totalBytes += size;
+            }
+            evictIfNeeded();
+        }
+
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                workers, workers,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "thumbnail-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);  // 预览让位于识别
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 应用关闭时停止线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 获取缩略图，尚未生成时排入后台生成
+     *
+     * @param hash 原件内容哈希
+     * @return 缩略图路径；尚未生成 (已排队) 或无法生成时返回 null，用 {@link #isFailed(String)} 区分
+     */
+    public Path getOrSchedule(String hash) {
+        if (hash == null) return null;
+        synchronized (entries) {
+            if (entries.get(hash) != null) {  // get 同时更新访问顺序
+                hits.incrementAndGet();
+                return resolve(hash);
+            }
+        }
+        prefetch(hash);
+        return null;
+    }
+
+    /**
+     * 预先生成缩略图 (已缓存、已排队或已失败时忽略)
+     *
+     * @param hash 原件内容哈希，null 忽略
+     */
+    public void prefetch(String hash) {
+        if (hash == null || failed.contains(hash)) return;
+        synchronized (entries) {
+            if (entries.containsKey(hash)) return;
+        }
+        if (!pending.add(hash)) return;
+        try {
+            executor.execute(() -> generate(hash));
+        } catch (RejectedExecutionException e) {
+            // 队列已满，下次请求时重新排队
+            pending.remove(hash);
+        }
+    }
+
+    /**
+     * 该原件的缩略图是否无法生成
+     *
+     * @param hash 原件内容哈希
+     * @return 原件不存在、损坏或格式不支持时返回 true
+     */
+    public boolean isFailed(String hash) {
+        return failed.contains(hash);
+    }
+
+    /**
+     * 获取缓存统计指标
+     *
+     * @return 缓存数量、占用字节、命中/生成/失败/淘汰次数、平均生成耗时
+     */
+    public Map<String, Object> getStats() {
+        long count = generated.get();
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("cached", entries.size());
+            stats.put("cachedBytes", totalBytes);
+        }
+        stats.put("maxBytes", cacheMaxMb * 1024 * 1024);
+        stats.put("pending", pending.size());
+        stats.put("hits", hits.get());
+        stats.put("generated", count);
+        stats.put("failures", failures.get());
+        stats.put("evicted", evicted.get());
+        stats.put("avgGenerateMs", count == 0 ? 0 : generateMs.get() / count);
+        return stats;
+    }
+
+    /**
+     * 在后台线程中生成缩略图
+     */
+    private void generate(String hash) {
+        long start = System.currentTimeMillis();
+        try {
+            Path original = blobStoreService.getPath(hash);
+            BufferedImage thumbnail = null;
+            if (original != null) {
+                thumbnail = "application/pdf".equals(blobStoreService.detectContentType(original))
+                        ? renderPdf(original)
+                        : readImage(original);
+            }
+            if (thumbnail == null) {
+                markFailed(hash);
+                return;
+            }
+
+            // 先写临时文件再原子重命名，读取方不会看到写了一半的缩略图
+            Path target = resolve(hash);
+            Path tmp = Files.createTempFile(root, hash, ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    writeJpeg(thumbnail, out);
+                }
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            long size = Files.size(target);
+            synchronized (entries) {
+                Long old = entries.put(hash, size);
+                totalBytes += size - (old != null ? old : 0);
+                evictIfNeeded();
+            }
+            generated.incrementAndGet();
+            generateMs.addAndGet(System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            System.out.println("缩略图生成失败: " + hash + ", " + e.getMessage());
+            markFailed(hash);
+        } finally {
+            pending.remove(hash);
+        }
+    }
+
+    /**
+     * 渲染 PDF 第一页 (按目标尺寸计算缩放倍数)
+     */
+    private BufferedImage renderPdf(Path file) throws IOException {
+        try (PDDocument document = PDDocument.load(file.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            if (document.getNumberOfPages() == 0) return null;
+            PDRectangle box = document.getPage(0).getCropBox();
+            float longest = Math.max(box.getWidth(), box.getHeight());
+            float scale = longest > 0 ? maxSide / longest : 1f;
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    /**
+     * 解码图片 (按比例隔行采样，只解码缩略图需要的像素)，再缩放到目标尺寸
+     */
+    private BufferedImage readImage(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // 采样后保留约 2 倍目标尺寸，再平滑缩小，避免直接采样产生锯齿
+                int step = Math.max(1, longest / (maxSide * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return scaleToFit(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 等比缩放到最长边不超过 max-side，并转为 RGB (去掉透明通道，JPEG 不支持)
+     */
+    private BufferedImage scaleToFit(BufferedImage image) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        double ratio = longest > maxSide ? (double) maxSide / longest : 1.0;
+        int w = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int h = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, w, h);
+            g.drawImage(image, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    /**
+     * 按固定质量编码 JPEG
+     */
+    private void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * 记录生成失败
+     */
+    private void markFailed(String hash) {
+        failures.incrementAndGet();
+        if (failed.size() >= MAX_FAILED) failed.clear();
+        failed.add(hash);
+    }
+
+    /**
+     * 超过容量上限时删除最久未访问的缩略图 (调用方持有 entries 锁)
+     */
+    private void evictIfNeeded() {
+        long maxBytes = cacheMaxMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            try {
+                Files.deleteIfExists(resolve(eldest.getKey()));
+            } catch (IOException e) {
+                System.out.println("删除缩略图失败: " + eldest.getKey() + ", " + e.getMessage());
+            }
+            totalBytes -= eldest.getValue();
+            it.remove();
+            evicted.incrementAndGet();
+        }
+    }
+
+    /**
+     * 哈希 → 缩略图路径
+     */
+    private Path resolve(String hash) {
+        return root.resolve(hash + ".jpg");
+    }
+}
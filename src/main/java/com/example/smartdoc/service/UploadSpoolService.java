@@ -0,0 +1,237 @@
+package com.example.smartdoc.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 上传文件转存与内存预算服务 - 控制识别过程中上传文件占用的堆内存
+ *
+ * <p>原先的上传路径是 file.getBytes() → PDDocument.load(bytes) → 渲染位图 → JPEG 字节 → SDK base64，
+ * 一个 20MB 的 PDF 在堆上同时存在三四份完整拷贝；批量上传时所有文件内容还要在队列中等待，
+ * 十个人同时上传大文件就可能 OOM。本服务提供两项能力:</p>
+ *
+ * <h3>1. 转存到磁盘:</h3>
+ * <pre>
+ * 超过 spool-threshold-kb 的上传文件 (以及全部批量上传文件) 以流的方式转存到 spool-dir，
+ * PDF 直接从文件打开 (PDFBox 按需读取，解码后的流数据写入同目录的临时文件)，
+ * 内容哈希也按流计算，整个文件不再进入堆内存。识别结束后删除转存文件，
+ * 启动时清理上次异常退出遗留的文件。
+ * </pre>
+ *
+ * <h3>2. 全局内存预算:</h3>
+ * <pre>
+ * 每个识别请求开始前按文件大小估算堆内存占用，从全局预算中申请，识别结束后归还。
+ * 预算不足时按到达顺序排队等待，超过 memory-wait-ms 仍申请不到则拒绝 (提示稍后重试)，
+ * 保证并发上传的堆内存占用有上限。单个请求的估算超过总预算时按总预算申请 (独占执行)。
+ * PDF 页面渲染的位图另有 smartdoc.ocr.pdf.render-memory-mb 预算，不计入这里。
+ * </pre>
+ *
+ * <h3>配置项 (均有默认值):</h3>
+ * <pre>
+ * smartdoc.upload.spool-dir=                # 转存目录，留空使用 系统临时目录/smartdoc-spool
+ * smartdoc.upload.spool-threshold-kb=1024   # 超过该大小的上传文件转存到磁盘
+ * smartdoc.upload.memory-budget-mb=128      # 识别中上传文件的堆内存预算
+ * smartdoc.upload.memory-wait-ms=10000      # 等待内存预算的最长时间
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see OcrService
+ * @see OcrBatchService
+ */
+@Service
+public class UploadSpoolService {
+
+    /** 转存文件名前缀 (启动清理时只删除带该前缀的文件) */
+    private static final String SPOOL_PREFIX = "upload-";
+
+    /** 转存目录 */
+    @Value("${smartdoc.upload.spool-dir:}")
+    private String spoolDirConfig;
+
+    /** 转存阈值 (KB) */
+    @Value("${smartdoc.upload.spool-threshold-kb:1024}")
+    private long spoolThresholdKb;
+
+    /** 堆内存预算 (MB) */
+    @Value("${smartdoc.upload.memory-budget-mb:128}")
+    private int memoryBudgetMb;
+
+    /** 等待内存预算的最长时间 (毫秒) */
+    @Value("${smartdoc.upload.memory-wait-ms:10000}")
+    private long memoryWaitMs;
+
+    /** 转存目录 (解析后的绝对路径) */
+    private Path spoolDir;
+
+    /** 内存预算 (单位 KB)，所有识别请求共享 */
+    private Semaphore memoryBudget;
+
+    /** 内存预算总量 (KB) */
+    private int memoryBudgetKb;
+
+    /** 统计: 转存文件数 / 转存字节数 / 需要等待预算的请求数 / 等待超时被拒绝的请求数 */
+    private final AtomicLong spooledFiles = new AtomicLong();
+    private final AtomicLong spooledBytes = new AtomicLong();
+    private final AtomicLong budgetWaits = new AtomicLong();
+    private final AtomicLong budgetRejections = new AtomicLong();
+
+    /**
+     * 创建转存目录，清理遗留文件，初始化内存预算
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        spoolDir = (spoolDirConfig == null || spoolDirConfig.isBlank())
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "smartdoc-spool")
+                : Paths.get(spoolDirConfig);
+        spoolDir = spoolDir.toAbsolutePath();
+        Files.createDirectories(spoolDir);
+
+        // 上次异常退出时未删除的转存文件
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(spoolDir, SPOOL_PREFIX + "*")) {
+            for (Path path : leftovers) {
+                delete(path);
+            }
+        }
+
+        memoryBudgetKb = memoryBudgetMb * 1024;
+        memoryBudget = new Semaphore(memoryBudgetKb, true);  // 公平模式，避免大文件饥饿
+    }
+
+    /**
+     * 上传文件是否应转存到磁盘
+     *
+     * @param file 上传的文件
+     * @return 超过转存阈值返回 true
+     */
+    public boolean shouldSpool(MultipartFile file) {
+        return file.getSize() > spoolThresholdKb * 1024;
+    }
+
+    /**
+     * 将上传文件以流的方式转存到磁盘
+     *
+     * <p>必须在请求线程内调用: 请求结束后容器会删除上传的临时文件。
+     * 调用方在识别结束后负责调用 {@link #delete(Path)}。</p>
+     *
+     * @param file 上传的文件
+     * @return 转存文件路径
+     * @throws IOException 写入失败
+     */
+    public Path spool(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile(spoolDir, SPOOL_PREFIX, ".tmp");
+        try {
+            file.transferTo(path);
+        } catch (IOException | RuntimeException e) {
+            delete(path);
+            throw e;
+        }
+        spooledFiles.incrementAndGet();
+        spooledBytes.addAndGet(file.getSize());
+        return path;
+    }
+
+    /**
+     * 删除转存文件 (忽略删除失败)
+     *
+     * @param path 转存文件路径，null 忽略
+     */
+    public void delete(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("删除转存文件失败: " + path + ", " + e.getMessage());
+        }
+    }
+
+    /**
+     * PDFBox 临时文件目录 (与转存文件放在同一磁盘)
+     */
+    public File getScratchDir() {
+        return spoolDir.toFile();
+    }
+
+    /**
+     * 从全局预算中申请堆内存
+     *
+     * <p>在 finally 中归还:</p>
+     * <pre>
+     * UploadSpoolService.MemoryPermit permit = uploadSpoolService.reserve(bytes);
+     * try {
+     *     ...
+     * } finally {
+     *     permit.close();
+     * }
+     * </pre>
+     *
+     * @param bytes 预计占用的堆内存字节数
+     * @return 预算凭证，关闭时归还
+     * @throws IllegalStateException 等待超时，预算仍不足
+     * @throws InterruptedException  等待时线程被中断
+     */
+    public MemoryPermit reserve(long bytes) throws InterruptedException {
+        int permits = (int) Math.min(Math.max(1, bytes / 1024), memoryBudgetKb);
+        // 只用带超时的 tryAcquire: 不带超时的版本会插队到排队者前面，小文件源源不断时大文件永远等不到
+        if (memoryBudget.hasQueuedThreads() || memoryBudget.availablePermits() < permits) {
+            budgetWaits.incrementAndGet();
+        }
+        if (!memoryBudget.tryAcquire(permits, memoryWaitMs, TimeUnit.MILLISECONDS)) {
+            budgetRejections.incrementAndGet();
+            throw new IllegalStateException("服务器繁忙，请稍后重试");
+        }
+        return new MemoryPermit(permits);
+    }
+
+    /**
+     * 获取转存和内存预算指标
+     *
+     * @return 转存文件数、字节数、预算使用量、等待和拒绝次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("spoolDir", spoolDir.toString());
+        stats.put("spooledFiles", spooledFiles.get());
+        stats.put("spooledBytes", spooledBytes.get());
+        stats.put("memoryBudgetKb", memoryBudgetKb);
+        stats.put("memoryInUseKb", memoryBudgetKb - memoryBudget.availablePermits());
+        stats.put("budgetWaits", budgetWaits.get());
+        stats.put("budgetRejections", budgetRejections.get());
+        return stats;
+    }
+
+    /**
+     * 内存预算凭证 - 关闭时归还申请的预算 (重复关闭无效)
+     */
+    public class MemoryPermit implements AutoCloseable {
+
+        /** 申请的预算 (KB) */
+        private int permits;
+
+        private MemoryPermit(int permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (permits > 0) {
+                memoryBudget.release(permits);
+                permits = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.smartdoc.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.utils.InvoiceTextExtractor;
+import com.example.smartdoc.utils.PdfInvoiceTextParser;
+
+/**
+ * 启动预热服务 - 在后台线程中预热 PDF 识别链路，完成后节点才报告就绪
+ *
+ * <p>部署后的第一次 PDF 上传要承担 PDFBox 扫描系统字体建立字体缓存 (数秒到数十秒)
+ * 以及解析代码尚未被 JIT 编译的开销，经常超过网关超时。本服务在应用启动完成后
+ * 用后台守护线程把这些开销提前付掉，不阻塞启动流程；
+ * 负载均衡通过 GET /api/health/ready 探测，只把流量分给预热完成的节点。</p>
+ *
+ * <h3>预热步骤:</h3>
+ * <pre>
+ * 1. fontCache: 查询标准字体与中文字体的替代字体，触发 PDFBox 扫描系统字体并建立缓存
+ * 2. pdf:       在内存中生成一页样例发票 PDF → 重新加载 → 抽取文字层 → 按识别时的缩放倍数渲染 → 编码 JPEG
+ * 3. parsers:   对样例发票文字反复执行文字层解析、OCR 文字字段提取和类别推断，促使 JIT 编译
+ * </pre>
+ *
+ * <p>预热只是优化: 任一步骤失败都会记录错误并继续，最终仍然报告就绪，
+ * 避免因为缺少字体等环境问题导致节点永远不接流量。
+ * 预热渲染不经过 {@link ImagePreprocessService#encodeRendered}，不计入压缩指标；
+ * 类别推断会计入词典的推断次数。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.warmup.enabled=true      # 关闭后启动即报告就绪
+ * smartdoc.warmup.iterations=200    # 解析器预热轮数
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.HealthController
+ */
+@Service
+public class WarmupService {
+
+    /** 样例发票文字 (PDF 文字层抽取结果的典型格式) */
+    private static final String SAMPLE_TEXT = String.join("\n",
+            "电子发票（普通发票）",
+            "发票号码：24442000000012345678",
+            "开票日期：2024年05月20日",
+            "购买方信息 名称：某某科技有限公司",
+            "统一社会信用代码/纳税人识别号：91440300MA5XXXXXX1",
+            "销售方信息 名称：某某餐饮管理有限公司",
+            "统一社会信用代码/纳税人识别号：91440300MA5YYYYYY2",
+            "项目名称 规格型号 单位 数量 单价 金额 税率/征收率 税额",
+            "*餐饮服务*餐费 1 94.34 94.34 6% 5.66",
+            "合 计 ¥94.34 ¥5.66",
+            "价税合计（大写） 壹佰圆整 （小写）¥100.00",
+            "开票人：张三");
+
+    /** 样例 PDF 页面尺寸: 电子发票常见的 240mm x 140mm */
+    private static final PDRectangle SAMPLE_PAGE = new PDRectangle(680, 397);
+
+    /** 识别时的 PDF 渲染倍数 (与 OcrService 一致) */
+    private static final float PDF_RENDER_SCALE = 2.0f;
+
+    /** 是否启用预热 */
+    @Value("${smartdoc.warmup.enabled:true}")
+    private boolean enabled;
+
+    /** 解析器预热轮数 */
+    @Value("${smartdoc.warmup.iterations:200}")
+    private int iterations;
+
+    /** 类别词典 */
+    @Autowired
+    private CategoryDictionary categoryDictionary;
+
+    /** 图片预处理服务 - 提供渲染缩放倍数 */
+    @Autowired
+    private ImagePreprocessService imagePreprocessService;
+
+    /** 是否已就绪 */
+    private volatile boolean ready;
+
+    /** 当前状态: PENDING / RUNNING / DONE / DISABLED */
+    private volatile String state = "PENDING";
+
+    /** 各步骤耗时 (毫秒)，按执行顺序 */
+    private final Map<String, Long> stepMillis = new LinkedHashMap<>();
+
+    /** 各步骤的错误信息 */
+    private final Map<String, String> stepErrors = new LinkedHashMap<>();
+
+    /** 预热总耗时 (毫秒) */
+    private volatile long totalMillis;
+
+    /**
+     * 应用启动完成后在后台线程中执行预热
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            state = "DISABLED";
+            ready = true;
+            return;
+        }
+        Thread thread = new Thread(this::runWarmup, "smartdoc-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 是否已就绪 (预热完成或未启用预热)
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 获取预热状态与各步骤耗时
+     *
+     * @return 状态、是否就绪、各步骤耗时和错误
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("ready", ready);
+        stats.put("iterations", iterations);
+        synchronized (stepMillis) {
+            stats.put("stepMillis", new LinkedHashMap<>(stepMillis));
+            stats.put("errors", new LinkedHashMap<>(stepErrors));
+        }
+        stats.put("totalMillis", totalMillis);
+        return stats;
+    }
+
+    /**
+     * 依次执行各预热步骤，结束后报告就绪
+     */
+    private void runWarmup() {
+        state = "RUNNING";
+        long start = System.currentTimeMillis();
+        try {
+            step("fontCache", this::warmFontCache);
+            step("pdf", this::warmPdf);
+            step("parsers", this::warmParsers);
+        } finally {
+            totalMillis = System.currentTimeMillis() - start;
+            state = "DONE";
+            ready = true;
+            System.out.println("启动预热完成: " + totalMillis + "ms " + stepMillis
+                    + (stepErrors.isEmpty() ? "" : ", 失败步骤: " + stepErrors));
+        }
+    }
+
+    /**
+     * 执行一个预热步骤并记录耗时 (失败只记录，不中断后续步骤)
+     */
+    private void step(String name, WarmupStep action) {
+        long start = System.currentTimeMillis();
+        try {
+            action.run();
+        } catch (Throwable e) {
+            synchronized (stepMillis) {
+                stepErrors.put(name, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+            e.printStackTrace();
+        }
+        synchronized (stepMillis) {
+            stepMillis.put(name, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 预热字体缓存
+     * <p>第一次查询替代字体时 PDFBox 会扫描全部系统字体并写入缓存文件，是首次渲染最慢的部分。
+     * 同时查询宋体，电子发票中未嵌入的中文字体走替代字体查找。</p>
+     */
+    private void warmFontCache() {
+        FontMappers.instance().getFontBoxFont("Helvetica", null);
+        FontMappers.instance().getTrueTypeFont("SimSun", null);
+    }
+
+    /**
+     * 预热 PDF 加载、文字抽取、渲染和 JPEG 编码
+     * <p>样例 PDF 在内存中生成 (标准字体不嵌入，渲染时同样需要查找替代字体)，
+     * 再按上传文件的方式重新加载，走一遍文字层解析和渲染识别的代码路径。</p>
+     */
+    private void warmPdf() throws IOException {
+        byte[] pdf = buildSamplePdf();
+        try (PDDocument document = PDDocument.load(pdf)) {
+            new PDFTextStripper().getText(document);
+
+            PDRectangle box = document.getPage(0).getMediaBox();
+            float scale = imagePreprocessService.pdfRenderScale(box.getWidth(), box.getHeight(), PDF_RENDER_SCALE);
+            BufferedImage image = new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+
+            ByteArrayOutputStream jpg = new ByteArrayOutputStream();
+            ImageIO.write(image, "jpg", jpg);
+        }
+    }
+
+    /**
+     * 预热解析器 (文字层解析、OCR 文字字段提取、类别推断)
+     */
+    private void warmParsers() {
+        List<String> lines = Arrays.asList(SAMPLE_TEXT.split("\n"));
+        for (int i = 0; i < iterations; i++) {
+            PdfInvoiceTextParser.parse(SAMPLE_TEXT);
+            InvoiceTextExtractor.extract(lines);
+            categoryDictionary.infer(lines);
+        }
+    }
+
+    /**
+     * 生成一页样例发票 PDF (表格框线 + 标准字体文字)
+     */
+    private byte[] buildSamplePdf() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(SAMPLE_PAGE);
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.setLineWidth(0.8f);
+                content.addRect(20, 40, 640, 300);
+                content.moveTo(20, 260);
+                content.lineTo(660, 260);
+                content.moveTo(20, 100);
+                content.lineTo(660, 100);
+                content.stroke();
+
+                String[] lines = {
+                        "ELECTRONIC INVOICE        No. 24442000000012345678        Date: 2024-05-20",
+                        "Buyer: SAMPLE TECHNOLOGY CO., LTD.      Tax ID: 91440300MA5XXXXXX1",
+                        "Item: Catering service    Qty 1    Price 94.34    Tax 6%    5.66",
+                        "Total: 100.00"
+                };
+                float y = 360;
+                for (String line : lines) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.newLineAtOffset(30, y);
+                    content.showText(line);
+                    content.endText();
+                    y -= 70;
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 预热步骤
+     */
+    @FunctionalInterface
+    private interface WarmupStep {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.smartdoc.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Aho-Corasick 多模式匹配自动机 - 一次线性扫描找出文本中出现的全部关键词
+ *
+ * <p>逐个关键词调用 String.contains 的耗时与 "关键词数 × 文本长度" 成正比，
+ * 词典变大后会明显变慢。Aho-Corasick 把所有关键词构建成一棵带失配指针的字典树，
+ * 扫描文本时每个字符只做常数次状态转移，耗时只与文本长度和命中次数有关。</p>
+ *
+ * <h3>构建过程:</h3>
+ * <pre>
+ * 1. 插入全部关键词，构建字典树 (goto 函数)
+ * 2. 按层 BFS 计算失配指针 (fail): 指向当前路径的最长真后缀对应的节点
+ * 3. 计算输出指针 (dict): 沿 fail 链最近的、本身是关键词结尾的节点，
+ *    匹配时沿 dict 链即可报告所有以当前字符结尾的关键词
+ * </pre>
+ *
+ * <h3>存储方式:</h3>
+ * <p>中文字符集很大，无法为每个节点分配完整的转移表。构建完成后每个节点的子节点
+ * 压缩为有序的 char[] + int[]，转移时二分查找，内存与关键词总长度成正比。</p>
+ *
+ * <p>实例构建后不可变，可被多个线程同时使用。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.CategoryDictionary
+ */
+public class AhoCorasick {
+
+    /** 各节点子节点的字符 (有序) */
+    private final char[][] childChars;
+
+    /** 各节点子节点的编号 (与 childChars 一一对应) */
+    private final int[][] childNodes;
+
+    /** 失配指针 */
+    private final int[] fail;
+
+    /** 输出指针: 沿 fail 链最近的关键词结尾节点，没有则为 -1 */
+    private final int[] dict;
+
+    /** 以该节点结尾的关键词编号，不是关键词结尾则为 -1 */
+    private final int[] keywordAt;
+
+    /** 关键词数量 */
+    private final int keywordCount;
+
+    /**
+     * 构建自动机
+     *
+     * @param keywords 关键词列表，编号即列表下标；重复的关键词只保留第一个编号，空串忽略
+     */
+    public AhoCorasick(List<String> keywords) {
+        // 1. 构建字典树 (构建期使用 TreeMap，便于之后压缩为有序数组)
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ends.add(-1);
+        for (int k = 0; k < keywords.size(); k++) {
+            String word = keywords.get(k);
+            if (word == null || word.isEmpty()) continue;
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                Integer next = children.get(node).get(word.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    ends.add(-1);
+                    children.get(node).put(word.charAt(i), next);
+                }
+                node = next;
+            }
+            if (ends.get(node) == -1) ends.set(node, k);
+        }
+
+        int n = children.size();
+        childChars = new char[n][];
+        childNodes = new int[n][];
+        keywordAt = new int[n];
+        for (int i = 0; i < n; i++) {
+            TreeMap<Character, Integer> map = children.get(i);
+            childChars[i] = new char[map.size()];
+            childNodes[i] = new int[map.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> e : map.entrySet()) {
+                childChars[i][j] = e.getKey();
+                childNodes[i][j] = e.getValue();
+                j++;
+            }
+            keywordAt[i] = ends.get(i);
+        }
+        keywordCount = keywords.size();
+
+        // 2. BFS 计算失配指针和输出指针
+        fail = new int[n];
+        dict = new int[n];
+        Arrays.fill(dict, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : childNodes[0]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int j = 0; j < childChars[node].length; j++) {
+                char c = childChars[node][j];
+                int child = childNodes[node][j];
+                int f = fail[node];
+                int next;
+                while ((next = step(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : 0;
+                dict[child] = keywordAt[fail[child]] >= 0 ? fail[child] : dict[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 扫描文本，每命中一次关键词回调一次
+     *
+     * @param text      待扫描文本
+     * @param onKeyword 回调参数为关键词编号 (构建时的列表下标)
+     */
+    public void forEachMatch(CharSequence text, IntConsumer onKeyword) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = step(node, c)) < 0 && node != 0) {
+                node = fail[node];
+            }
+            node = next >= 0 ? next : 0;
+
+            // 报告以当前字符结尾的全部关键词
+            if (keywordAt[node] >= 0) onKeyword.accept(keywordAt[node]);
+            for (int d = dict[node]; d >= 0; d = dict[d]) {
+                onKeyword.accept(keywordAt[d]);
+            }
+        }
+    }
+
+    /**
+     * 关键词数量 (含被忽略的空串)
+     */
+    public int getKeywordCount() {
+        return keywordCount;
+    }
+
+    /**
+     * goto 函数: 在节点的有序子节点中二分查找字符
+     *
+     * @return 子节点编号，不存在返回 -1
+     */
+    private int step(int node, char c) {
+        int idx = Arrays.binarySearch(childChars[node], c);
+        return idx >= 0 ? childNodes[node][idx] : -1;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.smartdoc.utils;
 
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
@@ -20,12 +21,25 @@ import java.util.List;
  * |Z| > 3 → 极端异常 (约 0.3% 的极端值)
  * </pre>
  * 
+ * <h3>稳健检测 (修正 Z-Score):</h3>
+ * <pre>
+ * M = 0.6745 × (X - 中位数) / MAD      MAD = median(|Xi - 中位数|)
+ * |M| > 3.5 → 异常 (Iglewicz-Hoaglin 建议阈值)
+ * </pre>
+ * <p>均值和标准差会被异常值本身拉偏 (一笔巨额消费让 σ 变大，反而掩盖了后续的异常)，
+ * 中位数和 MAD 不受少量极端值影响。</p>
+ * 
+ * <h3>原始类型版本:</h3>
+ * <p>List&lt;Double&gt; 版本要求调用方先把金额装箱，大数据量时装箱对象的分配和指针跳转比计算本身还慢。
+ * double[] / DoubleBuffer 重载直接遍历原始类型，结果与 List 版本一致 (浮点舍入误差内)；
+ * {@link #calculateMeanAndStdDev(double[])} 一次遍历同时得到均值和标准差。</p>
+ * 
  * <h3>应用场景:</h3>
  * <p>在发票保存时，将新发票金额与历史同类别金额对比，
  * 自动标记异常高或低的发票，提醒用户关注。</p>
  * 
  * @author SmartDoc Team
- * @see com.example.smartdoc.controller.DocController#saveInvoice
+ * @see com.example.smartdoc.service.AnomalyStatsService
  */
 public class AnomalyDetectionUtil {
 
@@ -68,6 +82,98 @@ public class AnomalyDetectionUtil {
         return Math.sqrt(temp / (data.size() - 1));
     }
 
+    /**
+     * 计算均值 (原始类型数组版本)
+     * 
+     * @param data 数值数组
+     * @return 均值，空数组返回 0.0
+     */
+    public static double calculateMean(double[] data) {
+        if (data == null || data.length == 0) return 0.0;
+        return sum(data, 0, data.length) / data.length;
+    }
+
+    /**
+     * 计算均值 (DoubleBuffer 版本，范围为 position ~ limit，不改变 position)
+     * 
+     * @param data 数值缓冲区 (堆内或直接内存)
+     * @return 均值，没有剩余元素返回 0.0
+     */
+    public static double calculateMean(DoubleBuffer data) {
+        if (data == null || !data.hasRemaining()) return 0.0;
+        int n = data.remaining();
+        if (data.hasArray()) {
+            int from = data.arrayOffset() + data.position();
+            return sum(data.array(), from, from + n) / n;
+        }
+        double sum = 0.0;
+        for (int i = data.position(); i < data.limit(); i++) {
+            sum += data.get(i);
+        }
+        return sum / n;
+    }
+
+    /**
+     * 计算样本标准差 (原始类型数组版本)
+     * 
+     * @param data 数值数组
+     * @param mean 预先计算的均值
+     * @return 标准差，数据不足返回 0.0
+     */
+    public static double calculateStdDev(double[] data, double mean) {
+        if (data == null || data.length < 2) return 0.0;
+        double temp = 0;
+        for (double a : data) {
+            temp += (a - mean) * (a - mean);
+        }
+        return Math.sqrt(temp / (data.length - 1));
+    }
+
+    /**
+     * 一次遍历同时计算均值和样本标准差
+     * 
+     * <h4>计算公式 (平移数据):</h4>
+     * <pre>
+     * 以首个元素 K 为参照: S1 = Σ(Xi - K)，S2 = Σ(Xi - K)²
+     * μ = K + S1 / n
+     * σ = √[(S2 - S1² / n) / (n-1)]
+     * </pre>
+     * <p>直接用 Σx² - (Σx)²/n 在均值远大于波动时会因相减损失精度，平移到 K 附近后避免了这个问题，
+     * 又不像 Welford 那样每个元素都要做一次除法。</p>
+     * 
+     * @param data 数值数组
+     * @return [均值, 标准差]；空数组返回 [0, 0]，只有一个元素时标准差为 0
+     */
+    public static double[] calculateMeanAndStdDev(double[] data) {
+        if (data == null || data.length == 0) return new double[]{0.0, 0.0};
+        return moments(data, 0, data.length);
+    }
+
+    /**
+     * 一次遍历同时计算均值和样本标准差 (DoubleBuffer 版本，范围为 position ~ limit，不改变 position)
+     * 
+     * @param data 数值缓冲区 (堆内或直接内存)
+     * @return [均值, 标准差]
+     * @see #calculateMeanAndStdDev(double[])
+     */
+    public static double[] calculateMeanAndStdDev(DoubleBuffer data) {
+        if (data == null || !data.hasRemaining()) return new double[]{0.0, 0.0};
+        int n = data.remaining();
+        if (data.hasArray()) {
+            int from = data.arrayOffset() + data.position();
+            return moments(data.array(), from, from + n);
+        }
+        double k = data.get(data.position());
+        double s1 = 0.0;
+        double s2 = 0.0;
+        for (int i = data.position(); i < data.limit(); i++) {
+            double d = data.get(i) - k;
+            s1 += d;
+            s2 += d * d;
+        }
+        return toMeanAndStdDev(k, s1, s2, n);
+    }
+
     /**
      * 判断是否为异常值 (Z-Score 算法)
      * 
@@ -90,4 +196,72 @@ public class AnomalyDetectionUtil {
         // 也可设为 3.0 (约0.3%的极端数据)
         return zScore > 2.0;
     }
+
+    /**
+     * 判断是否为异常值 (修正 Z-Score 算法)
+     * 
+     * <p>用中位数代替均值、MAD 代替标准差，常数 0.6745 使正态分布下 M 与普通 Z-Score 尺度一致。</p>
+     * 
+     * @param value     待检测的数值
+     * @param median    样本中位数
+     * @param mad       中位数绝对偏差
+     * @param threshold |M| 的阈值，常用 3.5
+     * @return true=异常, false=正常；MAD 为 0 (半数以上样本相同) 时无法判断，返回 false
+     */
+    public static boolean isRobustAnomaly(double value, double median, double mad, double threshold) {
+        if (!(mad > 0)) return false;
+        double modifiedZ = 0.6745 * Math.abs(value - median) / mad;
+        return modifiedZ > threshold;
+    }
+
+    /**
+     * 数组区间求和: 四路独立累加，打断加法的依赖链，让 CPU 流水线并行执行
+     */
+    private static double sum(double[] a, int from, int to) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += a[i];
+            s1 += a[i + 1];
+            s2 += a[i + 2];
+            s3 += a[i + 3];
+        }
+        for (; i < to; i++) {
+            s0 += a[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 数组区间的平移一阶、二阶矩 (两路累加)
+     */
+    private static double[] moments(double[] a, int from, int to) {
+        double k = a[from];
+        double s1a = 0, s1b = 0, s2a = 0, s2b = 0;
+        int i = from;
+        for (; i + 1 < to; i += 2) {
+            double d0 = a[i] - k;
+            double d1 = a[i + 1] - k;
+            s1a += d0;
+            s1b += d1;
+            s2a += d0 * d0;
+            s2b += d1 * d1;
+        }
+        if (i < to) {
+            double d = a[i] - k;
+            s1a += d;
+            s2a += d * d;
+        }
+        return toMeanAndStdDev(k, s1a + s1b, s2a + s2b, to - from);
+    }
+
+    /**
+     * 由平移矩得到均值和样本标准差 (浮点误差导致的负方差截断为 0)
+     */
+    private static double[] toMeanAndStdDev(double k, double s1, double s2, int n) {
+        double mean = k + s1 / n;
+        if (n < 2) return new double[]{mean, 0.0};
+        double variance = Math.max(0, (s2 - s1 * s1 / n) / (n - 1));
+        return new double[]{mean, Math.sqrt(variance)};
+    }
 }
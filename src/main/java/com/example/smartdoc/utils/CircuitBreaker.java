@@ -0,0 +1,154 @@
+package com.example.smartdoc.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 熔断器 - 外部服务持续故障时快速失败，避免请求堆积和重试风暴
+ *
+ * <h3>状态转换:</h3>
+ * <pre>
+ *            连续失败达到阈值
+ *   CLOSED ──────────────────→ OPEN
+ *     ↑                          │ 经过 openMillis
+ *     │ 试探成功                  ↓
+ *     └────────────────────── HALF_OPEN ──试探失败──→ OPEN
+ *
+ * CLOSED    - 正常放行，记录连续失败次数
+ * OPEN      - 直接拒绝，不访问外部服务
+ * HALF_OPEN - 只放行一个试探请求，根据结果决定恢复或重新熔断
+ * </pre>
+ *
+ * <p>调用方在请求前调用 {@link #allowRequest()}，请求结束后必须调用
+ * {@link #recordSuccess()} 或 {@link #recordFailure()} 之一。</p>
+ *
+ * @author SmartDoc Team
+ */
+public class CircuitBreaker {
+
+    /** 熔断器状态 */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** 触发熔断的连续失败次数 */
+    private final int failureThreshold;
+
+    /** 熔断持续时间 (毫秒) */
+    private final long openMillis;
+
+    /** 当前状态 */
+    private State state = State.CLOSED;
+
+    /** 连续失败次数 */
+    private int consecutiveFailures;
+
+    /** 进入 OPEN 状态的时间 */
+    private long openedAt;
+
+    /** HALF_OPEN 状态下是否已有试探请求在进行 */
+    private boolean trialInFlight;
+
+    // ==================== 统计指标 ====================
+
+    /** 熔断次数 */
+    private long timesOpened;
+
+    /** 被熔断拒绝的请求数 */
+    private long shortCircuited;
+
+    /** 成功次数 */
+    private long successes;
+
+    /** 失败次数 */
+    private long failures;
+
+    /**
+     * @param failureThreshold 触发熔断的连续失败次数
+     * @param openMillis       熔断持续时间 (毫秒)，之后进入半开状态试探
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 判断是否放行本次请求
+     *
+     * @return true 放行 (请求结束后必须记录结果)；false 熔断中，应直接失败
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (!trialInFlight) {
+                    trialInFlight = true;
+                    return true;
+                }
+                shortCircuited++;
+                return false;
+            default:
+                shortCircuited++;
+                return false;
+        }
+    }
+
+    /**
+     * 是否处于熔断状态 (不改变状态，用于在排队前快速判断)
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.currentTimeMillis() - openedAt < openMillis;
+    }
+
+    /**
+     * 记录一次成功调用
+     */
+    public synchronized void recordSuccess() {
+        successes++;
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * 记录一次失败调用
+     */
+    public synchronized void recordFailure() {
+        failures++;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialInFlight = false;
+            timesOpened++;
+        }
+    }
+
+    /**
+     * 获取当前状态
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 获取统计指标
+     *
+     * @return 状态、连续失败次数、熔断次数、拒绝数等
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", state.name());
+        stats.put("consecutiveFailures", consecutiveFailures);
+        stats.put("timesOpened", timesOpened);
+        stats.put("shortCircuited", shortCircuited);
+        stats.put("successes", successes);
+        stats.put("failures", failures);
+        return stats;
+    }
+}
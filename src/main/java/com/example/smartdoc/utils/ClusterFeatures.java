@@ -0,0 +1,178 @@
+package com.example.smartdoc.utils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 聚类特征工具类 - 把票据转换为标准化的特征向量
+ *
+ * <p>聚类时距离在特征空间中计算。原来只用 (几号, 金额) 两维且不做缩放，
+ * 金额的量级 (几十到几千) 远大于日期 (1-31)，距离几乎只由金额决定。</p>
+ *
+ * <h3>可选特征:</h3>
+ * <pre>
+ * day         消费日期是几号 (1-31)                                1 维
+ * weekday     星期几，按周期编码为 (sin, cos)，周日与周一相邻          2 维
+ * amount      金额                                                 1 维
+ * log-amount  ln(1 + 金额)，压缩大额支出的长尾                        1 维
+ * category    消费类别 one-hot (数据中出现的每个类别一维，按名称排序)   类别数 维
+ * </pre>
+ *
+ * <h3>标准化:</h3>
+ * <p>数值特征每一维做 z-score (减均值、除以标准差，标准差为 0 的维度置 0)，
+ * weekday 的两维再各除以 √2，使该特征合计的方差为 1。</p>
+ *
+ * <p>category 不做 z-score: 频率为 p 的类别 z-score 后约为 1/√p，
+ * 只出现一次的类别会在自己的维度上远离其他所有点，主导聚类距离。
+ * 因此 one-hot 只减去列均值 (类别频率)，再统一乘以 1/√2:
+ * 两张不同类别的票据在类别特征上的距离平方恰好为 1，相同类别为 0，
+ * 与类别数和各类别的频率无关，和单个数值特征 (方差为 1) 处于同一量级。</p>
+ *
+ * @author SmartDoc Team
+ * @see KMeansUtil#fit(List, double[][], int, int, Long)
+ */
+public class ClusterFeatures {
+
+    /** 几号 */
+    public static final String DAY = "day";
+    /** 星期几 (周期编码) */
+    public static final String WEEKDAY = "weekday";
+    /** 金额 */
+    public static final String AMOUNT = "amount";
+    /** 对数金额 */
+    public static final String LOG_AMOUNT = "log-amount";
+    /** 类别 one-hot */
+    public static final String CATEGORY = "category";
+
+    private static final List<String> SUPPORTED = List.of(DAY, WEEKDAY, AMOUNT, LOG_AMOUNT, CATEGORY);
+
+    /** 类别为空时归入的类别 */
+    private static final String DEFAULT_CATEGORY = "其他";
+
+    /** 启用的特征 (按配置顺序) */
+    private final List<String> features;
+
+    private ClusterFeatures(List<String> features) {
+        this.features = Collections.unmodifiableList(features);
+    }
+
+    /**
+     * 解析特征配置
+     *
+     * @param spec 逗号分隔的特征名，如 "day,weekday,log-amount,category"
+     * @return 特征配置
+     * @throws IllegalArgumentException 为空或包含不支持的特征
+     */
+    public static ClusterFeatures parse(String spec) {
+        Set<String> features = new LinkedHashSet<>();
+        if (spec != null) {
+            for (String name : spec.split(",")) {
+                String feature = name.trim().toLowerCase();
+                if (feature.isEmpty()) continue;
+                if (!SUPPORTED.contains(feature)) {
+                    throw new IllegalArgumentException("不支持的聚类特征: " + feature + "，可选: " + SUPPORTED);
+                }
+                features.add(feature);
+            }
+        }
+        if (features.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个聚类特征，可选: " + SUPPORTED);
+        }
+        return new ClusterFeatures(new ArrayList<>(features));
+    }
+
+    /**
+     * @return 启用的特征名
+     */
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    /**
+     * 构建标准化后的特征矩阵
+     *
+     * @param dates      消费日期
+     * @param amounts    金额
+     * @param categories 消费类别 (为空时视为 "其他")
+     * @return 按列存储的特征，columns[d][i] 为第 i 张票据的第 d 维
+     */
+    public double[][] build(LocalDate[] dates, double[] amounts, String[] categories) {
+        int n = dates.length;
+        if (amounts.length != n || categories.length != n) {
+            throw new IllegalArgumentException("日期、金额、类别的数量不一致");
+        }
+        List<double[]> columns = new ArrayList<>();
+        for (String feature : features) {
+            switch (feature) {
+                case DAY:
+                    double[] day = new double[n];
+                    for (int i = 0; i < n; i++) day[i] = dates[i].getDayOfMonth();
+                    columns.add(standardize(day, 1.0));
+                    break;
+                case WEEKDAY:
+                    double[] sin = new double[n];
+                    double[] cos = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        double angle = 2 * Math.PI * (dates[i].getDayOfWeek().getValue() - 1) / 7;
+                        sin[i] = Math.sin(angle);
+                        cos[i] = Math.cos(angle);
+                    }
+                    columns.add(standardize(sin, 1 / Math.sqrt(2)));
+                    columns.add(standardize(cos, 1 / Math.sqrt(2)));
+                    break;
+                case AMOUNT:
+                    columns.add(standardize(amounts.clone(), 1.0));
+                    break;
+                case LOG_AMOUNT:
+                    double[] log = new double[n];
+                    for (int i = 0; i < n; i++) log[i] = Math.log1p(Math.max(0, amounts[i]));
+                    columns.add(standardize(log, 1.0));
+                    break;
+                case CATEGORY:
+                    Map<String, double[]> oneHot = new TreeMap<>();
+                    for (int i = 0; i < n; i++) {
+                        String category = categories[i] == null || categories[i].isBlank()
+                                ? DEFAULT_CATEGORY : categories[i];
+                        oneHot.computeIfAbsent(category, c -> new double[n])[i] = 1;
+                    }
+                    for (double[] column : oneHot.values()) {
+                        columns.add(center(column, 1 / Math.sqrt(2)));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException(feature);
+            }
+        }
+        return columns.toArray(new double[0][]);
+    }
+
+    /**
+     * 只减去均值、乘以固定权重 (原地修改)，不除以标准差
+     */
+    private static double[] center(double[] column, double weight) {
+        double mean = AnomalyDetectionUtil.calculateMeanAndStdDev(column)[0];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = (column[i] - mean) * weight;
+        }
+        return column;
+    }
+
+    /**
+     * z-score 标准化后乘以权重 (原地修改)
+     */
+    private static double[] standardize(double[] column, double weight) {
+        double[] meanAndStd = AnomalyDetectionUtil.calculateMeanAndStdDev(column);
+        double mean = meanAndStd[0];
+        double std = meanAndStd[1];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = std > 0 ? (column[i] - mean) / std * weight : 0.0;
+        }
+        return column;
+    }
+}
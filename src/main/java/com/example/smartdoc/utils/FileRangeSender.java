@@ -0,0 +1,159 @@
+package com.example.smartdoc.utils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 文件下载工具 - 支持 ETag 条件请求、Range 断点续传，尽量零拷贝发送
+ *
+ * <p>大 PDF 原件如果先读入 byte[] 再写给响应，每次预览都要在堆上复制整份文件。
+ * 本工具把文件内容直接交给容器或内核发送:</p>
+ *
+ * <h3>发送方式:</h3>
+ * <pre>
+ * 1. Tomcat NIO 连接器支持 sendfile 时: 只设置请求属性，由容器在请求结束后调用 sendfile 发送，
+ *    文件内容不经过 JVM 堆
+ * 2. 否则: FileChannel.transferTo 写入响应输出通道，只使用小块缓冲区，不分配整个文件大小的数组
+ * </pre>
+ *
+ * <h3>支持的请求头:</h3>
+ * <pre>
+ * If-None-Match: "etag"      → 304 Not Modified
+ * Range: bytes=0-1023        → 206 Partial Content (只支持单区间；多区间按完整文件返回)
+ * Range: bytes=1024-         → 从 1024 到文件末尾
+ * Range: bytes=-500          → 最后 500 字节
+ * If-Range: "etag"           → ETag 不一致时忽略 Range，返回完整文件
+ * 超出文件长度的区间          → 416 Range Not Satisfiable
+ * </pre>
+ *
+ * <p>响应带 Cache-Control: private, no-cache: 浏览器可以缓存，但每次使用前都要验证，
+ * 内容未变时只返回 304，不重复传输文件。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.DocController
+ */
+public class FileRangeSender {
+
+    /** Tomcat sendfile 相关的请求属性 */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 发送文件
+     *
+     * @param file        文件路径
+     * @param contentType MIME 类型
+     * @param etag        强 ETag (不含引号)，通常为内容哈希；客户端每次用 If-None-Match 验证
+     * @param request     HTTP 请求
+     * @param response    HTTP 响应
+     * @throws IOException 读取文件或写响应失败
+     */
+    public static void send(Path file, String contentType, String etag,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = Files.size(file);
+        String quotedEtag = "\"" + etag + "\"";
+
+        response.setHeader("ETag", quotedEtag);
+        response.setHeader("Accept-Ranges", "bytes");
+        // 按票据 ID 访问的地址，内容会随重新保存而变、删除后应不再返回: 每次都向服务端验证 ETag
+        response.setHeader("Cache-Control", "private, no-cache");
+
+        // 1. 条件请求: 客户端缓存的版本就是当前版本
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(quotedEtag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // 2. 解析 Range (If-Range 与当前 ETag 不一致时按完整文件返回)
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.trim().equals(quotedEtag))) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType);
+        response.setContentLengthLong(Math.max(count, 0));
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        // 3. 发送内容
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);  // 不含
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, out);
+                if (sent <= 0) break;
+                position += sent;
+                count -= sent;
+            }
+        }
+    }
+
+    /**
+     * 解析单区间 Range 请求头
+     *
+     * @return {start, end} (含两端)；空数组表示不支持的格式，按完整文件返回；null 表示区间不可满足
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // 后缀区间: 最后 N 字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) return null;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                if (start >= length) return null;
+                end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+                if (end < start) return new long[0];  // 语法无效，忽略 Range
+                end = Math.min(end, length - 1);
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.smartdoc.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 发票文字提取引擎 - 从通用 OCR 的逐行文字中提取关键字段
+ *
+ * <p>所有正则在类加载时编译一次；每份文档只创建一组 Matcher，
+ * 逐行 reset 复用，一次遍历同时提取全部字段，不再拼接全文做关键词匹配。</p>
+ *
+ * <h3>提取字段:</h3>
+ * <pre>
+ * 金额:     1,234.56 / 100.00 格式的数字，取最大值 (通常是价税合计)
+ * 日期:     2024年5月20日 / 2024-05-20 / 2024.05.20，统一为 yyyy-MM-dd
+ * 发票号码: "发票号码" 后的 8~20 位数字；没有标签时取独立的 20 位数字 (全电发票)
+ * 税号:     "纳税人识别号/统一社会信用代码" 后的 15~20 位代码，或独立的 18 位统一社会信用代码
+ * </pre>
+ *
+ * <p>类别推断不在这里处理，由 {@link com.example.smartdoc.service.CategoryDictionary} 按词典完成。</p>
+ *
+ * <h3>示例:</h3>
+ * <pre>
+ * InvoiceTextExtractor.Result r = InvoiceTextExtractor.extract(lines);
+ * r.getAmount();      // 100.0
+ * r.getAmountLine();  // 金额所在行号，用于取该行的 OCR 置信度
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.OcrService
+ */
+public class InvoiceTextExtractor {
+
+    /** 金额上限: 超过视为误识别 (如把发票号码识别为金额) */
+    private static final double MAX_AMOUNT = 1000000;
+
+    /**
+     * 金额: 千分位或普通小数，两位小数
+     * <p>前后不能紧挨数字或小数点，避免把 2024.05.20 识别为 2024.05，或把 1234.56 截成 234.56。</p>
+     */
+    private static final Pattern AMOUNT = Pattern.compile("(?<![\\d.,])(\\d{1,3}(?:,\\d{3})+|\\d+)\\.(\\d{2})(?![\\d.])");
+
+    /** 日期: 年月日之间允许 - 年 月 / . 分隔 */
+    private static final Pattern DATE = Pattern.compile("(20\\d{2})\\s*[-年/.]\\s*(\\d{1,2})\\s*[-月/.]\\s*(\\d{1,2})");
+
+    /** 带标签的发票号码 */
+    private static final Pattern INVOICE_NUM = Pattern.compile("发票号码[:：]?\\s*(\\d{8,20})");
+
+    /** 无标签时的全电发票号码 (20 位) */
+    private static final Pattern INVOICE_NUM_BARE = Pattern.compile("(?<!\\d)(\\d{20})(?!\\d)");
+
+    /** 带标签的税号 */
+    private static final Pattern TAX_ID = Pattern.compile("(?:纳税人识别号|统一社会信用代码)[^0-9A-Z]{0,10}([0-9A-Z]{15,20})");
+
+    /** 无标签的统一社会信用代码: 登记管理部门码 + 机构类别码 + 6 位行政区划码 + 10 位主体标识 */
+    private static final Pattern TAX_ID_BARE = Pattern.compile("(?<![0-9A-Z])([0-9A-HJ-NPQRTUWXY]{2}\\d{6}[0-9A-HJ-NPQRTUWXY]{10})(?![0-9A-Z])");
+
+    /**
+     * 一次遍历提取全部字段
+     *
+     * @param lines OCR 识别出的文字行
+     * @return 提取结果 (未提取到的字段为 null，行号为 -1)
+     */
+    public static Result extract(List<String> lines) {
+        Result r = new Result();
+        Matcher amount = AMOUNT.matcher("");
+        Matcher date = DATE.matcher("");
+        Matcher num = INVOICE_NUM.matcher("");
+        Matcher numBare = INVOICE_NUM_BARE.matcher("");
+        Matcher tax = TAX_ID.matcher("");
+        Matcher taxBare = TAX_ID_BARE.matcher("");
+
+        double maxAmount = 0.0;
+        String bareNumber = null;
+        int bareNumberLine = -1;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            // 大部分行是 "单价"、"备注" 这类短标签，先用廉价的字符检查跳过不可能匹配的正则
+            boolean hasDot = line.indexOf('.') >= 0;
+            boolean longEnough = line.length() >= 15;
+
+            // 1. 金额 (取最大值)
+            amount.reset(line);
+            while (hasDot && amount.find()) {
+                double v = parseAmount(amount.group(1), amount.group(2));
+                if (v > maxAmount && v < MAX_AMOUNT) {
+                    maxAmount = v;
+                    r.amountLine = i;
+                }
+            }
+
+            // 2. 日期 (取第一个)
+            if (r.date == null && line.length() >= 8 && date.reset(line).find()) {
+                r.date = formatDate(date.group(1), date.group(2), date.group(3));
+                r.dateLine = i;
+            }
+
+            // 3. 发票号码 (优先带标签的)
+            if (r.invoiceNumber == null && line.contains("发票号码") && num.reset(line).find()) {
+                r.invoiceNumber = num.group(1);
+                r.invoiceNumberLine = i;
+            } else if (bareNumber == null && line.length() >= 20 && numBare.reset(line).find()) {
+                bareNumber = numBare.group(1);
+                bareNumberLine = i;
+            }
+
+            // 4. 税号 (按出现顺序全部收集: 购买方在前，销售方在后)
+            if (longEnough && tax.reset(line).find()) {
+                r.taxIds.add(tax.group(1));
+            } else if (longEnough && taxBare.reset(line).find()) {
+                r.taxIds.add(taxBare.group(1));
+            }
+        }
+
+        if (maxAmount > 0) r.amount = maxAmount;
+        if (r.invoiceNumber == null && bareNumber != null) {
+            r.invoiceNumber = bareNumber;
+            r.invoiceNumberLine = bareNumberLine;
+        }
+        return r;
+    }
+
+    /**
+     * 将各种格式的日期统一为 yyyy-MM-dd
+     *
+     * @param text 含日期的文字，如 "2024年5月20日"、"2024/05/20 10:30"
+     * @return 标准化后的日期，未找到日期返回 null
+     */
+    public static String normalizeDate(String text) {
+        if (text == null) return null;
+        Matcher m = DATE.matcher(text);
+        return m.find() ? formatDate(m.group(1), m.group(2), m.group(3)) : null;
+    }
+
+    /**
+     * 查找文字中的全部税号 (按出现顺序)
+     *
+     * @param text 文字
+     * @return 税号列表，可能为空
+     */
+    public static List<String> findTaxIds(String text) {
+        List<String> ids = new ArrayList<>();
+        Matcher m = TAX_ID.matcher(text);
+        while (m.find()) ids.add(m.group(1));
+        if (ids.isEmpty()) {
+            m = TAX_ID_BARE.matcher(text);
+            while (m.find()) ids.add(m.group(1));
+        }
+        return ids;
+    }
+
+    /**
+     * 解析金额的整数部分 (可能带千分位) 和两位小数
+     */
+    private static double parseAmount(String integerPart, String fraction) {
+        if (integerPart.length() > 12) return MAX_AMOUNT;  // 超长数字串，必然超过上限
+        long value = 0;
+        for (int i = 0; i < integerPart.length(); i++) {
+            char c = integerPart.charAt(i);
+            if (c != ',') value = value * 10 + (c - '0');
+        }
+        return value + ((fraction.charAt(0) - '0') * 10 + (fraction.charAt(1) - '0')) / 100.0;
+    }
+
+    /**
+     * 补零拼接为 yyyy-MM-dd
+     */
+    private static String formatDate(String year, String month, String day) {
+        return year + (month.length() == 1 ? "-0" : "-") + month + (day.length() == 1 ? "-0" : "-") + day;
+    }
+
+    /**
+     * 提取结果
+     */
+    public static class Result {
+        /** 金额 (最大值) */
+        private Double amount;
+        /** 金额所在行号 */
+        private int amountLine = -1;
+        /** 日期 (yyyy-MM-dd) */
+        private String date;
+        /** 日期所在行号 */
+        private int dateLine = -1;
+        /** 发票号码 */
+        private String invoiceNumber;
+        /** 发票号码所在行号 */
+        private int invoiceNumberLine = -1;
+        /** 税号 (按出现顺序) */
+        private final List<String> taxIds = new ArrayList<>();
+
+        public Double getAmount() { return amount; }
+        public int getAmountLine() { return amountLine; }
+        public String getDate() { return date; }
+        public int getDateLine() { return dateLine; }
+        public String getInvoiceNumber() { return invoiceNumber; }
+        public int getInvoiceNumberLine() { return invoiceNumberLine; }
+        public List<String> getTaxIds() { return taxIds; }
+
+        /**
+         * 销售方税号: 发票上购买方在前、销售方在后，取最后一个
+         */
+        public String getSellerTaxId() {
+            return taxIds.isEmpty() ? null : taxIds.get(taxIds.size() - 1);
+        }
+    }
+}
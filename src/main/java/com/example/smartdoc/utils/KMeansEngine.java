@@ -0,0 +1,616 @@
+package com.example.smartdoc.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * K-Means 聚类引擎 - 基于原始类型数组的 K-Means 实现
+ *
+ * <p>{@link KMeansUtil} 的计算核心。数据按列存储 (struct-of-arrays): columns[d][i] 为第 i 个点的第 d 维，
+ * 每一维是一个连续的 double[]，不为每个点创建对象，也不修改调用方的数据。</p>
+ *
+ * <h3>算法流程:</h3>
+ * <pre>
+ * 1. k-means++ 选初始中心: 第一个中心随机选取，之后每个中心按 "到已选中心最近距离的平方" 加权抽样，
+ *    已选过的点权重为 0，不会选出重复的中心 (不同的点少于 K 个时除外)
+ * 2. 分配: 每个点归入距离最近的中心，
+ *    同时累加各聚类的坐标和与点数 —— 一次遍历同时完成分配和中心的累加
+ * 3. 更新: 中心 = 坐标和 / 点数 (空聚类保留原中心)
+ * 4. 没有点改变所属聚类 (收敛) 或达到最大迭代次数时结束
+ * </pre>
+ *
+ * <h3>Hamerly 加速 (默认):</h3>
+ * <p>每个点维护两个界: upper ≥ 到所属中心的距离，lower ≤ 到其他中心的最近距离；
+ * 每个中心记录 s(c) = 到最近的其他中心距离的一半。中心移动后，upper 加上所属中心的移动距离，
+ * lower 减去其他中心的最大移动距离。由三角不等式，upper ≤ max(s(c), lower) 的点不可能改变归属，
+ * 跳过距离计算；否则先收紧 upper，仍不满足时才计算到所有中心的距离。
+ * 结果与逐点计算 ({@link Algorithm#LLOYD}) 相同，但迭代后期绝大多数点被跳过，
+ * 维度越高省下的越多。每个点只需两个界 (Elkan 需要 k 个)，适合 K 较小的场景。</p>
+ *
+ * <h3>并行:</h3>
+ * <p>点数达到 {@link #PARALLEL_THRESHOLD} 时，分配步骤在 ForkJoinPool 公共池中按区间二分并行执行，
+ * 各区间的部分和按固定的树形顺序合并，并行与否结果一致 (浮点舍入误差内)，给定种子时结果可复现。</p>
+ *
+ * <h3>Mini-batch 模式 ({@link #fitMiniBatch}):</h3>
+ * <pre>
+ * 1. 在随机抽取的 3 × batchSize 个点上做 k-means++ 选初始中心
+ * 2. 每批随机抽取 batchSize 个点，分配到最近的中心后逐点更新中心:
+ *    c ← c + (x - c) / count(c)，count(c) 为该中心累计收到的点数 (学习率随之递减)
+ * 3. 收敛判断 (满足其一即停止):
+ *    - 一批内所有中心移动距离的平方和 ≤ 1e-6 × 抽样数据各维方差的均值
+ *    - 每批平均距离平方 (指数加权平均) 连续 10 批没有下降
+ * 4. 最后对全部点做一次分配，得到各点的聚类、各聚类点数和距离平方和
+ * </pre>
+ * <p>每批的计算量与总点数无关，迭代部分只占用 O(batchSize + k) 的额外内存；
+ * 总耗时 ≈ 批数 × batchSize × k + 最后一次全量分配，适合全量迭代过慢的大数据量。
+ * 结果是全量 K-Means 的近似，中心通常非常接近。</p>
+ *
+ * @author SmartDoc Team
+ * @see KMeansUtil
+ */
+public class KMeansEngine {
+
+    /** 点数达到该值时并行分配 */
+    public static final int PARALLEL_THRESHOLD = 20_000;
+
+    /** 并行分配时每个子任务处理的点数 */
+    private static final int CHUNK_SIZE = 4096;
+
+    /** Mini-batch: 中心移动的收敛阈值 (相对于数据各维方差的均值) */
+    private static final double TOLERANCE = 1e-6;
+
+    /** Mini-batch: 平均距离平方连续多少批没有下降时停止 */
+    private static final int MAX_NO_IMPROVEMENT = 10;
+
+    /**
+     * 全量聚类的分配算法
+     */
+    public enum Algorithm {
+        /** 每轮计算每个点到所有中心的距离 */
+        LLOYD,
+        /** 用三角不等式维护距离上下界，跳过不可能改变归属的点 (结果与 LLOYD 相同) */
+        HAMERLY
+    }
+
+    /**
+     * 聚类结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        /** 各点所属聚类 (0 ~ k-1) */
+        private int[] labels;
+        /** 聚类中心，centroids[d][c] 为第 c 个中心的第 d 维 */
+        private double[][] centroids;
+        /** 各聚类的点数 */
+        private int[] sizes;
+        /** 实际迭代次数 */
+        private int iterations;
+        /** 是否在最大迭代次数内收敛 */
+        private boolean converged;
+        /** 各点到所属中心 (最终位置) 的距离平方和 */
+        private double inertia;
+    }
+
+    /**
+     * 执行聚类 (点数达到 {@link #PARALLEL_THRESHOLD} 时并行分配)
+     *
+     * @param columns       按列存储的数据，每列长度相同
+     * @param k             聚类数量
+     * @param maxIterations 最大迭代次数
+     * @param seed          随机种子，为 null 时每次结果可能不同
+     * @return 聚类结果
+     * @throws IllegalArgumentException 参数不合法或点数少于聚类数
+     */
+    public static Result fit(double[][] columns, int k, int maxIterations, Long seed) {
+        return fit(columns, k, maxIterations, seed, PARALLEL_THRESHOLD, Algorithm.HAMERLY);
+    }
+
+    /**
+     * 执行聚类 (指定并行阈值)
+     *
+     * @param columns           按列存储的数据，每列长度相同
+     * @param k                 聚类数量
+     * @param maxIterations     最大迭代次数
+     * @param seed              随机种子，为 null 时每次结果可能不同
+     * @param parallelThreshold 点数达到该值时并行分配 (Integer.MAX_VALUE 为始终串行)
+     * @return 聚类结果
+     * @throws IllegalArgumentException 参数不合法或点数少于聚类数
+     */
+    public static Result fit(double[][] columns, int k, int maxIterations, Long seed, int parallelThreshold) {
+        return fit(columns, k, maxIterations, seed, parallelThreshold, Algorithm.HAMERLY);
+    }
+
+    /**
+     * 执行聚类 (指定并行阈值和分配算法)
+     *
+     * @param columns           按列存储的数据，每列长度相同
+     * @param k                 聚类数量
+     * @param maxIterations     最大迭代次数
+     * @param seed              随机种子，为 null 时每次结果可能不同
+     * @param parallelThreshold 点数达到该值时并行分配 (Integer.MAX_VALUE 为始终串行)
+     * @param algorithm         分配算法
+     * @return 聚类结果
+     * @throws IllegalArgumentException 参数不合法或点数少于聚类数
+     */
+    public static Result fit(double[][] columns, int k, int maxIterations, Long seed,
+                             int parallelThreshold, Algorithm algorithm) {
+        int n = checkInput(columns, k);
+        int dims = columns.length;
+
+        Random random = seed == null ? new Random() : new Random(seed);
+        double[][] centroids = seedPlusPlus(columns, n, k, random);
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        boolean parallel = n >= parallelThreshold;
+        Bounds bounds = algorithm == Algorithm.HAMERLY ? new Bounds(n, k) : null;
+        RangeKernel kernel = bounds != null
+                ? (from, to) -> assignBounded(columns, centroids, labels, bounds, from, to)
+                : (from, to) -> assign(columns, centroids, labels, from, to);
+        double[][] previous = new double[dims][k];
+
+        int iterations = 0;
+        boolean converged = false;
+        Partial last = null;
+        while (iterations < maxIterations) {
+            iterations++;
+
+            // 1. 分配并累加
+            if (bounds != null) bounds.updateGaps(centroids);
+            last = run(kernel, n, parallel);
+
+            // 2. 更新中心 (空聚类保留原中心)
+            for (int d = 0; d < dims; d++) {
+                System.arraycopy(centroids[d], 0, previous[d], 0, k);
+            }
+            for (int c = 0; c < k; c++) {
+                if (last.counts[c] == 0) continue;
+                for (int d = 0; d < dims; d++) {
+                    centroids[d][c] = last.sums[d * k + c] / last.counts[c];
+                }
+            }
+            if (bounds != null) bounds.updateMoves(previous, centroids);
+
+            if (last.changed == 0) {
+                converged = true;
+                break;
+            }
+        }
+
+        int[] sizes = last != null ? last.counts : new int[k];
+        return new Result(labels, centroids, sizes, iterations, converged, inertia(columns, centroids, labels));
+    }
+
+    /**
+     * Mini-batch K-Means
+     *
+     * @param columns    按列存储的数据，每列长度相同
+     * @param k          聚类数量
+     * @param batchSize  每批抽取的点数
+     * @param maxBatches 最大批数
+     * @param seed       随机种子，为 null 时每次结果可能不同
+     * @return 聚类结果 (iterations 为实际处理的批数)
+     * @throws IllegalArgumentException 参数不合法或点数少于聚类数
+     */
+    public static Result fitMiniBatch(double[][] columns, int k, int batchSize, int maxBatches, Long seed) {
+        int n = checkInput(columns, k);
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize 必须大于 0");
+        }
+        int dims = columns.length;
+        Random random = seed == null ? new Random() : new Random(seed);
+
+        // 1. 在抽样上选初始中心，并用抽样估计数据的方差
+        int initSize = Math.max(k, Math.min(n, 3 * batchSize));
+        double[][] sample = new double[dims][initSize];
+        for (int j = 0; j < initSize; j++) {
+            int i = random.nextInt(n);
+            for (int d = 0; d < dims; d++) {
+                sample[d][j] = columns[d][i];
+            }
+        }
+        double[][] centroids = seedPlusPlus(sample, initSize, k, random);
+        double tolerance = TOLERANCE * meanVariance(sample);
+
+        long[] counts = new long[k];
+        int[] batch = new int[batchSize];
+        int[] nearest = new int[batchSize];
+        double[][] previous = new double[dims][k];
+        double alpha = Math.min(1.0, batchSize * 2.0 / (n + 1));
+        double ewaInertia = Double.NaN;
+        double bestInertia = Double.POSITIVE_INFINITY;
+        int noImprovement = 0;
+
+        int batches = 0;
+        boolean converged = false;
+        while (batches < maxBatches) {
+            batches++;
+
+            // 2. 抽取一批点并分配到最近的中心
+            double batchInertia = 0;
+            for (int j = 0; j < batchSize; j++) {
+                int i = random.nextInt(n);
+                int best = 0;
+                double bestDist = Double.POSITIVE_INFINITY;
+                for (int c = 0; c < k; c++) {
+                    double dist = distance2(columns, i, centroids, c);
+                    if (dist < bestDist) {
+                        bestDist = dist;
+                        best = c;
+                    }
+                }
+                batch[j] = i;
+                nearest[j] = best;
+                batchInertia += bestDist;
+            }
+
+            // 3. 逐点更新中心 (学习率 1 / 累计点数)
+            for (int d = 0; d < dims; d++) {
+                System.arraycopy(centroids[d], 0, previous[d], 0, k);
+            }
+            for (int j = 0; j < batchSize; j++) {
+                int c = nearest[j];
+                double eta = 1.0 / ++counts[c];
+                for (int d = 0; d < dims; d++) {
+                    centroids[d][c] += eta * (columns[d][batch[j]] - centroids[d][c]);
+                }
+            }
+
+            // 4. 收敛判断: 中心几乎不再移动，或平均距离平方不再下降
+            double shift = 0;
+            for (int d = 0; d < dims; d++) {
+                for (int c = 0; c < k; c++) {
+                    double diff = centroids[d][c] - previous[d][c];
+                    shift += diff * diff;
+                }
+            }
+            if (batches > 1 && shift <= tolerance) {
+                converged = true;
+                break;
+            }
+            batchInertia /= batchSize;
+            ewaInertia = Double.isNaN(ewaInertia) ? batchInertia : ewaInertia * (1 - alpha) + batchInertia * alpha;
+            if (ewaInertia < bestInertia) {
+                bestInertia = ewaInertia;
+                noImprovement = 0;
+            } else if (++noImprovement >= MAX_NO_IMPROVEMENT) {
+                converged = true;
+                break;
+            }
+        }
+
+        // 5. 对全部点做一次分配
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        Partial last = run((from, to) -> assign(columns, centroids, labels, from, to), n, n >= PARALLEL_THRESHOLD);
+        return new Result(labels, centroids, last.counts, batches, converged, last.inertia);
+    }
+
+    /**
+     * 校验输入
+     *
+     * @return 点数
+     */
+    private static int checkInput(double[][] columns, int k) {
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("数据至少需要一维");
+        }
+        int n = columns[0].length;
+        for (double[] column : columns) {
+            if (column.length != n) {
+                throw new IllegalArgumentException("各维数据长度不一致");
+            }
+        }
+        if (k <= 0 || n < k) {
+            throw new IllegalArgumentException("点数 " + n + " 少于聚类数 " + k);
+        }
+        return n;
+    }
+
+    /**
+     * 各维方差的均值
+     */
+    private static double meanVariance(double[][] columns) {
+        double total = 0;
+        for (double[] column : columns) {
+            double mean = 0;
+            for (double v : column) mean += v;
+            mean /= column.length;
+            double m2 = 0;
+            for (double v : column) m2 += (v - mean) * (v - mean);
+            total += m2 / column.length;
+        }
+        return total / columns.length;
+    }
+
+    /**
+     * k-means++ 选初始中心
+     *
+     * @return centroids[d][c]
+     */
+    private static double[][] seedPlusPlus(double[][] columns, int n, int k, Random random) {
+        int dims = columns.length;
+        double[][] centroids = new double[dims][k];
+        double[] minDist = new double[n];
+
+        // 1. 第一个中心随机选取
+        copyPoint(columns, random.nextInt(n), centroids, 0);
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            minDist[i] = distance2(columns, i, centroids, 0);
+            total += minDist[i];
+        }
+
+        // 2. 之后按最近距离的平方加权抽样
+        for (int c = 1; c < k; c++) {
+            int chosen = -1;
+            if (total > 0) {
+                double target = random.nextDouble() * total;
+                double cumulative = 0;
+                for (int i = 0; i < n; i++) {
+                    if (minDist[i] == 0) continue;
+                    chosen = i;
+                    cumulative += minDist[i];
+                    if (cumulative >= target) break;
+                }
+            } else {
+                // 所有点都与已选中心重合，只能重复
+                chosen = random.nextInt(n);
+            }
+            copyPoint(columns, chosen, centroids, c);
+
+            total = 0;
+            for (int i = 0; i < n; i++) {
+                double d = distance2(columns, i, centroids, c);
+                if (d < minDist[i]) minDist[i] = d;
+                total += minDist[i];
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * 对区间 [from, to) 的点执行分配，同时累加各聚类的坐标和、点数和距离平方和
+     */
+    private static Partial assign(double[][] columns, double[][] centroids, int[] labels, int from, int to) {
+        int dims = columns.length;
+        int k = centroids[0].length;
+        Partial p = new Partial(dims, k);
+        for (int i = from; i < to; i++) {
+            int best = 0;
+            double bestDist = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; c++) {
+                double dist = distance2(columns, i, centroids, c);
+                if (dist < bestDist) {
+                    bestDist = dist;
+                    best = c;
+                }
+            }
+            if (labels[i] != best) {
+                labels[i] = best;
+                p.changed++;
+            }
+            p.counts[best]++;
+            p.inertia += bestDist;
+            for (int d = 0; d < dims; d++) {
+                p.sums[d * k + best] += columns[d][i];
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Hamerly 分配: 对区间 [from, to) 的点先用距离上下界判断，可能改变归属时才计算距离
+     */
+    private static Partial assignBounded(double[][] columns, double[][] centroids, int[] labels, Bounds bounds,
+                                         int from, int to) {
+        int dims = columns.length;
+        int k = centroids[0].length;
+        double[] upper = bounds.upper;
+        double[] lower = bounds.lower;
+        Partial p = new Partial(dims, k);
+        for (int i = from; i < to; i++) {
+            int a = labels[i];
+            boolean search = a < 0;
+            if (!search) {
+                // 按上一轮中心的移动放宽上下界
+                upper[i] += bounds.move[a];
+                lower[i] -= a == bounds.farthest ? bounds.secondMove : bounds.maxMove;
+                double bound = Math.max(bounds.halfGap[a], lower[i]);
+                if (upper[i] > bound) {
+                    upper[i] = Math.sqrt(distance2(columns, i, centroids, a));
+                    search = upper[i] > bound;
+                }
+            }
+            if (search) {
+                int best = 0;
+                double bestDist = Double.POSITIVE_INFINITY;
+                double secondDist = Double.POSITIVE_INFINITY;
+                for (int c = 0; c < k; c++) {
+                    double dist = distance2(columns, i, centroids, c);
+                    if (dist < bestDist) {
+                        secondDist = bestDist;
+                        bestDist = dist;
+                        best = c;
+                    } else if (dist < secondDist) {
+                        secondDist = dist;
+                    }
+                }
+                upper[i] = Math.sqrt(bestDist);
+                lower[i] = Math.sqrt(secondDist);
+                if (a != best) {
+                    labels[i] = best;
+                    a = best;
+                    p.changed++;
+                }
+            }
+            p.counts[a]++;
+            for (int d = 0; d < dims; d++) {
+                p.sums[d * k + a] += columns[d][i];
+            }
+        }
+        return p;
+    }
+
+    /**
+     * 各点到所属中心的距离平方和
+     */
+    private static double inertia(double[][] columns, double[][] centroids, int[] labels) {
+        double sum = 0;
+        for (int i = 0; i < labels.length; i++) {
+            sum += distance2(columns, i, centroids, labels[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * 对全部点执行分配 (串行，或在公共池中按区间并行)
+     */
+    private static Partial run(RangeKernel kernel, int n, boolean parallel) {
+        return parallel ? ForkJoinPool.commonPool().invoke(new AssignTask(kernel, 0, n)) : kernel.apply(0, n);
+    }
+
+    /**
+     * 第 i 个点到第 c 个中心的距离平方
+     */
+    private static double distance2(double[][] columns, int i, double[][] centroids, int c) {
+        double sum = 0;
+        for (int d = 0; d < columns.length; d++) {
+            double diff = columns[d][i] - centroids[d][c];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static void copyPoint(double[][] columns, int i, double[][] centroids, int c) {
+        for (int d = 0; d < columns.length; d++) {
+            centroids[d][c] = columns[d][i];
+        }
+    }
+
+    /**
+     * 一个区间的分配结果: 各聚类的坐标和 (sums[d * k + c])、点数、改变所属聚类的点数、距离平方和
+     */
+    private static class Partial {
+        final double[] sums;
+        final int[] counts;
+        int changed;
+        double inertia;
+
+        Partial(int dims, int k) {
+            this.sums = new double[dims * k];
+            this.counts = new int[k];
+        }
+
+        Partial merge(Partial other) {
+            for (int j = 0; j < sums.length; j++) sums[j] += other.sums[j];
+            for (int c = 0; c < counts.length; c++) counts[c] += other.counts[c];
+            changed += other.changed;
+            inertia += other.inertia;
+            return this;
+        }
+    }
+
+    /**
+     * Hamerly 算法的状态: 每个点的距离上下界，以及每轮更新的中心间距和中心移动距离
+     */
+    private static class Bounds {
+        /** upper[i] ≥ 点 i 到所属中心的距离 */
+        final double[] upper;
+        /** lower[i] ≤ 点 i 到其他中心的最近距离 */
+        final double[] lower;
+        /** 各中心到最近的其他中心距离的一半 */
+        final double[] halfGap;
+        /** 上一轮各中心的移动距离 */
+        final double[] move;
+        /** 移动最远的中心，及最大、第二大的移动距离 */
+        int farthest;
+        double maxMove;
+        double secondMove;
+
+        Bounds(int n, int k) {
+            this.upper = new double[n];
+            this.lower = new double[n];
+            this.halfGap = new double[k];
+            this.move = new double[k];
+        }
+
+        void updateGaps(double[][] centroids) {
+            int k = halfGap.length;
+            Arrays.fill(halfGap, Double.POSITIVE_INFINITY);
+            for (int a = 0; a < k; a++) {
+                for (int b = a + 1; b < k; b++) {
+                    double gap = Math.sqrt(centerDistance2(centroids, a, centroids, b)) / 2;
+                    if (gap < halfGap[a]) halfGap[a] = gap;
+                    if (gap < halfGap[b]) halfGap[b] = gap;
+                }
+            }
+        }
+
+        void updateMoves(double[][] previous, double[][] centroids) {
+            farthest = 0;
+            maxMove = 0;
+            secondMove = 0;
+            for (int c = 0; c < move.length; c++) {
+                move[c] = Math.sqrt(centerDistance2(previous, c, centroids, c));
+                if (move[c] > maxMove) {
+                    secondMove = maxMove;
+                    maxMove = move[c];
+                    farthest = c;
+                } else if (move[c] > secondMove) {
+                    secondMove = move[c];
+                }
+            }
+        }
+
+        private static double centerDistance2(double[][] x, int a, double[][] y, int b) {
+            double sum = 0;
+            for (int d = 0; d < x.length; d++) {
+                double diff = x[d][a] - y[d][b];
+                sum += diff * diff;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * 对区间 [from, to) 执行分配的计算
+     */
+    private interface RangeKernel {
+        Partial apply(int from, int to);
+    }
+
+    /**
+     * 按区间二分的并行分配任务 (各子任务写 labels 等逐点数组的不同区间，互不重叠)
+     */
+    private static class AssignTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeKernel kernel;
+        private final int from;
+        private final int to;
+
+        AssignTask(RangeKernel kernel, int from, int to) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return kernel.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            AssignTask left = new AssignTask(kernel, from, mid);
+            left.fork();
+            Partial right = new AssignTask(kernel, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
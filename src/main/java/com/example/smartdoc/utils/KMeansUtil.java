@@ -6,7 +6,6 @@ import lombok.NoArgsConstructor;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * K-Means 聚类算法工具类 - 无监督学习消费模式分析
@@ -16,11 +15,19 @@ import java.util.Random;
  * 
  * <h3>算法流程:</h3>
  * <pre>
- * 1. 随机初始化 K 个聚类中心
+ * 1. k-means++ 初始化 K 个聚类中心 (按距离加权抽样，中心不会重复)
  * 2. E步 (Expectation): 将每个数据点分配到最近的中心
  * 3. M步 (Maximization): 重新计算每个聚类的中心点
  * 4. 重复步骤 2-3 直到收敛或达到最大迭代次数
  * </pre>
+ * <p>计算由 {@link KMeansEngine} 在原始类型数组上完成 (大数据量时并行分配)，
+ * 本类负责与 Point 列表互相转换。传入的点不会被修改，结果中的点是带聚类标记的新对象。
+ * 指定随机种子时，同样的输入得到同样的结果。数据量很大时可用 {@link #fitMiniBatch} 按批近似计算。</p>
+ * 
+ * <h3>多维特征:</h3>
+ * <p>带 features 参数的重载在特征空间中聚类 (如 {@link ClusterFeatures} 生成的标准化特征)，
+ * Point 的 (x, y) 只用于展示: 结果格式不变，中心为该聚类所有点 (x, y) 的平均值，
+ * 可以直接画在同一张散点图上。</p>
  * 
  * <h3>数据维度:</h3>
  * <ul>
@@ -68,7 +75,7 @@ public class KMeansUtil {
     }
 
     /**
-     * 执行 K-Means 聚类
+     * 执行 K-Means 聚类 (随机初始化，每次结果可能不同)
      * 
      * @param rawData       原始数据点列表
      * @param k             聚类数量 (推荐 3)
@@ -76,80 +83,154 @@ public class KMeansUtil {
      * @return 聚类结果，包含分类后的点和中心点
      */
     public static ClusterResult fit(List<Point> rawData, int k, int maxIterations) {
-        // 数据点数量不足时直接返回
-        if (rawData.size() < k) return new ClusterResult(rawData, new ArrayList<>());
+        return fit(rawData, k, maxIterations, null);
+    }
 
-        // 1. 随机初始化 K 个中心点 (从数据中随机选取)
-        List<Point> centroids = new ArrayList<>();
-        Random random = new Random();
-        for (int i = 0; i < k; i++) {
-            Point randomPoint = rawData.get(random.nextInt(rawData.size()));
-            centroids.add(new Point(randomPoint.x, randomPoint.y, i));
-        }
+    /**
+     * 执行 K-Means 聚类
+     * 
+     * @param rawData       原始数据点列表 (不会被修改)
+     * @param k             聚类数量 (推荐 3)
+     * @param maxIterations 最大迭代次数 (推荐 50-100)
+     * @param seed          随机种子，为 null 时每次结果可能不同
+     * @return 聚类结果，包含分类后的点 (新对象) 和中心点
+     */
+    public static ClusterResult fit(List<Point> rawData, int k, int maxIterations, Long seed) {
+        if (k <= 0 || rawData.size() < k) return unassigned(rawData);
+        double[][] columns = toColumns(rawData);
+        return toClusterResult(columns, KMeansEngine.fit(columns, k, maxIterations, seed));
+    }
 
-        boolean changed = true;  // 是否有点改变了所属聚类
-        int iter = 0;            // 当前迭代次数
+    /**
+     * 执行 Mini-batch K-Means 聚类 (大数据量)
+     * 
+     * <p>每批只随机抽取 batchSize 个点更新中心，耗时由批数决定而不是总点数，
+     * 最后对全部点分配一次。结果是全量聚类的近似，详见 {@link KMeansEngine#fitMiniBatch}。</p>
+     * 
+     * @param rawData    原始数据点列表 (不会被修改)
+     * @param k          聚类数量 (推荐 3)
+     * @param batchSize  每批抽取的点数
+     * @param maxBatches 最大批数
+     * @param seed       随机种子，为 null 时每次结果可能不同
+     * @return 聚类结果，包含分类后的点 (新对象) 和中心点
+     */
+    public static ClusterResult fitMiniBatch(List<Point> rawData, int k, int batchSize, int maxBatches, Long seed) {
+        if (k <= 0 || rawData.size() < k) return unassigned(rawData);
+        double[][] columns = toColumns(rawData);
+        return toClusterResult(columns, KMeansEngine.fitMiniBatch(columns, k, batchSize, maxBatches, seed));
+    }
 
-        // 迭代直到收敛或达到最大次数
-        while (changed && iter < maxIterations) {
-            changed = false;
-            iter++;
+    /**
+     * 按特征向量执行 K-Means 聚类
+     * 
+     * @param rawData       数据点 (展示坐标，不会被修改)
+     * @param features      按列存储的特征，features[d][i] 对应 rawData 的第 i 个点
+     * @param k             聚类数量 (推荐 3)
+     * @param maxIterations 最大迭代次数 (推荐 50-100)
+     * @param seed          随机种子，为 null 时每次结果可能不同
+     * @return 聚类结果，中心为各聚类展示坐标的平均值
+     */
+    public static ClusterResult fit(List<Point> rawData, double[][] features, int k, int maxIterations, Long seed) {
+        if (k <= 0 || rawData.size() < k) return unassigned(rawData);
+        checkFeatures(rawData, features);
+        return toDisplayResult(rawData, KMeansEngine.fit(features, k, maxIterations, seed).getLabels(), k);
+    }
 
-            // 2. E步 (Expectation): 分配每个点到最近的中心
-            for (Point p : rawData) {
-                int nearestIndex = -1;
-                double minDist = Double.MAX_VALUE;
+    /**
+     * 按特征向量执行 Mini-batch K-Means 聚类 (大数据量)
+     * 
+     * @param rawData    数据点 (展示坐标，不会被修改)
+     * @param features   按列存储的特征，features[d][i] 对应 rawData 的第 i 个点
+     * @param k          聚类数量 (推荐 3)
+     * @param batchSize  每批抽取的点数
+     * @param maxBatches 最大批数
+     * @param seed       随机种子，为 null 时每次结果可能不同
+     * @return 聚类结果，中心为各聚类展示坐标的平均值
+     */
+    public static ClusterResult fitMiniBatch(List<Point> rawData, double[][] features, int k,
+                                             int batchSize, int maxBatches, Long seed) {
+        if (k <= 0 || rawData.size() < k) return unassigned(rawData);
+        checkFeatures(rawData, features);
+        KMeansEngine.Result r = KMeansEngine.fitMiniBatch(features, k, batchSize, maxBatches, seed);
+        return toDisplayResult(rawData, r.getLabels(), k);
+    }
 
-                // 计算到每个中心的距离，找最近的
-                for (int i = 0; i < centroids.size(); i++) {
-                    double dist = calculateDistance(p, centroids.get(i));
-                    if (dist < minDist) {
-                        minDist = dist;
-                        nearestIndex = i;
-                    }
-                }
+    private static void checkFeatures(List<Point> rawData, double[][] features) {
+        if (features == null || features.length == 0 || features[0].length != rawData.size()) {
+            throw new IllegalArgumentException("特征数量与数据点数量不一致");
+        }
+    }
 
-                // 如果分配发生变化，标记为需要继续迭代
-                if (p.clusterIndex != nearestIndex) {
-                    p.clusterIndex = nearestIndex;
-                    changed = true;
-                }
+    /**
+     * 按聚类标记生成结果: 点为带标记的新对象，中心为各聚类展示坐标的平均值 (空聚类不返回中心)
+     */
+    private static ClusterResult toDisplayResult(List<Point> rawData, int[] labels, int k) {
+        int n = rawData.size();
+        double[] sumX = new double[k];
+        double[] sumY = new double[k];
+        int[] counts = new int[k];
+        List<Point> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Point p = rawData.get(i);
+            int c = labels[i];
+            points.add(new Point(p.x, p.y, c));
+            sumX[c] += p.x;
+            sumY[c] += p.y;
+            counts[c]++;
+        }
+        List<Point> centroids = new ArrayList<>(k);
+        for (int c = 0; c < k; c++) {
+            if (counts[c] > 0) {
+                centroids.add(new Point(sumX[c] / counts[c], sumY[c] / counts[c], c));
             }
+        }
+        return new ClusterResult(points, centroids);
+    }
 
-            // 3. M步 (Maximization): 重新计算每个聚类的中心点
-            for (int i = 0; i < k; i++) {
-                double sumX = 0, sumY = 0;
-                int count = 0;
-                
-                // 累加该聚类内所有点的坐标
-                for (Point p : rawData) {
-                    if (p.clusterIndex == i) {
-                        sumX += p.x;
-                        sumY += p.y;
-                        count++;
-                    }
-                }
-                
-                // 更新中心点为该聚类所有点的平均位置
-                if (count > 0) {
-                    centroids.get(i).x = sumX / count;
-                    centroids.get(i).y = sumY / count;
-                }
-            }
+    /**
+     * 数据点数量不足时的结果 (点未分配，没有中心)
+     */
+    private static ClusterResult unassigned(List<Point> rawData) {
+        List<Point> points = new ArrayList<>(rawData.size());
+        for (Point p : rawData) {
+            points.add(new Point(p.x, p.y, -1));
         }
+        return new ClusterResult(points, new ArrayList<>());
+    }
 
-        // 构建并返回结果
-        ClusterResult result = new ClusterResult();
-        result.points = rawData;
-        result.centroids = centroids;
-        return result;
+    /**
+     * 转换为按列存储的原始类型数组 {xs, ys}
+     */
+    private static double[][] toColumns(List<Point> rawData) {
+        int n = rawData.size();
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = rawData.get(i).x;
+            ys[i] = rawData.get(i).y;
+        }
+        return new double[][]{xs, ys};
     }
 
     /**
-     * 计算两点间的欧几里得距离
-     * <p>公式: d = √[(x1-x2)² + (y1-y2)²]</p>
+     * 将引擎的结果转换回 Point 列表 (空聚类不返回中心: 不同的点少于 K 个时，多出的中心与其他中心重合且没有点)
      */
-    private static double calculateDistance(Point p1, Point p2) {
-        return Math.sqrt(Math.pow(p1.x - p2.x, 2) + Math.pow(p1.y - p2.y, 2));
+    private static ClusterResult toClusterResult(double[][] columns, KMeansEngine.Result r) {
+        int n = columns[0].length;
+        List<Point> points = new ArrayList<>(n);
+        int[] labels = r.getLabels();
+        for (int i = 0; i < n; i++) {
+            points.add(new Point(columns[0][i], columns[1][i], labels[i]));
+        }
+        double[][] c = r.getCentroids();
+        int[] sizes = r.getSizes();
+        int k = c[0].length;
+        List<Point> centroids = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            if (sizes[i] > 0) {
+                centroids.add(new Point(c[0][i], c[1][i], i));
+            }
+        }
+        return new ClusterResult(points, centroids);
     }
-}
\ No newline at end of file
+}
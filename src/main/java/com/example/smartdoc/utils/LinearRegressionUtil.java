@@ -1,5 +1,6 @@
 package com.example.smartdoc.utils;
 
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
@@ -18,6 +19,10 @@ import java.util.List;
  * 预测: y_next = a * (n+1) + b
  * </pre>
  * 
+ * <h3>原始类型版本:</h3>
+ * <p>double[] / DoubleBuffer 重载不需要装箱，并且 x 固定为 1..n，
+ * Σx = n(n+1)/2、Σx² = n(n+1)(2n+1)/6 直接用公式计算，循环内只累加 Σy 和 Σxy。</p>
+ * 
  * <h3>应用场景:</h3>
  * <p>根据用户过去几个月的消费数据，预测下个月的消费趋势，
  * 帮助用户进行预算规划。</p>
@@ -73,4 +78,55 @@ public class LinearRegressionUtil {
         // 金额不能为负
         return nextY > 0 ? nextY : 0;
     }
-}
\ No newline at end of file
+
+    /**
+     * 预测下一个月的消费金额 (原始类型数组版本)
+     * 
+     * @param data 历史月度消费数据 (按时间顺序)
+     * @return 预测的下个月消费金额，数据不足时返回 0.0
+     * @see #predictNext(List)
+     */
+    public static double predictNext(double[] data) {
+        if (data == null || data.length < 2) return 0.0;
+        double sumY = 0;
+        double sumXY = 0;
+        for (int i = 0; i < data.length; i++) {
+            sumY += data[i];
+            sumXY += (i + 1) * data[i];
+        }
+        return extrapolate(data.length, sumY, sumXY);
+    }
+
+    /**
+     * 预测下一个月的消费金额 (DoubleBuffer 版本，范围为 position ~ limit，不改变 position)
+     * 
+     * @param data 历史月度消费数据 (按时间顺序，堆内或直接内存)
+     * @return 预测的下个月消费金额，数据不足时返回 0.0
+     * @see #predictNext(List)
+     */
+    public static double predictNext(DoubleBuffer data) {
+        if (data == null || data.remaining() < 2) return 0.0;
+        int from = data.position();
+        double sumY = 0;
+        double sumXY = 0;
+        for (int i = from; i < data.limit(); i++) {
+            double y = data.get(i);
+            sumY += y;
+            sumXY += (i - from + 1) * y;
+        }
+        return extrapolate(data.remaining(), sumY, sumXY);
+    }
+
+    /**
+     * 由 Σy、Σxy 拟合直线并外推到 x = n + 1 (x 为 1..n，Σx、Σx² 用公式计算)
+     */
+    private static double extrapolate(int count, double sumY, double sumXY) {
+        double n = count;
+        double sumX = n * (n + 1) / 2;
+        double sumXX = n * (n + 1) * (2 * n + 1) / 6;
+        double a = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+        double b = (sumY - a * sumX) / n;
+        double nextY = a * (n + 1) + b;
+        return nextY > 0 ? nextY : 0;
+    }
+}
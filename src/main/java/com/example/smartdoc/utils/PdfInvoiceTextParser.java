@@ -0,0 +1,120 @@
+package com.example.smartdoc.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.example.smartdoc.model.InvoiceData;
+
+/**
+ * PDF 电子发票文本层解析工具类 - 无需 OCR 直接提取发票字段
+ *
+ * <p>税务系统开具的电子发票 (增值税电子普通发票 / 全电发票) 是程序生成的 PDF，
+ * 内嵌可复制的文字层。直接用 PDFBox 抽取文字再用正则解析，
+ * 耗时只有几十毫秒，且不依赖网络和百度 OCR 配额。</p>
+ *
+ * <h3>提取字段:</h3>
+ * <pre>
+ * 发票号码: 发票号码：24442000000012345678 (全电 20 位) / 12345678 (旧版 8 位)
+ * 开票日期: 开票日期：2024年05月20日
+ * 金额:     价税合计(大写) ... (小写)¥100.00
+ * 销售方:   第二个 "名称：" (第一个是购买方)
+ * 项目名称: 第一个 *税收分类*商品名 格式的明细
+ * 税号:     最后一个纳税人识别号 (销售方)
+ * </pre>
+ *
+ * <h3>可用性判断:</h3>
+ * <p>扫描件转成的 PDF 没有文字层，或文字层缺少金额时返回 null，
+ * 调用方应降级为渲染图片 + OCR 识别。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.OcrService
+ */
+public class PdfInvoiceTextParser {
+
+    /** 文字层少于该长度视为没有可用文字 (扫描件 PDF 通常为空或只有零星字符) */
+    private static final int MIN_TEXT_LENGTH = 50;
+
+    /** 发票号码: 8 位 (旧版) 或 20 位 (全电发票) */
+    private static final Pattern INVOICE_NUM = Pattern.compile("发票号码[:：]?\\s*(\\d{8,20})");
+
+    /** 开票日期: 2024年05月20日 */
+    private static final Pattern INVOICE_DATE = Pattern.compile("开票日期[:：]?\\s*(\\d{4})\\s*年\\s*(\\d{1,2})\\s*月\\s*(\\d{1,2})\\s*日");
+
+    /** 价税合计小写金额: (小写)¥100.00 */
+    private static final Pattern TOTAL_AMOUNT = Pattern.compile("[(（]\\s*小写\\s*[)）]\\s*[¥￥]?\\s*([\\d,]+\\.\\d{2})");
+
+    /** 价税合计兜底: 部分版式 "小写" 与金额不在同一行 */
+    private static final Pattern TOTAL_AMOUNT_FALLBACK = Pattern.compile("价税合计[\\s\\S]{0,80}?[¥￥]\\s*([\\d,]+\\.\\d{2})");
+
+    /** 名称字段: 购买方在前，销售方在后 */
+    private static final Pattern PARTY_NAME = Pattern.compile("名\\s*称[:：]\\s*([^\\s:：]+)");
+
+    /** 商品明细: *餐饮服务*餐费 */
+    private static final Pattern ITEM_NAME = Pattern.compile("\\*[^*\\s]+\\*[^\\s]+");
+
+    /**
+     * 从 PDF 文字层解析发票
+     *
+     * @param text PDFTextStripper 抽取的文字
+     * @return 解析出的发票数据；文字层不可用或未找到金额时返回 null
+     */
+    public static InvoiceData parse(String text) {
+        if (text == null || text.trim().length() < MIN_TEXT_LENGTH || !text.contains("发票")) {
+            return null;
+        }
+
+        // 1. 金额 (必需字段，解析不到即视为不可用)
+        Double amount = findAmount(text);
+        if (amount == null || amount <= 0) {
+            return null;
+        }
+
+        InvoiceData data = new InvoiceData();
+        data.setAmount(amount);
+
+        // 2. 发票号码
+        Matcher m = INVOICE_NUM.matcher(text);
+        if (m.find()) data.setInvoiceCode(m.group(1));
+
+        // 3. 开票日期 → yyyy-MM-dd
+        m = INVOICE_DATE.matcher(text);
+        if (m.find()) {
+            data.setDate(String.format("%s-%02d-%02d", m.group(1),
+                    Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3))));
+        }
+
+        // 4. 销售方名称 (第二个 "名称")
+        List<String> names = new ArrayList<>();
+        m = PARTY_NAME.matcher(text);
+        while (m.find()) names.add(m.group(1));
+        if (names.size() >= 2) data.setMerchantName(names.get(1));
+
+        // 5. 项目名称
+        m = ITEM_NAME.matcher(text);
+        data.setItemName(m.find() ? m.group() : "办公用品/服务费");
+
+        // 6. 销售方税号 (购买方在前，取最后一个)
+        List<String> taxIds = InvoiceTextExtractor.findTaxIds(text);
+        if (!taxIds.isEmpty()) data.setTaxId(taxIds.get(taxIds.size() - 1));
+
+        return data;
+    }
+
+    /**
+     * 提取价税合计 (小写) 金额
+     */
+    private static Double findAmount(String text) {
+        Matcher m = TOTAL_AMOUNT.matcher(text);
+        if (!m.find()) {
+            m = TOTAL_AMOUNT_FALLBACK.matcher(text);
+            if (!m.find()) return null;
+        }
+        try {
+            return Double.parseDouble(m.group(1).replace(",", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
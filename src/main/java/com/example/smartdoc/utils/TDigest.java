@@ -0,0 +1,361 @@
+package com.example.smartdoc.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * t-digest 分位数草图 - 用几百个质心近似表示任意多个样本的分布
+ *
+ * <p>异常检测需要中位数、MAD、高分位数等稳健统计量，精确计算必须保留全部历史金额。
+ * t-digest 把相邻样本合并为 (均值, 权重) 质心，分布两端的质心保持很小、中间的可以很大，
+ * 因此尾部分位数依然精确。草图大小只与压缩参数有关 (约 2×compression 个质心)，
+ * 可序列化存入数据库，也可以两两合并。</p>
+ *
+ * <h3>实现 (合并式 t-digest):</h3>
+ * <pre>
+ * 1. add(x) 先写入缓冲区，缓冲区满或查询前把缓冲区排序，与 (有序的) 质心归并
+ * 2. 合并时从左到右扫描，相邻质心合并后的分位跨度在 k 尺度上不超过 1 才合并:
+ *      k(q) = compression / (2π) · asin(2q - 1)
+ *    两端 (q 接近 0 或 1) k 变化快，质心自然变小
+ * 3. 分位数查询在相邻质心中心之间线性插值，两端用记录的最小值、最大值收尾
+ * </pre>
+ *
+ * <h3>序列化格式 (大端):</h3>
+ * <pre>
+ * byte   版本 (1)
+ * double compression, min, max
+ * int    质心数 n
+ * n × (double 均值, double 权重)
+ * </pre>
+ *
+ * <p>非线程安全，由调用方加锁 (异常检测时统计行已加行锁)。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.AnomalyStatsService
+ */
+public class TDigest {
+
+    /** 序列化格式版本 */
+    private static final byte VERSION = 1;
+
+    /** 压缩参数，越大越精确、草图越大 */
+    private final double compression;
+
+    /** 已合并的质心 (按均值升序) */
+    private double[] means;
+    private double[] weights;
+    private int centroidCount;
+
+    /** 未合并的缓冲区 */
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int bufferCount;
+
+    /** 总权重 (含缓冲区) */
+    private double totalWeight;
+
+    /** 最小值、最大值 */
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param compression 压缩参数，常用 100 (约 200 个质心，分位数误差千分之几)
+     */
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("compression 不能小于 10: " + compression);
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression * 2) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferMeans = new double[capacity * 5];
+        this.bufferWeights = new double[capacity * 5];
+    }
+
+    /**
+     * 加入一个样本
+     *
+     * @param x 样本值 (NaN 忽略)
+     */
+    public void add(double x) {
+        add(x, 1);
+    }
+
+    /**
+     * 加入带权重的样本
+     *
+     * @param x      样本值 (NaN 忽略)
+     * @param weight 权重 (必须为正)
+     */
+    public void add(double x, double weight) {
+        if (Double.isNaN(x) || !(weight > 0)) return;
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = x;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        if (x < min) min = x;
+        if (x > max) max = x;
+    }
+
+    /**
+     * 合并另一个草图 (另一个草图不变)
+     *
+     * @param other 另一个草图
+     */
+    public void add(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        if (other.totalWeight > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * 样本总数 (总权重)
+     */
+    public double size() {
+        return totalWeight;
+    }
+
+    /**
+     * 查询分位数
+     *
+     * @param q 分位 (0~1)
+     * @return 近似分位数；没有样本返回 NaN
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("分位必须在 0~1 之间: " + q);
+        }
+        compress();
+        if (centroidCount == 0) return Double.NaN;
+        if (q == 0) return min;
+        if (q == 1) return max;
+
+        double target = q * totalWeight;
+        double cumulative = 0;
+        double prevCenter = 0;
+        double prevMean = min;
+        for (int i = 0; i < centroidCount; i++) {
+            double center = cumulative + weights[i] / 2;
+            if (target < center) {
+                return interpolate(target, prevCenter, prevMean, center, means[i]);
+            }
+            cumulative += weights[i];
+            prevCenter = center;
+            prevMean = means[i];
+        }
+        return interpolate(target, prevCenter, prevMean, totalWeight, max);
+    }
+
+    /**
+     * 中位数绝对偏差 MAD = median(|X - median|)
+     * <p>以质心均值代替各样本近似计算: 求每个质心到中位数的距离，再按权重取加权中位数。</p>
+     *
+     * @return 近似 MAD；没有样本返回 NaN
+     */
+    public double mad() {
+        double median = quantile(0.5);
+        if (Double.isNaN(median)) return Double.NaN;
+
+        int n = centroidCount;
+        double[] deviations = new double[n];
+        double[] deviationWeights = Arrays.copyOf(weights, n);
+        for (int i = 0; i < n; i++) {
+            deviations[i] = Math.abs(means[i] - median);
+        }
+        sortByKey(deviations, deviationWeights, 0, n - 1);
+
+        double half = totalWeight / 2;
+        double cumulative = 0;
+        for (int i = 0; i < n; i++) {
+            cumulative += deviationWeights[i];
+            if (cumulative >= half) return deviations[i];
+        }
+        return deviations[n - 1];
+    }
+
+    /**
+     * 序列化为字节数组 (先合并缓冲区)
+     *
+     * @return 序列化结果
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buf = ByteBuffer.allocate(1 + 8 * 3 + 4 + centroidCount * 16);
+        buf.put(VERSION);
+        buf.putDouble(compression);
+        buf.putDouble(min);
+        buf.putDouble(max);
+        buf.putInt(centroidCount);
+        for (int i = 0; i < centroidCount; i++) {
+            buf.putDouble(means[i]);
+            buf.putDouble(weights[i]);
+        }
+        return buf.array();
+    }
+
+    /**
+     * 从字节数组恢复草图
+     *
+     * @param bytes {@link #toBytes()} 的结果
+     * @return 草图
+     * @throws IllegalArgumentException 版本不支持或数据损坏
+     */
+    public static TDigest fromBytes(byte[] bytes) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            byte version = buf.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("不支持的 t-digest 版本: " + version);
+            }
+            TDigest digest = new TDigest(buf.getDouble());
+            double min = buf.getDouble();
+            double max = buf.getDouble();
+            int n = buf.getInt();
+            if (n < 0 || n > buf.remaining() / 16) {
+                throw new IllegalArgumentException("t-digest 数据损坏: 质心数 " + n);
+            }
+            // 质心序列化时已有序，直接恢复，不再重新合并
+            if (n > digest.means.length) {
+                digest.means = new double[n];
+                digest.weights = new double[n];
+            }
+            for (int i = 0; i < n; i++) {
+                digest.means[i] = buf.getDouble();
+                digest.weights[i] = buf.getDouble();
+                digest.totalWeight += digest.weights[i];
+            }
+            digest.centroidCount = n;
+            if (n > 0) {
+                digest.min = min;
+                digest.max = max;
+            }
+            return digest;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IllegalArgumentException("t-digest 数据损坏", e);
+        }
+    }
+
+    /**
+     * 把缓冲区与现有质心按均值排序后重新合并
+     */
+    private void compress() {
+        if (bufferCount == 0) return;
+
+        // 1. 缓冲区按均值排序，与 (已有序的) 质心做归并
+        sortByKey(bufferMeans, bufferWeights, 0, bufferCount - 1);
+        int n = centroidCount + bufferCount;
+        double[] outMeans = new double[Math.max(means.length, n)];
+        double[] outWeights = new double[outMeans.length];
+
+        // 2. 从左到右扫描，k 尺度跨度不超过 1 的相邻质心合并
+        int out = 0;
+        int ci = 0;
+        int bi = 0;
+        double curMean = 0;
+        double curWeight = 0;
+        double weightSoFar = 0;
+        double kLeft = k(0);
+        for (int j = 0; j < n; j++) {
+            double mean;
+            double weight;
+            if (bi >= bufferCount || (ci < centroidCount && means[ci] <= bufferMeans[bi])) {
+                mean = means[ci];
+                weight = weights[ci++];
+            } else {
+                mean = bufferMeans[bi];
+                weight = bufferWeights[bi++];
+            }
+            if (j == 0) {
+                curMean = mean;
+                curWeight = weight;
+                continue;
+            }
+            double proposed = curWeight + weight;
+            if (k((weightSoFar + proposed) / totalWeight) - kLeft <= 1) {
+                curMean += (mean - curMean) * weight / proposed;
+                curWeight = proposed;
+            } else {
+                outMeans[out] = curMean;
+                outWeights[out] = curWeight;
+                out++;
+                weightSoFar += curWeight;
+                kLeft = k(weightSoFar / totalWeight);
+                curMean = mean;
+                curWeight = weight;
+            }
+        }
+        outMeans[out] = curMean;
+        outWeights[out] = curWeight;
+        out++;
+
+        means = outMeans;
+        weights = outWeights;
+        centroidCount = out;
+        bufferCount = 0;
+    }
+
+    /**
+     * 按 keys 升序对两个平行数组原地排序 (快速排序，小区间插入排序)
+     */
+    private static void sortByKey(double[] keys, double[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            double pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // 先递归较小的一半，较大的一半继续循环，递归深度 O(log n)
+            if (j - lo < hi - i) {
+                sortByKey(keys, values, lo, j);
+                lo = i;
+            } else {
+                sortByKey(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) {
+                swap(keys, values, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(double[] keys, double[] values, int i, int j) {
+        double k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+        double v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+
+    /**
+     * k1 尺度函数
+     */
+    private double k(double q) {
+        q = Math.min(1, Math.max(0, q));
+        return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+    }
+
+    /**
+     * 在 (x0, y0) 与 (x1, y1) 之间线性插值
+     */
+    private static double interpolate(double x, double x0, double y0, double x1, double y1) {
+        if (x1 <= x0) return y1;
+        return y0 + (x - x0) / (x1 - x0) * (y1 - y0);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.smartdoc.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 令牌桶限流器 - 控制对外部接口的调用速率
+ *
+ * <p>令牌以固定速率放入桶中，桶满后多余的令牌丢弃；每次调用消耗一个令牌。
+ * 桶容量决定了允许的突发调用数，放入速率决定了长期平均 QPS。</p>
+ *
+ * <h3>排队方式:</h3>
+ * <pre>
+ * 令牌不足时不直接拒绝，而是 "预约" 下一个令牌 (令牌数允许为负，代表已被预约)，
+ * 在锁外睡眠到预约时刻再执行。预约在公平锁内按到达顺序进行，
+ * 因此等待的请求按先来先服务的顺序获得令牌，不会出现后到请求插队。
+ *
+ * 预计等待时间超过调用方给出的超时时间 → 立即拒绝 (不占用预约)
+ * </pre>
+ *
+ * <h3>示例:</h3>
+ * <pre>
+ * TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 10); // 10 QPS，突发 10
+ * if (limiter.tryAcquire(3, TimeUnit.SECONDS)) {
+ *     // 调用外部接口
+ * }
+ * </pre>
+ *
+ * @author SmartDoc Team
+ */
+public class TokenBucketRateLimiter {
+
+    /** 桶容量 (最大突发调用数) */
+    private final double capacity;
+
+    /** 产生一个令牌的间隔 (纳秒) */
+    private final double nanosPerToken;
+
+    /** 公平锁: 保证预约按到达顺序进行 */
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    /** 当前令牌数 (负数表示已被预约的令牌) */
+    private double tokens;
+
+    /** 上次补充令牌的时间 (纳秒) */
+    private long lastRefillNanos;
+
+    // ==================== 统计指标 ====================
+
+    /** 成功获取令牌的次数 */
+    private final AtomicLong acquired = new AtomicLong();
+
+    /** 被拒绝的次数 */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** 累计等待时间 (纳秒) */
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /** 当前正在等待令牌的请求数 */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * 创建限流器 (初始时桶是满的)
+     *
+     * @param permitsPerSecond 每秒产生的令牌数 (平均 QPS)
+     * @param capacity         桶容量 (最大突发调用数)
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, double capacity) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("permitsPerSecond 必须大于 0，capacity 不能小于 1");
+        }
+        this.capacity = capacity;
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取一个令牌，最多等待指定时间
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 获取成功返回 true；预计等待超过超时时间或线程被中断返回 false
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) {
+        long timeoutNanos = unit.toNanos(timeout);
+        long waitNanos;
+
+        // 1. 在公平锁内预约令牌
+        try {
+            if (!lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            waitNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * nanosPerToken);
+            if (waitNanos > timeoutNanos) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            tokens -= 1;
+        } finally {
+            lock.unlock();
+        }
+
+        // 2. 在锁外等待到预约时刻
+        if (waitNanos > 0) {
+            waiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                // 预约的令牌不归还: 归还会让后面已算好等待时间的请求提前执行，破坏速率保证
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                return false;
+            } finally {
+                waiting.decrementAndGet();
+            }
+            totalWaitNanos.addAndGet(waitNanos);
+        }
+        acquired.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 按流逝时间补充令牌，不超过桶容量
+     */
+    private void refill(long now) {
+        double elapsed = now - lastRefillNanos;
+        tokens = Math.min(capacity, tokens + elapsed / nanosPerToken);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * 获取统计指标
+     *
+     * @return 获取/拒绝次数、平均等待时间、当前等待数、可用令牌数
+     */
+    public Map<String, Object> getStats() {
+        double available;
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            available = tokens;
+        } finally {
+            lock.unlock();
+        }
+
+        long ok = acquired.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("acquired", ok);
+        stats.put("rejected", rejected.get());
+        stats.put("avgWaitMs", ok == 0 ? 0.0 : totalWaitNanos.get() / 1e6 / ok);
+        stats.put("waiting", waiting.get());
+        stats.put("availableTokens", Math.max(0.0, Math.floor(available)));
+        return stats;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.smartdoc.utils.TDigest;
+
+/**
+ * 异常判定规则测试 - 样本数下限、MAD 为 0 时的回退、高分位数阈值 (不涉及数据库)
+ */
+class AnomalyStatsServiceTest {
+
+	@Test
+	void fewerThanFiveSamplesNeverFlag() {
+		AnomalyStatsService service = service("robust", 0);
+		TDigest digest = digestOf(10, 11, 12, 13);
+		double[] stats = welford(10, 11, 12, 13);
+
+		assertFalse(service.evaluate(1_000_000, 4, stats[1], stats[2], digest));
+		assertFalse(service("zscore", 0).evaluate(1_000_000, 4, stats[1], stats[2], null));
+	}
+
+	@Test
+	void fiveSamplesAreEnough() {
+		AnomalyStatsService service = service("robust", 0);
+		TDigest digest = digestOf(10, 11, 12, 13, 14);
+		double[] stats = welford(10, 11, 12, 13, 14);
+
+		assertTrue(service.evaluate(1_000, 5, stats[1], stats[2], digest));
+		assertFalse(service.evaluate(12, 5, stats[1], stats[2], digest));
+	}
+
+	@Test
+	void zeroMadFallsBackToZScore() {
+		// 大部分金额相同: MAD 为 0，改用均值和标准差判断
+		double[] amounts = {30, 30, 30, 30, 30, 30, 30, 35, 40};
+		AnomalyStatsService service = service("robust", 0);
+		TDigest digest = digestOf(amounts);
+		double[] stats = welford(amounts);
+
+		assertEquals(0.0, digest.mad());
+		assertTrue(service.evaluate(100, 9, stats[1], stats[2], digest));
+		assertFalse(service.evaluate(32, 9, stats[1], stats[2], digest));
+	}
+
+	@Test
+	void zscoreModeDoesNotNeedDigest() {
+		double[] amounts = {10, 11, 12, 13, 14};
+		double[] stats = welford(amounts);
+		AnomalyStatsService service = service("zscore", 0);
+
+		assertFalse(service.usesSketch());
+		assertTrue(service.evaluate(100, 5, stats[1], stats[2], null));
+	}
+
+	@Test
+	void highQuantileFlagsTopAmounts() {
+		double[] amounts = new double[100];
+		for (int i = 0; i < amounts.length; i++) {
+			amounts[i] = 100 + i;
+		}
+		TDigest digest = digestOf(amounts);
+		double[] stats = welford(amounts);
+
+		// 199 在正常波动范围内，只有配置了高分位数阈值时才标记
+		assertFalse(service("robust", 0).evaluate(199, 100, stats[1], stats[2], digest));
+		assertTrue(service("robust", 0.95).evaluate(199, 100, stats[1], stats[2], digest));
+	}
+
+	private static AnomalyStatsService service(String mode, double highQuantile) {
+		AnomalyStatsService service = new AnomalyStatsService();
+		ReflectionTestUtils.setField(service, "mode", mode);
+		ReflectionTestUtils.setField(service, "robustThreshold", 3.5);
+		ReflectionTestUtils.setField(service, "highQuantile", highQuantile);
+		return service;
+	}
+
+	private static TDigest digestOf(double... amounts) {
+		TDigest digest = new TDigest(100);
+		for (double x : amounts) {
+			digest.add(x);
+		}
+		return digest;
+	}
+
+	/**
+	 * @return {n, mean, m2}
+	 */
+	private static double[] welford(double... amounts) {
+		double n = 0;
+		double mean = 0;
+		double m2 = 0;
+		for (double x : amounts) {
+			n++;
+			double delta = x - mean;
+			mean += delta / n;
+			m2 += delta * (x - mean);
+		}
+		return new double[]{n, mean, m2};
+	}
+}
@@ -0,0 +1,170 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+
+/**
+ * 原件存储测试 - 内容寻址写入、去重、未引用原件的回收
+ */
+class BlobStoreServiceTest {
+
+	/** 回收阈值: 修改时间早于此时刻的原件才会被回收 */
+	private static final long CUTOFF = 1_000_000;
+
+	@TempDir
+	Path dir;
+
+	private BlobStoreService store;
+
+	@BeforeEach
+	void createStore() throws IOException {
+		store = new BlobStoreService();
+		ReflectionTestUtils.setField(store, "blobDir", dir.toString());
+		ReflectionTestUtils.setField(store, "gcIntervalMinutes", 0L);
+		store.init();
+	}
+
+	@Test
+	void storesByContentHash() throws IOException {
+		byte[] content = "%PDF-1.4 test".getBytes(StandardCharsets.US_ASCII);
+		String hash = DigestUtil.sha256Hex(content);
+
+		store.put(hash, content);
+
+		Path path = store.getPath(hash);
+		assertEquals(dir.resolve(hash.substring(0, 2)).resolve(hash), path);
+		assertArrayEquals(content, Files.readAllBytes(path));
+		assertEquals("application/pdf", store.detectContentType(path));
+		assertTrue(store.exists(hash));
+	}
+
+	@Test
+	void storesFromFile() throws IOException {
+		Path source = Files.write(dir.resolve("upload.bin"), new byte[]{1, 2, 3});
+		String hash = DigestUtil.sha256Hex(source.toFile());
+
+		store.put(hash, source);
+
+		assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(store.getPath(hash)));
+		assertTrue(Files.exists(source));
+	}
+
+	@Test
+	void duplicateIsStoredOnce() throws IOException {
+		String hash = put("same");
+		put("same");
+
+		assertEquals(1L, store.getStats().get("stored"));
+		assertEquals(1L, store.getStats().get("deduplicated"));
+		assertEquals(0, tmpFiles().size());
+	}
+
+	@Test
+	void invalidHashIsRejected() {
+		assertNull(store.getPath("../../etc/passwd"));
+		assertNull(store.getPath(null));
+		assertFalse(store.exists("ABC"));
+	}
+
+	@Test
+	void sweepDeletesOnlyOldUnreferencedBlobs() throws IOException {
+		String referenced = age(put("referenced"));
+		String orphan = age(put("orphan"));
+		String recent = put("recent");
+
+		List<List<String>> queried = new ArrayList<>();
+		int deleted = store.sweep(CUTOFF, hashes -> {
+			queried.add(hashes);
+			return hashes.contains(referenced) ? Set.of(referenced) : Set.of();
+		});
+
+		assertEquals(1, deleted);
+		assertTrue(store.exists(referenced));
+		assertFalse(store.exists(orphan));
+		assertTrue(store.exists(recent));
+		// 还在保留期内的原件不用查询
+		assertEquals(Set.of(referenced, orphan), new HashSet<>(queried.get(0)));
+		assertEquals(1L, store.getStats().get("gcDeleted"));
+	}
+
+	@Test
+	void reuploadPostponesCollection() throws IOException {
+		String hash = age(put("again"));
+
+		put("again");
+
+		assertEquals(0, store.sweep(CUTOFF, hashes -> Set.of()));
+		assertTrue(store.exists(hash));
+	}
+
+	@Test
+	void sweepQueriesInBatches() throws IOException {
+		for (int i = 0; i < 1_200; i++) {
+			age(put("blob-" + i));
+		}
+		List<Integer> batchSizes = new ArrayList<>();
+
+		int deleted = store.sweep(CUTOFF, hashes -> {
+			batchSizes.add(hashes.size());
+			return Set.of();
+		});
+
+		assertEquals(1_200, deleted);
+		assertEquals(1_200, batchSizes.stream().mapToInt(Integer::intValue).sum());
+		assertTrue(batchSizes.stream().allMatch(size -> size <= 500), batchSizes.toString());
+	}
+
+	@Test
+	void sweepRemovesStaleTempFiles() throws IOException {
+		Path stale = Files.createFile(dir.resolve(".tmp").resolve("stale.tmp"));
+		Files.setLastModifiedTime(stale, FileTime.fromMillis(0));
+		Path writing = Files.createFile(dir.resolve(".tmp").resolve("writing.tmp"));
+
+		store.sweep(CUTOFF, hashes -> Set.of());
+
+		assertFalse(Files.exists(stale));
+		assertTrue(Files.exists(writing));
+	}
+
+	private String put(String text) throws IOException {
+		byte[] content = text.getBytes(StandardCharsets.UTF_8);
+		String hash = DigestUtil.sha256Hex(content);
+		store.put(hash, content);
+		return hash;
+	}
+
+	/**
+	 * 把原件的修改时间改到回收阈值之前
+	 */
+	private String age(String hash) throws IOException {
+		Files.setLastModifiedTime(store.getPath(hash), FileTime.fromMillis(0));
+		return hash;
+	}
+
+	private List<Path> tmpFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir.resolve(".tmp"))) {
+			return files.toList();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.example.smartdoc.service;
+
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 测试用的缓存表 - 代替 ocr_result_cache / cluster_report_cache 的仓库和访问记录写回
+ *
+ * <p>只实现缓存服务用到的方法: count、findById、save、deleteAllByIdInBatch、find*OrderByLastAccess，
+ * 以及 JdbcTemplate.batchUpdate (按 LruTouchCache 的写回语句更新访问时间，并记录每条写回参数)。</p>
+ *
+ * @param <T> 缓存实体
+ */
+class CacheTable<T> {
+
+	/** 主键 → 记录 */
+	final Map<String, T> rows = new LinkedHashMap<>();
+
+	/** 写回的访问记录 (最近访问时间、命中次数、主键) */
+	final List<Object[]> touches = new ArrayList<>();
+
+	/** 执行过的写回语句 */
+	final List<String> touchSql = new ArrayList<>();
+
+	private final Function<T, String> id;
+	private final Function<T, LocalDateTime> lastAccess;
+	private final BiConsumer<T, LocalDateTime> setLastAccess;
+
+	CacheTable(Function<T, String> id, Function<T, LocalDateTime> lastAccess, BiConsumer<T, LocalDateTime> setLastAccess) {
+		this.id = id;
+		this.lastAccess = lastAccess;
+		this.setLastAccess = setLastAccess;
+	}
+
+	/**
+	 * 基于本表的仓库实现
+	 */
+	<R> R repository(Class<R> type) {
+		Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+			String name = method.getName();
+			switch (name) {
+				case "count":
+					return (long) rows.size();
+				case "findById":
+					return Optional.ofNullable(rows.get((String) args[0]));
+				case "save":
+					@SuppressWarnings("unchecked")
+					T row = (T) args[0];
+					rows.put(id.apply(row), row);
+					return row;
+				case "deleteAllByIdInBatch":
+					for (Object key : (Iterable<?>) args[0]) {
+						rows.remove(key);
+					}
+					return null;
+				case "toString":
+					return "CacheTable" + rows.keySet();
+				case "hashCode":
+					return System.identityHashCode(self);
+				case "equals":
+					return self == args[0];
+				default:
+					if (name.startsWith("find") && name.endsWith("OrderByLastAccess")) {
+						return eldest((Pageable) args[0]);
+					}
+					throw new UnsupportedOperationException(name);
+			}
+		});
+		return type.cast(proxy);
+	}
+
+	/**
+	 * 只支持批量写回访问记录的 JdbcTemplate
+	 */
+	JdbcTemplate jdbcTemplate() {
+		return new JdbcTemplate() {
+			@Override
+			public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+				touchSql.add(sql);
+				int[] updated = new int[batchArgs.size()];
+				for (int i = 0; i < batchArgs.size(); i++) {
+					Object[] args = batchArgs.get(i);
+					touches.add(args);
+					T row = rows.get((String) args[3]);
+					if (row != null) {
+						LocalDateTime time = ((Timestamp) args[1]).toLocalDateTime();
+						LocalDateTime current = lastAccess.apply(row);
+						setLastAccess.accept(row, current == null || time.isAfter(current) ? time : current);
+						updated[i] = 1;
+					}
+				}
+				return updated;
+			}
+		};
+	}
+
+	/**
+	 * 按最近访问时间正序 (为空的在前) 取主键
+	 */
+	private List<String> eldest(Pageable pageable) {
+		return rows.values().stream()
+				.sorted(Comparator.comparing(lastAccess, Comparator.nullsFirst(Comparator.naturalOrder())))
+				.limit(pageable.getPageSize())
+				.map(id)
+				.toList();
+	}
+}
@@ -0,0 +1,176 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 类别词典测试 - 加权打分、同分规则、热更新
+ */
+class CategoryDictionaryTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void longKeywordOutweighsShortKeywordInsideIt() {
+		CategoryDictionary dictionary = load("""
+				办公耗材|车|1
+				交通出行|出租车|3
+				""");
+
+		// "出租车" 同时命中 "车"，交通出行 3 分 > 办公耗材 1 分
+		assertEquals("交通出行", dictionary.infer("出租车发票"));
+		assertEquals("办公耗材", dictionary.infer("购物车"));
+	}
+
+	@Test
+	void repeatedKeywordCountsOnce() {
+		CategoryDictionary dictionary = load("""
+				交通出行|车|1
+				餐饮美食|餐厅|2
+				""");
+
+		// "车" 出现 3 次也只计 1 分
+		assertEquals("餐饮美食", dictionary.infer("车车车", "餐厅"));
+	}
+
+	@Test
+	void scoresAddUpAcrossTexts() {
+		CategoryDictionary dictionary = load("""
+				餐饮美食|餐厅|2
+				交通出行|滴滴|1
+				交通出行|快车|1.5
+				""");
+
+		assertEquals("交通出行", dictionary.infer(List.of("滴滴", "快车", "餐厅")));
+	}
+
+	@Test
+	void textsAreScannedSeparately() {
+		CategoryDictionary dictionary = load("交通出行|出租车|3\n");
+
+		// 跨段拼接出的 "出租车" 不算命中
+		assertNull(dictionary.infer("出", "租车"));
+	}
+
+	@Test
+	void tieGoesToCategoryListedFirst() {
+		CategoryDictionary dictionary = load("""
+				通讯网络|话费|2
+				办公耗材|打印|2
+				""");
+
+		assertEquals("通讯网络", dictionary.infer("打印话费清单"));
+		assertEquals("通讯网络", dictionary.infer("话费", "打印"));
+	}
+
+	@Test
+	void scoreBelowMinimumGivesNoCategory() {
+		CategoryDictionary dictionary = load("交通出行|车|0.5\n");
+
+		assertNull(dictionary.infer("车"));
+		assertNull(dictionary.infer("没有关键词"));
+		assertNull(dictionary.infer((String) null));
+	}
+
+	@Test
+	void invalidLinesAreIgnored() {
+		CategoryDictionary dictionary = load("""
+				# 注释
+				格式错误的行
+				交通出行|滴滴|abc
+				交通出行|高铁|2
+				餐饮美食|高铁|5
+				""");
+
+		// 权重无效的 "滴滴" 和重复的 "高铁" 被忽略
+		assertNull(dictionary.infer("滴滴"));
+		assertEquals("交通出行", dictionary.infer("高铁"));
+	}
+
+	@Test
+	void reloadsModifiedFile() throws IOException {
+		Path file = write("交通出行|高铁|2\n", 1_000);
+		CategoryDictionary dictionary = load(file);
+		assertEquals("交通出行", dictionary.infer("高铁"));
+
+		write("餐饮美食|高铁|2\n", 2_000);
+
+		assertEquals("餐饮美食", dictionary.infer("高铁"));
+		assertEquals(1L, dictionary.getStats().get("reloads"));
+	}
+
+	@Test
+	void failedReloadKeepsPreviousDictionary() throws IOException {
+		Path file = write("交通出行|高铁|2\n", 1_000);
+		CategoryDictionary dictionary = load(file);
+
+		write("# 没有有效关键词\n", 2_000);
+
+		assertEquals("交通出行", dictionary.infer("高铁"));
+		assertEquals(1L, dictionary.getStats().get("reloadFailures"));
+		assertEquals(0L, dictionary.getStats().get("reloads"));
+	}
+
+	@Test
+	void unchangedFileIsNotReloaded() throws IOException {
+		Path file = write("交通出行|高铁|2\n", 1_000);
+		CategoryDictionary dictionary = load(file);
+
+		dictionary.infer("高铁");
+		dictionary.infer("高铁");
+
+		assertEquals(0L, dictionary.getStats().get("reloads"));
+	}
+
+	@Test
+	void builtInDictionaryIsUsedWithoutExternalFile() {
+		CategoryDictionary dictionary = new CategoryDictionary();
+		ReflectionTestUtils.setField(dictionary, "dictionaryPath", "");
+		ReflectionTestUtils.setField(dictionary, "minScore", 1.0);
+		dictionary.init();
+
+		assertEquals("交通出行", dictionary.infer("出租车发票"));
+	}
+
+	private CategoryDictionary load(String content) {
+		try {
+			return load(write(content, 1_000));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 使用外部词典文件，每次推断都检查文件修改时间
+	 */
+	private static CategoryDictionary load(Path file) {
+		CategoryDictionary dictionary = new CategoryDictionary();
+		ReflectionTestUtils.setField(dictionary, "dictionaryPath", file.toString());
+		ReflectionTestUtils.setField(dictionary, "reloadCheckSeconds", 0L);
+		ReflectionTestUtils.setField(dictionary, "minScore", 1.0);
+		dictionary.init();
+		return dictionary;
+	}
+
+	/**
+	 * 写入词典文件并设置修改时间 (同一毫秒内连续写入时修改时间也能区分)
+	 */
+	private Path write(String content, long modifiedMillis) throws IOException {
+		Path file = dir.resolve("dictionary.txt");
+		Files.writeString(file, content, StandardCharsets.UTF_8);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+		return file;
+	}
+}
@@ -0,0 +1,116 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.smartdoc.model.ClusterReportCache;
+import com.example.smartdoc.repository.ClusterReportCacheRepository;
+import com.example.smartdoc.utils.KMeansUtil;
+
+/**
+ * 聚类报告缓存测试 - 量化签名、命中时不调用 AI、错误不缓存、过期报告后台刷新
+ */
+class ClusterReportCacheServiceTest {
+
+	private static final String PROMPT = "请解读以下消费群体";
+
+	private final CacheTable<ClusterReportCache> table = new CacheTable<>(
+			ClusterReportCache::getSignature, ClusterReportCache::getLastAccessTime, ClusterReportCache::setLastAccessTime);
+
+	private final ClusterReportCacheService service = service();
+
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+	}
+
+	@Test
+	void signatureToleratesSmallShiftsAndOrder() {
+		String base = service.signature("1", List.of(point(5, 100), point(20, 3_000)), PROMPT);
+
+		// 日期 ±0.5 天、金额 ±2% 以内，中心顺序不同
+		assertEquals(base, service.signature("1", List.of(point(20.4, 3_050), point(5.3, 99)), PROMPT));
+		assertNotEquals(base, service.signature("1", List.of(point(5, 100), point(20, 6_000)), PROMPT));
+		assertNotEquals(base, service.signature("2", List.of(point(5, 100), point(20, 3_000)), PROMPT));
+		assertNotEquals(base, service.signature("1", List.of(point(5, 100), point(20, 3_000)), PROMPT + "。"));
+	}
+
+	@Test
+	void cachedReportSkipsGenerator() {
+		AtomicInteger calls = new AtomicInteger();
+		List<KMeansUtil.Point> centroids = List.of(point(10, 200));
+
+		ClusterReportCacheService.Report first = service.get("1", centroids, PROMPT, "data", () -> "报告" + calls.incrementAndGet());
+		ClusterReportCacheService.Report second = service.get("1", centroids, PROMPT, "data", () -> "报告" + calls.incrementAndGet());
+
+		assertFalse(first.isCached());
+		assertTrue(second.isCached());
+		assertFalse(second.isStale());
+		assertEquals("报告1", second.getMarkdown());
+		assertEquals(1, calls.get());
+		assertEquals(1, table.rows.size());
+	}
+
+	@Test
+	void errorRepliesAreNotCached() {
+		List<KMeansUtil.Point> centroids = List.of(point(10, 200));
+
+		ClusterReportCacheService.Report report = service.get("1", centroids, PROMPT, "data",
+				() -> DeepSeekService.ERROR_PREFIX + "timeout");
+
+		assertFalse(report.isCached());
+		assertTrue(table.rows.isEmpty());
+		assertEquals(1L, service.getStats().get("errors"));
+	}
+
+	@Test
+	void staleReportIsServedAndRefreshedInBackground() throws InterruptedException {
+		List<KMeansUtil.Point> centroids = List.of(point(10, 200));
+		String signature = service.signature("1", centroids, PROMPT);
+		ClusterReportCache row = new ClusterReportCache();
+		row.setSignature(signature);
+		row.setReport("旧报告");
+		row.setGenerateTime(LocalDateTime.now().minusHours(30));
+		table.rows.put(signature, row);
+
+		ClusterReportCacheService.Report stale = service.get("1", centroids, PROMPT, "data", () -> "新报告");
+		assertTrue(stale.isCached());
+		assertTrue(stale.isStale());
+		assertEquals("旧报告", stale.getMarkdown());
+
+		for (int i = 0; i < 500 && !Long.valueOf(1L).equals(service.getStats().get("refreshes")); i++) {
+			Thread.sleep(10);
+		}
+		ClusterReportCacheService.Report fresh = service.get("1", centroids, PROMPT, "data", () -> "不应调用");
+		assertEquals("新报告", fresh.getMarkdown());
+		assertFalse(fresh.isStale());
+		assertEquals("新报告", table.rows.get(signature).getReport());
+	}
+
+	private ClusterReportCacheService service() {
+		ClusterReportCacheService service = new ClusterReportCacheService();
+		ReflectionTestUtils.setField(service, "dayTolerance", 2.0);
+		ReflectionTestUtils.setField(service, "amountTolerance", 0.1);
+		ReflectionTestUtils.setField(service, "refreshHours", 24L);
+		ReflectionTestUtils.setField(service, "memoryEntries", 100);
+		ReflectionTestUtils.setField(service, "maxEntries", 100);
+		ReflectionTestUtils.setField(service, "cacheRepository", table.repository(ClusterReportCacheRepository.class));
+		ReflectionTestUtils.setField(service, "jdbcTemplate", table.jdbcTemplate());
+		service.init();
+		return service;
+	}
+
+	private static KMeansUtil.Point point(double day, double amount) {
+		return new KMeansUtil.Point(day, amount, -1);
+	}
+}
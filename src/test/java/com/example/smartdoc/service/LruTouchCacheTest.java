@@ -0,0 +1,145 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.smartdoc.model.OcrResultCache;
+import com.example.smartdoc.repository.OcrResultCacheRepository;
+
+/**
+ * 两级缓存公共部分测试 - 内存 LRU、访问记录合并写回、按真实访问时间淘汰
+ */
+class LruTouchCacheTest {
+
+	private final CacheTable<OcrResultCache> table = new CacheTable<>(
+			OcrResultCache::getContentHash, OcrResultCache::getLastAccessTime, OcrResultCache::setLastAccessTime);
+
+	private final OcrResultCacheRepository repository = table.repository(OcrResultCacheRepository.class);
+
+	@Test
+	void memoryDropsLeastRecentlyUsed() {
+		LruTouchCache<String> cache = cache(2);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.get("a");
+		cache.put("c", "C");
+
+		assertEquals("A", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("C", cache.get("c"));
+	}
+
+	@Test
+	void hitsAreMergedIntoOneTouchPerKey() {
+		LruTouchCache<String> cache = cache(10);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.get("a");
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		cache.get("missing");
+
+		cache.flushTouches();
+
+		assertEquals(2, table.touches.size());
+		Map<Object, Object> hits = new HashMap<>();
+		table.touches.forEach(t -> hits.put(t[3], t[2]));
+		assertEquals(3L, hits.get("a"));
+		assertEquals(1L, hits.get("b"));
+		assertTrue(table.touchSql.get(0).startsWith("UPDATE ocr_result_cache "));
+		assertTrue(table.touchSql.get(0).endsWith("WHERE content_hash = ?"));
+
+		// 已写回的记录不再重复写
+		cache.flushTouches();
+		assertEquals(2, table.touches.size());
+	}
+
+	@Test
+	void evictionUsesFlushedAccessTimes() {
+		LocalDateTime now = LocalDateTime.now();
+		row("a", now.minusHours(3));
+		row("b", now.minusHours(2));
+		row("c", now.minusHours(1));
+		LruTouchCache<String> cache = cache(10);
+		cache.put("a", "A");
+		cache.put("b", "B");
+
+		// a 在数据库中最旧，但刚在内存中命中过
+		cache.get("a");
+		cache.evictIfNecessary(repository, 2, repository::findHashesOrderByLastAccess);
+
+		assertEquals(List.of("a", "c"), List.copyOf(table.rows.keySet()));
+		assertNull(cache.get("b"));
+		assertEquals(1L, stats(cache).get("evictions"));
+	}
+
+	@Test
+	void nothingIsEvictedUnderLimit() {
+		row("a", null);
+		LruTouchCache<String> cache = cache(10);
+		cache.put("a", "A");
+		cache.get("a");
+
+		cache.evictIfNecessary(repository, 1, repository::findHashesOrderByLastAccess);
+
+		assertEquals(1, table.rows.size());
+		// 未超限时不必提前写回
+		assertEquals(1, stats(cache).get("pendingTouches"));
+	}
+
+	@Test
+	void shutdownFlushesPendingTouches() {
+		row("a", null);
+		LruTouchCache<String> cache = cache(10);
+		cache.start(3_600);
+		cache.put("a", "A");
+		cache.get("a");
+
+		cache.shutdown();
+
+		assertEquals(1, table.touches.size());
+		assertTrue(table.rows.get("a").getLastAccessTime() != null);
+	}
+
+	@Test
+	void reportsStats() {
+		LruTouchCache<String> cache = cache(10);
+		cache.put("a", "A");
+		cache.get("a");
+		cache.get("a");
+		cache.flushTouches();
+
+		Map<String, Object> stats = stats(cache);
+		assertEquals(2L, cache.getMemoryHits());
+		assertEquals(2L, stats.get("memoryHits"));
+		assertEquals(1, stats.get("memoryEntries"));
+		assertEquals(1L, stats.get("touchesFlushed"));
+		assertEquals(0, stats.get("pendingTouches"));
+	}
+
+	private LruTouchCache<String> cache(int memoryEntries) {
+		return new LruTouchCache<>("test", "ocr_result_cache", "content_hash", memoryEntries, table.jdbcTemplate());
+	}
+
+	private void row(String hash, LocalDateTime lastAccess) {
+		OcrResultCache row = new OcrResultCache();
+		row.setContentHash(hash);
+		row.setLastAccessTime(lastAccess);
+		table.rows.put(hash, row);
+	}
+
+	private static Map<String, Object> stats(LruTouchCache<String> cache) {
+		Map<String, Object> stats = new HashMap<>();
+		cache.putStats(stats);
+		return stats;
+	}
+}
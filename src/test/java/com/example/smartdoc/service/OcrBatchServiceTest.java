@@ -0,0 +1,198 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.model.OcrBatchJob;
+
+/**
+ * 批量识别测试 - 后台识别、单个文件失败、整批拒绝、线程数上限、过期任务清理
+ */
+class OcrBatchServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private OcrBatchService batch;
+
+	@AfterEach
+	void shutdown() {
+		if (batch != null) batch.shutdown();
+	}
+
+	@Test
+	void recognizesEveryFileAndDeletesSpooledCopies() throws Exception {
+		batch = batch(2, 10, 60, new FakeOcr());
+
+		OcrBatchJob job = batch.submit(1L, files("a.pdf", "b.jpg", "c.png"));
+		await(job);
+
+		assertEquals(3, job.getFinished());
+		assertNotNull(job.getFinishTime());
+		for (OcrBatchJob.FileItem item : job.getItems()) {
+			assertEquals("DONE", item.getStatus());
+			// 识别时读到的是转存文件的内容
+			assertEquals("内容:" + item.getFileName(), item.getResults().get(0).getMerchantName());
+		}
+		assertTrue(spooledFiles().isEmpty());
+		assertEquals(job, batch.getJob(job.getJobId()));
+	}
+
+	@Test
+	void failedFileDoesNotFailTheBatch() throws Exception {
+		FakeOcr ocr = new FakeOcr();
+		ocr.failOn = "bad.pdf";
+		batch = batch(1, 10, 60, ocr);
+
+		OcrBatchJob job = batch.submit(1L, files("ok.pdf", "bad.pdf"));
+		await(job);
+
+		assertEquals("DONE", job.getItems().get(0).getStatus());
+		assertEquals("FAILED", job.getItems().get(1).getStatus());
+		assertEquals("识别失败: bad.pdf", job.getItems().get(1).getError());
+		assertTrue(spooledFiles().isEmpty());
+	}
+
+	@Test
+	void batchLargerThanQueueIsRejectedWhole() throws Exception {
+		FakeOcr ocr = new FakeOcr();
+		batch = batch(1, 2, 60, ocr);
+
+		assertThrows(IllegalStateException.class, () -> batch.submit(1L, files("a", "b", "c")));
+
+		assertEquals(0, ocr.calls.get());
+		assertTrue(spooledFiles().isEmpty());
+	}
+
+	@Test
+	void concurrencyIsBoundedByWorkers() throws Exception {
+		FakeOcr ocr = new FakeOcr();
+		ocr.gate = new CountDownLatch(1);
+		batch = batch(2, 10, 60, ocr);
+
+		OcrBatchJob job = batch.submit(1L, files("1", "2", "3", "4", "5"));
+		waitFor(() -> ocr.running.get() == 2);
+		Thread.sleep(50);
+		assertEquals(2, ocr.running.get());
+		assertEquals(0, job.getFinished());
+
+		ocr.gate.countDown();
+		await(job);
+		assertEquals(2, ocr.maxRunning.get());
+	}
+
+	@Test
+	void completedJobsExpire() throws Exception {
+		batch = batch(1, 10, 0, new FakeOcr());
+		OcrBatchJob first = batch.submit(1L, files("a"));
+		await(first);
+		Thread.sleep(5);
+
+		// 下次提交时清理超过保留时间的任务
+		OcrBatchJob second = batch.submit(1L, files("b"));
+
+		assertNull(batch.getJob(first.getJobId()));
+		assertEquals(second, batch.getJob(second.getJobId()));
+	}
+
+	private OcrBatchService batch(int workers, int queueCapacity, long jobTtlMinutes, OcrService ocr) throws IOException {
+		UploadSpoolService spool = new UploadSpoolService();
+		ReflectionTestUtils.setField(spool, "spoolDirConfig", dir.toString());
+		ReflectionTestUtils.setField(spool, "spoolThresholdKb", 1024L);
+		ReflectionTestUtils.setField(spool, "memoryBudgetMb", 16);
+		ReflectionTestUtils.setField(spool, "memoryWaitMs", 100L);
+		spool.init();
+
+		OcrBatchService service = new OcrBatchService();
+		ReflectionTestUtils.setField(service, "workers", workers);
+		ReflectionTestUtils.setField(service, "queueCapacity", queueCapacity);
+		ReflectionTestUtils.setField(service, "jobTtlMinutes", jobTtlMinutes);
+		ReflectionTestUtils.setField(service, "ocrService", ocr);
+		ReflectionTestUtils.setField(service, "uploadSpoolService", spool);
+		service.init();
+		return service;
+	}
+
+	private static MultipartFile[] files(String... names) {
+		MultipartFile[] files = new MultipartFile[names.length];
+		for (int i = 0; i < names.length; i++) {
+			files[i] = new MockMultipartFile("files", names[i], "application/octet-stream",
+					("内容:" + names[i]).getBytes(StandardCharsets.UTF_8));
+		}
+		return files;
+	}
+
+	private List<Path> spooledFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.toList();
+		}
+	}
+
+	private static void await(OcrBatchJob job) throws InterruptedException {
+		waitFor(job::isCompleted);
+		// 完成时间在最后一个文件的状态更新之后设置
+		waitFor(() -> job.getFinishTime() != null);
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean(), "等待超时");
+	}
+
+	/**
+	 * 代替百度 OCR: 把文件内容作为商户名返回，可指定失败的文件或阻塞识别
+	 */
+	private static class FakeOcr extends OcrService {
+		final AtomicInteger calls = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		volatile String failOn;
+		volatile CountDownLatch gate;
+
+		@Override
+		public List<InvoiceData> processDocumentAll(String fileName, Path file) throws IOException {
+			calls.incrementAndGet();
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				if (gate != null && !gate.await(5, TimeUnit.SECONDS)) {
+					throw new IOException("等待超时");
+				}
+				if (fileName.equals(failOn)) {
+					throw new IOException("识别失败: " + fileName);
+				}
+				InvoiceData data = new InvoiceData();
+				data.setMerchantName(Files.readString(file, StandardCharsets.UTF_8));
+				return List.of(data);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+}
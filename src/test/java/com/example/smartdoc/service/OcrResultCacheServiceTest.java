@@ -0,0 +1,118 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.model.OcrResultCache;
+import com.example.smartdoc.repository.OcrResultCacheRepository;
+
+/**
+ * OCR 结果缓存测试 - 缓存规则、两级查询、数据库淘汰
+ */
+class OcrResultCacheServiceTest {
+
+	private final CacheTable<OcrResultCache> table = new CacheTable<>(
+			OcrResultCache::getContentHash, OcrResultCache::getLastAccessTime, OcrResultCache::setLastAccessTime);
+
+	private final List<OcrResultCacheService> services = new ArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		services.forEach(OcrResultCacheService::shutdown);
+	}
+
+	@Test
+	void unrecognizedResultsAreNotCached() {
+		OcrResultCacheService service = service(100);
+		service.put("h1", List.of(invoice(null)));
+		service.put("h2", List.of());
+		service.put("h3", null);
+
+		assertTrue(table.rows.isEmpty());
+		assertNull(service.get("h1"));
+		assertEquals(1L, service.getStats().get("misses"));
+	}
+
+	@Test
+	void memoryHitReturnsFreshObjects() {
+		OcrResultCacheService service = service(100);
+		service.put("h", List.of(invoice(12.5), invoice(null)));
+
+		List<InvoiceData> first = service.get("h");
+		first.get(0).setAmount(999.0);
+		List<InvoiceData> second = service.get("h");
+
+		assertEquals(2, second.size());
+		assertEquals(12.5, second.get(0).getAmount());
+		assertEquals(2L, service.getStats().get("memoryHits"));
+	}
+
+	@Test
+	void databaseHitSurvivesRestartAndFillsMemory() {
+		service(100).put("h", List.of(invoice(30.0)));
+
+		OcrResultCacheService restarted = service(100);
+		assertEquals(30.0, restarted.get("h").get(0).getAmount());
+		assertEquals(30.0, restarted.get("h").get(0).getAmount());
+
+		assertEquals(1L, restarted.getStats().get("dbHits"));
+		assertEquals(1L, restarted.getStats().get("memoryHits"));
+		assertEquals(1, table.rows.get("h").getHitCount());
+	}
+
+	@Test
+	void putKeepsHitCountOfExistingRow() {
+		OcrResultCacheService service = service(100);
+		service.put("h", List.of(invoice(1.0)));
+		table.rows.get("h").setHitCount(7);
+
+		service.put("h", List.of(invoice(2.0)));
+
+		assertEquals(7, table.rows.get("h").getHitCount());
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedRowsOverLimit() throws InterruptedException {
+		OcrResultCacheService service = service(2);
+		service.put("old", List.of(invoice(1.0)));
+		Thread.sleep(5);
+		service.put("used", List.of(invoice(2.0)));
+		Thread.sleep(5);
+		// 内存命中的访问记录在淘汰前写回，"old" 因此不再是最旧的
+		service.get("old");
+		Thread.sleep(5);
+		service.put("new", List.of(invoice(3.0)));
+
+		assertEquals(List.of("old", "new"), List.copyOf(table.rows.keySet()));
+		assertEquals(1L, service.getStats().get("evictions"));
+		assertNull(service.get("used"));
+	}
+
+	private OcrResultCacheService service(int maxEntries) {
+		OcrResultCacheService service = new OcrResultCacheService();
+		ReflectionTestUtils.setField(service, "memoryEntries", 100);
+		ReflectionTestUtils.setField(service, "maxEntries", maxEntries);
+		ReflectionTestUtils.setField(service, "touchFlushSeconds", 3_600L);
+		ReflectionTestUtils.setField(service, "cacheRepository", table.repository(OcrResultCacheRepository.class));
+		ReflectionTestUtils.setField(service, "jdbcTemplate", table.jdbcTemplate());
+		service.init();
+		services.add(service);
+		return service;
+	}
+
+	private static InvoiceData invoice(Double amount) {
+		InvoiceData data = new InvoiceData();
+		data.setAmount(amount);
+		data.setMerchantName("测试商户");
+		return data;
+	}
+}
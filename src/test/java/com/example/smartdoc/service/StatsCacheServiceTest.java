@@ -0,0 +1,153 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 统计结果缓存测试 - 版本号失效、事务提交后才失效、容量和过期淘汰
+ */
+class StatsCacheServiceTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@AfterEach
+	void clearTransaction() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void sameVersionIsServedFromCache() {
+		StatsCacheService cache = cache(100, 600);
+
+		assertEquals("trend-1", cache.get(1L, "trend", loader("trend")));
+		assertEquals("trend-1", cache.get(1L, "trend", loader("trend")));
+		assertEquals("graph-2", cache.get(1L, "graph", loader("graph")));
+
+		assertEquals(2, loads.get());
+		assertEquals(1L, cache.getStats().get("hits"));
+		assertEquals(2L, cache.getStats().get("misses"));
+	}
+
+	@Test
+	void bumpInvalidatesOnlyThatUser() {
+		StatsCacheService cache = cache(100, 600);
+		cache.get(1L, "trend", loader("a"));
+		cache.get(2L, "trend", loader("b"));
+
+		cache.bump(1L);
+
+		assertEquals("a-3", cache.get(1L, "trend", loader("a")));
+		assertEquals("b-2", cache.get(2L, "trend", loader("b")));
+		assertEquals(1L, cache.getVersion(1L));
+		assertEquals(0L, cache.getVersion(2L));
+	}
+
+	@Test
+	void anyBumpInvalidatesCompanyWideResults() {
+		StatsCacheService cache = cache(100, 600);
+		cache.getCompanyWide("clusters", loader("c"));
+		assertEquals("c-1", cache.getCompanyWide("clusters", loader("c")));
+
+		cache.bump(7L);
+
+		assertEquals("c-2", cache.getCompanyWide("clusters", loader("c")));
+	}
+
+	@Test
+	void bumpWaitsForCommit() {
+		StatsCacheService cache = cache(100, 600);
+		cache.get(1L, "trend", loader("a"));
+
+		TransactionSynchronizationManager.initSynchronization();
+		cache.bump(1L);
+
+		// 提交前仍命中旧结果
+		assertEquals(0L, cache.getVersion(1L));
+		assertEquals("a-1", cache.get(1L, "trend", loader("a")));
+
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		assertEquals(1L, cache.getVersion(1L));
+		assertEquals("a-2", cache.get(1L, "trend", loader("a")));
+	}
+
+	@Test
+	void rolledBackBumpDoesNothing() {
+		StatsCacheService cache = cache(100, 600);
+
+		TransactionSynchronizationManager.initSynchronization();
+		cache.bump(1L);
+		TransactionSynchronizationManager.clearSynchronization();
+
+		assertEquals(0L, cache.getVersion(1L));
+		assertEquals(0L, cache.getStats().get("bumps"));
+	}
+
+	@Test
+	void nullResultsAreNotCached() {
+		StatsCacheService cache = cache(100, 600);
+		Supplier<String> empty = () -> {
+			loads.incrementAndGet();
+			return null;
+		};
+
+		assertNull(cache.get(1L, "trend", empty));
+		assertNull(cache.get(1L, "trend", empty));
+		assertEquals(2, loads.get());
+		assertEquals(0, cache.getStats().get("entries"));
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() {
+		StatsCacheService cache = cache(2, 600);
+		cache.get(1L, "a", loader("a"));
+		cache.get(1L, "b", loader("b"));
+		cache.get(1L, "a", loader("a"));
+		cache.get(1L, "c", loader("c"));
+
+		assertEquals("a-1", cache.get(1L, "a", loader("a")));
+		assertEquals("b-4", cache.get(1L, "b", loader("b")));
+		assertEquals(2L, cache.getStats().get("evictions"));
+	}
+
+	@Test
+	void expiredEntryIsRecomputed() {
+		StatsCacheService cache = cache(100, 0);
+		cache.get(1L, "trend", loader("a"));
+
+		assertEquals("a-2", cache.get(1L, "trend", loader("a")));
+		assertEquals(1L, cache.getStats().get("expirations"));
+	}
+
+	@Test
+	void nullUserIsIgnored() {
+		StatsCacheService cache = cache(100, 600);
+		cache.bump(null);
+
+		assertEquals(0L, cache.getStats().get("bumps"));
+	}
+
+	/**
+	 * 返回 "{名称}-{第几次计算}"
+	 */
+	private Supplier<String> loader(String name) {
+		return () -> name + "-" + loads.incrementAndGet();
+	}
+
+	private static StatsCacheService cache(int maxEntries, long ttlSeconds) {
+		StatsCacheService cache = new StatsCacheService();
+		ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+		ReflectionTestUtils.setField(cache, "ttlSeconds", ttlSeconds);
+		return cache;
+	}
+}
@@ -0,0 +1,200 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.BooleanSupplier;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+
+/**
+ * 缩略图服务测试 - 图片/PDF 缩略图尺寸、失败不重试、重启后加载和容量淘汰
+ */
+class ThumbnailServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private BlobStoreService store;
+
+	private ThumbnailService thumbnails;
+
+	@BeforeEach
+	void createStore() throws IOException {
+		store = new BlobStoreService();
+		ReflectionTestUtils.setField(store, "blobDir", dir.resolve("blobs").toString());
+		ReflectionTestUtils.setField(store, "gcIntervalMinutes", 0L);
+		store.init();
+	}
+
+	@AfterEach
+	void shutdown() {
+		if (thumbnails != null) thumbnails.shutdown();
+		store.shutdown();
+	}
+
+	@Test
+	void imageThumbnailFitsMaxSide() throws Exception {
+		thumbnails = thumbnails(256);
+		String hash = put(png(1600, 800));
+
+		// 首次请求排入后台生成
+		assertNull(thumbnails.getOrSchedule(hash));
+		Path thumbnail = await(hash);
+
+		BufferedImage image = ImageIO.read(thumbnail.toFile());
+		assertEquals(320, image.getWidth());
+		assertEquals(160, image.getHeight());
+		assertEquals(1L, thumbnails.getStats().get("generated"));
+	}
+
+	@Test
+	void pdfThumbnailRendersFirstPageAtTargetSize() throws Exception {
+		thumbnails = thumbnails(256);
+		String hash = put(pdf());
+
+		thumbnails.prefetch(hash);
+		Path thumbnail = await(hash);
+
+		BufferedImage image = ImageIO.read(thumbnail.toFile());
+		assertTrue(Math.abs(Math.max(image.getWidth(), image.getHeight()) - 320) <= 1,
+				image.getWidth() + "x" + image.getHeight());
+		assertTrue(image.getHeight() > image.getWidth());
+	}
+
+	@Test
+	void cachedThumbnailCountsAsHit() throws Exception {
+		thumbnails = thumbnails(256);
+		String hash = put(png(100, 50));
+		thumbnails.prefetch(hash);
+		await(hash);
+
+		assertNotNull(thumbnails.getOrSchedule(hash));
+		assertTrue((Long) thumbnails.getStats().get("hits") >= 1);
+		assertEquals(1L, thumbnails.getStats().get("generated"));
+	}
+
+	@Test
+	void missingOriginalFailsOnce() throws Exception {
+		thumbnails = thumbnails(256);
+		String hash = DigestUtil.sha256Hex("不存在的原件");
+
+		thumbnails.prefetch(hash);
+		waitFor(() -> thumbnails.isFailed(hash));
+
+		// 已失败的不再排队
+		assertNull(thumbnails.getOrSchedule(hash));
+		thumbnails.prefetch(hash);
+		assertEquals(1L, thumbnails.getStats().get("failures"));
+		assertEquals(0, thumbnails.getStats().get("pending"));
+	}
+
+	@Test
+	void undecodableOriginalIsMarkedFailed() throws Exception {
+		thumbnails = thumbnails(256);
+		String hash = put("不是图片".getBytes());
+
+		thumbnails.prefetch(hash);
+		waitFor(() -> thumbnails.isFailed(hash));
+
+		assertFalse(Files.exists(dir.resolve("thumbs").resolve(hash + ".jpg")));
+	}
+
+	@Test
+	void restartLoadsExistingThumbnailsAndEvictsOldestOverLimit() throws Exception {
+		Path thumbDir = Files.createDirectories(dir.resolve("thumbs"));
+		byte[] content = new byte[400 * 1024];
+		for (int i = 1; i <= 3; i++) {
+			Path file = thumbDir.resolve("h" + i + ".jpg");
+			Files.write(file, content);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(i * 1_000L));
+		}
+
+		// 1.2 MB > 1 MB: 删除修改时间最早的 h1
+		thumbnails = thumbnails(1);
+
+		assertFalse(Files.exists(thumbDir.resolve("h1.jpg")));
+		assertNull(thumbnails.getOrSchedule("h1"));
+		assertEquals(thumbDir.resolve("h2.jpg"), thumbnails.getOrSchedule("h2"));
+		assertEquals(thumbDir.resolve("h3.jpg"), thumbnails.getOrSchedule("h3"));
+		assertEquals(1L, thumbnails.getStats().get("evicted"));
+		assertEquals(2 * 400 * 1024L, thumbnails.getStats().get("cachedBytes"));
+	}
+
+	private ThumbnailService thumbnails(long cacheMaxMb) throws IOException {
+		ThumbnailService service = new ThumbnailService();
+		ReflectionTestUtils.setField(service, "thumbnailDir", dir.resolve("thumbs").toString());
+		ReflectionTestUtils.setField(service, "maxSide", 320);
+		ReflectionTestUtils.setField(service, "workers", 1);
+		ReflectionTestUtils.setField(service, "cacheMaxMb", cacheMaxMb);
+		ReflectionTestUtils.setField(service, "blobStoreService", store);
+		service.init();
+		return service;
+	}
+
+	private String put(byte[] content) throws IOException {
+		String hash = DigestUtil.sha256Hex(content);
+		store.put(hash, content);
+		return hash;
+	}
+
+	/**
+	 * 等待后台生成完成，返回缩略图路径
+	 */
+	private Path await(String hash) throws InterruptedException {
+		Path[] path = new Path[1];
+		waitFor(() -> (path[0] = thumbnails.getOrSchedule(hash)) != null || thumbnails.isFailed(hash));
+		assertNotNull(path[0], "缩略图未生成");
+		return path[0];
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean(), "等待超时");
+	}
+
+	private static byte[] png(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.BLUE);
+		g.fillRect(0, 0, width / 2, height);
+		g.dispose();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	private static byte[] pdf() throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage(PDRectangle.A4));
+			document.addPage(new PDPage(PDRectangle.A4));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			document.save(out);
+			return out.toByteArray();
+		}
+	}
+}
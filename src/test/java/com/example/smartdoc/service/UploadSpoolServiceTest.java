@@ -0,0 +1,144 @@
+package com.example.smartdoc.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 上传转存与内存预算测试 - 预算上限、超时拒绝、排队顺序、转存文件清理
+ */
+class UploadSpoolServiceTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void permitIsReturnedOnceOnClose() throws Exception {
+		UploadSpoolService service = service(1, 100);
+
+		UploadSpoolService.MemoryPermit permit = service.reserve(300 * 1024);
+		assertEquals(300, service.getStats().get("memoryInUseKb"));
+
+		permit.close();
+		permit.close();
+		assertEquals(0, service.getStats().get("memoryInUseKb"));
+	}
+
+	@Test
+	void oversizedRequestTakesWholeBudget() throws Exception {
+		UploadSpoolService service = service(1, 100);
+
+		// 估算超过总预算时按总预算申请，独占执行而不是永远等不到
+		UploadSpoolService.MemoryPermit permit = service.reserve(50L * 1024 * 1024);
+		assertEquals(1024, service.getStats().get("memoryInUseKb"));
+		assertThrows(IllegalStateException.class, () -> service.reserve(1));
+		permit.close();
+	}
+
+	@Test
+	void rejectsAfterWaitTimeout() throws Exception {
+		UploadSpoolService service = service(1, 50);
+		UploadSpoolService.MemoryPermit permit = service.reserve(1024 * 1024);
+
+		long start = System.nanoTime();
+		assertThrows(IllegalStateException.class, () -> service.reserve(1024));
+		long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(waitedMs >= 40, "等待 " + waitedMs + "ms");
+		assertEquals(1L, service.getStats().get("budgetWaits"));
+		assertEquals(1L, service.getStats().get("budgetRejections"));
+		permit.close();
+	}
+
+	@Test
+	void smallRequestDoesNotOvertakeQueuedLargeRequest() throws Exception {
+		UploadSpoolService service = service(1, 5_000);
+		UploadSpoolService.MemoryPermit first = service.reserve(512 * 1024);
+		UploadSpoolService.MemoryPermit second = service.reserve(512 * 1024);
+
+		// 大文件排队等待整个预算
+		CompletableFuture<UploadSpoolService.MemoryPermit> large = CompletableFuture.supplyAsync(() -> {
+			try {
+				return service.reserve(1024 * 1024);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		awaitBudgetWaits(service, 1);
+
+		// 归还一半后虽有空闲预算，小文件也只能排在大文件之后
+		first.close();
+		ReflectionTestUtils.setField(service, "memoryWaitMs", 100L);
+		assertThrows(IllegalStateException.class, () -> service.reserve(1024));
+		assertFalse(large.isDone());
+
+		second.close();
+		UploadSpoolService.MemoryPermit permit = large.get(5, TimeUnit.SECONDS);
+		assertEquals(1024, service.getStats().get("memoryInUseKb"));
+		permit.close();
+	}
+
+	@Test
+	void spoolsLargeUploadsToDisk() throws Exception {
+		UploadSpoolService service = service(1, 100);
+		byte[] content = new byte[3 * 1024];
+		content[100] = 7;
+		MockMultipartFile small = new MockMultipartFile("file", "a.jpg", "image/jpeg", new byte[1024]);
+		MockMultipartFile large = new MockMultipartFile("file", "b.pdf", "application/pdf", content);
+
+		assertFalse(service.shouldSpool(small));
+		assertTrue(service.shouldSpool(large));
+
+		Path path = service.spool(large);
+		assertEquals(dir, path.getParent());
+		assertArrayEquals(content, Files.readAllBytes(path));
+		assertEquals(1L, service.getStats().get("spooledFiles"));
+		assertEquals(3L * 1024, service.getStats().get("spooledBytes"));
+
+		service.delete(path);
+		assertFalse(Files.exists(path));
+	}
+
+	@Test
+	void startupRemovesLeftoverSpoolFilesOnly() throws Exception {
+		Path leftover = Files.createFile(dir.resolve("upload-123.tmp"));
+		Path other = Files.createFile(dir.resolve("keep.txt"));
+
+		service(1, 100);
+
+		assertFalse(Files.exists(leftover));
+		assertTrue(Files.exists(other));
+	}
+
+	private UploadSpoolService service(int budgetMb, long waitMs) throws IOException {
+		UploadSpoolService service = new UploadSpoolService();
+		ReflectionTestUtils.setField(service, "spoolDirConfig", dir.toString());
+		ReflectionTestUtils.setField(service, "spoolThresholdKb", 2L);
+		ReflectionTestUtils.setField(service, "memoryBudgetMb", budgetMb);
+		ReflectionTestUtils.setField(service, "memoryWaitMs", waitMs);
+		service.init();
+		return service;
+	}
+
+	private static void awaitBudgetWaits(UploadSpoolService service, long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 2_000;
+		while ((Long) service.getStats().get("budgetWaits") < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		// budgetWaits 在进入等待前计数，再留出时间让线程真正排上队
+		Thread.sleep(50);
+	}
+}
@@ -0,0 +1,114 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Aho-Corasick 自动机测试 - 与逐个关键词暴力查找的结果对比
+ */
+class AhoCorasickTest {
+
+	@Test
+	void reportsShortKeywordInsideLongOne() {
+		List<String> keywords = List.of("出租车", "车", "租车");
+
+		assertEquals(List.of("出租车", "租车", "车"), matches(keywords, "出租车"));
+		assertEquals(List.of("车", "出租车", "租车", "车"), matches(keywords, "车出租车"));
+	}
+
+	@Test
+	void followsOutputLinks() {
+		// 经典示例: "she" 结尾处还要沿输出链报告 "he"，随后 "hers" 也命中
+		List<String> keywords = List.of("he", "she", "his", "hers");
+
+		assertEquals(List.of("she", "he", "hers"), matches(keywords, "ushers"));
+	}
+
+	@Test
+	void followsOutputChainThroughSeveralKeywords() {
+		List<String> keywords = List.of("a", "aa", "aaa");
+
+		List<String> found = matches(keywords, "aaa");
+		assertEquals(3, Collections.frequency(found, "a"));
+		assertEquals(2, Collections.frequency(found, "aa"));
+		assertEquals(1, Collections.frequency(found, "aaa"));
+	}
+
+	@Test
+	void recoversThroughFailureLinks() {
+		// "abcd" 未完成时回退到 "bcx" 的路径
+		List<String> keywords = List.of("abcd", "bcx", "c");
+
+		assertEquals(List.of("c", "bcx"), matches(keywords, "abcx"));
+	}
+
+	@Test
+	void duplicateKeywordKeepsFirstIdAndEmptyIsIgnored() {
+		AhoCorasick automaton = new AhoCorasick(List.of("餐饮", "", "餐饮"));
+		List<Integer> ids = new ArrayList<>();
+		automaton.forEachMatch("餐饮服务", ids::add);
+
+		assertEquals(List.of(0), ids);
+		assertEquals(3, automaton.getKeywordCount());
+	}
+
+	@Test
+	void noMatchInUnrelatedText() {
+		assertTrue(matches(List.of("滴滴", "高铁"), "星巴克咖啡").isEmpty());
+		assertTrue(matches(List.of("滴滴"), "").isEmpty());
+	}
+
+	@Test
+	void matchesBruteForceOnRandomText() {
+		// 小字母表使关键词大量重叠
+		Random random = new Random(11);
+		List<String> keywords = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			keywords.add(randomText(random, 1 + random.nextInt(5)));
+		}
+		AhoCorasick automaton = new AhoCorasick(keywords);
+
+		for (int t = 0; t < 50; t++) {
+			String text = randomText(random, 200);
+			int[] counts = new int[keywords.size()];
+			automaton.forEachMatch(text, k -> counts[k]++);
+
+			for (int k = 0; k < keywords.size(); k++) {
+				int expected = keywords.indexOf(keywords.get(k)) == k ? occurrences(text, keywords.get(k)) : 0;
+				assertEquals(expected, counts[k], "关键词 " + keywords.get(k));
+			}
+		}
+	}
+
+	private static List<String> matches(List<String> keywords, String text) {
+		List<String> found = new ArrayList<>();
+		new AhoCorasick(keywords).forEachMatch(text, k -> found.add(keywords.get(k)));
+		return found;
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append("车出租费".charAt(random.nextInt(4)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 关键词在文本中出现的次数 (允许重叠)
+	 */
+	private static int occurrences(String text, String keyword) {
+		int count = 0;
+		for (int i = text.indexOf(keyword); i >= 0; i = text.indexOf(keyword, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+}
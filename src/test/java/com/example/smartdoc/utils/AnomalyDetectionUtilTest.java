@@ -0,0 +1,62 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 异常检测算法测试 - Z-Score 与修正 Z-Score 的判定边界
+ */
+class AnomalyDetectionUtilTest {
+
+	@Test
+	void zScoreFlagsBeyondTwoSigma() {
+		assertTrue(AnomalyDetectionUtil.isAnomaly(121, 100, 10));
+		assertTrue(AnomalyDetectionUtil.isAnomaly(79, 100, 10));
+		assertFalse(AnomalyDetectionUtil.isAnomaly(120, 100, 10));
+	}
+
+	@Test
+	void zScoreWithZeroStdDevNeverFlags() {
+		assertFalse(AnomalyDetectionUtil.isAnomaly(1_000_000, 100, 0));
+	}
+
+	@Test
+	void robustFlagsBeyondThreshold() {
+		// M = 0.6745 × |x - 中位数| / MAD
+		double median = 100;
+		double mad = 10;
+		double boundary = median + 3.5 * mad / 0.6745;
+		assertTrue(AnomalyDetectionUtil.isRobustAnomaly(boundary + 1, median, mad, 3.5));
+		assertTrue(AnomalyDetectionUtil.isRobustAnomaly(2 * median - boundary - 1, median, mad, 3.5));
+		assertFalse(AnomalyDetectionUtil.isRobustAnomaly(boundary - 1, median, mad, 3.5));
+		assertFalse(AnomalyDetectionUtil.isRobustAnomaly(median, median, mad, 3.5));
+	}
+
+	@Test
+	void robustWithZeroMadNeverFlags() {
+		// 半数以上样本相同时 MAD 为 0，无法判断
+		assertFalse(AnomalyDetectionUtil.isRobustAnomaly(1_000_000, 100, 0, 3.5));
+	}
+
+	@Test
+	void robustWithInvalidMadNeverFlags() {
+		assertFalse(AnomalyDetectionUtil.isRobustAnomaly(1_000_000, 100, Double.NaN, 3.5));
+		assertFalse(AnomalyDetectionUtil.isRobustAnomaly(1_000_000, 100, -1, 3.5));
+	}
+
+	@Test
+	void robustIgnoresSingleOutlierInHistory() {
+		// 一个极端值会把标准差拉大，Z-Score 漏报；中位数和 MAD 不受影响
+		double[] history = {50, 52, 48, 51, 49, 50, 53, 47, 10_000};
+		TDigest digest = new TDigest(100);
+		for (double x : history) {
+			digest.add(x);
+		}
+		double[] meanAndStd = AnomalyDetectionUtil.calculateMeanAndStdDev(history);
+
+		assertFalse(AnomalyDetectionUtil.isAnomaly(200, meanAndStd[0], meanAndStd[1]));
+		assertTrue(AnomalyDetectionUtil.isRobustAnomaly(200, digest.quantile(0.5), digest.mad(), 3.5));
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 熔断器测试 - CLOSED → OPEN → HALF_OPEN → CLOSED 状态转换、半开时只放行一个试探请求
+ */
+class CircuitBreakerTest {
+
+	private static final long OPEN_MILLIS = 50;
+
+	@Test
+	void opensAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS);
+
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertTrue(breaker.isOpen());
+		assertFalse(breaker.allowRequest());
+		assertEquals(1L, breaker.getStats().get("shortCircuited"));
+	}
+
+	@Test
+	void successResetsFailureCount() {
+		CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS);
+
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		breaker.recordFailure();
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(2, breaker.getStats().get("consecutiveFailures"));
+	}
+
+	@Test
+	void halfOpenAfterOpenPeriodThenClosesOnSuccess() throws InterruptedException {
+		CircuitBreaker breaker = open(new CircuitBreaker(2, OPEN_MILLIS));
+		assertFalse(breaker.allowRequest());
+
+		Thread.sleep(OPEN_MILLIS + 20);
+
+		// isOpen 只做判断，不改变状态
+		assertFalse(breaker.isOpen());
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		assertTrue(breaker.allowRequest());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+		breaker.recordSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	void failedProbeReopens() throws InterruptedException {
+		CircuitBreaker breaker = open(new CircuitBreaker(2, OPEN_MILLIS));
+		Thread.sleep(OPEN_MILLIS + 20);
+
+		assertTrue(breaker.allowRequest());
+		breaker.recordFailure();
+
+		// 试探失败一次即重新熔断，并重新计时
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertTrue(breaker.isOpen());
+		assertFalse(breaker.allowRequest());
+		assertEquals(2L, breaker.getStats().get("timesOpened"));
+	}
+
+	@Test
+	void halfOpenAdmitsSingleProbe() throws InterruptedException {
+		CircuitBreaker breaker = open(new CircuitBreaker(2, OPEN_MILLIS));
+		Thread.sleep(OPEN_MILLIS + 20);
+
+		assertTrue(breaker.allowRequest());
+		// 试探请求结束前，其他请求都被拒绝
+		assertFalse(breaker.allowRequest());
+		assertFalse(breaker.allowRequest());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+	}
+
+	@Test
+	void concurrentCallersGetSingleProbe() throws InterruptedException {
+		CircuitBreaker breaker = open(new CircuitBreaker(2, OPEN_MILLIS));
+		Thread.sleep(OPEN_MILLIS + 20);
+
+		int callers = 16;
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger allowed = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < callers; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (breaker.allowRequest()) {
+					allowed.incrementAndGet();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(5_000);
+		}
+
+		assertEquals(1, allowed.get());
+		assertEquals((long) callers - 1, breaker.getStats().get("shortCircuited"));
+	}
+
+	/**
+	 * 连续失败直到熔断
+	 */
+	private static CircuitBreaker open(CircuitBreaker breaker) {
+		while (breaker.getState() != CircuitBreaker.State.OPEN) {
+			breaker.recordFailure();
+		}
+		return breaker;
+	}
+}
@@ -0,0 +1,155 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 聚类特征测试 - 数值特征标准化、周期编码、类别特征的权重上限
+ */
+class ClusterFeaturesTest {
+
+	private static final double EPS = 1e-9;
+
+	@Test
+	void parsesFeatureList() {
+		assertEquals(List.of("day", "log-amount", "category"),
+				ClusterFeatures.parse(" Day, log-amount,,category,day ").getFeatures());
+		assertThrows(IllegalArgumentException.class, () -> ClusterFeatures.parse("day,color"));
+		assertThrows(IllegalArgumentException.class, () -> ClusterFeatures.parse(" , "));
+		assertThrows(IllegalArgumentException.class, () -> ClusterFeatures.parse(null));
+	}
+
+	@Test
+	void numericColumnsHaveZeroMeanAndUnitVariance() {
+		Data data = randomData(500, 4);
+		double[][] columns = ClusterFeatures.parse("day,amount,log-amount").build(data.dates, data.amounts, data.categories);
+
+		assertEquals(3, columns.length);
+		for (double[] column : columns) {
+			assertEquals(0.0, mean(column), EPS);
+			assertEquals(1.0, variance(column), EPS);
+		}
+	}
+
+	@Test
+	void weekdayHasUnitTotalVariance() {
+		Data data = randomData(700, 4);
+		double[][] columns = ClusterFeatures.parse("weekday").build(data.dates, data.amounts, data.categories);
+
+		assertEquals(2, columns.length);
+		assertEquals(1.0, variance(columns[0]) + variance(columns[1]), EPS);
+	}
+
+	@Test
+	void constantColumnBecomesZero() {
+		LocalDate[] dates = {LocalDate.of(2024, 1, 5), LocalDate.of(2024, 2, 5), LocalDate.of(2024, 3, 5)};
+		double[][] columns = ClusterFeatures.parse("day").build(dates, new double[3], new String[3]);
+
+		for (double x : columns[0]) {
+			assertEquals(0.0, x);
+		}
+	}
+
+	@Test
+	void categoryDistanceIsOneRegardlessOfFrequency() {
+		// 998 张餐饮 + 2 张罕见类别: z-score 会把罕见类别推到约 √n 远
+		int n = 1_000;
+		String[] categories = new String[n];
+		for (int i = 0; i < n; i++) categories[i] = "餐饮美食";
+		categories[0] = "医疗健康";
+		categories[1] = "交通出行";
+		Data data = randomData(n, 1);
+		double[][] columns = ClusterFeatures.parse("category").build(data.dates, data.amounts, categories);
+
+		assertEquals(3, columns.length);
+		assertEquals(1.0, squaredDistance(columns, 0, 2), EPS);
+		assertEquals(1.0, squaredDistance(columns, 0, 1), EPS);
+		assertEquals(0.0, squaredDistance(columns, 2, 3), EPS);
+		for (double[] column : columns) {
+			assertEquals(0.0, mean(column), EPS);
+		}
+	}
+
+	@Test
+	void categoryDoesNotOutweighNumericFeatures() {
+		// 类别多时，类别特征的总方差也不超过单个数值特征
+		Data data = randomData(2_000, 30);
+		double[][] columns = ClusterFeatures.parse("category").build(data.dates, data.amounts, data.categories);
+
+		double total = 0;
+		for (double[] column : columns) total += variance(column);
+		assertTrue(total <= 0.5 + EPS, "类别特征总方差 " + total);
+	}
+
+	@Test
+	void blankCategoryCountsAsOther() {
+		LocalDate day = LocalDate.of(2024, 1, 1);
+		double[][] columns = ClusterFeatures.parse("category").build(
+				new LocalDate[]{day, day, day}, new double[3], new String[]{null, " ", "其他"});
+
+		assertEquals(1, columns.length);
+		assertEquals(0.0, squaredDistance(columns, 0, 2), EPS);
+	}
+
+	@Test
+	void mismatchedLengthsAreRejected() {
+		ClusterFeatures features = ClusterFeatures.parse("day");
+		assertThrows(IllegalArgumentException.class,
+				() -> features.build(new LocalDate[1], new double[2], new String[1]));
+	}
+
+	private static Data randomData(int n, int categoryCount) {
+		Random random = new Random(3);
+		Data data = new Data(n);
+		for (int i = 0; i < n; i++) {
+			data.dates[i] = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(366));
+			data.amounts[i] = Math.exp(random.nextGaussian() * 1.5 + 4);
+			data.categories[i] = "类别" + random.nextInt(categoryCount);
+		}
+		return data;
+	}
+
+	private static double squaredDistance(double[][] columns, int a, int b) {
+		double sum = 0;
+		for (double[] column : columns) {
+			double d = column[a] - column[b];
+			sum += d * d;
+		}
+		return sum;
+	}
+
+	private static double mean(double[] column) {
+		double sum = 0;
+		for (double x : column) sum += x;
+		return sum / column.length;
+	}
+
+	/**
+	 * 样本方差 (与 AnomalyDetectionUtil 的标准差口径一致)
+	 */
+	private static double variance(double[] column) {
+		double mean = mean(column);
+		double sum = 0;
+		for (double x : column) sum += (x - mean) * (x - mean);
+		return sum / (column.length - 1);
+	}
+
+	private static class Data {
+		final LocalDate[] dates;
+		final double[] amounts;
+		final String[] categories;
+
+		Data(int n) {
+			dates = new LocalDate[n];
+			amounts = new double[n];
+			categories = new String[n];
+		}
+	}
+}
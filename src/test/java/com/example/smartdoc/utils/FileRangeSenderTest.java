@@ -0,0 +1,170 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * 文件下载测试 - ETag 条件请求、Range 解析、sendfile 属性
+ */
+class FileRangeSenderTest {
+
+	private static final String ETAG = "abc123";
+
+	@TempDir
+	Path dir;
+
+	private Path file;
+
+	private byte[] content;
+
+	@BeforeEach
+	void createFile() throws IOException {
+		content = new byte[1000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		file = Files.write(dir.resolve("blob"), content);
+	}
+
+	@Test
+	void sendsWholeFileWithValidators() throws IOException {
+		MockHttpServletResponse response = send(get());
+
+		assertEquals(200, response.getStatus());
+		assertEquals("\"" + ETAG + "\"", response.getHeader("ETag"));
+		assertEquals("bytes", response.getHeader("Accept-Ranges"));
+		assertEquals("private, no-cache", response.getHeader("Cache-Control"));
+		assertEquals("application/pdf", response.getContentType());
+		assertEquals(1000, response.getContentLengthLong());
+		assertArrayEquals(content, response.getContentAsByteArray());
+	}
+
+	@Test
+	void matchingEtagGivesNotModified() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("If-None-Match", "\"other\", \"" + ETAG + "\"");
+		MockHttpServletResponse response = send(request);
+
+		assertEquals(304, response.getStatus());
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	void staleEtagGivesWholeFile() throws IOException {
+		MockHttpServletRequest request = get();
+		request.addHeader("If-None-Match", "\"old-hash\"");
+
+		assertEquals(200, send(request).getStatus());
+	}
+
+	@Test
+	void closedRange() throws IOException {
+		MockHttpServletResponse response = send(range("bytes=10-19"));
+
+		assertEquals(206, response.getStatus());
+		assertEquals("bytes 10-19/1000", response.getHeader("Content-Range"));
+		assertEquals(10, response.getContentLengthLong());
+		assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+	}
+
+	@Test
+	void openEndedRange() throws IOException {
+		MockHttpServletResponse response = send(range("bytes=990-"));
+
+		assertEquals("bytes 990-999/1000", response.getHeader("Content-Range"));
+		assertArrayEquals(Arrays.copyOfRange(content, 990, 1000), response.getContentAsByteArray());
+	}
+
+	@Test
+	void suffixRange() throws IOException {
+		assertEquals("bytes 995-999/1000", send(range("bytes=-5")).getHeader("Content-Range"));
+		// 后缀长于文件时返回整个文件
+		assertEquals("bytes 0-999/1000", send(range("bytes=-5000")).getHeader("Content-Range"));
+	}
+
+	@Test
+	void endBeyondLengthIsClamped() throws IOException {
+		assertEquals("bytes 900-999/1000", send(range("bytes=900-5000")).getHeader("Content-Range"));
+	}
+
+	@Test
+	void unsatisfiableRange() throws IOException {
+		for (String header : new String[]{"bytes=1000-", "bytes=2000-3000", "bytes=-0"}) {
+			MockHttpServletResponse response = send(range(header));
+
+			assertEquals(416, response.getStatus(), header);
+			assertEquals("bytes */1000", response.getHeader("Content-Range"), header);
+		}
+	}
+
+	@Test
+	void unsupportedOrInvalidRangeGivesWholeFile() throws IOException {
+		for (String header : new String[]{"bytes=0-1,5-6", "items=0-10", "bytes=abc-", "bytes=20-10", "bytes=5"}) {
+			MockHttpServletResponse response = send(range(header));
+
+			assertEquals(200, response.getStatus(), header);
+			assertNull(response.getHeader("Content-Range"), header);
+			assertEquals(1000, response.getContentAsByteArray().length, header);
+		}
+	}
+
+	@Test
+	void ifRangeMismatchIgnoresRange() throws IOException {
+		MockHttpServletRequest request = range("bytes=0-9");
+		request.addHeader("If-Range", "\"old-hash\"");
+		assertEquals(200, send(request).getStatus());
+
+		request = range("bytes=0-9");
+		request.addHeader("If-Range", "\"" + ETAG + "\"");
+		assertEquals(206, send(request).getStatus());
+	}
+
+	@Test
+	void headSendsNoBody() throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/original/1");
+		MockHttpServletResponse response = send(request);
+
+		assertEquals(1000, response.getContentLengthLong());
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	void sendfileIsDelegatedToContainer() throws IOException {
+		MockHttpServletRequest request = range("bytes=100-199");
+		request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		MockHttpServletResponse response = send(request);
+
+		assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+		assertEquals(100L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+		assertEquals(200L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	private MockHttpServletResponse send(MockHttpServletRequest request) throws IOException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		FileRangeSender.send(file, "application/pdf", ETAG, request, response);
+		return response;
+	}
+
+	private static MockHttpServletRequest get() {
+		return new MockHttpServletRequest("GET", "/original/1");
+	}
+
+	private static MockHttpServletRequest range(String header) {
+		MockHttpServletRequest request = get();
+		request.addHeader("Range", header);
+		return request;
+	}
+}
@@ -0,0 +1,190 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * K-Means 计算核心测试 - 可复现性、并行与串行一致、Hamerly 与 Lloyd 一致、重复点
+ */
+class KMeansEngineTest {
+
+	private static final long SEED = 42L;
+
+	@Test
+	void sameSeedGivesIdenticalResult() {
+		double[][] columns = blobs(5_000, 4, 3, 1);
+
+		KMeansEngine.Result a = KMeansEngine.fit(columns, 4, 100, SEED);
+		KMeansEngine.Result b = KMeansEngine.fit(columns, 4, 100, SEED);
+
+		assertArrayEquals(a.getLabels(), b.getLabels());
+		assertArrayEquals(a.getCentroids(), b.getCentroids());
+		assertArrayEquals(a.getSizes(), b.getSizes());
+		assertEquals(a.getIterations(), b.getIterations());
+		assertEquals(a.getInertia(), b.getInertia());
+	}
+
+	@Test
+	void sameSeedGivesIdenticalMiniBatchResult() {
+		double[][] columns = blobs(20_000, 3, 2, 2);
+
+		KMeansEngine.Result a = KMeansEngine.fitMiniBatch(columns, 3, 512, 100, SEED);
+		KMeansEngine.Result b = KMeansEngine.fitMiniBatch(columns, 3, 512, 100, SEED);
+
+		assertArrayEquals(a.getLabels(), b.getLabels());
+		assertArrayEquals(a.getCentroids(), b.getCentroids());
+	}
+
+	@Test
+	void parallelMatchesSerial() {
+		// 多个 4096 点的分块，并行路径确实会拆分任务
+		double[][] columns = blobs(30_000, 5, 4, 3);
+
+		for (KMeansEngine.Algorithm algorithm : KMeansEngine.Algorithm.values()) {
+			KMeansEngine.Result serial = KMeansEngine.fit(columns, 5, 100, SEED, Integer.MAX_VALUE, algorithm);
+			KMeansEngine.Result parallel = KMeansEngine.fit(columns, 5, 100, SEED, 1, algorithm);
+
+			assertArrayEquals(serial.getLabels(), parallel.getLabels(), algorithm.name());
+			assertArrayEquals(serial.getSizes(), parallel.getSizes(), algorithm.name());
+			assertEquals(serial.getIterations(), parallel.getIterations(), algorithm.name());
+			assertCentroidsEqual(serial.getCentroids(), parallel.getCentroids(), 1e-9);
+		}
+	}
+
+	@Test
+	void hamerlyMatchesLloyd() {
+		// 群体分明与群体模糊两种数据
+		for (double spread : new double[]{0.5, 3}) {
+			double[][] columns = blobs(10_000, 6, 8, spread);
+
+			KMeansEngine.Result lloyd = KMeansEngine.fit(columns, 6, 200, SEED, Integer.MAX_VALUE,
+					KMeansEngine.Algorithm.LLOYD);
+			KMeansEngine.Result hamerly = KMeansEngine.fit(columns, 6, 200, SEED, Integer.MAX_VALUE,
+					KMeansEngine.Algorithm.HAMERLY);
+
+			assertArrayEquals(lloyd.getLabels(), hamerly.getLabels(), "spread=" + spread);
+			assertEquals(lloyd.getIterations(), hamerly.getIterations(), "spread=" + spread);
+			assertEquals(lloyd.isConverged(), hamerly.isConverged(), "spread=" + spread);
+			assertCentroidsEqual(lloyd.getCentroids(), hamerly.getCentroids(), 1e-9);
+			assertEquals(lloyd.getInertia(), hamerly.getInertia(), lloyd.getInertia() * 1e-12);
+		}
+	}
+
+	@Test
+	void kEqualToDistinctPointsGivesDistinctNonEmptyCentroids() {
+		// 30 个点只有 3 个不同的位置
+		double[][] columns = repeated(new double[][]{{1, 1}, {10, 10}, {1, 10}}, 10);
+
+		for (KMeansEngine.Algorithm algorithm : KMeansEngine.Algorithm.values()) {
+			KMeansEngine.Result r = KMeansEngine.fit(columns, 3, 100, SEED, Integer.MAX_VALUE, algorithm);
+
+			assertEquals(3, distinctCentroids(r.getCentroids(), r.getSizes()).size(), algorithm.name());
+			for (int size : r.getSizes()) {
+				assertEquals(10, size, algorithm.name());
+			}
+			assertEquals(0.0, r.getInertia(), algorithm.name());
+		}
+	}
+
+	@Test
+	void kGreaterThanDistinctPointsLeavesNoEmptyDisplayCentroids() {
+		// 20 个点只有 2 个不同的位置，K=3 时必有一个中心与其他中心重合
+		double[][] columns = repeated(new double[][]{{5, 20}, {25, 300}}, 10);
+
+		KMeansEngine.Result r = KMeansEngine.fit(columns, 3, 100, SEED);
+		assertEquals(2, distinctCentroids(r.getCentroids(), r.getSizes()).size());
+
+		List<KMeansUtil.Point> points = new ArrayList<>();
+		for (int i = 0; i < columns[0].length; i++) {
+			points.add(new KMeansUtil.Point(columns[0][i], columns[1][i], -1));
+		}
+		KMeansUtil.ClusterResult result = KMeansUtil.fit(points, 3, 100, SEED);
+
+		assertEquals(2, result.getCentroids().size());
+		assertNotEquals(result.getCentroids().get(0).getY(), result.getCentroids().get(1).getY());
+		Set<Integer> used = new HashSet<>();
+		result.getPoints().forEach(p -> used.add(p.getClusterIndex()));
+		for (KMeansUtil.Point c : result.getCentroids()) {
+			assertTrue(used.contains(c.getClusterIndex()), "中心 " + c + " 没有数据点");
+		}
+	}
+
+	@Test
+	void fewerPointsThanClustersIsRejected() {
+		double[][] columns = {{1, 2}, {1, 2}};
+		assertThrows(IllegalArgumentException.class, () -> KMeansEngine.fit(columns, 3, 10, SEED));
+		assertThrows(IllegalArgumentException.class, () -> KMeansEngine.fit(new double[][]{{1, 2}, {1}}, 1, 10, SEED));
+	}
+
+	/**
+	 * 随机生成 k 个高斯团的数据
+	 *
+	 * @return columns[d][i]
+	 */
+	private static double[][] blobs(int n, int k, int dims, double spread) {
+		Random random = new Random(7);
+		double[][] centers = new double[k][dims];
+		for (double[] center : centers) {
+			for (int d = 0; d < dims; d++) {
+				center[d] = random.nextDouble() * 20;
+			}
+		}
+		double[][] columns = new double[dims][n];
+		for (int i = 0; i < n; i++) {
+			double[] center = centers[random.nextInt(k)];
+			for (int d = 0; d < dims; d++) {
+				columns[d][i] = center[d] + random.nextGaussian() * spread;
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * 每个位置重复 times 次 (交错排列)
+	 */
+	private static double[][] repeated(double[][] locations, int times) {
+		int dims = locations[0].length;
+		double[][] columns = new double[dims][locations.length * times];
+		for (int t = 0; t < times; t++) {
+			for (int l = 0; l < locations.length; l++) {
+				for (int d = 0; d < dims; d++) {
+					columns[d][t * locations.length + l] = locations[l][d];
+				}
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * 非空聚类的不同中心 (重复的中心只算一次)
+	 */
+	private static Set<List<Double>> distinctCentroids(double[][] centroids, int[] sizes) {
+		Set<List<Double>> distinct = new HashSet<>();
+		for (int c = 0; c < sizes.length; c++) {
+			if (sizes[c] == 0) continue;
+			List<Double> point = new ArrayList<>();
+			for (double[] dim : centroids) {
+				point.add(dim[c]);
+			}
+			assertTrue(distinct.add(point), "重复的非空中心: " + point);
+		}
+		return distinct;
+	}
+
+	private static void assertCentroidsEqual(double[][] expected, double[][] actual, double delta) {
+		for (int d = 0; d < expected.length; d++) {
+			assertArrayEquals(expected[d], actual[d], delta);
+		}
+	}
+}
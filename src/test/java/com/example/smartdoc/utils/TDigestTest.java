@@ -0,0 +1,206 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * t-digest 分位数草图测试 - 与精确排序结果对比
+ */
+class TDigestTest {
+
+	private static final double[] QUANTILES = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+
+	@Test
+	void quantilesOfUniformMatchExactSort() {
+		Random random = new Random(1);
+		assertQuantilesAccurate(random::nextDouble, 100_000);
+	}
+
+	@Test
+	void quantilesOfNormalMatchExactSort() {
+		Random random = new Random(2);
+		assertQuantilesAccurate(random::nextGaussian, 100_000);
+	}
+
+	@Test
+	void quantilesOfLogNormalAmountsMatchExactSort() {
+		// 接近真实金额的长尾分布
+		Random random = new Random(3);
+		assertQuantilesAccurate(() -> Math.exp(4 + random.nextGaussian() * 0.8), 100_000);
+	}
+
+	@Test
+	void madMatchesExactSort() {
+		Random random = new Random(4);
+		double[] data = new double[50_000];
+		TDigest digest = new TDigest(100);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = Math.exp(4 + random.nextGaussian() * 0.8);
+			digest.add(data[i]);
+		}
+		double[] sorted = data.clone();
+		Arrays.sort(sorted);
+		double median = exactQuantile(sorted, 0.5);
+		double[] deviations = new double[data.length];
+		for (int i = 0; i < data.length; i++) {
+			deviations[i] = Math.abs(data[i] - median);
+		}
+		Arrays.sort(deviations);
+		double exactMad = exactQuantile(deviations, 0.5);
+
+		assertEquals(exactMad, digest.mad(), exactMad * 0.02);
+	}
+
+	@Test
+	void emptyDigestReturnsNaN() {
+		TDigest digest = new TDigest(100);
+		assertTrue(Double.isNaN(digest.quantile(0.5)));
+		assertTrue(Double.isNaN(digest.mad()));
+		assertEquals(0, digest.size());
+	}
+
+	@Test
+	void extremeQuantilesAreMinAndMax() {
+		TDigest digest = new TDigest(100);
+		for (int i = 1; i <= 1000; i++) {
+			digest.add(i);
+		}
+		assertEquals(1, digest.quantile(0));
+		assertEquals(1000, digest.quantile(1));
+		assertThrows(IllegalArgumentException.class, () -> digest.quantile(1.5));
+	}
+
+	@Test
+	void identicalValuesHaveZeroMad() {
+		TDigest digest = new TDigest(100);
+		for (int i = 0; i < 100; i++) {
+			digest.add(42.0);
+		}
+		assertEquals(42.0, digest.quantile(0.5));
+		assertEquals(0.0, digest.mad());
+	}
+
+	@Test
+	void bytesRoundTripPreservesDistribution() {
+		Random random = new Random(5);
+		TDigest digest = new TDigest(100);
+		for (int i = 0; i < 20_000; i++) {
+			digest.add(Math.exp(4 + random.nextGaussian()));
+		}
+
+		byte[] bytes = digest.toBytes();
+		TDigest restored = TDigest.fromBytes(bytes);
+
+		assertEquals(digest.size(), restored.size());
+		for (double q : QUANTILES) {
+			assertEquals(digest.quantile(q), restored.quantile(q), 1e-9);
+		}
+		assertEquals(digest.mad(), restored.mad(), 1e-9);
+		assertArrayEquals(bytes, restored.toBytes());
+	}
+
+	@Test
+	void restoredDigestAcceptsMoreSamples() {
+		TDigest digest = new TDigest(100);
+		for (int i = 0; i < 1000; i++) {
+			digest.add(i);
+		}
+		TDigest restored = TDigest.fromBytes(digest.toBytes());
+		for (int i = 1000; i < 2000; i++) {
+			restored.add(i);
+		}
+		assertEquals(2000, restored.size());
+		assertEquals(1000, restored.quantile(0.5), 20);
+		assertEquals(1999, restored.quantile(1));
+	}
+
+	@Test
+	void emptyDigestRoundTrips() {
+		TDigest restored = TDigest.fromBytes(new TDigest(100).toBytes());
+		assertEquals(0, restored.size());
+		assertTrue(Double.isNaN(restored.quantile(0.5)));
+	}
+
+	@Test
+	void corruptBytesAreRejected() {
+		byte[] bytes = new TDigest(100).toBytes();
+		bytes[0] = 99;
+		assertThrows(IllegalArgumentException.class, () -> TDigest.fromBytes(bytes));
+		assertThrows(IllegalArgumentException.class, () -> TDigest.fromBytes(new byte[]{1, 0, 0}));
+	}
+
+	@Test
+	void mergeMatchesSingleDigest() {
+		Random random = new Random(6);
+		double[] data = new double[60_000];
+		TDigest left = new TDigest(100);
+		TDigest right = new TDigest(100);
+		for (int i = 0; i < data.length; i++) {
+			// 两半来自不同的分布，合并后才是完整的分布
+			data[i] = i % 2 == 0 ? random.nextGaussian() : 5 + random.nextGaussian() * 2;
+			(i % 2 == 0 ? left : right).add(data[i]);
+		}
+
+		left.add(right);
+
+		assertEquals(data.length, left.size());
+		assertEquals(60_000 / 2, right.size(), "被合并的草图不变");
+		double[] sorted = data.clone();
+		Arrays.sort(sorted);
+		assertEquals(sorted[0], left.quantile(0));
+		assertEquals(sorted[sorted.length - 1], left.quantile(1));
+		for (double q : QUANTILES) {
+			assertRankError(sorted, q, left.quantile(q));
+		}
+	}
+
+	/**
+	 * 逐个加入样本后，各分位数与精确排序结果的秩误差在容许范围内
+	 */
+	private static void assertQuantilesAccurate(DoubleSupplier source, int n) {
+		double[] data = new double[n];
+		TDigest digest = new TDigest(100);
+		for (int i = 0; i < n; i++) {
+			data[i] = source.getAsDouble();
+			digest.add(data[i]);
+		}
+		Arrays.sort(data);
+		assertEquals(n, digest.size());
+		for (double q : QUANTILES) {
+			assertRankError(data, q, digest.quantile(q));
+		}
+	}
+
+	/**
+	 * 估计值在样本中的秩 (所处分位) 与 q 的误差: 两端 0.1%，中间 0.5%
+	 */
+	private static void assertRankError(double[] sorted, double q, double estimate) {
+		int below = lowerBound(sorted, estimate);
+		double rank = (double) below / sorted.length;
+		double tolerance = Math.min(q, 1 - q) < 0.02 ? 0.001 : 0.005;
+		assertEquals(q, rank, tolerance, "q=" + q + " 估计值=" + estimate);
+	}
+
+	private static int lowerBound(double[] sorted, double x) {
+		int lo = 0;
+		int hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] < x) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	private static double exactQuantile(double[] sorted, double q) {
+		return sorted[(int) Math.min(sorted.length - 1, Math.round(q * (sorted.length - 1)))];
+	}
+}
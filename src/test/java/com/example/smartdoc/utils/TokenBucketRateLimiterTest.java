@@ -0,0 +1,156 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 令牌桶限流器测试 - 突发容量、补充速率、超时拒绝、排队顺序
+ */
+class TokenBucketRateLimiterTest {
+
+	@Test
+	void fullBucketAllowsBurstUpToCapacity() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 5);
+
+		for (int i = 0; i < 5; i++) {
+			assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS), "第 " + (i + 1) + " 次");
+		}
+		assertFalse(limiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+		assertEquals(1L, limiter.getStats().get("rejected"));
+	}
+
+	@Test
+	void tokensRefillOverTime() throws InterruptedException {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(20, 2);
+		drain(limiter);
+
+		// 20 QPS: 150ms 后至少补充 2 个令牌
+		Thread.sleep(150);
+
+		assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+		assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void refillStopsAtCapacity() throws InterruptedException {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 3);
+		drain(limiter);
+
+		// 足够补充 20 个令牌的时间，但桶只能装 3 个
+		Thread.sleep(200);
+
+		assertEquals(3.0, limiter.getStats().get("availableTokens"));
+	}
+
+	@Test
+	void waitsForTokenWithinTimeout() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(20, 1);
+		drain(limiter);
+
+		long start = System.nanoTime();
+		assertTrue(limiter.tryAcquire(1, TimeUnit.SECONDS));
+		long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// 下一个令牌约 50ms 后产生
+		assertTrue(waitedMs >= 40, "等待 " + waitedMs + "ms");
+	}
+
+	@Test
+	void rejectsImmediatelyWhenWaitExceedsTimeout() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1);
+		drain(limiter);
+
+		long start = System.nanoTime();
+		assertFalse(limiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// 预计要等约 1 秒，不睡眠直接拒绝
+		assertTrue(elapsedMs < 500, "耗时 " + elapsedMs + "ms");
+	}
+
+	@Test
+	void rejectionDoesNotReserveToken() throws InterruptedException {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(20, 1);
+		drain(limiter);
+		for (int i = 0; i < 10; i++) {
+			assertFalse(limiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+		}
+
+		// 被拒绝的请求没有占用预约，下一个令牌仍然约 50ms 后可用
+		Thread.sleep(80);
+		assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void sustainedRateIsLimited() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(50, 1);
+		drain(limiter);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limiter.tryAcquire(1, TimeUnit.SECONDS));
+		}
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// 50 QPS 下 10 个令牌至少需要约 200ms
+		assertTrue(elapsedMs >= 180, "耗时 " + elapsedMs + "ms");
+	}
+
+	@Test
+	void waitersAreServedInArrivalOrder() throws InterruptedException {
+		// 10 QPS: 5 个请求的预约时刻依次相隔 100ms，启动期间前面的请求都还在等待
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1);
+		drain(limiter);
+
+		ConcurrentLinkedQueue<Integer> order = new ConcurrentLinkedQueue<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			int id = i;
+			Thread thread = new Thread(() -> {
+				if (limiter.tryAcquire(5, TimeUnit.SECONDS)) {
+					order.add(id);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+			// 等本请求完成预约再启动下一个，保证到达顺序确定
+			awaitWaiting(limiter, i + 1);
+		}
+		for (Thread thread : threads) {
+			thread.join(5_000);
+		}
+
+		assertEquals(List.of(0, 1, 2, 3, 4), new ArrayList<>(order));
+	}
+
+	@Test
+	void invalidArgumentsAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter(0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter(1, 0.5));
+	}
+
+	/**
+	 * 取走桶中全部令牌
+	 */
+	private static void drain(TokenBucketRateLimiter limiter) {
+		while (limiter.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+			// 继续取
+		}
+	}
+
+	private static void awaitWaiting(TokenBucketRateLimiter limiter, int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 2_000;
+		while ((Integer) limiter.getStats().get("waiting") < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+}